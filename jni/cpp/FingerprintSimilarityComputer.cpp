@@ -8,10 +8,10 @@
 
 
 #include <limits.h>
+#include <algorithm>
 #include "Fingerprint.h"
 #include "FingerprintManager.h"
 #include "FingerprintSimilarityComputer.h"
-#include "MapRankInteger.h"
 #include "PairManager.h"
 
 
@@ -22,98 +22,31 @@ FingerprintSimilarityComputer::FingerprintSimilarityComputer(const vector<uint8_
 FingerprintSimilarity FingerprintSimilarityComputer::getMatchResults()
 {
 	FingerprintSimilarity results;
-	map<int, int> offsetScoreTable;
-	int numFrames = 0;
+	getMatchResultsEx(&results);
+	return results;
+}
 
-	// reset the results
-	results.score = 0.0f;
-	results.similarity = 0.0f;
-	results.mostSimilarFramePosition = INT_MIN;
-	results.mostSimilarStartTime = 1.0f;
+/**
+* The pairs of a fingerprint as hashcode << 32 | position, sorted so that the positions
+* sharing a hashcode are contiguous.
+*/
 
-	// one frame may contain several points, use the shorter one be the denominator
-	if (fingerprint1.size() > fingerprint2.size()) {
-		numFrames = FingerprintManager::getNumFrames(fingerprint2);
-	} else {
-		numFrames = FingerprintManager::getNumFrames(fingerprint1);
-	}
-
-	// get the pairs
+vector<uint64_t> FingerprintSimilarityComputer::getSortedPairs(const vector<uint8_t> &fingerprint)
+{
 	PairManager pairManager;
-	map<int, vector<int>> this_Pair_PositionList_Table = pairManager.getPair_PositionList_Table(fingerprint1);
-	map<int, vector<int>> compareWave_Pair_PositionList_Table = pairManager.getPair_PositionList_Table(fingerprint2);
-
-	for (auto& it : compareWave_Pair_PositionList_Table) {
-		int compareWaveHashNumber = it.first;
-
-		// for each compare hash number, get the positions
-		// if the compareWaveHashNumber in either table, no need to compare
-		if ((this_Pair_PositionList_Table.find(compareWaveHashNumber) == this_Pair_PositionList_Table.end()) ||
-			(compareWave_Pair_PositionList_Table.find(compareWaveHashNumber) == compareWave_Pair_PositionList_Table.end())) {
-			continue;
-		}
-
-		vector<int>& wavePositionList = this_Pair_PositionList_Table[compareWaveHashNumber];
-		vector<int>& compareWavePositionList = compareWave_Pair_PositionList_Table[compareWaveHashNumber];
-
-		for (auto& thisPosition : wavePositionList) {
-			for (auto& compareWavePosition : compareWavePositionList) {
-				int offset = (thisPosition - compareWavePosition);
-
-				if (offsetScoreTable.find(offset) != offsetScoreTable.end()) {
-					offsetScoreTable[offset] += 1;
-				} else {
-					offsetScoreTable[offset] = 1;
-				}
-			}
-		}
-	}
-
-	// map rank
-	MapRankInteger mapRank = MapRankInteger(offsetScoreTable, false);
-
-	// get the most similar positions and scores
-	vector<int> orderedKeyList = mapRank.getOrderedKeyList(100, true);
-	if (orderedKeyList.size() > 0) {
-		int key = orderedKeyList[0];
-
-		// get the highest score position
-		if (results.mostSimilarFramePosition == INT_MIN) {
-			results.mostSimilarFramePosition = key;
-			results.score = (float)offsetScoreTable[key];
+	vector<PairPosition> pairPositionList = pairManager.getPairPositionList(fingerprint);
 
-			// accumulate the scores from neighbors
-//			if int offsetScore = offsetScoreTable[(key - 1)] {
-			if (offsetScoreTable.find(key - 1) != offsetScoreTable.end()) {
-				int offsetScore = offsetScoreTable[key - 1];
-				results.score += (float)(offsetScore / 2);
-			}
-//			if int offsetScore = offsetScoreTable[(key + 1)] {
-			if (offsetScoreTable.find(key + 1) != offsetScoreTable.end()) {
-				int offsetScore = offsetScoreTable[key + 1];
-				results.score += (float)(offsetScore / 2);
-			}
-		}
-	}
-
-	results.score /= (float)numFrames;
-	results.similarity = results.score;
-	if (results.similarity > 1.0f) {
-		// similarity > 1.0 means in average there is at least one match in every frame
-		results.similarity = 1.0f;
+	vector<uint64_t> pairs(pairPositionList.size());
+	for (size_t i = 0; i < pairPositionList.size(); i++) {
+		pairs[i] = ((uint64_t)(uint32_t)pairPositionList[i].hashcode << 32) | (uint32_t)pairPositionList[i].position;
 	}
+	std::sort(pairs.begin(), pairs.end());
 
-	// calculate the most similar start time
-	results.mostSimilarStartTime = ((float)results.mostSimilarFramePosition / (float)FingerprintProperties::numRobustPointsPerFrame / (float)FingerprintProperties::fps);
-
-	return results;
+	return pairs;
 }
 
-
-// Fix the error in Android
 void FingerprintSimilarityComputer::getMatchResultsEx(FingerprintSimilarity *results)
 {
-	map<int, int> offsetScoreTable;
 	int numFrames = 0;
 
 	// reset the results
@@ -130,60 +63,82 @@ void FingerprintSimilarityComputer::getMatchResultsEx(FingerprintSimilarity *res
 	}
 
 	// get the pairs
-	PairManager pairManager;
-	map<int, vector<int>> this_Pair_PositionList_Table = pairManager.getPair_PositionList_Table(fingerprint1);
-	map<int, vector<int>> compareWave_Pair_PositionList_Table = pairManager.getPair_PositionList_Table(fingerprint2);
-
-	for (auto& it : compareWave_Pair_PositionList_Table) {
-		int compareWaveHashNumber = it.first;
-
-		// for each compare hash number, get the positions
-		// if the compareWaveHashNumber in either table, no need to compare
-		if ((this_Pair_PositionList_Table.find(compareWaveHashNumber) == this_Pair_PositionList_Table.end()) ||
-			(compareWave_Pair_PositionList_Table.find(compareWaveHashNumber) == compareWave_Pair_PositionList_Table.end())) {
-			continue;
+	vector<uint64_t> thisPairs = getSortedPairs(fingerprint1);
+	vector<uint64_t> comparePairs = getSortedPairs(fingerprint2);
+
+	if (!thisPairs.empty() && !comparePairs.empty()) {
+		// offset = thisPosition - compareWavePosition, bounded by the positions of both lists
+		int thisMin = INT_MAX, thisMax = INT_MIN, compareMin = INT_MAX, compareMax = INT_MIN;
+		for (auto pair : thisPairs) {
+			int position = (int)(uint32_t)pair;
+			thisMin = std::min(thisMin, position);
+			thisMax = std::max(thisMax, position);
+		}
+		for (auto pair : comparePairs) {
+			int position = (int)(uint32_t)pair;
+			compareMin = std::min(compareMin, position);
+			compareMax = std::max(compareMax, position);
 		}
 
-		vector<int>& wavePositionList = this_Pair_PositionList_Table[compareWaveHashNumber];
-		vector<int>& compareWavePositionList = compareWave_Pair_PositionList_Table[compareWaveHashNumber];
+		// offsetScores[offset - minOffset + 1], with an empty slot at each end for the neighbors
+		int minOffset = (thisMin - compareMax);
+		int maxOffset = (thisMax - compareMin);
+		vector<int> offsetScores((size_t)(maxOffset - minOffset) + 3, 0);
+		int base = (1 - minOffset);
+
+		// merge the two lists on the hashcode
+		size_t i = 0;
+		size_t j = 0;
+		while (i < thisPairs.size() && j < comparePairs.size()) {
+			uint32_t hashcode = (uint32_t)(thisPairs[i] >> 32);
+			uint32_t compareHashcode = (uint32_t)(comparePairs[j] >> 32);
+
+			if (hashcode < compareHashcode) {
+				i += 1;
+				continue;
+			}
+			if (compareHashcode < hashcode) {
+				j += 1;
+				continue;
+			}
 
-		for (auto& thisPosition : wavePositionList) {
-			for (auto& compareWavePosition : compareWavePositionList) {
-				int offset = (thisPosition - compareWavePosition);
+			size_t iEnd = i;
+			while (iEnd < thisPairs.size() && (uint32_t)(thisPairs[iEnd] >> 32) == hashcode) {
+				iEnd += 1;
+			}
+			size_t jEnd = j;
+			while (jEnd < comparePairs.size() && (uint32_t)(comparePairs[jEnd] >> 32) == hashcode) {
+				jEnd += 1;
+			}
 
-				if (offsetScoreTable.find(offset) != offsetScoreTable.end()) {
-					offsetScoreTable[offset] += 1;
-				} else {
-					offsetScoreTable[offset] = 1;
+			for (size_t a = i; a < iEnd; a++) {
+				int row = base + (int)(uint32_t)thisPairs[a];
+				for (size_t b = j; b < jEnd; b++) {
+					offsetScores[row - (int)(uint32_t)comparePairs[b]] += 1;
 				}
 			}
-		}
-	}
 
-	// map rank
-	MapRankInteger mapRank = MapRankInteger(offsetScoreTable, false);
+			i = iEnd;
+			j = jEnd;
+		}
 
-	// get the most similar positions and scores
-	vector<int> orderedKeyList = mapRank.getOrderedKeyList(100, true);
-	if (orderedKeyList.size() > 0) {
-		int key = orderedKeyList[0];
+		// the highest score, the smallest offset on ties as MapRankInteger ranked them
+		int best = 0;
+		int key = 0;
+		for (int offset = minOffset; offset <= maxOffset; offset++) {
+			if (offsetScores[base + offset] > best) {
+				best = offsetScores[base + offset];
+				key = offset;
+			}
+		}
 
-		// get the highest score position
-		if (results->mostSimilarFramePosition == INT_MIN) {
+		if (best > 0) {
 			results->mostSimilarFramePosition = key;
-			results->score = (float)offsetScoreTable[key];
+			results->score = (float)best;
 
 			// accumulate the scores from neighbors
-//			if int offsetScore = offsetScoreTable[(key - 1)] {
-			if (offsetScoreTable.find(key - 1) != offsetScoreTable.end()) {
-				int offsetScore = offsetScoreTable[key - 1];
-				results->score += (float)(offsetScore / 2);
-			}
-//			if int offsetScore = offsetScoreTable[(key + 1)] {
-			if (offsetScoreTable.find(key + 1) != offsetScoreTable.end()) {
-				int offsetScore = offsetScoreTable[key + 1];
-				results->score += (float)(offsetScore / 2);
-			}
+			results->score += (float)(offsetScores[base + key - 1] / 2);
+			results->score += (float)(offsetScores[base + key + 1] / 2);
 		}
 	}
 
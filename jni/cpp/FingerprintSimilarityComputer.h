@@ -9,10 +9,9 @@
 #ifndef FINGERPRINTSIMILARITYCOMPUTER_H
 #define FINGERPRINTSIMILARITYCOMPUTER_H
 
-#include <map>
+#include <stdint.h>
 #include <vector>
 
-using std::map;
 using std::vector;
 
 struct FingerprintSimilarity;
@@ -31,6 +30,8 @@ private:
 	vector<uint8_t> fingerprint1;
 	vector<uint8_t> fingerprint2;
 
+	static vector<uint64_t> getSortedPairs(const vector<uint8_t> &fingerprint);
+
 };
 
 #endif /* FINGERPRINTSIMILARITYCOMPUTER_H */
@@ -0,0 +1,131 @@
+//
+//  NativeFingerprintEngine.cpp
+//  TuneURL
+//
+//  JNI entry points of libtuneurlfp.so for
+//  com.tuneurl.webrtc.util.util.fingerprint.NativeFingerprintEngine.
+//  Copyright (c) 2023-2024 TuneURL Inc. All rights reserved.
+//
+
+#include <jni.h>
+#include <string.h>
+#include <vector>
+
+#include "Fingerprint.h"
+#include "FingerprintSimilarityComputer.h"
+#include "TriggerSearch.h"
+
+using std::vector;
+
+// The trigger search reads its window in place, pinned with
+// Get/ReleasePrimitiveArrayCritical: it is short and makes no JNI call while the
+// array is pinned. The extraction allocates and runs FFTs over seconds of audio,
+// it works on a native copy so the GC is never blocked for that long.
+
+extern "C" {
+
+JNIEXPORT jbyteArray JNICALL
+Java_com_tuneurl_webrtc_util_util_fingerprint_NativeFingerprintEngine_nativeExtractFingerprint(
+    JNIEnv *env, jclass clazz, jshortArray wave, jint from, jint length) {
+
+  Fingerprint *ptr = (Fingerprint *)0;
+  vector<jshort> samples(length > 0 ? length : 0);
+  env->GetShortArrayRegion(wave, from, length, samples.data());
+  // ArrayIndexOutOfBoundsException is pending.
+  if (env->ExceptionCheck()) return NULL;
+  try {
+    ptr = ExtractFingerprint((const int16_t *) samples.data(), length);
+  } catch (...) {
+    ptr = (Fingerprint *)0;
+  }
+
+  if (ptr == (Fingerprint *)0) {
+    return env->NewByteArray(0);
+  }
+  jbyteArray result = env->NewByteArray(ptr->dataSize);
+  if (result != NULL) {
+    env->SetByteArrayRegion(result, 0, ptr->dataSize, (const jbyte *) ptr->data);
+  }
+  FingerprintFree(ptr);
+  return result;
+}
+
+JNIEXPORT jfloatArray JNICALL
+Java_com_tuneurl_webrtc_util_util_fingerprint_NativeFingerprintEngine_nativeSearchTrigger(
+    JNIEnv *env, jclass clazz, jshortArray data, jint from, jint length,
+    jfloatArray startRates, jfloatArray endRates, jint blockCount, jint max) {
+
+  jsize count = env->GetArrayLength(startRates);
+  vector<jfloat> starts(count);
+  vector<jfloat> ends(count);
+  env->GetFloatArrayRegion(startRates, 0, count, starts.data());
+  env->GetFloatArrayRegion(endRates, 0, count, ends.data());
+
+  DataFingerPrint df;
+  df.blockCount = blockCount;
+  df.max = max;
+  for (jsize index = 0; index < count; index++) {
+    BlockInfo info;
+    memset(&info, 0, sizeof(info));
+    info.startRate = starts[index];
+    info.endRate = ends[index];
+    df.blockInfo.push_back(info);
+  }
+
+  SearchResult result;
+  jshort *samples = (jshort *) env->GetPrimitiveArrayCritical(data, NULL);
+  if (samples == NULL) return NULL;
+  result = getSearchResult((const int16_t *) samples + from, length, df);
+  env->ReleasePrimitiveArrayCritical(data, samples, JNI_ABORT);
+
+  jfloat values[5];
+  values[0] = result.similarity;
+  values[1] = (jfloat) result.offset;
+  values[2] = result.amplify;
+  values[3] = (jfloat) result.triggerMax;
+  values[4] = (jfloat) result.dataMax;
+  jfloatArray output = env->NewFloatArray(5);
+  if (output != NULL) {
+    env->SetFloatArrayRegion(output, 0, 5, values);
+  }
+  return output;
+}
+
+JNIEXPORT jfloatArray JNICALL
+Java_com_tuneurl_webrtc_util_util_fingerprint_NativeFingerprintEngine_nativeCompareLandmarks(
+    JNIEnv *env, jclass clazz, jbyteArray one, jbyteArray two) {
+
+  jsize aLength = env->GetArrayLength(one);
+  jsize bLength = env->GetArrayLength(two);
+  size_t dataSize = aLength > bLength ? bLength : aLength;
+
+  // FingerprintSimilarityComputer keeps its own copies.
+  vector<uint8_t> data1(dataSize);
+  vector<uint8_t> data2(dataSize);
+  env->GetByteArrayRegion(one, 0, dataSize, (jbyte *) data1.data());
+  env->GetByteArrayRegion(two, 0, dataSize, (jbyte *) data2.data());
+
+  FingerprintSimilarityComputer computer(data1, data2);
+  FingerprintSimilarity result;
+  try {
+      computer.getMatchResultsEx(&result);
+  } catch (...) {
+      result.score = 0.0f;
+      result.similarity = 0.0f;
+      result.mostSimilarFramePosition = 1;
+      result.mostSimilarStartTime = 1.0f;
+  }
+
+  jfloat values[4];
+  values[0] = (jfloat) result.mostSimilarFramePosition;
+  values[1] = result.mostSimilarStartTime;
+  values[2] = result.score;
+  values[3] = result.similarity;
+  jfloatArray output = env->NewFloatArray(4);
+  if (output != NULL) {
+    env->SetFloatArrayRegion(output, 0, 4, values);
+  }
+  return output;
+}
+
+}
@@ -7,6 +7,7 @@
 //
 
 
+#include <algorithm>
 #include "FingerprintManager.h"
 #include "PairManager.h"
 #include "QuickSortInteger.h"
@@ -69,10 +70,51 @@ vector<PairPosition> PairManager::getPairPositionList(const vector<uint8_t> &fin
 	vector<PairPosition> pairList;
 	vector<ArrayCoord> sortedCoordinateList = getSortedCoordinateList(fingerprint);
 
+	// index the points by frame, each frame listing its ranks in sortedCoordinateList in order
+	int maxX = 0;
+	for (auto& point : sortedCoordinateList) {
+		maxX = std::max(maxX, point.x);
+	}
+	vector<int> frameStart(maxX + 2, 0);
+	for (auto& point : sortedCoordinateList) {
+		frameStart[point.x + 1] += 1;
+	}
+	for (int x = 0; x <= maxX; x++) {
+		frameStart[x + 1] += frameStart[x];
+	}
+	vector<int> frameRanks(sortedCoordinateList.size());
+	vector<int> frameFill(frameStart.begin(), frameStart.end() - 1);
+	for (int rank = 0; rank < (int)sortedCoordinateList.size(); rank++) {
+		frameRanks[frameFill[sortedCoordinateList[rank].x]++] = rank;
+	}
+
+	// only the points of the target zone can pair, visit them in the order of the full list
+	vector<int> targetRanks;
+
 	for (auto& anchorPoint : sortedCoordinateList) {
 		int numPairs = 0;
 
-		for (auto& targetPoint : sortedCoordinateList) {
+		if (isReferencePairing && pairedFrameTable[anchorPoint.x / anchorPointsIntervalLength] >= numAnchorPointsPerInterval) {
+			continue;
+		}
+
+		// the other points of the target zone in the same filter bank
+		targetRanks.clear();
+		int anchorBank = (anchorPoint.y / bandwidthPerBank);
+		int firstX = std::max(0, anchorPoint.x - maxTargetZoneDistance);
+		int lastX = std::min(maxX, anchorPoint.x + maxTargetZoneDistance);
+		for (int x = firstX; x <= lastX; x++) {
+			for (int i = frameStart[x]; i < frameStart[x + 1]; i++) {
+				ArrayCoord& point = sortedCoordinateList[frameRanks[i]];
+				if ((point.y / bandwidthPerBank) == anchorBank && !((point.x == anchorPoint.x) && (point.y == anchorPoint.y))) {
+					targetRanks.push_back(frameRanks[i]);
+				}
+			}
+		}
+		std::sort(targetRanks.begin(), targetRanks.end());
+
+		for (int targetRank : targetRanks) {
+			ArrayCoord& targetPoint = sortedCoordinateList[targetRank];
 
 			if (numPairs >= maxPairs) {
 				break;
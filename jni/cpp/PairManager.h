@@ -34,6 +34,7 @@ public:
 	PairManager(bool isReferencePairing);
 
 	map<int, vector<int>> getPair_PositionList_Table(const vector<uint8_t> &fingerprint);
+	vector<PairPosition> getPairPositionList(const vector<uint8_t> &fingerprint);
 
 private:
 
@@ -54,7 +55,6 @@ private:
 	map<int, bool> stopPairTable;
 
 
-	vector<PairPosition> getPairPositionList(const vector<uint8_t> &fingerprint);
 	vector<ArrayCoord> getSortedCoordinateList(const vector<uint8_t> &fingerprint);
 
 };
@@ -0,0 +1,277 @@
+//
+//  SimilarityBenchmark.cpp
+//  TuneURL
+//
+//  Times FingerprintSimilarityComputer against the map based implementation and the full scan
+//  pairing it replaced, and checks that both give the same FingerprintSimilarity.
+//  Copyright (c) 2023-2024 TuneURL Inc. All rights reserved.
+//
+//  Usage: similarity-benchmark [fingerprint-comparison-test.txt]
+//
+
+#include <limits.h>
+#include <math.h>
+#include <string.h>
+#include <chrono>
+#include <fstream>
+#include <iostream>
+#include <map>
+#include <random>
+#include <vector>
+#include "Fingerprint.h"
+#include "FingerprintManager.h"
+#include "FingerprintSimilarityComputer.h"
+#include "MapRankInteger.h"
+#include "PairManager.h"
+#include "QuickSortInteger.h"
+
+using std::map;
+using std::vector;
+
+// PairManager::getPair_PositionList_Table() of a reference pairing before the target zone index.
+static map<int, vector<int>> legacyPairTable(const vector<uint8_t> &fingerprint)
+{
+	int numFrequencyUnits = FingerprintProperties::numFrequencyUnits;
+	int bandwidthPerBank = (numFrequencyUnits / FingerprintProperties::numFilterBanks);
+	int anchorPointsIntervalLength = FingerprintProperties::anchorPointsIntervalLength;
+	int numFrames = FingerprintManager::getNumFrames(fingerprint);
+
+	int numCoordinates = ((int)fingerprint.size() / 8);
+	vector<int> intensities(numCoordinates);
+	for (int i = 0; i < numCoordinates; i++) {
+		int pointer = (i * 8 + 4);
+		intensities[i] = (int)(fingerprint[pointer] & 0xFF) << 24 | (int)(fingerprint[pointer + 1] & 0xFF) << 16 | (int)(fingerprint[pointer + 2] & 0xFF) << 8 | (int)(fingerprint[pointer + 3] & 0xFF);
+	}
+	QuickSortInteger quicksort(intensities);
+	vector<int> sortIndexes = quicksort.getSortIndexes();
+	vector<ArrayCoord> sortedCoordinateList;
+	for (int i = ((int)sortIndexes.size() - 1); i >= 0; i--) {
+		int pointer = (sortIndexes[i] * 8);
+		int x = (((int)fingerprint[pointer + 0] << 8) | (int)fingerprint[pointer + 1]);
+		int y = (((int)fingerprint[pointer + 2] << 8) | (int)fingerprint[pointer + 3]);
+		sortedCoordinateList.push_back(ArrayCoord(x, y));
+	}
+
+	vector<uint8_t> pairedFrameTable((numFrames / anchorPointsIntervalLength + 1));
+	map<int, vector<int>> table;
+	for (auto& anchorPoint : sortedCoordinateList) {
+		int numPairs = 0;
+		for (auto& targetPoint : sortedCoordinateList) {
+			if (numPairs >= FingerprintProperties::refMaxActivePairs) {
+				break;
+			}
+			if (pairedFrameTable[anchorPoint.x / anchorPointsIntervalLength] >= FingerprintProperties::numAnchorPointsPerInterval) {
+				break;
+			}
+			if ((anchorPoint.x == targetPoint.x) && (anchorPoint.y == targetPoint.y)) {
+				continue;
+			}
+			bool anchorFirst = (targetPoint.x >= anchorPoint.x);
+			const ArrayCoord& p1 = anchorFirst ? anchorPoint : targetPoint;
+			const ArrayCoord& p2 = anchorFirst ? targetPoint : anchorPoint;
+			if ((p2.x - p1.x) > FingerprintProperties::maxTargetZoneDistance) {
+				continue;
+			}
+			if ((p1.y / bandwidthPerBank) != (p2.y / bandwidthPerBank)) {
+				continue;
+			}
+			int pairHashcode = (p2.x - p1.x) * numFrequencyUnits * numFrequencyUnits + p2.y * numFrequencyUnits + p1.y;
+			table[pairHashcode].push_back(anchorPoint.x);
+			pairedFrameTable[anchorPoint.x / anchorPointsIntervalLength] += 1;
+			numPairs += 1;
+		}
+	}
+	return table;
+}
+
+// FingerprintSimilarityComputer::getMatchResultsEx() before the flat array rewrite.
+static FingerprintSimilarity legacyMatchResults(const vector<uint8_t> &fingerprint1, const vector<uint8_t> &fingerprint2)
+{
+	FingerprintSimilarity results;
+	map<int, int> offsetScoreTable;
+	int numFrames = 0;
+
+	results.score = 0.0f;
+	results.similarity = 0.0f;
+	results.mostSimilarFramePosition = INT_MIN;
+	results.mostSimilarStartTime = 1.0f;
+
+	if (fingerprint1.size() > fingerprint2.size()) {
+		numFrames = FingerprintManager::getNumFrames(fingerprint2);
+	} else {
+		numFrames = FingerprintManager::getNumFrames(fingerprint1);
+	}
+
+	map<int, vector<int>> this_Pair_PositionList_Table = legacyPairTable(fingerprint1);
+	map<int, vector<int>> compareWave_Pair_PositionList_Table = legacyPairTable(fingerprint2);
+
+	for (auto& it : compareWave_Pair_PositionList_Table) {
+		int compareWaveHashNumber = it.first;
+		if (this_Pair_PositionList_Table.find(compareWaveHashNumber) == this_Pair_PositionList_Table.end()) {
+			continue;
+		}
+		vector<int>& wavePositionList = this_Pair_PositionList_Table[compareWaveHashNumber];
+		vector<int>& compareWavePositionList = it.second;
+		for (auto& thisPosition : wavePositionList) {
+			for (auto& compareWavePosition : compareWavePositionList) {
+				offsetScoreTable[thisPosition - compareWavePosition] += 1;
+			}
+		}
+	}
+
+	MapRankInteger mapRank = MapRankInteger(offsetScoreTable, false);
+	vector<int> orderedKeyList = mapRank.getOrderedKeyList(100, true);
+	if (orderedKeyList.size() > 0) {
+		int key = orderedKeyList[0];
+		results.mostSimilarFramePosition = key;
+		results.score = (float)offsetScoreTable[key];
+		if (offsetScoreTable.find(key - 1) != offsetScoreTable.end()) {
+			results.score += (float)(offsetScoreTable[key - 1] / 2);
+		}
+		if (offsetScoreTable.find(key + 1) != offsetScoreTable.end()) {
+			results.score += (float)(offsetScoreTable[key + 1] / 2);
+		}
+	}
+
+	results.score /= (float)numFrames;
+	results.similarity = results.score;
+	if (results.similarity > 1.0f) {
+		results.similarity = 1.0f;
+	}
+	results.mostSimilarStartTime = ((float)results.mostSimilarFramePosition / (float)FingerprintProperties::numRobustPointsPerFrame / (float)FingerprintProperties::fps);
+
+	return results;
+}
+
+static bool sameResults(const FingerprintSimilarity &a, const FingerprintSimilarity &b)
+{
+	return a.mostSimilarFramePosition == b.mostSimilarFramePosition
+		&& memcmp(&a.mostSimilarStartTime, &b.mostSimilarStartTime, sizeof(float)) == 0
+		&& memcmp(&a.score, &b.score, sizeof(float)) == 0
+		&& memcmp(&a.similarity, &b.similarity, sizeof(float)) == 0;
+}
+
+// Tones that change every half second over noise, so clips have distinct landmarks.
+static vector<int16_t> syntheticWave(int seconds, unsigned seed)
+{
+	std::mt19937 random(seed);
+	std::uniform_real_distribution<double> frequency(400.0, 1500.0);
+	std::normal_distribution<double> noise(0.0, 300.0);
+	int sampleRate = (int)FingerprintProperties::sampleRate;
+	vector<int16_t> wave((size_t)seconds * sampleRate);
+	double f1 = frequency(random);
+	double f2 = frequency(random);
+	for (size_t i = 0; i < wave.size(); i++) {
+		if (i % (sampleRate / 2) == 0) {
+			f1 = frequency(random);
+			f2 = frequency(random);
+		}
+		double t = (double)i / sampleRate;
+		double value = 6000.0 * sin(2.0 * M_PI * f1 * t) + 3000.0 * sin(2.0 * M_PI * f2 * t) + noise(random);
+		wave[i] = (int16_t)std::max(-32768.0, std::min(32767.0, value));
+	}
+	return wave;
+}
+
+static vector<uint8_t> extract(const vector<int16_t> &wave, size_t from, size_t length)
+{
+	FingerprintManager fingerprinter;
+	vector<uint8_t> *fingerprint = fingerprinter.extractFingerprint(wave.data() + from, (int)length);
+	vector<uint8_t> result;
+	if (fingerprint != NULL) {
+		result = *fingerprint;
+		delete fingerprint;
+	}
+	return result;
+}
+
+static bool readComparisonTest(const char *path, vector<uint8_t> &data1, vector<uint8_t> &data2)
+{
+	std::ifstream in(path);
+	int size1, size2;
+	if (!(in >> size1 >> size2) || size1 < 0 || size2 < 0) {
+		return false;
+	}
+	data1.resize(size1);
+	data2.resize(size2);
+	for (int i = 0; i < size1 + size2; i++) {
+		int value;
+		if (!(in >> value)) {
+			return false;
+		}
+		(i < size1 ? data1[i] : data2[i - size1]) = (uint8_t)value;
+	}
+	return true;
+}
+
+// Time both implementations on one pair, returns false when their results differ.
+static bool run(const char *name, const vector<uint8_t> &data1, const vector<uint8_t> &data2, int iterations)
+{
+	FingerprintSimilarity legacy = legacyMatchResults(data1, data2);
+	FingerprintSimilarity current;
+	FingerprintSimilarityComputer(data1, data2).getMatchResultsEx(&current);
+
+	auto t0 = std::chrono::steady_clock::now();
+	for (int i = 0; i < iterations; i++) {
+		legacy = legacyMatchResults(data1, data2);
+	}
+	auto t1 = std::chrono::steady_clock::now();
+	for (int i = 0; i < iterations; i++) {
+		FingerprintSimilarityComputer computer(data1, data2);
+		computer.getMatchResultsEx(&current);
+	}
+	auto t2 = std::chrono::steady_clock::now();
+
+	double legacyUs = std::chrono::duration<double, std::micro>(t1 - t0).count() / iterations;
+	double currentUs = std::chrono::duration<double, std::micro>(t2 - t1).count() / iterations;
+	bool same = sameResults(legacy, current);
+	std::cout << name << ": " << data1.size() << " x " << data2.size() << " bytes, map "
+		<< legacyUs << " us, flat " << currentUs << " us, x" << (legacyUs / currentUs)
+		<< ", position " << current.mostSimilarFramePosition << ", similarity " << current.similarity
+		<< (same ? "" : " MISMATCH") << std::endl;
+	return same;
+}
+
+int main(int argc, char **argv)
+{
+	bool ok = true;
+	int sampleRate = (int)FingerprintProperties::sampleRate;
+
+	vector<uint8_t> data1, data2;
+	const char *path = (argc > 1) ? argv[1] : "fingerprint-comparison-test.txt";
+	if (readComparisonTest(path, data1, data2)) {
+		ok &= run("comparison-test", data1, data2, 2000);
+	} else {
+		std::cout << "skipped " << path << std::endl;
+	}
+
+	// a 5 s sample against reference clips holding it
+	unsigned seed = 1;
+	for (int seconds : { 10, 30, 120, 480 }) {
+		vector<int16_t> reference = syntheticWave(seconds, seed++);
+		size_t at = (size_t)(seconds * sampleRate) / 3;
+		vector<uint8_t> sample = extract(reference, at, (size_t)5 * sampleRate);
+		vector<uint8_t> clip = extract(reference, 0, reference.size());
+		std::string name = "reference " + std::to_string(seconds) + " s";
+		ok &= run(name.c_str(), clip, sample, seconds >= 120 ? 20 : 200);
+	}
+
+	// equal results on random pairs, including ties between offsets
+	std::mt19937 random(7);
+	int mismatches = 0;
+	for (int trial = 0; trial < 2000; trial++) {
+		vector<int16_t> wave = syntheticWave(4 + (int)(random() % 8), (unsigned)random());
+		size_t length = wave.size() / 2 + random() % (wave.size() / 2);
+		size_t from = random() % (wave.size() - length + 1);
+		vector<uint8_t> one = extract(wave, 0, wave.size());
+		vector<uint8_t> two = extract(wave, from, length);
+		FingerprintSimilarity current;
+		FingerprintSimilarityComputer(one, two).getMatchResultsEx(&current);
+		if (!sameResults(legacyMatchResults(one, two), current)) {
+			mismatches += 1;
+		}
+	}
+	std::cout << "random pairs: 2000, mismatches " << mismatches << std::endl;
+
+	return (ok && mismatches == 0) ? 0 : 1;
+}
@@ -0,0 +1,239 @@
+//
+//  TriggerSearch.cpp
+//  TuneURL
+//
+//  Block energy trigger search, shared by fingerprintexec and libtuneurlfp.so.
+//  Copyright (c) 2023-2024 TuneURL Inc. All rights reserved.
+//
+
+#include <algorithm>
+#include <cmath>
+#include <cstdlib>
+#include <sstream>
+#include <iostream>
+
+#include "TriggerSearch.h"
+
+extern "C"
+int16_t correctValue(int16_t value, float amplify) {
+  value = abs(value);
+  value *= amplify;
+
+  if (value < THRESHOLD) {
+    value = 0;
+  }
+
+  return value;
+}
+
+DataFingerPrint parseDataFingerPrintFromJson(const std::string& jsonString) {
+    DataFingerPrint dataFingerprint;
+
+    // Step 1: Parse blockInfo array
+    size_t startPos = jsonString.find("[");
+    size_t endPos = jsonString.find("]");
+    std::string blockInfoArrayStr = jsonString.substr(startPos + 1, endPos - startPos - 1);
+
+    // Parse each BlockInfo object in the array
+    std::istringstream iss(blockInfoArrayStr);
+    std::string blockInfoStr;
+    while (std::getline(iss, blockInfoStr, '{')) {
+        if (blockInfoStr.empty()) continue;
+
+        BlockInfo blockInfo;
+        std::istringstream iss2(blockInfoStr);
+
+        std::string token;
+        while (std::getline(iss2, token, ',')) {
+            size_t colonPos = token.find(":");
+            std::string key = token.substr(1, colonPos - 2); // Extract key (remove quotes)
+            std::string value = token.substr(colonPos + 1);
+
+            if (key == "blockSize")
+                blockInfo.blockSize = std::stoi(value);
+            else if (key == "sum")
+                blockInfo.sum = std::stoi(value);
+            else if (key == "average")
+                blockInfo.average = std::stof(value);
+            else if (key == "startRate")
+                blockInfo.startRate = std::stof(value);
+            else if (key == "endRate")
+                blockInfo.endRate = std::stof(value);
+        }
+
+        dataFingerprint.blockInfo.push_back(blockInfo);
+    }
+
+    // Step 2: Parse blockCount and max values
+    size_t blockCountPos = jsonString.find("blockCount");
+    size_t maxPos = jsonString.find("max");
+
+    std::string blockCountStr = jsonString.substr(blockCountPos);
+    std::string maxStr = jsonString.substr(maxPos);
+
+    dataFingerprint.blockCount = std::stoi(blockCountStr.substr(blockCountStr.find(":") + 1));
+    dataFingerprint.max = std::stoi(maxStr.substr(maxStr.find(":") + 1));
+
+    return dataFingerprint;
+}
+
+float calculateVectorSimilarity(const std::vector<BlockInfo>& vec1, const std::vector<BlockInfo>& vec2) {
+  // Weights for average and sum similarity
+  const float weightAverage = 0.7;
+  const float weightSum = 0.3;
+
+  const int BLOCK_THRESHOLD = 2;
+
+  // Ensure both vectors have the same size
+  if (vec1.size() != vec2.size()) {
+      std::cerr << "Vectors must have the same size for comparison." << std::endl;
+      return 0.0; // or handle this error case appropriately
+  }
+
+  if (vec1[1].average > BLOCK_THRESHOLD || vec1[3].average > BLOCK_THRESHOLD) {
+    return 0;
+  }
+  if (vec1[0].average < 8 || vec1[2].average < 10 || vec1[4].average < 9) {
+    return 0;
+  }
+
+  // float totalSimilarity = 0.0;
+
+  // // Calculate similarity for each corresponding pair of BlockInfo objects
+  // for (size_t i = 0; i < vec1.size(); ++i) {
+  //     const BlockInfo& info1 = vec1[i];
+  //     const BlockInfo& info2 = vec2[i];
+
+  //     // Calculate differences
+  //     float diffAverage = std::fabs(info1.average - info2.average); // Absolute difference
+  //     float diffSum = std::fabs(info1.sum - info2.sum);             // Absolute difference
+
+  //     // Calculate similarity score for this pair
+  //     float similarity = weightAverage * (1.0 - diffAverage) + weightSum * (1.0 - diffSum);
+
+  //     // Aggregate similarity scores
+  //     totalSimilarity += similarity;
+  // }
+
+  // // Normalize total similarity if needed (optional)
+  // // For example, divide by vec1.size() to get an average similarity per BlockInfo pair.
+
+  return 1;
+}
+
+static inline int16_t sampleAt(const int16_t *data, int length, int index) {
+  return index < length ? data[index] : (int16_t) 0;
+}
+
+float standardizeOffset(int offset) {
+  return (float) offset * 1000 / 11025;
+}
+
+SearchResult getSearchResult(const int16_t *data, int length, const DataFingerPrint& df) {
+
+  SearchResult result;
+  result.similarity = 0;
+  result.amplify = 0;
+  result.offset = 0;
+  result.dataMax = 0;
+  result.triggerMax = 0;
+  
+  int triggerMax = df.max;
+  int segmentSize = 11025;
+  int interval = 220;
+
+  const int START_THRESHOLD = 50;
+  int start_offset = -1;
+  // Max ABS value of data
+  int16_t dataMax = 0;
+  int segment_size = 0;
+  for (size_t i = 0; i < length; i++) {
+
+    if (i > interval && dataMax < START_THRESHOLD)
+      break;
+
+    if (segment_size == segmentSize + start_offset)
+      break;
+      
+    int16_t abs_value = std::abs(data[i]); 
+    if (abs_value > dataMax) {
+        dataMax = abs_value;
+    }
+    segment_size++;
+    if (start_offset < 0 && dataMax > START_THRESHOLD)
+      start_offset = i;
+  }
+
+  // if (start_offset < 20)
+  //     return result;
+
+  int start, end;
+  float similarity = 0;
+  float amplify = 1;
+  bool  is_find = false;
+  const int BLOCK_THRESHOLD = 2;
+  BlockInfo info;
+  if (dataMax) amplify = (float) triggerMax / dataMax;
+
+  // saveIntoFile(amplify);
+
+  // A descriptor can announce more blocks than it lists.
+  int blockCount = std::min(df.blockCount, (int) df.blockInfo.size());
+
+  int start_pos = start_offset - 20;
+  if (start_pos < 0) start_pos = 0;
+  for (int offset = start_pos; offset < interval; offset++) {
+
+    is_find = false;
+    std::vector<BlockInfo> segmentsBlockInfo;
+    for (int index = 0; index < blockCount; index++) {
+      start = df.blockInfo[index].startRate * segmentSize + offset;
+      end = df.blockInfo[index].endRate * segmentSize + offset;
+
+      info.blockSize = end - start;
+      info.sum = 0;
+      for (int i = start; i < end; i++)
+          info.sum += correctValue(sampleAt(data, length, i), amplify);
+      
+      info.average = static_cast<float>(info.sum) / info.blockSize;
+
+      if (index == 0 && info.average < 8)
+        break;
+      if (index == 2 && info.average < 10)
+        break;
+      if ((index == 1 || index == 3) && info.average > BLOCK_THRESHOLD)
+        break;
+      if (index == 4 && info.average < 9)
+        break;
+
+      if (index == 4)
+        is_find = true;
+
+      segmentsBlockInfo.push_back(info); // Add this BlockInfo to your vector
+    }
+    if (is_find) {
+      result.blockInfo = segmentsBlockInfo;
+      result.similarity = 1;
+      result.amplify = amplify;
+      result.triggerMax = triggerMax;
+      result.dataMax = dataMax;
+      result.offset = start_offset;      
+      result.offset = offset;
+      return result;
+    }
+    // adjust amplify
+    if (length > segmentSize + offset + 1 && dataMax < abs(data[segmentSize + offset + 1]))
+    {
+      dataMax = abs(data[segmentSize + offset + 1]);
+      if (dataMax == 0)
+        amplify = 1;
+      else
+        amplify = (float) triggerMax / dataMax;
+    }
+  }
+  return result;
+}
+
+SearchResult getSearchResult(const vector<int16_t>& data, const DataFingerPrint& df) {
+  return getSearchResult(data.data(), (int) data.size(), df);
+}
@@ -0,0 +1,60 @@
+//
+//  TriggerSearch.h
+//  TuneURL
+//
+//  Block energy trigger search, shared by fingerprintexec and libtuneurlfp.so.
+//  Copyright (c) 2023-2024 TuneURL Inc. All rights reserved.
+//
+
+#ifndef TRIGGERSEARCH_H
+#define TRIGGERSEARCH_H
+
+#if defined(__for_unix) || defined(__for_emcc)
+#include "forunix.h"
+#endif
+
+#include <string>
+#include <vector>
+
+using std::vector;
+
+#define THRESHOLD 4
+
+struct BlockInfo {
+    int blockSize;
+    int sum;
+    float average;    // New field
+    float startRate;  // New field
+    float endRate;    // New field
+};
+
+struct DataFingerPrint {
+    int blockCount;
+    std::vector<BlockInfo> blockInfo;
+    int max;
+};
+
+struct SearchResult {
+    float similarity;  // similarity value between 0 and 1
+    int offset;        // offset value
+    std::vector<BlockInfo> blockInfo;
+    float amplify;
+    int  triggerMax;
+    int  dataMax;
+
+};
+
+extern "C" int16_t correctValue(int16_t value, float amplify = 1.0);
+
+DataFingerPrint parseDataFingerPrintFromJson(const std::string& jsonString);
+
+float calculateVectorSimilarity(const std::vector<BlockInfo>& vec1, const std::vector<BlockInfo>& vec2);
+
+float standardizeOffset(int offset);
+
+// Samples at or past length read as silence.
+SearchResult getSearchResult(const int16_t *data, int length, const DataFingerPrint& df);
+
+SearchResult getSearchResult(const vector<int16_t>& data, const DataFingerPrint& df);
+
+#endif /* TRIGGERSEARCH_H */
@@ -21,10 +21,12 @@
 #include <iostream>
 #include <fstream>
 #include <algorithm>
+#include <map>
 
 #include "Fingerprint.h"
 #include "FingerprintManager.h"
 #include "FingerprintSimilarityComputer.h"
+#include "TriggerSearch.h"
 
 #include "stringiobuffer.h"
 
@@ -36,7 +38,6 @@ using std::vector;
 
 #define NULL_FINGERPRINT (Fingerprint *)0
 #define NULL_INT16_T (int16_t *)0
-#define THRESHOLD 4
 
 
 /* struct FingerPrinterOutput {
@@ -257,26 +258,39 @@ EMSCRIPTEN_BINDINGS(my_jsExtractFingerprint_module) {
 
 #else
 
-extern "C"
-int16_t correctValue(int16_t value, float amplify = 1.0) {
-  value = abs(value);
-  value *= amplify;
-
-  if (value < THRESHOLD) {
-    value = 0;
-  }
-
-  return value;
+// ***************************************************************************************
+// Binary frames. "fingerprintexec worker" stays alive and serves request frames on stdin
+// until EOF, so the caller does not pay a fork/exec and two temporary files per request.
+// The one-shot actions also accept a single request frame instead of decimal text, the
+// action then comes from the command line. All integers are little-endian (the byte
+// order of every supported host).
+//
+//   request:  int32 magic, int32 action, int32 descriptorLength, descriptor bytes,
+//             int32 sampleCount, int16 samples[sampleCount]
+//   response: int32 magic, int32 status, int32 payloadLength, payload bytes
+//
+// The payload is the JSON text the matching command line action prints; status is
+// WORKER_STATUS_ERROR when the request could not be served, with the reason as payload.
+
+#define WORKER_MAGIC              0x50465554   /* "TUFP" */
+#define WORKER_ACTION_PING        0
+#define WORKER_ACTION_COMPARE     1
+#define WORKER_ACTION_FINGERPRINT 2
+#define WORKER_ACTION_PREV        3
+#define WORKER_ACTION_STREAM      4
+#define WORKER_STATUS_OK          0
+#define WORKER_STATUS_ERROR       1
+#define WORKER_MAX_LENGTH         (64 * 1024 * 1024)
+
+static bool readFrame(void *buffer, size_t size) {
+    return size == 0 || fread(buffer, 1, size, stdin) == size;
 }
 
-extern "C"
-int doLocalFingerprinting(void) {
-    // local fingerprint
+// Read "<count>\n<v0> <v1> ..." from stdin.
+static vector<int16_t> readTextSamples(void) {
     int index;
     int waveLength;
     int16_t value;
-    uint8_t* data;
-    int			 dataSize;
 
     std::cin >> waveLength;
 
@@ -286,6 +300,51 @@ int doLocalFingerprinting(void) {
         data1[index] = value;
     }
     while (index < waveLength) data1[index++] = (int16_t) 0;
+    return data1;
+}
+
+// Read one request frame after its magic; false on a short or oversized frame.
+static bool readRequestBody(int32_t *action, std::string& dataFingerPrint, vector<int16_t>& data) {
+    int32_t header[2];
+    int32_t sampleCount;
+
+    if (!readFrame(header, sizeof(header))) return false;
+    if (header[1] < 0 || header[1] > WORKER_MAX_LENGTH) return false;
+    *action = header[0];
+    dataFingerPrint.assign(header[1], '\0');
+    if (!readFrame(&dataFingerPrint[0], header[1])) return false;
+    if (!readFrame(&sampleCount, sizeof(sampleCount))) return false;
+    if (sampleCount < 0 || sampleCount > WORKER_MAX_LENGTH) return false;
+    data.resize(sampleCount);
+    return readFrame(data.data(), sampleCount * sizeof(int16_t));
+}
+
+// One-shot input: a request frame when stdin starts with the magic, else the text form
+// "[descriptor line]\n<count>\n<v0> <v1> ..." where the descriptor line is only read
+// when dataFingerPrint is given.
+static vector<int16_t> readSamples(std::string *dataFingerPrint) {
+    int32_t magic;
+    int c = getc(stdin);
+    if (c != EOF) ungetc(c, stdin);
+    if (c == (WORKER_MAGIC & 0xff)) {
+        int32_t action;
+        std::string descriptor;
+        vector<int16_t> data;
+        if (!readFrame(&magic, sizeof(magic)) || magic != WORKER_MAGIC
+            || !readRequestBody(&action, descriptor, data)) {
+            std::cerr << "fingerprintexec: bad request frame" << std::endl;
+            data.clear();
+        }
+        if (dataFingerPrint) *dataFingerPrint = descriptor;
+        return data;
+    }
+    if (dataFingerPrint) std::getline(std::cin, *dataFingerPrint);
+    return readTextSamples();
+}
+
+// Block energy descriptor of the trigger sound, used by the "fingerprint" action.
+void writeBlockDescriptor(const vector<int16_t>& data1, std::ostream& out) {
+    int waveLength = data1.size();
 
     // ***************************************************************************************
     // Rates: 0, 0.24, 0.43, 0.63, 0.8, 1
@@ -309,6 +368,8 @@ int doLocalFingerprinting(void) {
 
     for (size_t i = 0; i < 5; ++i) {
         int endIndex = startIndex + blockSizes[i];
+        // Rounded block sizes can add up to one more sample than the wave holds.
+        if (endIndex > waveLength) endIndex = waveLength;
         int32_t sum = 0;
         int16_t value;
 
@@ -344,7 +405,15 @@ int doLocalFingerprinting(void) {
     jsonResult << "\"max\":" << max << "}";
 
     // Output the JSON result
-    std::cout << jsonResult.str() << std::endl;
+    out << jsonResult.str();
+}
+
+extern "C"
+int doLocalFingerprinting(void) {
+    // local fingerprint
+    vector<int16_t> data1 = readSamples(NULL);
+    writeBlockDescriptor(data1, std::cout);
+    std::cout << std::endl;
 
     // ***************************************************************************************
 
@@ -368,160 +437,33 @@ int doLocalFingerprinting(void) {
     return 0;
 } /*doLocalFingerprinting*/
 
-extern "C"
-int doStreamFingerprinting(void) {
-    // local fingerprint
+// Echo the samples back as {"size":N,"data":[...]}, used by the "stream" action.
+void writeStreamData(const vector<int16_t>& data1, std::ostream& out) {
     int index;
-    int waveLength;
-    int16_t value;
     const int16_t * data;
     int			 dataSize;
 
-    std::cin >> waveLength;
-
-    vector<int16_t> data1(waveLength);
-    for (index = 0; index < waveLength; index++) {
-        std::cin >> value;
-        data1[index] = value;
-    }
-    while (index < waveLength) data1[index++] = (int16_t) 0;
-
     // Fingerprint *ptr = ExtractFingerprint((const int16_t *)data1.data(), waveLength);
     data = (const int16_t *)data1.data();
-    dataSize = waveLength;
-    std::cout << "{\"size\":" ;
-    std::cout << dataSize << ",\"data\":[" ;
+    dataSize = data1.size();
+    out << "{\"size\":" ;
+    out << dataSize << ",\"data\":[" ;
     for (index = 0; index < dataSize; index++, data++) {
-        if (index > 0) std::cout << ',';
-        std::cout << (short)*data;
-    }
-    std::cout << "]}" << std::endl ;
-
-  return 0;
-} /*doStreamFingerprinting*/
-
-extern "C"
-
-struct BlockInfo {
-    int blockSize;
-    int sum;
-    float average;    // New field
-    float startRate;  // New field
-    float endRate;    // New field
-};
-
-struct DataFingerPrint {
-    int blockCount;
-    std::vector<BlockInfo> blockInfo;
-    int max;
-};
-
-DataFingerPrint parseDataFingerPrintFromJson(const std::string& jsonString) {
-    DataFingerPrint dataFingerprint;
-
-    // Step 1: Parse blockInfo array
-    size_t startPos = jsonString.find("[");
-    size_t endPos = jsonString.find("]");
-    std::string blockInfoArrayStr = jsonString.substr(startPos + 1, endPos - startPos - 1);
-
-    // Parse each BlockInfo object in the array
-    std::istringstream iss(blockInfoArrayStr);
-    std::string blockInfoStr;
-    while (std::getline(iss, blockInfoStr, '{')) {
-        if (blockInfoStr.empty()) continue;
-
-        BlockInfo blockInfo;
-        std::istringstream iss2(blockInfoStr);
-
-        std::string token;
-        while (std::getline(iss2, token, ',')) {
-            size_t colonPos = token.find(":");
-            std::string key = token.substr(1, colonPos - 2); // Extract key (remove quotes)
-            std::string value = token.substr(colonPos + 1);
-
-            if (key == "blockSize")
-                blockInfo.blockSize = std::stoi(value);
-            else if (key == "sum")
-                blockInfo.sum = std::stoi(value);
-            else if (key == "average")
-                blockInfo.average = std::stof(value);
-            else if (key == "startRate")
-                blockInfo.startRate = std::stof(value);
-            else if (key == "endRate")
-                blockInfo.endRate = std::stof(value);
-        }
-
-        dataFingerprint.blockInfo.push_back(blockInfo);
+        if (index > 0) out << ',';
+        out << (short)*data;
     }
-
-    // Step 2: Parse blockCount and max values
-    size_t blockCountPos = jsonString.find("blockCount");
-    size_t maxPos = jsonString.find("max");
-
-    std::string blockCountStr = jsonString.substr(blockCountPos);
-    std::string maxStr = jsonString.substr(maxPos);
-
-    dataFingerprint.blockCount = std::stoi(blockCountStr.substr(blockCountStr.find(":") + 1));
-    dataFingerprint.max = std::stoi(maxStr.substr(maxStr.find(":") + 1));
-
-    return dataFingerprint;
+    out << "]}" ;
 }
 
-// ***************************************************************************************
-
-struct SearchResult {
-    float similarity;  // similarity value between 0 and 1
-    int offset;        // offset value
-    std::vector<BlockInfo> blockInfo;
-    float amplify;
-    int  triggerMax;
-    int  dataMax;
-
-};
-
-float calculateVectorSimilarity(const std::vector<BlockInfo>& vec1, const std::vector<BlockInfo>& vec2) {
-  // Weights for average and sum similarity
-  const float weightAverage = 0.7;
-  const float weightSum = 0.3;
-
-  const int BLOCK_THRESHOLD = 2;
-
-  // Ensure both vectors have the same size
-  if (vec1.size() != vec2.size()) {
-      std::cerr << "Vectors must have the same size for comparison." << std::endl;
-      return 0.0; // or handle this error case appropriately
-  }
-
-  if (vec1[1].average > BLOCK_THRESHOLD || vec1[3].average > BLOCK_THRESHOLD) {
-    return 0;
-  }
-  if (vec1[0].average < 8 || vec1[2].average < 10 || vec1[4].average < 9) {
-    return 0;
-  }
-
-  // float totalSimilarity = 0.0;
-
-  // // Calculate similarity for each corresponding pair of BlockInfo objects
-  // for (size_t i = 0; i < vec1.size(); ++i) {
-  //     const BlockInfo& info1 = vec1[i];
-  //     const BlockInfo& info2 = vec2[i];
-
-  //     // Calculate differences
-  //     float diffAverage = std::fabs(info1.average - info2.average); // Absolute difference
-  //     float diffSum = std::fabs(info1.sum - info2.sum);             // Absolute difference
-
-  //     // Calculate similarity score for this pair
-  //     float similarity = weightAverage * (1.0 - diffAverage) + weightSum * (1.0 - diffSum);
-
-  //     // Aggregate similarity scores
-  //     totalSimilarity += similarity;
-  // }
-
-  // // Normalize total similarity if needed (optional)
-  // // For example, divide by vec1.size() to get an average similarity per BlockInfo pair.
+extern "C"
+int doStreamFingerprinting(void) {
+    // local fingerprint
+    vector<int16_t> data1 = readSamples(NULL);
+    writeStreamData(data1, std::cout);
+    std::cout << std::endl ;
 
-  return 1;
-}
+  return 0;
+} /*doStreamFingerprinting*/
 
 void saveIntoFile(int value) {
   // **************************************************************************
@@ -540,154 +482,129 @@ void saveIntoFile(int value) {
   // **************************************************************************
 }
 
-float standardizeOffset(int offset) {
-  return (float) offset * 1000 / 11025;
-}
-
-SearchResult getSearchResult(vector<int16_t> data, const DataFingerPrint& df) {
-
-  SearchResult result;
-  result.similarity = 0;
-  result.amplify = 0;
-  result.offset = 0;
-  result.dataMax = 0;
-  result.triggerMax = 0;
-  
-  int length = data.size();
-
-  int triggerMax = df.max;
-  int segmentSize = 11025;
-  int interval = 220;
-
-  const int START_THRESHOLD = 50;
-  int start_offset = -1;
-  // Max ABS value of data
-  int16_t dataMax = 0;
-  int segment_size = 0;
-  for (size_t i = 0; i < length; i++) {
-
-    if (i > interval && dataMax < START_THRESHOLD)
-      break;
-
-    if (segment_size == segmentSize + start_offset)
-      break;
-      
-    int16_t abs_value = std::abs(data[i]); 
-    if (abs_value > dataMax) {
-        dataMax = abs_value;
-    }
-    segment_size++;
-    if (start_offset < 0 && dataMax > START_THRESHOLD)
-      start_offset = i;
-  }
-
-  // if (start_offset < 20)
-  //     return result;
-
-  int start, end;
-  float similarity = 0;
-  float amplify = 1;
-  bool  is_find = false;
-  const int BLOCK_THRESHOLD = 2;
-  BlockInfo info;
-  if (dataMax) amplify = (float) triggerMax / dataMax;
-
-  // saveIntoFile(amplify);
-
-  int start_pos = start_offset - 20;
-  if (start_pos < 0) start_pos = 0;
-  for (int offset = start_pos; offset < interval; offset++) {
-
-    is_find = false;
-    std::vector<BlockInfo> segmentsBlockInfo;
-    for (int index = 0; index < df.blockCount; index++) {
-      start = df.blockInfo[index].startRate * segmentSize + offset;
-      end = df.blockInfo[index].endRate * segmentSize + offset;
-
-      info.blockSize = end - start;
-      info.sum = 0;
-      for (int i = start; i < end; i++)
-          info.sum += correctValue(data[i], amplify);
-      
-      info.average = static_cast<float>(info.sum) / info.blockSize;
-
-      if (index == 0 && info.average < 8)
-        break;
-      if (index == 2 && info.average < 10)
-        break;
-      if ((index == 1 || index == 3) && info.average > BLOCK_THRESHOLD)
-        break;
-      if (index == 4 && info.average < 9)
-        break;
-
-      if (index == 4)
-        is_find = true;
-
-      segmentsBlockInfo.push_back(info); // Add this BlockInfo to your vector
-    }
-    if (is_find) {
-      result.blockInfo = segmentsBlockInfo;
-      result.similarity = 1;
-      result.amplify = amplify;
-      result.triggerMax = triggerMax;
-      result.dataMax = dataMax;
-      result.offset = start_offset;      
-      result.offset = offset;
-      return result;
-    }
-    // adjust amplify
-    if (length > segmentSize + offset + 1 && dataMax < abs(data[segmentSize + offset + 1]))
-    {
-      dataMax = abs(data[segmentSize + offset + 1]);
-      if (dataMax == 0)
-        amplify = 1;
-      else
-        amplify = (float) triggerMax / dataMax;
-    }
-  }
-  return result;
-}
-
-int doLocalFingerprinting_prev(void) {
-    // local fingerprint
+// Landmark fingerprint via ExtractFingerprint(), used by the "fingerprintprev" action.
+void writeLandmarkFingerprint(const vector<int16_t>& data1, std::ostream& out) {
     int index;
-    int waveLength;
-    int16_t value;
     uint8_t* data;
     int			 dataSize;
 
-    std::cin >> waveLength;
-
-    vector<int16_t> data1(waveLength);
-    for (index = 0; index < waveLength; index++) {
-        std::cin >> value;
-        data1[index] = value;
-    }
-    while (index < waveLength) data1[index++] = (int16_t) 0;
-
-    Fingerprint *ptr = ExtractFingerprint((const int16_t *)data1.data(), waveLength);
+    Fingerprint *ptr = ExtractFingerprint((const int16_t *)data1.data(), data1.size());
     if (ptr != NULL_FINGERPRINT) {
         data = ptr->data;
         dataSize = ptr->dataSize;
-        std::cout << "{\"size\":" ;
-        std::cout << dataSize << ",\"data\":[" ;
+        out << "{\"size\":" ;
+        out << dataSize << ",\"data\":[" ;
         for (index = 0; index < dataSize; index++, data++) {
-            if (index > 0) std::cout << ',';
-            std::cout << (short)*data;
+            if (index > 0) out << ',';
+            out << (short)*data;
         }
-        std::cout << "]}" << std::endl ;
+        out << "]}" ;
         FingerprintFree(ptr);
     }
     else {
-        std::cout << "{\"size\": 0,\"data\":[]}" << std::endl;
+        out << "{\"size\": 0,\"data\":[]}" ;
     }
+}
+
+int doLocalFingerprinting_prev(void) {
+    // local fingerprint
+    vector<int16_t> data1 = readSamples(NULL);
+    writeLandmarkFingerprint(data1, std::cout);
+    std::cout << std::endl;
 
     return 0;
 } /*doLocalFingerprinting_prev*/
 
+// A worker is sent the same few descriptors on every frame of a request: keep them parsed,
+// keyed by their text, instead of parsing the JSON again for each window.
+#define PARSED_TRIGGERS_MAX 64
+
+static const DataFingerPrint& compiledTrigger(const std::string& dataFingerPrint) {
+    static std::map<std::string, DataFingerPrint> parsed;
+    std::map<std::string, DataFingerPrint>::const_iterator found = parsed.find(dataFingerPrint);
+    if (found != parsed.end()) return found->second;
+    DataFingerPrint df = parseDataFingerPrintFromJson(dataFingerPrint);
+    if (parsed.size() >= PARSED_TRIGGERS_MAX) parsed.clear();
+    return parsed.insert(std::make_pair(dataFingerPrint, df)).first->second;
+}
+
+// Trigger search of data against the descriptor, used when no action is given.
+void writeTriggerSearch(const vector<int16_t>& data, const std::string& dataFingerPrint, std::ostream& out) {
+    const DataFingerPrint& df = compiledTrigger(dataFingerPrint);
+    SearchResult result = getSearchResult(data, df);
+
+    out << "{\"similarity\":\""
+      << result.similarity ;
+
+    out << "\",\"offset\":\""
+      << standardizeOffset(result.offset);
+
+    out << "\"}" ;
+}
+
+static bool writeResponse(int32_t status, const std::string& payload) {
+    int32_t header[3];
+    header[0] = WORKER_MAGIC;
+    header[1] = status;
+    header[2] = (int32_t) payload.size();
+    if (fwrite(header, sizeof(int32_t), 3, stdout) != 3) return false;
+    if (payload.size() > 0 && fwrite(payload.data(), 1, payload.size(), stdout) != payload.size()) return false;
+    return fflush(stdout) == 0;
+}
+
+int doWorker(void) {
+    int32_t magic;
+    int32_t action;
+    std::string dataFingerPrint;
+    vector<int16_t> data;
+
+    while (readFrame(&magic, sizeof(magic))) {
+        if (magic != WORKER_MAGIC || !readRequestBody(&action, dataFingerPrint, data)) {
+            std::cerr << "fingerprintexec worker: bad request frame" << std::endl;
+            return 1;
+        }
+
+        std::ostringstream out;
+        int32_t status = WORKER_STATUS_OK;
+        try {
+            switch (action) {
+            case WORKER_ACTION_PING:
+                out << "{\"status\":\"ok\"}";
+                break;
+            case WORKER_ACTION_COMPARE:
+                writeTriggerSearch(data, dataFingerPrint, out);
+                break;
+            case WORKER_ACTION_FINGERPRINT:
+                writeBlockDescriptor(data, out);
+                break;
+            case WORKER_ACTION_PREV:
+                writeLandmarkFingerprint(data, out);
+                break;
+            case WORKER_ACTION_STREAM:
+                writeStreamData(data, out);
+                break;
+            default:
+                status = WORKER_STATUS_ERROR;
+                out << "unknown action " << action;
+                break;
+            }
+        } catch (const std::exception& ex) {
+            status = WORKER_STATUS_ERROR;
+            out.str("");
+            out << ex.what();
+        }
+        if (!writeResponse(status, out.str())) return 1;
+    }
+    return 0;
+} /*doWorker*/
+
 
 int main(int argc, char **argv) {
 
+    if (argc > 1 && 0==strcmp(argv[1], "worker")) {
+        return doWorker();
+    }
+
     if (argc > 1 && 0==strncmp(argv[1], "fingerprintprev", 15)) {
         return doLocalFingerprinting_prev();
     }
@@ -701,32 +618,13 @@ int main(int argc, char **argv) {
     }
 
   // read fingerPrint
-    std::string dataFingerPrint;
-    std::getline(std::cin, dataFingerPrint); 
-
   // read stream data
-    int index;
-    int16_t value;
-    int aLength;
-    std::cin >> aLength;
-
-    vector<int16_t> data(aLength);
-    for (index = 0; index < aLength; index++) {
-        std::cin >> value;
-        data[index] = value;
-    }
-    while (index < aLength) data[index++] = (int16_t) 0;
+    std::string dataFingerPrint;
+    vector<int16_t> data = readSamples(&dataFingerPrint);
 
-    DataFingerPrint df = parseDataFingerPrintFromJson(dataFingerPrint);
-    SearchResult result = getSearchResult(data, df);
+    writeTriggerSearch(data, dataFingerPrint, std::cout);
 
     // saveIntoFile(df.blockInfo[1].endRate);
-
-    std::cout << "{\"similarity\":\""
-      << result.similarity ;
-
-    std::cout << "\",\"offset\":\""
-      << standardizeOffset(result.offset);
       // std::cout << "\",\"amplify\":\""
       // << result.amplify ;
       // std::cout << "\",\"triggerMax\":\""
@@ -744,7 +642,7 @@ int main(int argc, char **argv) {
       // }
 
 
-    std::cout << "\"}" << std::endl ;
+    std::cout << std::endl ;
 
 
     // **************************************************************************
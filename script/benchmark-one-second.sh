@@ -0,0 +1,101 @@
+#!/bin/bash
+#
+# BSD 3-Clause License
+#
+# Copyright (c) 2024, TuneURL Inc.
+#
+# Redistribution and use in source and binary forms, with or without
+# modification, are permitted provided that the following conditions are met:
+#
+# 1. Redistributions of source code must retain the above copyright notice, this
+#    list of conditions and the following disclaimer.
+#
+# 2. Redistributions in binary form must reproduce the above copyright notice,
+#    this list of conditions and the following disclaimer in the documentation
+#    and/or other materials provided with the distribution.
+#
+# 3. Neither the name of the copyright holder nor the names of its
+#    contributors may be used to endorse or promote products derived from
+#    this software without specific prior written permission.
+#
+# THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+# AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+# IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+# DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+# FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+# DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+# SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+# CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+# OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+# OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+#
+# Throughput of POST /dev/v3/evaluateOneSecondAudioStream at 10, 100 and 1000 concurrent clients.
+#
+# Usage: benchmark-one-second.sh BASE_URL PAYLOAD_JSON [REQUESTS_PER_CLIENT] [MODE]
+#
+#   BASE_URL             the API server, e.g. http://localhost:8281
+#   PAYLOAD_JSON         file holding one EvaluateAudioStreamEntry, as loadTuneUrl() of
+#                        pretty-audio-demo.js posts it
+#   REQUESTS_PER_CLIENT  default 5
+#   MODE                 distinct (default) or same
+#
+# MODE distinct measures the fingerprinting: every request gets its own offset and its number as
+# the first sample of the audio of PAYLOAD_JSON, so no request is answered from the one-second
+# cache, the Redis tier, the window reuse or by coalescing with another one. MODE same
+# posts PAYLOAD_JSON unchanged at offset 0: after the first request it measures those caches,
+# not the workers.
+#
+# Run it once against a server started with --virtual.threads.enabled=false and once with
+# --virtual.threads.enabled=true on JDK 21 to compare both execution modes. Set TOKEN for an
+# "Authorization: Bearer" header when the server requires a login. 1000 clients need
+# "ulimit -n 4096" or more.
+
+if [ $# -lt 2 ]; then
+  echo "Usage: $0 BASE_URL PAYLOAD_JSON [REQUESTS_PER_CLIENT] [distinct|same]"
+  exit 1
+fi
+
+BASE_URL="$1"
+PAYLOAD="$2"
+PER_CLIENT="${3:-5}"
+MODE="${4:-distinct}"
+case "$MODE" in
+  distinct | same) ;;
+  *)
+    echo "MODE is distinct or same, not $MODE"
+    exit 1
+    ;;
+esac
+URL="${BASE_URL}/dev/v3/evaluateOneSecondAudioStream"
+CODES=$(mktemp)
+trap 'rm -f "$CODES"' EXIT
+
+RUN=0
+export URL PAYLOAD TOKEN MODE RUN
+
+echo "mode: $MODE"
+printf "%8s %9s %9s %9s %9s %12s\n" clients requests ok 429 other "requests/s"
+for CLIENTS in 10 100 1000; do
+  TOTAL=$((CLIENTS * PER_CLIENT))
+  START=$(date +%s.%N)
+  seq "$TOTAL" | xargs -P "$CLIENTS" -I{} sh -c '
+    N=$((RUN + {}))
+    if [ "$MODE" = same ]; then
+      N=0
+      cat "$PAYLOAD"
+    else
+      sed -E "s/(\"data\"[[:space:]]*:[[:space:]]*\[)-?[0-9]+/\1$N/" "$PAYLOAD"
+    fi | curl -s -o /dev/null -w "%{http_code}\n" -X POST \
+      -H "Content-Type: application/json" \
+      ${TOKEN:+-H "Authorization: Bearer $TOKEN"} \
+      --data-binary @- "$URL?offset=$N"' > "$CODES"
+  END=$(date +%s.%N)
+  awk -v clients="$CLIENTS" -v total="$TOTAL" -v start="$START" -v end="$END" '
+    $1 == 200 { ok++ }
+    $1 == 429 { busy++ }
+    $1 != 200 && $1 != 429 { other++ }
+    END {
+      printf "%8d %9d %9d %9d %9d %12.1f\n", clients, total, ok, busy, other, total / (end - start)
+    }' "$CODES"
+  RUN=$((RUN + TOTAL))
+done
@@ -6,88 +6,287 @@ import com.tuneurl.webrtc.util.controller.dto.EvaluateAudioStreamResponse;
 import com.tuneurl.webrtc.util.controller.dto.FingerprintResponse;
 import com.tuneurl.webrtc.util.controller.dto.FingerprintResponseNew;
 import com.tuneurl.webrtc.util.controller.dto.TuneUrlTag;
+import com.tuneurl.webrtc.util.util.MessageLogger;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.Getter;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisClientConfig;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
-
-@Getter
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+/**
+ * Redis tier of the fingerprint results.
+ *
+ * <p>Every operation borrows a connection of the JedisPool and gives it back, a Jedis is not
+ * thread safe. An entry is one binary value written with SET ... EX; the writes are queued and
+ * sent by one writer thread in pipelined batches, so a response never waits for Redis, and are
+ * dropped when writeQueue of them are pending. A failing Redis reads as a miss: a request waits
+ * maxWaitMillis for a connection and socketTimeoutMillis for an answer at most.
+ *
+ * <ul>
+ *   <li>v1.1 pooled connections, write-behind pipelined SET EX, binary one-second entries
+ *   <li>v1.2 bounded waits for a connection and for Redis, corrupt entries are deleted
+ * </ul>
+ *
+ * @version 1.2
+ */
 public class RedisInstance {
 
-  Jedis jedis;
+  /** Writes sent in one pipeline at most. */
+  static final int WRITE_BATCH = 64;
+
+  /** Format of the binary entries. */
+  private static final byte ENTRY_VERSION = 1;
+
+  /** Bytes of a tag whose fields are all null: five Long flags and four String lengths. */
+  private static final int MIN_TAG_BYTES = 5 + 4 * 4;
+
+  /** Default waits, a miss costs less than a request blocked on Redis. */
+  private static final int MAX_WAIT_MILLIS = 20;
+
+  private static final int CONNECT_TIMEOUT_MILLIS = 200;
+  private static final int SOCKET_TIMEOUT_MILLIS = 100;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final MessageLogger logger = MessageLogger.getMessageLoggerInstance();
+
+  @Getter private final JedisPool jedisPool;
+  private final BlockingQueue<Write> writes;
+  private final Thread writer;
+  private final AtomicLong droppedWrites = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
 
   static RedisInstance redisConfig;
 
   public RedisInstance() {
+    this("localhost", 6379, 8, 10000);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param host String Redis host
+   * @param port int Redis port
+   * @param poolSize int connections at most
+   * @param writeQueue int writes that may be pending
+   */
+  public RedisInstance(
+      final String host, final int port, final int poolSize, final int writeQueue) {
+    this(
+        host,
+        port,
+        poolSize,
+        writeQueue,
+        MAX_WAIT_MILLIS,
+        CONNECT_TIMEOUT_MILLIS,
+        SOCKET_TIMEOUT_MILLIS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param host String Redis host
+   * @param port int Redis port
+   * @param poolSize int connections at most
+   * @param writeQueue int writes that may be pending
+   * @param maxWaitMillis int milliseconds a request waits for a free connection
+   * @param connectTimeoutMillis int milliseconds to open a connection
+   * @param socketTimeoutMillis int milliseconds to wait for an answer of Redis
+   */
+  public RedisInstance(
+      final String host,
+      final int port,
+      final int poolSize,
+      final int writeQueue,
+      final int maxWaitMillis,
+      final int connectTimeoutMillis,
+      final int socketTimeoutMillis) {
+    this(
+        newPool(host, port, poolSize, maxWaitMillis, connectTimeoutMillis, socketTimeoutMillis),
+        writeQueue);
+  }
+
+  /**
+   * Constructor over a pool, a local Redis stand-in in the tests.
+   *
+   * @param jedisPool JedisPool or null to disable Redis
+   * @param writeQueue int writes that may be pending
+   */
+  public RedisInstance(final JedisPool jedisPool, final int writeQueue) {
+    this.jedisPool = jedisPool;
+    this.writes = new LinkedBlockingQueue<Write>(Math.max(1, writeQueue));
+    this.writer = new Thread(this::writeBehind, "redis-writer");
+    this.writer.setDaemon(true);
+    if (jedisPool != null) this.writer.start();
+  }
+
+  private static JedisPool newPool(
+      final String host,
+      final int port,
+      final int poolSize,
+      final int maxWaitMillis,
+      final int connectTimeoutMillis,
+      final int socketTimeoutMillis) {
     try {
-      JedisPool jedisPool = new JedisPool(new JedisPoolConfig(), "localhost", 6379);
-      jedis = jedisPool.getResource();
+      JedisPoolConfig config = new JedisPoolConfig();
+      config.setMaxTotal(Math.max(1, poolSize));
+      config.setMaxIdle(Math.max(1, poolSize));
+      // An exhausted pool fails getResource() after maxWait instead of blocking the request.
+      config.setBlockWhenExhausted(true);
+      config.setMaxWait(Duration.ofMillis(Math.max(1, maxWaitMillis)));
+      JedisClientConfig client =
+          DefaultJedisClientConfig.builder()
+              .connectionTimeoutMillis(Math.max(1, connectTimeoutMillis))
+              .socketTimeoutMillis(Math.max(1, socketTimeoutMillis))
+              .build();
+      return new JedisPool(config, new HostAndPort(host, port), client);
     } catch (Exception e) {
-      jedis = null;
+      return null;
     }
   }
 
-  public static RedisInstance getInstance() {
+  public static synchronized RedisInstance getInstance() {
     if (redisConfig == null) {
       redisConfig = new RedisInstance();
     }
     return redisConfig;
   }
 
-  private String formatKey(String offset, String url, byte[] dataFingerprint) {
-    String sha256hex = org.apache.commons.codec.digest.DigestUtils.sha256Hex(dataFingerprint);
-    return url + "--" + offset + "--" + sha256hex;
-  }
-
-  public EvaluateAudioStreamResponse getOneSecondAudioStreamCache(
-      String offset, String url, String dataFingerprintString) {
-    if (jedis == null) {
-      return null;
+  /** Send the pending writes, then close the pool. */
+  public void close() {
+    writer.interrupt();
+    try {
+      writer.join(1000L);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     }
+    if (jedisPool != null) jedisPool.close();
+  }
 
-    byte[] dataFingerprint = dataFingerprintString.getBytes();
-
-    String key = formatKey(offset, url, dataFingerprint);
-
-    EvaluateAudioStreamResponse result = null;
-
-    boolean exists = jedis.exists(key + "+count");
-    if (exists) {
-      String count = jedis.get(key + "+count");
+  public long getDroppedWrites() {
+    return droppedWrites.get();
+  }
 
-      result = new EvaluateAudioStreamResponse();
-      if (!count.equals("0")) {
-        result.setTuneUrlCounts(1L);
-        result.setTagCounts(1L);
+  public long getFailures() {
+    return failures.get();
+  }
 
-        try {
-          String cached = jedis.get(key + "+liveTags");
+  /**
+   * The binary value of key.
+   *
+   * @param key String
+   * @return Array of byte, null when missing or Redis fails
+   */
+  public byte[] get(final String key) {
+    if (jedisPool == null) return null;
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.get(key.getBytes(StandardCharsets.UTF_8));
+    } catch (JedisException e) {
+      failures.incrementAndGet();
+      return null;
+    }
+  }
 
-          cached = cached.replaceAll("\"", "\\\"");
-          System.out.println(cached);
+  /**
+   * The one-second entry of key; an entry that does not decode is deleted.
+   *
+   * @param key String
+   * @return OneSecondEntry, null when missing, corrupt or Redis fails
+   */
+  public OneSecondEntry getOneSecond(final String key) {
+    byte[] value = get(key);
+    if (value == null) return null;
+    OneSecondEntry entry = decodeOneSecond(value);
+    if (entry == null) deleteLater(key);
+    return entry;
+  }
 
-          ArrayList<TuneUrlTag> tags = new ArrayList<>();
-          ObjectMapper mapper = new ObjectMapper();
+  /**
+   * Queue DEL key, without waiting for Redis.
+   *
+   * @param key String
+   */
+  public void deleteLater(final String key) {
+    if (jedisPool == null) return;
+    if (!writes.offer(new Write(key.getBytes(StandardCharsets.UTF_8), null, 0L))) {
+      droppedWrites.incrementAndGet();
+    }
+  }
 
-          TuneUrlTag tag = mapper.readValue(cached, TuneUrlTag.class);
-          tag.setDescription(jedis.get(key + "+liveTagsDescription"));
+  /**
+   * Queue SET key value EX ttlSeconds, without waiting for Redis.
+   *
+   * @param key String
+   * @param value Array of byte
+   * @param ttlSeconds long
+   */
+  public void setLater(final String key, final byte[] value, final long ttlSeconds) {
+    if (jedisPool == null) return;
+    if (!writes.offer(new Write(key.getBytes(StandardCharsets.UTF_8), value, ttlSeconds))) {
+      droppedWrites.incrementAndGet();
+    }
+  }
 
-          tags.add(tag);
-          result.setLiveTags(tags);
-        } catch (JsonProcessingException e) {
-          throw new RuntimeException(e);
+  private void writeBehind() {
+    List<Write> batch = new ArrayList<Write>(WRITE_BATCH);
+    boolean running = true;
+    while (running || !writes.isEmpty()) {
+      try {
+        Write first = running ? writes.take() : writes.poll(0L, TimeUnit.MILLISECONDS);
+        if (first == null) break;
+        batch.add(first);
+      } catch (InterruptedException e) {
+        // close(): send what is pending and stop.
+        running = false;
+        continue;
+      }
+      writes.drainTo(batch, WRITE_BATCH - 1);
+      try (Jedis jedis = jedisPool.getResource()) {
+        Pipeline pipeline = jedis.pipelined();
+        for (Write write : batch) {
+          if (write.value == null) {
+            pipeline.del(write.key);
+          } else {
+            pipeline.set(write.key, write.value, SetParams.setParams().ex(write.ttlSeconds));
+          }
         }
-      } else {
-        result = new EvaluateAudioStreamResponse();
-        result.setTuneUrlCounts(0L);
-        result.setTagCounts(0L);
-        result.setLiveTags(new LinkedList<TuneUrlTag>());
+        pipeline.sync();
+      } catch (JedisException e) {
+        failures.incrementAndGet();
+        logger.logExit("RedisInstance.writeBehind", new Object[] {"lost=", batch.size(), e});
       }
+      batch.clear();
     }
+  }
 
-    return result;
+  private String formatKey(String offset, String url, byte[] dataFingerprint) {
+    String sha256hex = org.apache.commons.codec.digest.DigestUtils.sha256Hex(dataFingerprint);
+    return url + "--" + offset + "--" + sha256hex;
+  }
+
+  public EvaluateAudioStreamResponse getOneSecondAudioStreamCache(
+      String offset, String url, String dataFingerprintString) {
+    byte[] dataFingerprint = dataFingerprintString.getBytes();
+    OneSecondEntry entry = getOneSecond(formatKey(offset, url, dataFingerprint));
+    return entry == null ? null : entry.getResponse();
   }
 
   public void setOneSecondAudioStreamCache(
@@ -95,84 +294,191 @@ public class RedisInstance {
       String url,
       String dataFingerprintString,
       EvaluateAudioStreamResponse audioStreamResponse) {
-    if (jedis == null) {
-      return;
-    }
-
     byte[] dataFingerprint = dataFingerprintString.getBytes();
 
     String key = formatKey(offset, url, dataFingerprint);
 
-    jedis.set(key + "+count", "" + audioStreamResponse.getLiveTags().size());
-    if (!audioStreamResponse.getLiveTags().isEmpty()) {
-      String toCache = audioStreamResponse.getLiveTags().get(0).toJsonWithoutDescription();
-      jedis.set(key + "+liveTags", toCache);
-
-      String description = audioStreamResponse.getLiveTags().get(0).getDescription();
-      jedis.set(key + "+liveTagsDescription", description);
-    }
-
     // Expires in 10 days = 10 * 24 * 60 * 60 = 864000
-    jedis.expire(key + "+liveTags", 86400000);
-    jedis.expire(key + "+liveTagsDescription", 8640000);
-    jedis.expire(key + "+count", 8640000);
+    setLater(key, encodeOneSecond(0L, audioStreamResponse), 864000L);
   }
 
   public FingerprintResponse getFingerprintCache(String url) {
-    if (jedis == null) {
+    byte[] cached = get("fingerprint--" + url);
+    if (cached == null) {
       return null;
     }
-
-    FingerprintResponse result = null;
-    String cached = jedis.get("fingerprint--" + url);
-    if (cached != null) {
-      try {
-        cached = cached.replaceAll("\"", "\\\"");
-        System.out.println(cached);
-
-        ObjectMapper mapper = new ObjectMapper();
-        result = mapper.readValue(cached, FingerprintResponse.class);
-      } catch (JsonProcessingException e) {
-        throw new RuntimeException(e);
-      }
+    try {
+      return MAPPER.readValue(
+          new String(cached, StandardCharsets.UTF_8), FingerprintResponse.class);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException(e);
     }
-
-    return result;
   }
 
   public FingerprintResponseNew getFingerprintCacheNew(String url) {
-    if (jedis == null) {
+    byte[] cached = get("fingerprintNew--" + url);
+    if (cached == null) {
       return null;
     }
+    try {
+      return MAPPER.readValue(
+          new String(cached, StandardCharsets.UTF_8), FingerprintResponseNew.class);
+    } catch (JsonProcessingException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
-    FingerprintResponseNew result = null;
-    String cached = jedis.get("fingerprintNew--" + url);
-    if (cached != null) {
-      try {
-        cached = cached.replaceAll("\"", "\\\"");
-        System.out.println(cached);
+  public void setFingerprintCache(String url, FingerprintResponse fingerprintResponse) {
+    setLater(
+        "fingerprint--" + url,
+        fingerprintResponse.toJson().getBytes(StandardCharsets.UTF_8),
+        864000L);
+  }
+
+  public void setFingerprintCacheNew(String url, FingerprintResponseNew fingerprintResponse) {
+    setLater(
+        "fingerprintNew--" + url,
+        fingerprintResponse.toJson().getBytes(StandardCharsets.UTF_8),
+        864000L);
+  }
+
+  /**
+   * Binary entry of a one-second response: version, offset, counts, then the fields of each tag,
+   * a null String or Long written as a flag.
+   *
+   * @param dataOffset long offset of the request the response was computed for
+   * @param response EvaluateAudioStreamResponse
+   * @return Array of byte
+   */
+  public static byte[] encodeOneSecond(
+      final long dataOffset, final EvaluateAudioStreamResponse response) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeByte(ENTRY_VERSION);
+      out.writeLong(dataOffset);
+      writeLong(out, response.getTuneUrlCounts());
+      writeLong(out, response.getTagCounts());
+      List<TuneUrlTag> tags = response.getLiveTags();
+      out.writeInt(tags == null ? -1 : tags.size());
+      if (tags != null) {
+        for (TuneUrlTag tag : tags) {
+          writeLong(out, tag.getId());
+          writeString(out, tag.getName());
+          writeString(out, tag.getDescription());
+          writeString(out, tag.getType());
+          writeString(out, tag.getInfo());
+          writeLong(out, tag.getSimilarity());
+          writeLong(out, tag.getIndex());
+          writeLong(out, tag.getDataPosition());
+          writeLong(out, tag.getTriggerIndex());
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
 
-        ObjectMapper mapper = new ObjectMapper();
-        result = mapper.readValue(cached, FingerprintResponseNew.class);
-      } catch (JsonProcessingException e) {
-        throw new RuntimeException(e);
+  /**
+   * Read an entry of encodeOneSecond().
+   *
+   * @param value Array of byte or null
+   * @return OneSecondEntry, null for null, an entry of another version or a corrupt one
+   */
+  public static OneSecondEntry decodeOneSecond(final byte[] value) {
+    if (value == null || value.length == 0 || value[0] != ENTRY_VERSION) return null;
+    ByteArrayInputStream bytes = new ByteArrayInputStream(value, 1, value.length - 1);
+    try (DataInputStream in = new DataInputStream(bytes)) {
+      long dataOffset = in.readLong();
+      EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
+      response.setTuneUrlCounts(readLong(in));
+      response.setTagCounts(readLong(in));
+      int count = in.readInt();
+      // The sizes come from Redis: nothing is allocated beyond what the value can hold.
+      if (count < -1 || count > bytes.available() / MIN_TAG_BYTES) return null;
+      if (count >= 0) {
+        List<TuneUrlTag> tags = new ArrayList<TuneUrlTag>(count);
+        for (int i = 0; i < count; i++) {
+          TuneUrlTag tag = new TuneUrlTag();
+          tag.setId(readLong(in));
+          tag.setName(readString(in));
+          tag.setDescription(readString(in));
+          tag.setType(readString(in));
+          tag.setInfo(readString(in));
+          tag.setSimilarity(readLong(in));
+          tag.setIndex(readLong(in));
+          tag.setDataPosition(readLong(in));
+          tag.setTriggerIndex(readLong(in));
+          tags.add(tag);
+        }
+        response.setLiveTags(tags);
       }
+      if (bytes.available() != 0) return null;
+      return new OneSecondEntry(dataOffset, response);
+    } catch (IOException e) {
+      return null;
     }
+  }
 
-    return result;
+  private static void writeLong(final DataOutputStream out, final Long value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) out.writeLong(value);
   }
 
-  public void setFingerprintCache(String url, FingerprintResponse fingerprintResponse) {
-    if (jedis == null) {
+  private static Long readLong(final DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readLong() : null;
+  }
+
+  private static void writeString(final DataOutputStream out, final String value)
+      throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
       return;
     }
-    jedis.set("fingerprint--" + url, fingerprintResponse.toJson());
+    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(utf8.length);
+    out.write(utf8);
   }
 
-  public void setFingerprintCacheNew(String url, FingerprintResponseNew fingerprintResponse) {
-    if (jedis == null) {
-      return;
+  private static String readString(final DataInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length == -1) return null;
+    if (length < 0 || length > in.available()) throw new IOException("length " + length);
+    byte[] utf8 = new byte[length];
+    in.readFully(utf8);
+    return new String(utf8, StandardCharsets.UTF_8);
+  }
+
+  /** A one-second response and the offset of the request it was computed for. */
+  public static final class OneSecondEntry {
+
+    private final long dataOffset;
+    private final EvaluateAudioStreamResponse response;
+
+    public OneSecondEntry(final long dataOffset, final EvaluateAudioStreamResponse response) {
+      this.dataOffset = dataOffset;
+      this.response = response;
+    }
+
+    public long getDataOffset() {
+      return dataOffset;
+    }
+
+    public EvaluateAudioStreamResponse getResponse() {
+      return response;
+    }
+  }
+
+  /** A SET EX, or a DEL when value is null. */
+  private static final class Write {
+    private final byte[] key;
+    private final byte[] value;
+    private final long ttlSeconds;
+
+    Write(final byte[] key, final byte[] value, final long ttlSeconds) {
+      this.key = key;
+      this.value = value;
+      this.ttlSeconds = ttlSeconds;
     }
-    jedis.set("fingerprintNew--" + url, fingerprintResponse.toJson());
   }
 }
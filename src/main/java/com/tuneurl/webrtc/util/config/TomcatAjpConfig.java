@@ -31,6 +31,9 @@
 
 package com.tuneurl.webrtc.util.config;
 
+import com.tuneurl.webrtc.util.util.MessageLogger;
+import com.tuneurl.webrtc.util.util.VirtualThreads;
+import java.util.concurrent.Executor;
 import org.apache.catalina.connector.Connector;
 import org.apache.coyote.ajp.AjpNioProtocol;
 import org.springframework.beans.factory.annotation.Value;
@@ -41,8 +44,13 @@ import org.springframework.context.annotation.Configuration;
 /**
  * The Tune URL SDK Spring Boot API AJP configuration.
  *
+ * <ul>
+ *   <li>1.13 Added virtual.threads.enabled, the HTTP and AJP requests run on virtual threads on
+ *       JDK 21+.
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.12
+ * @version 1.13
  */
 @Configuration
 public class TomcatAjpConfig {
@@ -56,6 +64,9 @@ public class TomcatAjpConfig {
   @Value("${ajp.remoteauthentication}")
   String remoteAuthentication;
 
+  @Value("${virtual.threads.enabled:false}")
+  boolean virtualThreadsEnabled;
+
   @java.lang.SuppressWarnings("java:S1186")
   public TomcatAjpConfig() {}
 
@@ -63,6 +74,17 @@ public class TomcatAjpConfig {
   public TomcatServletWebServerFactory servletContainer() {
 
     TomcatServletWebServerFactory tomcat = new TomcatServletWebServerFactory();
+    Executor requestExecutor = null;
+    if (virtualThreadsEnabled) {
+      requestExecutor = VirtualThreads.newThreadPerTaskExecutor("http-virtual-");
+      if (requestExecutor == null) {
+        MessageLogger.getMessageLoggerInstance()
+            .logExit("servletContainer", "no virtual threads before JDK 21");
+      } else {
+        final Executor executor = requestExecutor;
+        tomcat.addProtocolHandlerCustomizers(handler -> handler.setExecutor(executor));
+      }
+    }
     if (tomcatAjpEnabled) {
       Connector ajpConnector = new Connector("AJP/1.3");
       ajpConnector.setPort(ajpPort);
@@ -70,6 +92,9 @@ public class TomcatAjpConfig {
       ajpConnector.setAllowTrace(false);
       ajpConnector.setScheme("http");
       ((AjpNioProtocol) ajpConnector.getProtocolHandler()).setSecretRequired(false);
+      if (requestExecutor != null) {
+        ajpConnector.getProtocolHandler().setExecutor(requestExecutor);
+      }
       tomcat.addAdditionalTomcatConnectors(ajpConnector);
     }
 
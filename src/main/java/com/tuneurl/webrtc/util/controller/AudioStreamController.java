@@ -47,6 +47,7 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
@@ -66,12 +67,22 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
 /**
  * The AudioStreamController class. import javax.servlet.ServletContext.
  *
+ * <ul>
+ *   <li>v1.1 added /dev/v3/fingerprintExecutorStatus
+ *   <li>v1.2 evaluate endpoints scheduled per SDK client, tenants in fingerprintExecutorStatus
+ *   <li>v1.3 added /dev/v3/reactive/evaluateAudioStream and findFingerPrintsAudioStream
+ *   <li>v1.4 added /dev/v3/registerTrigger, the evaluate endpoints accept trigger ids
+ *   <li>v1.5 added /dev/v3/unregisterTrigger
+ *   <li>v1.6 fingerprintExecutorStatus lists the other SDK clients to the admins only
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.6
  */
 @RestController
 @RequestMapping("/")
@@ -79,6 +90,7 @@ public class AudioStreamController extends BaseController {
 
   @Autowired protected AudioStreamDatabaseService audioStreamService;
   @Autowired protected AudioStreamTrainingChannelService audioChannelService;
+  @Autowired protected FingerprintExecutionService fingerprintExecutionService;
 
   /** Default constructor. */
   public AudioStreamController() {
@@ -724,6 +736,9 @@ public class AudioStreamController extends BaseController {
    *   <li><code>EvaluateAudioStreamEntry.sizeFingerprint</code>: Size of dataFingerprint.
    *   <li><code>EvaluateAudioStreamEntry.dataFingerprint</code>: Triggersound fingerprint. Array of
    *       Byte.
+   *   <li><code>EvaluateAudioStreamEntry.triggerId</code>: id of a registered triggersound, used
+   *       instead of dataFingerprint. A dataFingerprint sent with it is used when the id is not
+   *       known, after a restart or on another instance.
    * </ul>
    *
    * <br>
@@ -754,6 +769,7 @@ public class AudioStreamController extends BaseController {
         @ApiResponse(code = 401, message = "Unauthorized"),
         @ApiResponse(code = 403, message = "Forbidden"),
         @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
         @ApiResponse(code = 500, message = "InternalServerError"),
       })
   @CrossOrigin("*")
@@ -775,6 +791,75 @@ public class AudioStreamController extends BaseController {
 
     EvaluateAudioStreamResponse response =
         audioStreamBaseService.evaluateAudioStream(
+            audioDataEntry, evaluateAudioStreamEntry, signature, getFingerprintTenant(httpRequest));
+
+    return ResponseEntity.ok().body(response);
+  }
+
+  /**
+   * Find the triggersounds of several triggers from the given audio stream in one pass. <br>
+   * <br>
+   * <b>Implementation Notes</b>: <br>
+   * <b>A. Input is <code>EvaluateAudioStreamEntry</code>.</b>
+   *
+   * <ul>
+   *   <li><code>EvaluateAudioStreamEntry.audioData</code>: The AudioDataEntry.
+   *   <li><code>EvaluateAudioStreamEntry.dataFingerprints</code>: 1 to 16 triggersound
+   *       fingerprints.
+   *   <li><code>EvaluateAudioStreamEntry.triggerIds</code>: ids of registered triggersounds, used
+   *       instead of dataFingerprints. dataFingerprints sent with them, in the same order, are used
+   *       for the ids not known, after a restart or on another instance.
+   * </ul>
+   *
+   * <br>
+   * <b>B. Output is EvaluateAudioStreamResponse</b>
+   *
+   * <ul>
+   *   <li><code>EvaluateAudioStreamResponse.tuneUrlCounts</code>: total number TuneUrlTag found,
+   *       one per occurrence of each trigger.
+   *   <li><code>EvaluateAudioStreamResponse.tagCounts</code>: total number of TuneUrlTag.
+   *   <li><code>EvaluateAudioStreamResponse.liveTags</code>: array of TuneUrlTag,
+   *       <code>TuneUrlTag.triggerIndex</code> is the index of its trigger in dataFingerprints.
+   * </ul>
+   *
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return ResponseEntity &lt;EvaluateAudioStreamResponse>
+   */
+  @PostMapping(
+      path = "/dev/v3/evaluateAudioStreamTriggers",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(
+      value = "Find the triggersounds of several triggers from the given audio stream",
+      response = EvaluateAudioStreamResponse.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "EvaluateAudioStreamResponse"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public ResponseEntity<EvaluateAudioStreamResponse> evaluateAudioStreamTriggers(
+      @Valid @RequestBody EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+
+    final String signature = "evaluateAudioStreamTriggers";
+    super.saveAnalytics(signature, httpRequest);
+
+    AudioDataEntry audioDataEntry = evaluateAudioStreamEntry.getAudioData();
+
+    // 1. Check for ADMIN or USER role.
+    if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    EvaluateAudioStreamResponse response =
+        audioStreamBaseService.evaluateAudioStreamTriggers(
             audioDataEntry, evaluateAudioStreamEntry, signature);
 
     return ResponseEntity.ok().body(response);
@@ -791,6 +876,9 @@ public class AudioStreamController extends BaseController {
    *   <li><code>EvaluateAudioStreamEntry.sizeFingerprint</code>: Size of dataFingerprint.
    *   <li><code>EvaluateAudioStreamEntry.dataFingerprint</code>: Triggersound fingerprint. Array of
    *       Byte.
+   *   <li><code>EvaluateAudioStreamEntry.triggerId</code>: id of a registered triggersound, used
+   *       instead of dataFingerprint. A dataFingerprint sent with it is used when the id is not
+   *       known, after a restart or on another instance.
    * </ul>
    *
    * <br>
@@ -820,6 +908,7 @@ public class AudioStreamController extends BaseController {
         @ApiResponse(code = 401, message = "Unauthorized"),
         @ApiResponse(code = 403, message = "Forbidden"),
         @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
         @ApiResponse(code = 500, message = "InternalServerError"),
       })
   @CrossOrigin("*")
@@ -844,8 +933,307 @@ public class AudioStreamController extends BaseController {
 
     FindFingerPrintResponse response =
         audioStreamBaseService.findFingerPrintsAudioStream(
-            audioDataEntry, evaluateAudioStreamEntry, signature);
+            audioDataEntry, evaluateAudioStreamEntry, signature, getFingerprintTenant(httpRequest));
 
     return ResponseEntity.ok().body(response);
   }
+
+  /**
+   * Find all triggersound from the given audio stream, without holding the servlet thread while
+   * the windows are fingerprinted. <br>
+   * <br>
+   * <b>Implementation Notes</b>: same input and output as /dev/v3/evaluateAudioStream.
+   *
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return Mono &lt;EvaluateAudioStreamResponse>
+   */
+  @PostMapping(
+      path = "/dev/v3/reactive/evaluateAudioStream",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(
+      value = "Find all triggersound from the given audio stream",
+      response = EvaluateAudioStreamResponse.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "EvaluateAudioStreamResponse"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public Mono<EvaluateAudioStreamResponse> evaluateAudioStreamReactive(
+      @Valid @RequestBody EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+
+    final String signature = "evaluateAudioStreamReactive";
+    super.saveAnalytics(signature, httpRequest);
+
+    final AudioDataEntry audioDataEntry = evaluateAudioStreamEntry.getAudioData();
+
+    // 1. Check for ADMIN or USER role.
+    if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    final String tenant = getFingerprintTenant(httpRequest);
+    return fingerprintExecutionService.schedule(
+        getRequestBytes(audioDataEntry),
+        () ->
+            audioStreamBaseService.evaluateAudioStream(
+                audioDataEntry, evaluateAudioStreamEntry, signature, tenant));
+  }
+
+  /**
+   * Find all triggersound positions from the given audio stream, without holding the servlet
+   * thread while the windows are fingerprinted. <br>
+   * <br>
+   * <b>Implementation Notes</b>: same input and output as /dev/v3/findFingerPrintsAudioStream.
+   *
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return Mono &lt;FindFingerPrintResponse>
+   */
+  @PostMapping(
+      path = "/dev/v3/reactive/findFingerPrintsAudioStream",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(
+      value = "Find all triggersound postions from the given audio stream",
+      response = FindFingerPrintResponse.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "FindFingerPrintResponse"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public Mono<FindFingerPrintResponse> findFingerPrintsAudioStreamReactive(
+      @Valid @RequestBody EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+
+    final String signature = "findFingerPrintsAudioStreamReactive";
+    super.saveAnalytics(signature, httpRequest);
+
+    final AudioDataEntry audioDataEntry = evaluateAudioStreamEntry.getAudioData();
+
+    // 1. Check for ADMIN or USER role.
+    if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    final String tenant = getFingerprintTenant(httpRequest);
+    return fingerprintExecutionService.schedule(
+        getRequestBytes(audioDataEntry),
+        () ->
+            audioStreamBaseService.findFingerPrintsAudioStream(
+                audioDataEntry, evaluateAudioStreamEntry, signature, tenant));
+  }
+
+  /**
+   * Keep a triggersound descriptor parsed, for the evaluate requests sending its id. <br>
+   * <br>
+   * <b>Implementation Notes</b>: <br>
+   * <b>A. Input is <code>TriggerEntry</code>.</b>
+   *
+   * <ul>
+   *   <li><code>TriggerEntry.dataFingerprint</code>: Triggersound fingerprint.
+   * </ul>
+   *
+   * <br>
+   * <b>B. Output is TriggerEntry</b>
+   *
+   * <ul>
+   *   <li><code>TriggerEntry.triggerId</code>: hex of the first 16 bytes of the SHA-256 of the
+   *       UTF-8 dataFingerprint, the <code>EvaluateAudioStreamEntry.triggerId</code> to send.
+   *   <li><code>TriggerEntry.ttlSeconds</code>: the registration is dropped ttlSeconds after the
+   *       last request sending its id. The registry is per instance and in memory, send the
+   *       dataFingerprint with the id to be served after a restart or by another instance.
+   *   <li><code>TriggerEntry.blockCount</code>, <code>TriggerEntry.max</code>: the parsed
+   *       descriptor.
+   * </ul>
+   *
+   * @param triggerEntry TriggerEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return ResponseEntity &lt;TriggerEntry>
+   */
+  @PostMapping(
+      path = "/dev/v3/registerTrigger",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(value = "Register a triggersound descriptor", response = TriggerEntry.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "TriggerEntry"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public ResponseEntity<TriggerEntry> registerTrigger(
+      @Valid @RequestBody TriggerEntry triggerEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+    final String signature = "registerTrigger";
+    super.saveAnalytics(signature, httpRequest);
+
+    // 1. Check for ADMIN or USER role.
+    if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    TriggerEntry response =
+        audioStreamBaseService.registerTrigger(
+            triggerEntry, getFingerprintTenant(httpRequest), signature);
+    return ResponseEntity.ok().body(response);
+  }
+
+  /**
+   * Drop a registration of /dev/v3/registerTrigger. <br>
+   * <br>
+   * <b>Implementation Notes</b>: <br>
+   * <b>A. Input is <code>TriggerEntry</code>.</b>
+   *
+   * <ul>
+   *   <li><code>TriggerEntry.triggerId</code>: id returned by /dev/v3/registerTrigger for the same
+   *       SDK client.
+   * </ul>
+   *
+   * <br>
+   * <b>B. Output is TriggerEntry</b>
+   *
+   * <ul>
+   *   <li><code>TriggerEntry.triggerId</code>: the id no longer registered by the SDK client.
+   * </ul>
+   *
+   * @param triggerEntry TriggerEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return ResponseEntity &lt;TriggerEntry>
+   */
+  @PostMapping(
+      path = "/dev/v3/unregisterTrigger",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(value = "Unregister a triggersound descriptor", response = TriggerEntry.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "TriggerEntry"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public ResponseEntity<TriggerEntry> unregisterTrigger(
+      @Valid @RequestBody TriggerEntry triggerEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+    final String signature = "unregisterTrigger";
+    super.saveAnalytics(signature, httpRequest);
+
+    // 1. Check for ADMIN or USER role.
+    if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    TriggerEntry response =
+        audioStreamBaseService.unregisterTrigger(
+            triggerEntry, getFingerprintTenant(httpRequest), signature);
+    return ResponseEntity.ok().body(response);
+  }
+
+  /**
+   * Load of the fingerprint workers shared by the evaluate endpoints. <br>
+   * <br>
+   * <b>Implementation Notes</b>: <br>
+   * <b>A. Output is FingerprintExecutorStatus</b>
+   *
+   * <ul>
+   *   <li><code>FingerprintExecutorStatus.poolSize</code>: number of workers.
+   *   <li><code>FingerprintExecutorStatus.queueCapacity</code>: windows that may wait for a worker.
+   *   <li><code>FingerprintExecutorStatus.queueDepth</code>: windows waiting for a worker.
+   *   <li><code>FingerprintExecutorStatus.activeWorkers</code>: workers busy with a window.
+   *   <li><code>FingerprintExecutorStatus.rejectedRequests</code>: requests answered with 429.
+   *   <li><code>FingerprintExecutorStatus.completedTasks</code>: windows done since startup.
+   *   <li><code>FingerprintExecutorStatus.interactiveCapacity</code>: windows of one-second
+   *       requests that may be admitted, 0 when they share the queue.
+   *   <li><code>FingerprintExecutorStatus.interactiveQueueDepth</code>: one-second windows waiting.
+   *   <li><code>FingerprintExecutorStatus.tenantQueueLimit</code>: windows one SDK client may
+   *       have admitted.
+   *   <li><code>FingerprintExecutorStatus.tenantActiveLimit</code>: windows one SDK client may
+   *       have running, 0 for no limit.
+   *   <li><code>FingerprintExecutorStatus.tenants</code>: queued, running, admitted and completed
+   *       windows and rejected requests of the SDK client of the caller, of every SDK client for
+   *       an ADMIN with allTenants=true.
+   *   <li><code>FingerprintExecutorStatus.windowParallelism</code>: windows a request may queue
+   *       at once, 0 when fingerprint.adaptive.enabled is false.
+   *   <li><code>FingerprintExecutorStatus.queueWaitMillis</code>,
+   *       <code>serviceTimeMillis</code>, <code>latencyP99Millis</code>, <code>cpuLoad</code>:
+   *       the inputs of windowParallelism.
+   *   <li><code>FingerprintExecutorStatus.oneSecondCache</code>: entries, bytes, hits, misses,
+   *       evictions and expirations of the cache of the one-second responses, streams and windows
+   *       reused from the previous request of a stream.
+   * </ul>
+   *
+   * @param allTenants Boolean true to list every SDK client, ADMIN only
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return ResponseEntity &lt;FingerprintExecutorStatus>
+   */
+  @GetMapping(
+      path = "/dev/v3/fingerprintExecutorStatus",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(
+      value = "Get the load of the fingerprint workers",
+      response = FingerprintExecutorStatus.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "FingerprintExecutorStatus"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public ResponseEntity<FingerprintExecutorStatus> getFingerprintExecutorStatus(
+      @RequestParam(value = "allTenants", required = false) Boolean allTenants,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+    final String signature = "getFingerprintExecutorStatus";
+    super.saveAnalytics(signature, httpRequest);
+
+    // 1. Check for ADMIN role when every SDK client is listed, else for ADMIN or USER role.
+    boolean everyTenant = Boolean.TRUE.equals(allTenants);
+    if (everyTenant) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_ADMIN, httpRequest, httpResponse);
+    } else if (!super.canAccessAudioWithoutLogin()) {
+      super.getSdkClientCredentials(signature, UserType.LOGIN_FOR_USER, httpRequest, httpResponse);
+    }
+
+    FingerprintExecutorStatus status = fingerprintExecutionService.getStatus();
+    if (!everyTenant) {
+      // The names are LdapInfo UUIDs and client ids: only the caller's own, once authenticated.
+      String tenant =
+          getClientCredential(httpRequest) != null ? getFingerprintTenant(httpRequest) : null;
+      List<FingerprintTenantStatus> own = new ArrayList<FingerprintTenantStatus>(1);
+      for (FingerprintTenantStatus tenantStatus : status.getTenants()) {
+        if (tenantStatus.getTenant().equals(tenant)) own.add(tenantStatus);
+      }
+      status.setTenants(own);
+    }
+    status.setOneSecondCache(audioStreamBaseService.getOneSecondCacheStatus());
+    return ResponseEntity.ok().body(status);
+  }
 }
@@ -41,6 +41,7 @@ import com.tuneurl.webrtc.util.config.RedisInstance;
 import com.tuneurl.webrtc.util.controller.dto.*;
 import com.tuneurl.webrtc.util.exception.BaseServiceException;
 import com.tuneurl.webrtc.util.model.*;
+import com.tuneurl.webrtc.util.security.CredentialCache;
 import com.tuneurl.webrtc.util.service.AudioStreamService;
 import com.tuneurl.webrtc.util.service.LdapInfoService;
 import com.tuneurl.webrtc.util.service.SdkUserService;
@@ -76,8 +77,14 @@ import org.springframework.web.servlet.ModelAndView;
  * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe but use in thread
  * safe manner.
  *
+ * <ul>
+ *   <li>v1.1 added getFingerprintTenant()
+ *   <li>v1.2 getSdkClientCredentials() reuses the credential of a verified JWT, kept per request
+ *   <li>v1.3 added getRequestBytes()
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.3
  */
 public abstract class BaseController {
 
@@ -86,6 +93,7 @@ public abstract class BaseController {
   @Autowired protected SessionDataService sessionService;
   @Autowired protected LdapInfoService ldapService;
   @Autowired protected SdkUserService userService;
+  @Autowired protected CredentialCache credentialCache;
 
   @Value("${audio.access.without.login:false}")
   protected boolean isAllowAccessToWaveWithoutLogin;
@@ -118,6 +126,41 @@ public abstract class BaseController {
     return isAllowAccessToWaveWithoutLogin;
   }
 
+  /**
+   * The SDK client the fingerprint work of this request is scheduled for: the LdapInfo UUID found
+   * by getSdkClientCredentials(), else the x-sdk-client-id header, else an empty String.
+   *
+   * @param httpRequest HttpServletRequest
+   * @return String
+   */
+  protected String getFingerprintTenant(HttpServletRequest httpRequest) {
+    Object tenant = httpRequest.getAttribute(Constants.FINGERPRINT_TENANT_ATTRIBUTE);
+    if (tenant != null) return tenant.toString();
+    String clientId = httpRequest.getHeader(Constants.X_SDK_CLIENT_ID_HEADER_NAME);
+    return clientId == null ? "" : clientId;
+  }
+
+  /**
+   * Heap a fingerprint request holds until it is done: its samples, decoded already.
+   *
+   * @param audioDataEntry AudioDataEntry
+   * @return long bytes
+   */
+  protected long getRequestBytes(AudioDataEntry audioDataEntry) {
+    if (audioDataEntry == null || audioDataEntry.getData() == null) return 0L;
+    return 2L * audioDataEntry.getData().length;
+  }
+
+  /**
+   * The ClientCredential found by getSdkClientCredentials() for this request.
+   *
+   * @param httpRequest HttpServletRequest
+   * @return ClientCredential or null
+   */
+  protected ClientCredential getClientCredential(HttpServletRequest httpRequest) {
+    return (ClientCredential) httpRequest.getAttribute(Constants.CLIENT_CREDENTIAL_ATTRIBUTE);
+  }
+
   /**
    * Helper method to convert SdkUser into UserEntry.
    *
@@ -161,7 +204,6 @@ public abstract class BaseController {
     return jwtSalt;
   }
 
-  protected ClientCredential clientCredential = null;
   protected FingerprintExternals fingerprintExternals =
       FingerprintUtility.getFingerprintInstance().getFingerprintExternals();
 
@@ -440,20 +482,63 @@ public abstract class BaseController {
       HttpServletResponse httpResponse,
       final String sessionExpirationMessage)
       throws BaseServiceException {
-    JwtTool jwt = setupJwtTool(useAuthBearer);
-    MessageLogger logger = this.logger;
+    return getLoginInformation(
+        useAuthBearer, userType, getLoginToken(httpRequest), sessionExpirationMessage);
+  }
 
+  /**
+   * The JWT of the request, see findLoginToken().
+   *
+   * @param httpRequest HttpServletRequest
+   * @return String
+   * @throws BaseServiceException If there is no JWT
+   */
+  protected String getLoginToken(HttpServletRequest httpRequest) throws BaseServiceException {
+    String token = findLoginToken(httpRequest);
+    if (token == null) {
+      CommonUtil.ForbiddenException(Constants.NOT_ALLOWED_TO_EXECUTE_THE_REQUEST);
+      /** NOTREACH */
+    }
+    return token;
+  }
+
+  /**
+   * The JWT of the Authorization, else the x-jwt-token, header.
+   *
+   * @param httpRequest HttpServletRequest
+   * @return String or null
+   */
+  protected String findLoginToken(HttpServletRequest httpRequest) {
     // Is Auth / x-jwt-token exist?
     String token = getToken(logger, httpRequest, Constant.HEADER_AUTHORIZATION_LOWERCASE);
     // logger.debug("Token 1: ["+ token + "]");
     if (Helper.isStringNullOrEmpty(token)) {
       token = getToken(logger, httpRequest, Constants.X_JWT_HEADER_NAME);
       // logger.debug("Token 2: ["+ token + "]");
-      if (Helper.isStringNullOrEmpty(token)) {
-        CommonUtil.ForbiddenException(Constants.NOT_ALLOWED_TO_EXECUTE_THE_REQUEST);
-        /** NOTREACH */
-      }
     }
+    return Helper.isStringNullOrEmpty(token) ? null : token;
+  }
+
+  /**
+   * Verify a JWT and the roles it gives for userType.
+   *
+   * @param useAuthBearer boolean
+   * @param userType UserType
+   * @param token String the JWT
+   * @param sessionExpirationMessage String
+   * @return JwtTool instance
+   * @throws BaseServiceException If the JWT payload does not match the access credential setup
+   *     for UserType.
+   */
+  protected JwtTool getLoginInformation(
+      boolean useAuthBearer,
+      UserType userType,
+      final String token,
+      final String sessionExpirationMessage)
+      throws BaseServiceException {
+    JwtTool jwt = setupJwtTool(useAuthBearer);
+    MessageLogger logger = this.logger;
+
     // Detect JWT expiration here
     jwt.setUser(null);
 
@@ -477,6 +562,26 @@ public abstract class BaseController {
       CommonUtil.ForbiddenException(sessionExpirationMessage);
       /** NOTREACH */
     }
+    checkRoles(userType, roles);
+    // Check expiration
+    if (jwt.isJWTExpired(user)) {
+      // Clear JWT
+      headers = clearHeaderTokens(getServerDomainUrl());
+      CommonUtil.ForbiddenException(sessionExpirationMessage);
+      /** NOTREACH */
+    }
+
+    return jwt;
+  }
+
+  /**
+   * Check that roles are the ones userType needs.
+   *
+   * @param userType UserType
+   * @param roles String
+   * @throws BaseServiceException If a role is missing
+   */
+  private void checkRoles(UserType userType, final String roles) throws BaseServiceException {
     switch (userType) {
       case LOGIN_FOR_ADMIN:
         // Check if current user have ADMIN role.
@@ -495,35 +600,26 @@ public abstract class BaseController {
         }
         break;
     }
-    // Check expiration
-    if (jwt.isJWTExpired(user)) {
-      // Clear JWT
-      headers = clearHeaderTokens(getServerDomainUrl());
-      CommonUtil.ForbiddenException(sessionExpirationMessage);
-      /** NOTREACH */
-    }
-
-    return jwt;
   }
 
   /**
-   * Get the SDK Client credentials.
+   * Get the SDK Client credentials. A JWT verified in the last auth.credential.cache.ttl.seconds
+   * reuses its ClientCredential: only its roles and expiration are checked again.
    *
    * @param signature String
    * @param userType UserType
    * @param httpRequest HttpServletRequest
    * @param httpResponse HttpServletResponse
+   * @return ClientCredential, also kept in the request, see getClientCredential()
    * @throws BaseServiceException If parameter(s) does not exist or error at DB level
    */
-  public void getSdkClientCredentials(
+  public ClientCredential getSdkClientCredentials(
       final String signature,
       UserType userType,
       HttpServletRequest httpRequest,
       HttpServletResponse httpResponse)
       throws BaseServiceException {
 
-    this.clientCredential = new ClientCredential();
-
     MessageLogger logger = this.logger;
 
     // 1.1 Gather callers information for SDK analytic usage.
@@ -542,34 +638,48 @@ public abstract class BaseController {
           clientId
         });
 
-    // 1.2 Caller must have a valid
-    // x-sdk-client-id="Must have a valid SDK Client ID to use the service"
-    LdapInfo clientInfo = null;
-    clientCredential.setSdkUuid(clientId);
-    try {
-      CommonUtil.checkUUID(clientId, Constants.X_SDK_CLIENT_ID_HEADER_NAME);
-
-      // 1.4 Will check the UUID after we get the User who is using the SDK ID.
-      clientInfo = ldapService.getLdapInfoByName(clientId);
-    } catch (Exception ignore) {
-      clientInfo = null;
+    String token = getLoginToken(httpRequest);
+    ClientCredential clientCredential = credentialCache.get(token);
+    if (clientCredential != null) {
+      checkRoles(userType, clientCredential.getUser().getRoles());
+      if (clientCredential.getJwtTool().isJWTExpired(clientCredential.getUser())) {
+        // Verified again below, to answer as for any expired JWT.
+        credentialCache.invalidateToken(token);
+        clientCredential = null;
+      }
     }
-    // 1.3 Is the SDK ID valid?
-    clientCredential.setLdapInfo(clientInfo);
+    if (clientCredential == null) {
+      clientCredential = findSdkClientCredentials(userType, token, httpRequest);
+      credentialCache.put(token, clientCredential);
+    }
+    httpRequest.setAttribute(Constants.CLIENT_CREDENTIAL_ATTRIBUTE, clientCredential);
+    httpRequest.setAttribute(
+        Constants.FINGERPRINT_TENANT_ATTRIBUTE, clientCredential.getSdkUuid());
+    return clientCredential;
+  }
+
+  /**
+   * Verify the JWT and read its SdkUser, LdapInfo and SessionData.
+   *
+   * @param userType UserType
+   * @param token String the JWT
+   * @param httpRequest HttpServletRequest
+   * @return ClientCredential
+   * @throws BaseServiceException If the JWT is not valid or error at DB level
+   */
+  private ClientCredential findSdkClientCredentials(
+      UserType userType, final String token, HttpServletRequest httpRequest)
+      throws BaseServiceException {
+    ClientCredential clientCredential = new ClientCredential();
 
     // 2. Check for ADMIN or USER role.
     JwtTool jwtTool =
         this.getLoginInformation(
             Constants.LOGIN_AUTHORIZATION_BEARER,
             userType,
-            httpRequest,
-            httpResponse,
+            token,
             Constants.SESSION_EXPIRED_LOGIN_AGAIN);
     clientCredential.setJwtTool(jwtTool);
-    JwtResponse decodedToken = jwtTool.getJwtResponse();
-
-    @SuppressWarnings("unused")
-    Long currentUserId = decodedToken.getUserId();
 
     // 3.1 Access user records
     SdkUser user = this.findUser(jwtTool);
@@ -598,6 +708,7 @@ public abstract class BaseController {
 
     // 3.6 Status
     clientCredential.setStatus("OK");
+    return clientCredential;
   }
 
   /**
@@ -34,15 +34,19 @@ package com.tuneurl.webrtc.util.controller;
 import com.tuneurl.webrtc.util.controller.dto.AudioDataEntry;
 import com.tuneurl.webrtc.util.controller.dto.EvaluateAudioStreamEntry;
 import com.tuneurl.webrtc.util.controller.dto.EvaluateAudioStreamResponse;
+import com.tuneurl.webrtc.util.service.FingerprintExecutionService;
 import com.tuneurl.webrtc.util.util.*;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerRegistry;
 import com.tuneurl.webrtc.util.value.Constants;
 import com.tuneurl.webrtc.util.value.UserType;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import java.util.function.Supplier;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -50,17 +54,28 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
 
 /**
  * OneSecondAudioStreamController.
  *
+ * <ul>
+ *   <li>v1.1 added /dev/v3/reactive/evaluateOneSecondAudioStream
+ *   <li>v1.2 accepts the triggerId of a registered trigger instead of dataFingerprint
+ *   <li>v1.3 the reactive endpoint is admitted by the bytes of its audio
+ *   <li>v1.4 the TriggerRegistry is injected
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.4
  */
 @RestController
 @RequestMapping("/")
 public class OneSecondAudioStreamController extends BaseController {
 
+  @Autowired protected FingerprintExecutionService fingerprintExecutionService;
+  @Autowired protected TriggerRegistry triggerRegistry;
+
   /** Default constructor . */
   public OneSecondAudioStreamController() {}
 
@@ -75,6 +90,9 @@ public class OneSecondAudioStreamController extends BaseController {
    *   <li><code>EvaluateAudioStreamEntry.sizeFingerprint</code>: Size of dataFingerprint.
    *   <li><code>EvaluateAudioStreamEntry.dataFingerprint</code>: Triggersound fingerprint. Array of
    *       Byte.
+   *   <li><code>EvaluateAudioStreamEntry.triggerId</code>: id of a registered triggersound, used
+   *       instead of dataFingerprint. A dataFingerprint sent with it is used when the id is not
+   *       known, after a restart or on another instance.
    * </ul>
    *
    * <br>
@@ -105,6 +123,7 @@ public class OneSecondAudioStreamController extends BaseController {
         @ApiResponse(code = 401, message = "Unauthorized"),
         @ApiResponse(code = 403, message = "Forbidden"),
         @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
         @ApiResponse(code = 500, message = "InternalServerError"),
       })
   @CrossOrigin("*")
@@ -123,6 +142,91 @@ public class OneSecondAudioStreamController extends BaseController {
     //   return ResponseEntity.ok().body(cachedResult);
     // }
 
+    EvaluateAudioStreamResponse response =
+        oneSecondRequest(signature, evaluateAudioStreamEntry, httpRequest, httpResponse).get();
+
+    // this.redis.setOneSecondAudioStreamCache(
+    //     httpRequest.getParameter("offset"),
+    //     evaluateAudioStreamEntry.getAudioData().getUrl(),
+    //     evaluateAudioStreamEntry.getDataFingerprint(),
+    //     response);
+
+    return ResponseEntity.ok().body(response);
+  }
+
+  /**
+   * Find all triggersound from the given audio stream, without holding the servlet thread while
+   * the windows are fingerprinted. <br>
+   * <br>
+   * <b>Implementation Notes</b>: <br>
+   * <b>A. Input is <code>EvaluateAudioStreamEntry</code>.</b>
+   *
+   * <ul>
+   *   <li><code>EvaluateAudioStreamEntry.audioData</code>: The AudioDataEntry.
+   *   <li><code>EvaluateAudioStreamEntry.sizeFingerprint</code>: Size of dataFingerprint.
+   *   <li><code>EvaluateAudioStreamEntry.dataFingerprint</code>: Triggersound fingerprint. Array of
+   *       Byte.
+   *   <li><code>EvaluateAudioStreamEntry.triggerId</code>: id of a registered triggersound, used
+   *       instead of dataFingerprint. A dataFingerprint sent with it is used when the id is not
+   *       known, after a restart or on another instance.
+   * </ul>
+   *
+   * <br>
+   * <b>B. Output is EvaluateAudioStreamEntry</b>
+   *
+   * <ul>
+   *   <li><code>EvaluateAudioStreamResponse.tuneUrlCounts</code>: 0 to 64 total number TuneUrlTag
+   *       found.
+   *   <li><code>EvaluateAudioStreamResponse.tagCounts</code>: total number of TuneUrlTag.
+   *   <li><code>EvaluateAudioStreamResponse.liveTags</code>: array of TuneUrlTag.
+   * </ul>
+   *
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry,
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return Mono &lt;EvaluateAudioStreamResponse>
+   */
+  @PostMapping(
+      path = "/dev/v3/reactive/evaluateOneSecondAudioStream",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  @ApiOperation(
+      value = "Find all triggersound from the given audio stream",
+      response = EvaluateAudioStreamResponse.class)
+  @ApiResponses(
+      value = {
+        @ApiResponse(code = 200, message = "EvaluateAudioStreamResponse"),
+        @ApiResponse(code = 400, message = "BadRequest"),
+        @ApiResponse(code = 401, message = "Unauthorized"),
+        @ApiResponse(code = 403, message = "Forbidden"),
+        @ApiResponse(code = 404, message = "NotFound"),
+        @ApiResponse(code = 429, message = "TooManyRequests"),
+        @ApiResponse(code = 500, message = "InternalServerError"),
+      })
+  @CrossOrigin("*")
+  public Mono<EvaluateAudioStreamResponse> evaluateOneSecondAudioStreamReactive(
+      @Valid @RequestBody EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
+    final String signature = "evaluateOneSecondAudioStreamReactive";
+    return fingerprintExecutionService.schedule(
+        getRequestBytes(evaluateAudioStreamEntry.getAudioData()),
+        oneSecondRequest(signature, evaluateAudioStreamEntry, httpRequest, httpResponse));
+  }
+
+  /**
+   * Check the request and its credentials on the servlet thread.
+   *
+   * @param signature String
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry
+   * @param httpRequest HttpServletRequest HTTP Request
+   * @param httpResponse HttpServletResponse HTTP Response
+   * @return Supplier of the EvaluateAudioStreamResponse
+   */
+  private Supplier<EvaluateAudioStreamResponse> oneSecondRequest(
+      final String signature,
+      EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse) {
     String sOffset = httpRequest.getParameter("offset");
     Long dataOffset = CommonUtil.parseLong(sOffset, 0L);
     super.saveAnalytics(signature, httpRequest);
@@ -141,7 +245,9 @@ public class OneSecondAudioStreamController extends BaseController {
     Long fingerprintRate = audioDataEntry.getFingerprintRate();
     // The Triggersound Fingerprint Data.
     // byte[] dataFingerprint = evaluateAudioStreamEntry.getDataFingerprint();\
-    String dataFingerprint = evaluateAudioStreamEntry.getDataFingerprint();
+    String dataFingerprint =
+        triggerRegistry.resolve(
+            evaluateAudioStreamEntry.getTriggerId(), evaluateAudioStreamEntry.getDataFingerprint());
     logger.logEntry(
         signature,
         new Object[] {
@@ -169,16 +275,9 @@ public class OneSecondAudioStreamController extends BaseController {
       CommonUtil.BadRequestException("Duration must be 6 to 17 seconds only");
     }
 
-    EvaluateAudioStreamResponse response =
+    final String tenant = getFingerprintTenant(httpRequest);
+    return () ->
         audioStreamBaseService.evaluateOneSecondAudioStream(
-            duration, dataOffset, data, fingerprintRate, dataFingerprint);
-
-    // this.redis.setOneSecondAudioStreamCache(
-    //     httpRequest.getParameter("offset"),
-    //     evaluateAudioStreamEntry.getAudioData().getUrl(),
-    //     evaluateAudioStreamEntry.getDataFingerprint(),
-    //     response);
-
-    return ResponseEntity.ok().body(response);
+            duration, dataOffset, data, fingerprintRate, dataFingerprint, url, tenant);
   }
 }
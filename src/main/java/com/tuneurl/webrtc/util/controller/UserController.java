@@ -66,8 +66,12 @@ import org.springframework.web.servlet.ModelAndView;
 /**
  * The UserController class.
  *
+ * <ul>
+ *   <li>v1.1 logout drops the cached credential of the JWT
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.1
  */
 @RestController
 @RequestMapping("/")
@@ -230,6 +234,8 @@ public class UserController extends BaseController {
   public ResponseEntity<Error> userLogout(
       HttpServletRequest httpRequest, HttpServletResponse httpResponse) {
 
+    credentialCache.invalidateToken(super.findLoginToken(httpRequest));
+
     String location = super.getServerDomainUrl();
     String message = "Redirect to \"" + location + "\"";
     HttpStatus status = HttpStatus.MOVED_PERMANENTLY;
@@ -32,14 +32,20 @@
 package com.tuneurl.webrtc.util.controller.dto;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
 
 /**
  * Class EvaluateAudioStreamEntry DTO to hold AudioDataEntry and Trigger sound fingerprint.
  *
  * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
  *
+ * <ul>
+ *   <li>v1.1 added dataFingerprints for /dev/v3/evaluateAudioStreamTriggers
+ *   <li>v1.2 added triggerId and triggerIds, registered descriptors sent by id
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.2
  */
 public class EvaluateAudioStreamEntry {
 
@@ -67,6 +73,44 @@ public class EvaluateAudioStreamEntry {
   @JsonProperty("dataFingerprint")
   private String dataFingerprint;
 
+  /**
+   * The Triggersound Fingerprint Data of several triggers.
+   *
+   * <p>It can be any value.
+   *
+   * <p>It has both getter and setter.
+   *
+   * <p>It is used in setDataFingerprints(), getDataFingerprints().
+   */
+  @JsonProperty("dataFingerprints")
+  private List<String> dataFingerprints;
+
+  /**
+   * The id of a registered Triggersound Fingerprint Data, used instead of dataFingerprint; a
+   * dataFingerprint sent with it is used when the id is not known.
+   *
+   * <p>It can be null.
+   *
+   * <p>It has both getter and setter.
+   *
+   * <p>It is used in setTriggerId(), getTriggerId().
+   */
+  @JsonProperty("triggerId")
+  private String triggerId;
+
+  /**
+   * The ids of registered Triggersound Fingerprint Data, used instead of dataFingerprints;
+   * dataFingerprints sent with them, in the same order, are used for the ids not known.
+   *
+   * <p>It can be null.
+   *
+   * <p>It has both getter and setter.
+   *
+   * <p>It is used in setTriggerIds(), getTriggerIds().
+   */
+  @JsonProperty("triggerIds")
+  private List<String> triggerIds;
+
   /** Default constructor for EvaluateAudioStreamEntry class. */
   public EvaluateAudioStreamEntry() {
     // does nothing.
@@ -108,6 +152,60 @@ public class EvaluateAudioStreamEntry {
     this.dataFingerprint = dataFingerprint;
   }
 
+  /**
+   * Retrieves the Triggersound Fingerprint Data of several triggers.
+   *
+   * @return the list of Triggersound Fingerprint Data
+   */
+  public List<String> getDataFingerprints() {
+    return dataFingerprints;
+  }
+
+  /**
+   * Sets the Triggersound Fingerprint Data of several triggers.
+   *
+   * @param dataFingerprints the list of Triggersound Fingerprint Data to set
+   */
+  public void setDataFingerprints(List<String> dataFingerprints) {
+    this.dataFingerprints = dataFingerprints;
+  }
+
+  /**
+   * Retrieves the id of a registered Triggersound Fingerprint Data.
+   *
+   * @return the trigger id
+   */
+  public String getTriggerId() {
+    return triggerId;
+  }
+
+  /**
+   * Sets the id of a registered Triggersound Fingerprint Data.
+   *
+   * @param triggerId the trigger id to set
+   */
+  public void setTriggerId(String triggerId) {
+    this.triggerId = triggerId;
+  }
+
+  /**
+   * Retrieves the ids of registered Triggersound Fingerprint Data.
+   *
+   * @return the list of trigger ids
+   */
+  public List<String> getTriggerIds() {
+    return triggerIds;
+  }
+
+  /**
+   * Sets the ids of registered Triggersound Fingerprint Data.
+   *
+   * @param triggerIds the list of trigger ids to set
+   */
+  public void setTriggerIds(List<String> triggerIds) {
+    this.triggerIds = triggerIds;
+  }
+
   /**
    * To String.
    *
@@ -118,6 +216,9 @@ public class EvaluateAudioStreamEntry {
     sb.append("class EvaluateAudioStreamEntry {\n");
     sb.append("    \"audioData\": ").append('"').append(getAudioData()).append("\",\n");
     sb.append("    \"dataFingerprint\": ").append('"').append(getDataFingerprint()).append("\",\n");
+    sb.append("    \"dataFingerprints\": ").append(getDataFingerprints()).append(",\n");
+    sb.append("    \"triggerId\": ").append('"').append(getTriggerId()).append("\",\n");
+    sb.append("    \"triggerIds\": ").append(getTriggerIds()).append(",\n");
     sb.append("}\n");
     return sb.toString();
   }
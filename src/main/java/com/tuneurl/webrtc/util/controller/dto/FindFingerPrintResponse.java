@@ -39,8 +39,12 @@ import java.util.List;
  *
  * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
  *
+ * <ul>
+ *   <li>v1.1 added fingerPrints, every trigger found in the clip
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.1
  */
 public class FindFingerPrintResponse {
 
@@ -68,6 +72,18 @@ public class FindFingerPrintResponse {
   @JsonProperty("fingerPrint")
   private FingerprintCompareResponse fingerPrint;
 
+  /**
+   * Every FingerprintCompareResponse found, in offset order; fingerPrint is the first of them.
+   *
+   * <p>It can be any value.
+   *
+   * <p>It has both getter and setter.
+   *
+   * <p>It is used in setFingerPrints(), getFingerPrints().
+   */
+  @JsonProperty("fingerPrints")
+  private List<FingerprintCompareResponse> fingerPrints;
+
   /** Default constructor for FindFingerPrintResponse class. */
   public FindFingerPrintResponse() {
     // does nothing.
@@ -109,6 +125,24 @@ public class FindFingerPrintResponse {
     this.fingerPrint = fingerPrint;
   }
 
+  /**
+   * Retrieves every FingerprintCompareResponse found.
+   *
+   * @return the list of FingerprintCompareResponse
+   */
+  public List<FingerprintCompareResponse> getFingerPrints() {
+    return fingerPrints;
+  }
+
+  /**
+   * Sets every FingerprintCompareResponse found.
+   *
+   * @param fingerPrints the list of FingerprintCompareResponse to set
+   */
+  public void setFingerPrints(List<FingerprintCompareResponse> fingerPrints) {
+    this.fingerPrints = fingerPrints;
+  }
+
   /**
    * To String.
    *
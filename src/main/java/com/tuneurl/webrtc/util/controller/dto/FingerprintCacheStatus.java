@@ -0,0 +1,234 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The DTO to hold the counters of the in-process cache of the one-second responses.
+ *
+ * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
+ *
+ * <ul>
+ *   <li>v1.1 added the windows reused from the previous request of each stream
+ *   <li>v1.2 added the Redis tier
+ * </ul>
+ *
+ * @version 1.2
+ */
+public class FingerprintCacheStatus {
+
+  /** False when fingerprint.cache.enabled is false. */
+  @JsonProperty("enabled")
+  private boolean enabled;
+
+  /** Responses cached. */
+  @JsonProperty("entries")
+  private int entries;
+
+  /** Estimated heap bytes of the cached responses. */
+  @JsonProperty("weightBytes")
+  private long weightBytes;
+
+  /** fingerprint.cache.max.bytes. */
+  @JsonProperty("maximumBytes")
+  private long maximumBytes;
+
+  /** Requests answered from the cache since startup. */
+  @JsonProperty("hits")
+  private long hits;
+
+  /** Requests fingerprinted since startup. */
+  @JsonProperty("misses")
+  private long misses;
+
+  /** Responses evicted, or not admitted, for want of room. */
+  @JsonProperty("evictions")
+  private long evictions;
+
+  /** Responses dropped after fingerprint.cache.ttl.millis. */
+  @JsonProperty("expirations")
+  private long expirations;
+
+  /** Streams whose last windows are kept. */
+  @JsonProperty("streams")
+  private int streams;
+
+  /** Windows taken from the previous request of their stream since startup. */
+  @JsonProperty("reusedWindows")
+  private long reusedWindows;
+
+  /** Windows computed and kept for the next request of their stream since startup. */
+  @JsonProperty("computedWindows")
+  private long computedWindows;
+
+  /** False when fingerprint.cache.redis.enabled is false. */
+  @JsonProperty("redisEnabled")
+  private boolean redisEnabled;
+
+  /** Requests missing the in-process cache answered from Redis since startup. */
+  @JsonProperty("redisHits")
+  private long redisHits;
+
+  /** Requests missing the in-process cache and Redis since startup. */
+  @JsonProperty("redisMisses")
+  private long redisMisses;
+
+  /** Responses not written to Redis, its write queue being full, since startup. */
+  @JsonProperty("redisDroppedWrites")
+  private long redisDroppedWrites;
+
+  /** Default constructor. */
+  public FingerprintCacheStatus() {
+    // Does nothing.
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getEntries() {
+    return entries;
+  }
+
+  public void setEntries(int entries) {
+    this.entries = entries;
+  }
+
+  public long getWeightBytes() {
+    return weightBytes;
+  }
+
+  public void setWeightBytes(long weightBytes) {
+    this.weightBytes = weightBytes;
+  }
+
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  public void setMaximumBytes(long maximumBytes) {
+    this.maximumBytes = maximumBytes;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public void setHits(long hits) {
+    this.hits = hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public void setMisses(long misses) {
+    this.misses = misses;
+  }
+
+  public long getEvictions() {
+    return evictions;
+  }
+
+  public void setEvictions(long evictions) {
+    this.evictions = evictions;
+  }
+
+  public long getExpirations() {
+    return expirations;
+  }
+
+  public void setExpirations(long expirations) {
+    this.expirations = expirations;
+  }
+
+  public int getStreams() {
+    return streams;
+  }
+
+  public void setStreams(int streams) {
+    this.streams = streams;
+  }
+
+  public long getReusedWindows() {
+    return reusedWindows;
+  }
+
+  public void setReusedWindows(long reusedWindows) {
+    this.reusedWindows = reusedWindows;
+  }
+
+  public long getComputedWindows() {
+    return computedWindows;
+  }
+
+  public void setComputedWindows(long computedWindows) {
+    this.computedWindows = computedWindows;
+  }
+
+  public boolean isRedisEnabled() {
+    return redisEnabled;
+  }
+
+  public void setRedisEnabled(boolean redisEnabled) {
+    this.redisEnabled = redisEnabled;
+  }
+
+  public long getRedisHits() {
+    return redisHits;
+  }
+
+  public void setRedisHits(long redisHits) {
+    this.redisHits = redisHits;
+  }
+
+  public long getRedisMisses() {
+    return redisMisses;
+  }
+
+  public void setRedisMisses(long redisMisses) {
+    this.redisMisses = redisMisses;
+  }
+
+  public long getRedisDroppedWrites() {
+    return redisDroppedWrites;
+  }
+
+  public void setRedisDroppedWrites(long redisDroppedWrites) {
+    this.redisDroppedWrites = redisDroppedWrites;
+  }
+}
@@ -0,0 +1,260 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.List;
+
+/**
+ * The DTO to hold the load of the shared fingerprint executor.
+ *
+ * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
+ *
+ * <ul>
+ *   <li>v1.1 added the interactive lane, the per-tenant limits and tenants
+ *   <li>v1.2 added the adaptive window parallelism and its inputs
+ *   <li>v1.3 added oneSecondCache
+ * </ul>
+ *
+ * @version 1.3
+ */
+public class FingerprintExecutorStatus {
+
+  /** Number of worker threads. */
+  @JsonProperty("poolSize")
+  private int poolSize;
+
+  /** Tasks admitted beyond the busy workers before requests are rejected. */
+  @JsonProperty("queueCapacity")
+  private int queueCapacity;
+
+  /** Tasks waiting for a worker. */
+  @JsonProperty("queueDepth")
+  private int queueDepth;
+
+  /** Workers running a task. */
+  @JsonProperty("activeWorkers")
+  private int activeWorkers;
+
+  /** Requests rejected with 429 since startup. */
+  @JsonProperty("rejectedRequests")
+  private long rejectedRequests;
+
+  /** Tasks completed since startup. */
+  @JsonProperty("completedTasks")
+  private long completedTasks;
+
+  /** Tasks of interactive requests that may be admitted, 0 when there is no interactive lane. */
+  @JsonProperty("interactiveCapacity")
+  private int interactiveCapacity;
+
+  /** Interactive tasks waiting for a worker, part of queueDepth. */
+  @JsonProperty("interactiveQueueDepth")
+  private int interactiveQueueDepth;
+
+  /** Tasks one tenant may have admitted outside the interactive lane. */
+  @JsonProperty("tenantQueueLimit")
+  private int tenantQueueLimit;
+
+  /** Tasks one tenant may have running, 0 for no limit. */
+  @JsonProperty("tenantActiveLimit")
+  private int tenantActiveLimit;
+
+  /** Load of each SDK client. */
+  @JsonProperty("tenants")
+  private List<FingerprintTenantStatus> tenants;
+
+  /** Windows one request may have queued at once, 0 when not adaptive. */
+  @JsonProperty("windowParallelism")
+  private int windowParallelism;
+
+  /** Moving average of the time a task waits for a worker. */
+  @JsonProperty("queueWaitMillis")
+  private double queueWaitMillis;
+
+  /** Moving average of the time a task runs. */
+  @JsonProperty("serviceTimeMillis")
+  private double serviceTimeMillis;
+
+  /** p99 latency of the recent one-second requests. */
+  @JsonProperty("latencyP99Millis")
+  private long latencyP99Millis;
+
+  /** System CPU load, 0 to 1, read by the last adjustment of the limit; negative when unknown. */
+  @JsonProperty("cpuLoad")
+  private double cpuLoad;
+
+  /** Counters of the cache of the one-second responses. */
+  @JsonProperty("oneSecondCache")
+  private FingerprintCacheStatus oneSecondCache;
+
+  /** Default constructor. */
+  public FingerprintExecutorStatus() {
+    // Does nothing.
+  }
+
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  public void setPoolSize(int poolSize) {
+    this.poolSize = poolSize;
+  }
+
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    this.queueCapacity = queueCapacity;
+  }
+
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+
+  public void setQueueDepth(int queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  public int getActiveWorkers() {
+    return activeWorkers;
+  }
+
+  public void setActiveWorkers(int activeWorkers) {
+    this.activeWorkers = activeWorkers;
+  }
+
+  public long getRejectedRequests() {
+    return rejectedRequests;
+  }
+
+  public void setRejectedRequests(long rejectedRequests) {
+    this.rejectedRequests = rejectedRequests;
+  }
+
+  public long getCompletedTasks() {
+    return completedTasks;
+  }
+
+  public void setCompletedTasks(long completedTasks) {
+    this.completedTasks = completedTasks;
+  }
+
+  public int getInteractiveCapacity() {
+    return interactiveCapacity;
+  }
+
+  public void setInteractiveCapacity(int interactiveCapacity) {
+    this.interactiveCapacity = interactiveCapacity;
+  }
+
+  public int getInteractiveQueueDepth() {
+    return interactiveQueueDepth;
+  }
+
+  public void setInteractiveQueueDepth(int interactiveQueueDepth) {
+    this.interactiveQueueDepth = interactiveQueueDepth;
+  }
+
+  public int getTenantQueueLimit() {
+    return tenantQueueLimit;
+  }
+
+  public void setTenantQueueLimit(int tenantQueueLimit) {
+    this.tenantQueueLimit = tenantQueueLimit;
+  }
+
+  public int getTenantActiveLimit() {
+    return tenantActiveLimit;
+  }
+
+  public void setTenantActiveLimit(int tenantActiveLimit) {
+    this.tenantActiveLimit = tenantActiveLimit;
+  }
+
+  public List<FingerprintTenantStatus> getTenants() {
+    return tenants;
+  }
+
+  public void setTenants(List<FingerprintTenantStatus> tenants) {
+    this.tenants = tenants;
+  }
+
+  public int getWindowParallelism() {
+    return windowParallelism;
+  }
+
+  public void setWindowParallelism(int windowParallelism) {
+    this.windowParallelism = windowParallelism;
+  }
+
+  public double getQueueWaitMillis() {
+    return queueWaitMillis;
+  }
+
+  public void setQueueWaitMillis(double queueWaitMillis) {
+    this.queueWaitMillis = queueWaitMillis;
+  }
+
+  public double getServiceTimeMillis() {
+    return serviceTimeMillis;
+  }
+
+  public void setServiceTimeMillis(double serviceTimeMillis) {
+    this.serviceTimeMillis = serviceTimeMillis;
+  }
+
+  public long getLatencyP99Millis() {
+    return latencyP99Millis;
+  }
+
+  public void setLatencyP99Millis(long latencyP99Millis) {
+    this.latencyP99Millis = latencyP99Millis;
+  }
+
+  public double getCpuLoad() {
+    return cpuLoad;
+  }
+
+  public void setCpuLoad(double cpuLoad) {
+    this.cpuLoad = cpuLoad;
+  }
+
+  public FingerprintCacheStatus getOneSecondCache() {
+    return oneSecondCache;
+  }
+
+  public void setOneSecondCache(FingerprintCacheStatus oneSecondCache) {
+    this.oneSecondCache = oneSecondCache;
+  }
+}
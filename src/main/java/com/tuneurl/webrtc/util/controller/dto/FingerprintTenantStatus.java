@@ -0,0 +1,121 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The DTO to hold the fingerprint tasks of one SDK client in the shared executor.
+ *
+ * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
+ *
+ * @version 1.0
+ */
+public class FingerprintTenantStatus {
+
+  /** The SDK client, LdapInfo UUID or x-sdk-client-id, empty when unknown. */
+  @JsonProperty("tenant")
+  private String tenant;
+
+  /** Tasks waiting for a worker. */
+  @JsonProperty("queuedTasks")
+  private int queuedTasks;
+
+  /** Tasks running. */
+  @JsonProperty("activeTasks")
+  private int activeTasks;
+
+  /** Tasks admitted and not done yet, queued or running. */
+  @JsonProperty("admittedTasks")
+  private int admittedTasks;
+
+  /** Tasks completed since the client was first seen. */
+  @JsonProperty("completedTasks")
+  private long completedTasks;
+
+  /** Requests rejected with 429 since the client was first seen. */
+  @JsonProperty("rejectedRequests")
+  private long rejectedRequests;
+
+  /** Default constructor. */
+  public FingerprintTenantStatus() {
+    // Does nothing.
+  }
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  public void setTenant(String tenant) {
+    this.tenant = tenant;
+  }
+
+  public int getQueuedTasks() {
+    return queuedTasks;
+  }
+
+  public void setQueuedTasks(int queuedTasks) {
+    this.queuedTasks = queuedTasks;
+  }
+
+  public int getActiveTasks() {
+    return activeTasks;
+  }
+
+  public void setActiveTasks(int activeTasks) {
+    this.activeTasks = activeTasks;
+  }
+
+  public int getAdmittedTasks() {
+    return admittedTasks;
+  }
+
+  public void setAdmittedTasks(int admittedTasks) {
+    this.admittedTasks = admittedTasks;
+  }
+
+  public long getCompletedTasks() {
+    return completedTasks;
+  }
+
+  public void setCompletedTasks(long completedTasks) {
+    this.completedTasks = completedTasks;
+  }
+
+  public long getRejectedRequests() {
+    return rejectedRequests;
+  }
+
+  public void setRejectedRequests(long rejectedRequests) {
+    this.rejectedRequests = rejectedRequests;
+  }
+}
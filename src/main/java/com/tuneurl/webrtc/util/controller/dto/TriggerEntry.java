@@ -0,0 +1,109 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The DTO to register a triggersound descriptor and to return its trigger id.
+ *
+ * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
+ *
+ * @version 1.1
+ */
+public class TriggerEntry {
+
+  /** Hex of the first 16 bytes of the SHA-256 of the UTF-8 dataFingerprint, in the response. */
+  @JsonProperty("triggerId")
+  private String triggerId;
+
+  /** The Triggersound Fingerprint Data, in the request. */
+  @JsonProperty("dataFingerprint")
+  private String dataFingerprint;
+
+  /** Blocks of the parsed descriptor, in the response. */
+  @JsonProperty("blockCount")
+  private Integer blockCount;
+
+  /** Maximum amplitude of the parsed descriptor, in the response. */
+  @JsonProperty("max")
+  private Integer max;
+
+  /** Seconds the registration is kept after the last request using its id, in the response. */
+  @JsonProperty("ttlSeconds")
+  private Long ttlSeconds;
+
+  /** Default constructor. */
+  public TriggerEntry() {
+    // Does nothing.
+  }
+
+  public String getTriggerId() {
+    return triggerId;
+  }
+
+  public void setTriggerId(String triggerId) {
+    this.triggerId = triggerId;
+  }
+
+  public String getDataFingerprint() {
+    return dataFingerprint;
+  }
+
+  public void setDataFingerprint(String dataFingerprint) {
+    this.dataFingerprint = dataFingerprint;
+  }
+
+  public Integer getBlockCount() {
+    return blockCount;
+  }
+
+  public void setBlockCount(Integer blockCount) {
+    this.blockCount = blockCount;
+  }
+
+  public Integer getMax() {
+    return max;
+  }
+
+  public void setMax(Integer max) {
+    this.max = max;
+  }
+
+  public Long getTtlSeconds() {
+    return ttlSeconds;
+  }
+
+  public void setTtlSeconds(Long ttlSeconds) {
+    this.ttlSeconds = ttlSeconds;
+  }
+}
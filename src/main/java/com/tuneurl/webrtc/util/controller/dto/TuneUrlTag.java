@@ -39,8 +39,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  *
  * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
  *
+ * <ul>
+ *   <li>v1.1 added triggerIndex
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.1
  */
 public class TuneUrlTag {
 
@@ -140,6 +144,18 @@ public class TuneUrlTag {
   @JsonProperty("dataPosition")
   private Long dataPosition;
 
+  /**
+   * The index in EvaluateAudioStreamEntry.dataFingerprints of the trigger found.
+   *
+   * <p>It can be any value, null for a single trigger.
+   *
+   * <p>It has both getter and setter.
+   *
+   * <p>It is used in setTriggerIndex(), getTriggerIndex().
+   */
+  @JsonProperty("triggerIndex")
+  private Long triggerIndex;
+
   /** Default constructor for TuneUrlTag class. */
   public TuneUrlTag() {
     // does nothing.
@@ -289,6 +305,24 @@ public class TuneUrlTag {
     this.dataPosition = dataPosition;
   }
 
+  /**
+   * Retrieves the index of the trigger found.
+   *
+   * @return the index of the trigger found
+   */
+  public Long getTriggerIndex() {
+    return triggerIndex;
+  }
+
+  /**
+   * Sets the index of the trigger found.
+   *
+   * @param triggerIndex the index of the trigger found to set
+   */
+  public void setTriggerIndex(Long triggerIndex) {
+    this.triggerIndex = triggerIndex;
+  }
+
   public void setFingerprintCompareResponseData(
       FingerprintCompareResponse fcr, boolean shouldSetOffset) {
     if (shouldSetOffset) {
@@ -328,7 +362,8 @@ public class TuneUrlTag {
     sb.append("    \"info\": ").append('"').append(getInfo()).append("\",\n");
     sb.append("    \"similarity\": ").append('"').append(getSimilarity()).append("\",\n");
     sb.append("    \"index\": ").append(getIndex()).append(",\n");
-    sb.append("    \"dataPosition\": ").append(getDataPosition()).append("\n");
+    sb.append("    \"dataPosition\": ").append(getDataPosition()).append(",\n");
+    sb.append("    \"triggerIndex\": ").append(getTriggerIndex()).append("\n");
     sb.append("}\n");
     return sb.toString();
   }
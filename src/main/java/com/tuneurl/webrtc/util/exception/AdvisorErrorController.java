@@ -40,6 +40,7 @@ import com.tuneurl.webrtc.util.controller.dto.Error;
 import com.tuneurl.webrtc.util.util.CommonUtil;
 import com.tuneurl.webrtc.util.value.Constants;
 import java.time.temporal.UnsupportedTemporalTypeException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -55,9 +56,10 @@ import org.springframework.web.multipart.MultipartException;
  * <li>1.2 Added handleUnsupportedTemporalTypeException
  * <li>1.13 Added call to CommonUtil.getStringEx() to limit error messages to 2048 {@link
  *     com.tuneurl.webrtc.util.value.Constants#ERROR_MESSAGES_LENGTH}.
+ * <li>1.14 handleBaseServiceException sets the Retry-After header when the exception has one.
  *
  * @author albonteddy@gmail.com
- * @version 1.13
+ * @version 1.14
  */
 @ControllerAdvice
 public class AdvisorErrorController {
@@ -155,6 +157,11 @@ public class AdvisorErrorController {
     HttpStatus status = ex.getHttpStatus();
     if (status == null) status = BAD_REQUEST;
     Error error = new Error(status, CommonUtil.getStringEx(ex.getMessage()));
+    if (ex.getRetryAfter() != null) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfter()));
+      return new ResponseEntity<>(error, headers, status);
+    }
     return new ResponseEntity<>(error, status);
   }
 
@@ -42,8 +42,12 @@ import org.springframework.http.HttpStatus;
  * they can be thrown by the execution of the method or constructor and propagate outside the method
  * or constructor boundary.
  *
+ * <ul>
+ *   <li>v1.1 added retryAfter for the Retry-After header of 429 and 503 responses
+ * </ul>
+ *
  * @author albonteddy@gmail.com
- * @version 1.0
+ * @version 1.1
  */
 public class BaseServiceException extends RuntimeException {
   /** The Error message. */
@@ -52,6 +56,9 @@ public class BaseServiceException extends RuntimeException {
   /** The Error HTTP status. */
   private final HttpStatus httpStatus;
 
+  /** Seconds before the request may be retried, or null. */
+  private final Long retryAfter;
+
   /**
    * Retrieve the Error message.
    *
@@ -71,6 +78,15 @@ public class BaseServiceException extends RuntimeException {
     return this.httpStatus;
   }
 
+  /**
+   * Retrieve the seconds before the request may be retried.
+   *
+   * @return Long or null when the response has no Retry-After header
+   */
+  public Long getRetryAfter() {
+    return this.retryAfter;
+  }
+
   /**
    * Constructor with two input.
    *
@@ -78,9 +94,22 @@ public class BaseServiceException extends RuntimeException {
    * @param httpStatus The HTTP status to set.
    */
   public BaseServiceException(final String message, final HttpStatus httpStatus) {
+    this(message, httpStatus, null);
+  }
+
+  /**
+   * Constructor with three input.
+   *
+   * @param message The Error message to set.
+   * @param httpStatus The HTTP status to set.
+   * @param retryAfter Long seconds for the Retry-After header, or null.
+   */
+  public BaseServiceException(
+      final String message, final HttpStatus httpStatus, final Long retryAfter) {
     super(message);
     this.message = message;
     this.httpStatus = httpStatus;
+    this.retryAfter = retryAfter;
   }
 
   /**
@@ -0,0 +1,191 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.security;
+
+import com.tuneurl.webrtc.util.controller.dto.ClientCredential;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The ClientCredential of the JWTs verified in the last ttlSeconds, so the next requests with the
+ * same JWT skip the signature check and the SdkUser, LdapInfo and SessionData queries.
+ *
+ * <p>Entries are keyed by the SHA-256 of the JWT. They are dropped on logout and when their
+ * SdkUser or LdapInfo is saved, updated or deleted; the ttl bounds how long the changes made by
+ * another instance go unseen.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @version 1.0
+ */
+@Component
+public class CredentialCache {
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final LongSupplier clock;
+
+  private volatile boolean enabled = true;
+  private volatile long ttlNanos = 60_000_000_000L;
+  private volatile int maxEntries = 10000;
+
+  /** Default constructor. */
+  public CredentialCache() {
+    this(System::nanoTime);
+  }
+
+  CredentialCache(final LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Configure the cache.
+   *
+   * @param enabled boolean false to verify the JWT and read the database on every request
+   * @param ttlSeconds long seconds a credential is reused
+   * @param maxEntries int credentials kept at most
+   */
+  @Autowired
+  public void configure(
+      @Value("${auth.credential.cache.enabled:true}") final boolean enabled,
+      @Value("${auth.credential.cache.ttl.seconds:60}") final long ttlSeconds,
+      @Value("${auth.credential.cache.size:10000}") final int maxEntries) {
+    this.enabled = enabled && ttlSeconds > 0L;
+    this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    this.maxEntries = Math.max(1, maxEntries);
+    entries.clear();
+  }
+
+  /**
+   * The credential of a JWT verified less than ttlSeconds ago.
+   *
+   * @param token String the JWT
+   * @return ClientCredential or null
+   */
+  public ClientCredential get(final String token) {
+    if (!enabled || token == null) return null;
+    String key = key(token);
+    Entry entry = entries.get(key);
+    if (entry == null) return null;
+    if (clock.getAsLong() - entry.expiresAt >= 0L) {
+      entries.remove(key, entry);
+      return null;
+    }
+    return entry.credential;
+  }
+
+  /**
+   * Keep the credential of a verified JWT.
+   *
+   * @param token String the JWT
+   * @param credential ClientCredential
+   */
+  public void put(final String token, final ClientCredential credential) {
+    if (!enabled || token == null) return;
+    long now = clock.getAsLong();
+    if (entries.size() >= maxEntries) {
+      entries.values().removeIf(entry -> now - entry.expiresAt >= 0L);
+      // Still full: every JWT is verified again once.
+      if (entries.size() >= maxEntries) entries.clear();
+    }
+    entries.put(key(token), new Entry(credential, now + ttlNanos));
+  }
+
+  /**
+   * Drop the credential of a JWT, on logout.
+   *
+   * @param token String the JWT
+   */
+  public void invalidateToken(final String token) {
+    if (token != null) entries.remove(key(token));
+  }
+
+  /**
+   * Drop the credentials of a SdkUser.
+   *
+   * @param sdkUserId Long
+   */
+  public void invalidateSdkUser(final Long sdkUserId) {
+    if (sdkUserId == null) return;
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      ClientCredential credential = iterator.next().credential;
+      if (credential.getSdkUser() != null && sdkUserId.equals(credential.getSdkUser().getId())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Drop the credentials of the users of a LdapInfo.
+   *
+   * @param ldapId Long
+   */
+  public void invalidateLdapInfo(final Long ldapId) {
+    if (ldapId == null) return;
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      ClientCredential credential = iterator.next().credential;
+      if (credential.getLdapInfo() != null && ldapId.equals(credential.getLdapInfo().getId())) {
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Number of credentials kept.
+   *
+   * @return int
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  private static String key(final String token) {
+    return DigestUtils.sha256Hex(token);
+  }
+
+  private static final class Entry {
+    private final ClientCredential credential;
+    private final long expiresAt;
+
+    Entry(final ClientCredential credential, final long expiresAt) {
+      this.credential = credential;
+      this.expiresAt = expiresAt;
+    }
+  }
+}
@@ -14,6 +14,12 @@ public interface AudioStreamService {
   public String getSaveAudioFilesFolder(final String subDir);
 
   public EvaluateAudioStreamResponse evaluateAudioStream(
+      AudioDataEntry audioDataEntry,
+      EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      String signature,
+      String tenant);
+
+  public EvaluateAudioStreamResponse evaluateAudioStreamTriggers(
       AudioDataEntry audioDataEntry,
       EvaluateAudioStreamEntry evaluateAudioStreamEntry,
       String signature);
@@ -21,7 +27,8 @@ public interface AudioStreamService {
   public FindFingerPrintResponse findFingerPrintsAudioStream(
       AudioDataEntry audioDataEntry,
       EvaluateAudioStreamEntry evaluateAudioStreamEntry,
-      String signature);
+      String signature,
+      String tenant);
 
   public AudioStreamDataResponse runWebRtcScript(
       final String signature,
@@ -33,7 +40,19 @@ public interface AudioStreamService {
       throws BaseServiceException;
 
   public EvaluateAudioStreamResponse evaluateOneSecondAudioStream(
-      long duration, Long dataOffset, short[] data, Long fingerprintRate, String dataFingerprint);
+      long duration,
+      Long dataOffset,
+      short[] data,
+      Long fingerprintRate,
+      String dataFingerprint,
+      String url,
+      String tenant);
+
+  public FingerprintCacheStatus getOneSecondCacheStatus();
+
+  public TriggerEntry registerTrigger(TriggerEntry triggerEntry, String tenant, String signature);
+
+  public TriggerEntry unregisterTrigger(TriggerEntry triggerEntry, String tenant, String signature);
 
   public LinkedList<FingerprintThreadCollector> parallelFingerprintCollect(
       short[] data,
@@ -0,0 +1,130 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintExecutorStatus;
+import com.tuneurl.webrtc.util.exception.BaseServiceException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import reactor.core.publisher.Mono;
+
+/**
+ * FingerprintExecutionService interface, the one worker pool every fingerprint window of every
+ * request runs on.
+ *
+ * <ul>
+ *   <li>v1.1 added submitAll(List, long)
+ *   <li>v1.2 added submitAll(String, boolean, List, long), fair between SDK clients
+ *   <li>v1.3 added getWindowParallelism() and recordRequestLatency()
+ *   <li>v1.4 added schedule(), the bounded scheduler of the reactive endpoints
+ *   <li>v1.5 schedule() takes the request bytes, a cancelled request is interrupted
+ * </ul>
+ *
+ * @version 1.5
+ */
+public interface FingerprintExecutionService {
+
+  /**
+   * Queue the tasks of one request, all of them or none.
+   *
+   * @param tasks List of Callable
+   * @return List of Future, in the order of tasks
+   * @throws BaseServiceException 429 with Retry-After when the queue has no room for the tasks
+   */
+  public <T> List<Future<T>> submitAll(List<? extends Callable<T>> tasks)
+      throws BaseServiceException;
+
+  /**
+   * Queue the tasks of one request, all of them or none, waiting up to timeoutMillis for room.
+   * Used for the later batches of a request already admitted.
+   *
+   * @param tasks List of Callable
+   * @param timeoutMillis long milliseconds to wait for room, 0 to reject at once
+   * @return List of Future, in the order of tasks
+   * @throws BaseServiceException 429 with Retry-After when there is still no room after the wait
+   */
+  public <T> List<Future<T>> submitAll(List<? extends Callable<T>> tasks, long timeoutMillis)
+      throws BaseServiceException;
+
+  /**
+   * Queue the tasks of one request of an SDK client, all of them or none, waiting up to
+   * timeoutMillis for room. The workers share their time fairly between the clients, interactive
+   * tasks are taken before the others.
+   *
+   * @param tenant String the SDK client, see BaseController.getFingerprintTenant()
+   * @param interactive boolean true for the latency-sensitive one-second requests
+   * @param tasks List of Callable
+   * @param timeoutMillis long milliseconds to wait for room, 0 to reject at once
+   * @return List of Future, in the order of tasks
+   * @throws BaseServiceException 429 with Retry-After when there is still no room after the wait
+   */
+  public <T> List<Future<T>> submitAll(
+      String tenant, boolean interactive, List<? extends Callable<T>> tasks, long timeoutMillis)
+      throws BaseServiceException;
+
+  /**
+   * Windows one request should have queued at once under the current load.
+   *
+   * @param maximum int the configured batch size
+   * @return int windows, from 1 to maximum
+   */
+  public int getWindowParallelism(int maximum);
+
+  /**
+   * Latency of a one-second request, checked against the latency objective of the pool.
+   *
+   * @param millis long
+   */
+  public void recordRequestLatency(long millis);
+
+  /**
+   * Run a request on the bounded request scheduler once the Mono is subscribed, so the servlet
+   * thread that took the request is free while its windows are fingerprinted. Cancelling the
+   * subscription interrupts the request, which drops its windows not started yet.
+   *
+   * @param bytes long size of the request body, held until the request is done
+   * @param request Supplier the request, it may submit windows and wait for them
+   * @return Mono of the result of request, a 429 BaseServiceException when the scheduler has
+   *     fingerprint.reactive.queue requests waiting already or the admitted requests hold
+   *     fingerprint.reactive.queue.bytes
+   */
+  public <T> Mono<T> schedule(long bytes, Supplier<T> request);
+
+  /**
+   * Queue depth, busy workers and rejections of the pool.
+   *
+   * @return FingerprintExecutorStatus
+   */
+  public FingerprintExecutorStatus getStatus();
+}
@@ -0,0 +1,238 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * AIMD controller of the windows one request may have queued at once (the batch size of
+ * FingerprintWindowStream).
+ *
+ * <p>Every ADJUST_MILLIS the limit is cut by DECREASE when the pool is congested: the p99
+ * latency of the recent one-second requests is above sloMillis, the CPU load is above
+ * CPU_HIGH, or, as in TCP Vegas, the tasks wait in the queue longer than QUEUE_RATIO times they
+ * run. Otherwise it grows by one window while the CPU has room. A small limit lets more requests
+ * share the workers and keeps the queue short, a large one lets a lone request use every core.
+ *
+ * <p>The CPU load is the one of the system since the previous adjustment, as the HotSpot
+ * OperatingSystemMXBean measures it; the load average, damped over a minute, is only used on the
+ * JVMs without it.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @version 1.1
+ */
+final class AdaptiveParallelism {
+
+  /** Milliseconds between two changes of the limit. */
+  static final long ADJUST_MILLIS = 500L;
+
+  /** Multiplicative decrease. */
+  static final double DECREASE = 0.7;
+
+  /** CPU load above which the limit decreases, below CPU_LOW it may increase. */
+  static final double CPU_HIGH = 0.9;
+
+  static final double CPU_LOW = 0.75;
+
+  /** Queue wait over service time above which the queue is building up. */
+  static final double QUEUE_RATIO = 2.0;
+
+  /** Weight of a new sample in the moving averages. */
+  private static final double ALPHA = 0.1;
+
+  /** getCpuLoad() of com.sun.management.OperatingSystemMXBean, null on other JVMs. */
+  private static final Method SYSTEM_CPU_LOAD = findSystemCpuLoad();
+
+  private final int minimum;
+  private final int maximum;
+  private final long sloMillis;
+  private final DoubleSupplier cpuLoad;
+  private final LongSupplier clock;
+
+  /** Latencies of the last one-second requests, for the p99. */
+  private final long[] latencies = new long[256];
+
+  private int latencyCount;
+  private int latencyNext;
+  private double limit;
+  private double queueWaitMillis;
+  private double serviceMillis;
+  private double lastCpuLoad = -1.0;
+  private long lastAdjust;
+
+  /**
+   * Controller reading the system CPU load and the wall clock.
+   *
+   * @param minimum int smallest limit
+   * @param maximum int largest limit
+   * @param sloMillis long p99 latency target of the one-second requests
+   */
+  AdaptiveParallelism(final int minimum, final int maximum, final long sloMillis) {
+    this(
+        minimum,
+        maximum,
+        sloMillis,
+        AdaptiveParallelism::systemCpuLoad,
+        System::currentTimeMillis);
+  }
+
+  AdaptiveParallelism(
+      final int minimum,
+      final int maximum,
+      final long sloMillis,
+      final DoubleSupplier cpuLoad,
+      final LongSupplier clock) {
+    this.minimum = Math.max(1, minimum);
+    this.maximum = Math.max(this.minimum, maximum);
+    this.sloMillis = sloMillis;
+    this.cpuLoad = cpuLoad;
+    this.clock = clock;
+    this.limit = this.maximum;
+    this.lastAdjust = clock.getAsLong();
+  }
+
+  /**
+   * A task left the queue after waitMillis and ran serviceMillis.
+   *
+   * @param waitMillis double
+   * @param serviceMillis double
+   */
+  synchronized void recordTask(final double waitMillis, final double serviceMillis) {
+    this.queueWaitMillis += ALPHA * (waitMillis - this.queueWaitMillis);
+    this.serviceMillis += ALPHA * (serviceMillis - this.serviceMillis);
+  }
+
+  /**
+   * A one-second request took millis.
+   *
+   * @param millis long
+   */
+  synchronized void recordLatency(final long millis) {
+    latencies[latencyNext] = millis;
+    latencyNext = (latencyNext + 1) % latencies.length;
+    latencyCount = Math.min(latencyCount + 1, latencies.length);
+  }
+
+  /**
+   * The current limit, adjusted first when ADJUST_MILLIS passed.
+   *
+   * @return int windows
+   */
+  synchronized int getLimit() {
+    long now = clock.getAsLong();
+    if (now - lastAdjust >= ADJUST_MILLIS) {
+      lastAdjust = now;
+      adjust();
+    }
+    return (int) limit;
+  }
+
+  synchronized double getQueueWaitMillis() {
+    return queueWaitMillis;
+  }
+
+  synchronized double getServiceMillis() {
+    return serviceMillis;
+  }
+
+  /**
+   * p99 of the recent one-second requests.
+   *
+   * @return long milliseconds, 0 without requests
+   */
+  synchronized long getLatencyP99() {
+    if (latencyCount == 0) return 0L;
+    long[] sorted = Arrays.copyOf(latencies, latencyCount);
+    Arrays.sort(sorted);
+    return sorted[(int) Math.ceil(0.99 * latencyCount) - 1];
+  }
+
+  /**
+   * CPU load read by the last adjustment; reading it again would shorten the next interval.
+   *
+   * @return double 0 to 1, negative when unknown
+   */
+  synchronized double getCpuLoad() {
+    return lastCpuLoad;
+  }
+
+  private void adjust() {
+    double cpu = cpuLoad.getAsDouble();
+    lastCpuLoad = cpu;
+    boolean congested =
+        getLatencyP99() > sloMillis
+            || cpu > CPU_HIGH
+            || queueWaitMillis > QUEUE_RATIO * serviceMillis;
+    if (congested) {
+      limit = Math.max(minimum, limit * DECREASE);
+      // The next decision is taken on the requests served with the new limit.
+      latencyCount = 0;
+    } else if (cpu < CPU_LOW) {
+      limit = Math.min(maximum, limit + 1.0);
+    }
+  }
+
+  /** System CPU load since the previous call, else the load average over the processors. */
+  private static double systemCpuLoad() {
+    OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (SYSTEM_CPU_LOAD != null) {
+      try {
+        double load = ((Number) SYSTEM_CPU_LOAD.invoke(os)).doubleValue();
+        if (load >= 0.0) return load;
+      } catch (ReflectiveOperationException | RuntimeException ex) {
+        // Fall back to the load average.
+      }
+    }
+    double load = os.getSystemLoadAverage();
+    return load < 0.0 ? -1.0 : load / os.getAvailableProcessors();
+  }
+
+  private static Method findSystemCpuLoad() {
+    // getCpuLoad() since JDK 14, getSystemCpuLoad() before.
+    for (String name : new String[] {"getCpuLoad", "getSystemCpuLoad"}) {
+      try {
+        Method method = Class.forName("com.sun.management.OperatingSystemMXBean").getMethod(name);
+        method.invoke(ManagementFactory.getOperatingSystemMXBean());
+        return method;
+      } catch (ReflectiveOperationException | RuntimeException ex) {
+        // Try the next one.
+      }
+    }
+    return null;
+  }
+}
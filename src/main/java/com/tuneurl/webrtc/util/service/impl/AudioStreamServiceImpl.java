@@ -32,22 +32,39 @@
 package com.tuneurl.webrtc.util.service.impl;
 
 import com.albon.auth.util.Helper;
+import com.tuneurl.webrtc.util.config.RedisInstance;
 import com.tuneurl.webrtc.util.controller.dto.*;
 import com.tuneurl.webrtc.util.exception.BaseServiceException;
 import com.tuneurl.webrtc.util.model.AudioStreamDatabase;
 import com.tuneurl.webrtc.util.service.AudioStreamDatabaseService;
 import com.tuneurl.webrtc.util.service.AudioStreamService;
+import com.tuneurl.webrtc.util.service.FingerprintExecutionService;
 import com.tuneurl.webrtc.util.util.*;
 import com.tuneurl.webrtc.util.util.fingerprint.FingerprintExternals;
 import com.tuneurl.webrtc.util.util.fingerprint.FingerprintThreadCollector;
 import com.tuneurl.webrtc.util.util.fingerprint.FingerprintUtility;
+import com.tuneurl.webrtc.util.util.fingerprint.FingerprintWorkerPool;
+import com.tuneurl.webrtc.util.util.fingerprint.LandmarkExtractor;
+import com.tuneurl.webrtc.util.util.fingerprint.NativeFingerprintEngine;
+import com.tuneurl.webrtc.util.util.fingerprint.SlidingSpectrogram;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerBatchCollector;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerDescriptor;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerRegistry;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerScanner;
 import com.tuneurl.webrtc.util.value.Constants;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
 import org.apache.logging.log4j.LogManager;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
@@ -62,14 +79,54 @@ public class AudioStreamServiceImpl implements AudioStreamService {
 
   private final AudioStreamDatabaseService audioStreamDatabaseService;
 
+  private final FingerprintExecutionService fingerprintExecutionService;
+
+  /** Triggersound descriptors kept parsed, shared with the windows of FingerprintUtility. */
+  private final TriggerRegistry triggerRegistry;
+
   @Value("${save.audio.files:/home/justin/audio}")
   private String saveAudioFiles;
 
   @Value("${audio.stream.url.prefix}")
   private String streamAudioUrlPrefix;
 
+  /** Windows queued at once per request, two batches at most. */
+  @Value("${fingerprint.evaluate.batch.windows:50}")
+  private int evaluateBatchWindows = 50;
+
+  /** Milliseconds a later batch waits for room before the request gets 429. */
+  @Value("${fingerprint.evaluate.batch.wait.millis:5000}")
+  private long evaluateBatchWaitMillis = 5000L;
+
+  /** Identical one-second requests in flight share one computation. */
+  @Value("${fingerprint.coalesce.enabled:true}")
+  private boolean coalesceEnabled = true;
+
   private final boolean isDebugOn = Constants.DEBUG_FINGERPRINTING;
 
+  private SingleFlight<OneSecondRequest, EvaluateAudioStreamResponse> oneSecondFlights =
+      new SingleFlight<OneSecondRequest, EvaluateAudioStreamResponse>(2000L, 64);
+
+  /** One-second responses kept by the content of their request. */
+  @Value("${fingerprint.cache.enabled:true}")
+  private boolean cacheEnabled = true;
+
+  private TinyLfuCache<OneSecondContent, CachedResponse> oneSecondCache =
+      newOneSecondCache(64L << 20, 600000L);
+
+  /** Shared tier of the one-second responses behind oneSecondCache, null when disabled. */
+  private RedisInstance redisCache;
+
+  private long redisTtlSeconds = 864000L;
+  private final AtomicLong redisHits = new AtomicLong();
+  private final AtomicLong redisMisses = new AtomicLong();
+
+  /** Windows of a one-second request reused by the next request of the same stream. */
+  @Value("${fingerprint.window.reuse.enabled:true}")
+  private boolean windowReuseEnabled = true;
+
+  private WindowResultStore windowResults = new WindowResultStore(10000, 2000, 60000L);
+
   private MessageLogger logger;
   private final TagsHelper tagsHelper = new TagsHelper();
 
@@ -84,15 +141,204 @@ public class AudioStreamServiceImpl implements AudioStreamService {
   protected FingerprintExternals fingerprintExternals =
       FingerprintUtility.getFingerprintInstance().getFingerprintExternals();
 
-  public AudioStreamServiceImpl(AudioStreamDatabaseService audioStreamDatabaseService) {
+  public AudioStreamServiceImpl(
+      AudioStreamDatabaseService audioStreamDatabaseService,
+      FingerprintExecutionService fingerprintExecutionService,
+      TriggerRegistry triggerRegistry) {
     setupMessageLogger();
     this.audioStreamDatabaseService = audioStreamDatabaseService;
+    this.fingerprintExecutionService = fingerprintExecutionService;
+    this.triggerRegistry = triggerRegistry;
+    FingerprintUtility.setTriggerRegistry(triggerRegistry);
+  }
+
+  /**
+   * Select the trigger comparison engine, java, native or external.
+   *
+   * @param mode String
+   */
+  @Value("${fingerprint.compare.mode:java}")
+  public void setFingerprintCompareMode(final String mode) {
+    FingerprintUtility.setCompareMode(mode);
+  }
+
+  /**
+   * Where libtuneurlfp.so is loaded from in the native compare mode.
+   *
+   * @param path String
+   */
+  @Value("${fingerprint.native.library:${save.audio.files:/home/justin/audio}/libtuneurlfp.so}")
+  public void setFingerprintNativeLibrary(final String path) {
+    NativeFingerprintEngine.configure(path);
+  }
+
+  /**
+   * Configure the pool of long-lived ./jni/fingerprintexec workers.
+   *
+   * @param poolSize int workers per pool, 0 to start one process per request
+   * @param timeoutMillis long milliseconds before a busy worker is killed and restarted
+   * @param healthCheckSeconds long seconds between pings of idle workers
+   */
+  @Autowired
+  public void setFingerprintWorkerPool(
+      @Value("${fingerprint.worker.pool.size:4}") final int poolSize,
+      @Value("${fingerprint.worker.timeout.millis:5000}") final long timeoutMillis,
+      @Value("${fingerprint.worker.health.check.seconds:30}") final long healthCheckSeconds) {
+    FingerprintWorkerPool.configure(poolSize, timeoutMillis, healthCheckSeconds);
+  }
+
+  /**
+   * Keep the response of a one-second request for the identical requests arriving just after it.
+   *
+   * @param memoMillis long milliseconds a response is kept, 0 to share only while computed
+   * @param memoEntries int responses kept at most
+   */
+  @Autowired
+  public void setOneSecondCoalescing(
+      @Value("${fingerprint.coalesce.memo.millis:2000}") final long memoMillis,
+      @Value("${fingerprint.coalesce.memo.entries:64}") final int memoEntries) {
+    this.oneSecondFlights =
+        new SingleFlight<OneSecondRequest, EvaluateAudioStreamResponse>(memoMillis, memoEntries);
+  }
+
+  /**
+   * Size the cache of the one-second responses.
+   *
+   * @param maxBytes long estimated heap bytes of the cached responses
+   * @param ttlMillis long milliseconds a response is kept, 0 for no expiration
+   */
+  @Autowired
+  public void setOneSecondCache(
+      @Value("${fingerprint.cache.max.bytes:67108864}") final long maxBytes,
+      @Value("${fingerprint.cache.ttl.millis:600000}") final long ttlMillis) {
+    this.oneSecondCache = newOneSecondCache(maxBytes, ttlMillis);
+  }
+
+  /**
+   * Size the store of the windows of the previous request of each stream.
+   *
+   * @param maxStreams int streams kept at most
+   * @param maxWindows int windows kept at most per stream, for all its listeners
+   * @param idleMillis long milliseconds after which a silent stream or a window is forgotten
+   */
+  @Autowired
+  public void setWindowResultStore(
+      @Value("${fingerprint.window.reuse.streams:10000}") final int maxStreams,
+      @Value("${fingerprint.window.reuse.stream.windows:2000}") final int maxWindows,
+      @Value("${fingerprint.window.reuse.idle.millis:60000}") final long idleMillis) {
+    this.windowResults = new WindowResultStore(maxStreams, maxWindows, idleMillis);
+  }
+
+  /**
+   * Share the one-second responses of the instances through Redis. A miss of oneSecondCache reads
+   * Redis; a computed response is written to Redis in the background.
+   *
+   * @param enabled boolean false to keep the responses in-process only
+   * @param host String Redis host
+   * @param port int Redis port
+   * @param poolSize int Redis connections at most
+   * @param writeQueue int responses waiting to be written at most, the others are not written
+   * @param ttlSeconds long seconds a response is kept in Redis
+   * @param maxWaitMillis int milliseconds a request waits for a Redis connection, then misses
+   * @param connectMillis int milliseconds to connect to Redis
+   * @param socketMillis int milliseconds to wait for Redis, then misses
+   */
+  @Autowired
+  public void setOneSecondRedisCache(
+      @Value("${fingerprint.cache.redis.enabled:false}") final boolean enabled,
+      @Value("${fingerprint.cache.redis.host:localhost}") final String host,
+      @Value("${fingerprint.cache.redis.port:6379}") final int port,
+      @Value("${fingerprint.cache.redis.pool.size:16}") final int poolSize,
+      @Value("${fingerprint.cache.redis.write.queue:10000}") final int writeQueue,
+      @Value("${fingerprint.cache.redis.ttl.seconds:864000}") final long ttlSeconds,
+      @Value("${fingerprint.cache.redis.max.wait.millis:20}") final int maxWaitMillis,
+      @Value("${fingerprint.cache.redis.connect.timeout.millis:200}") final int connectMillis,
+      @Value("${fingerprint.cache.redis.socket.timeout.millis:100}") final int socketMillis) {
+    if (this.redisCache != null) this.redisCache.close();
+    this.redisCache =
+        enabled
+            ? new RedisInstance(
+                host, port, poolSize, writeQueue, maxWaitMillis, connectMillis, socketMillis)
+            : null;
+    this.redisTtlSeconds = ttlSeconds;
+  }
+
+  private static TinyLfuCache<OneSecondContent, CachedResponse> newOneSecondCache(
+      final long maxBytes, final long ttlMillis) {
+    // Most responses have no tag and weigh a few hundred bytes.
+    int expectedEntries = (int) Math.min(1L << 20, Math.max(64L, maxBytes / 512L));
+    return new TinyLfuCache<OneSecondContent, CachedResponse>(
+        maxBytes, expectedEntries, ttlMillis, (content, cached) -> cached.getWeight());
+  }
+
+  public FingerprintCacheStatus getOneSecondCacheStatus() {
+    TinyLfuCache<OneSecondContent, CachedResponse> cache = oneSecondCache;
+    FingerprintCacheStatus status = new FingerprintCacheStatus();
+    status.setEnabled(cacheEnabled);
+    status.setEntries(cache.size());
+    status.setWeightBytes(cache.getWeight());
+    status.setMaximumBytes(cache.getMaximumWeight());
+    status.setHits(cache.getHits());
+    status.setMisses(cache.getMisses());
+    status.setEvictions(cache.getEvictions());
+    status.setExpirations(cache.getExpirations());
+    WindowResultStore store = windowResults;
+    status.setStreams(store.getStreams());
+    status.setReusedWindows(store.getReusedWindows());
+    status.setComputedWindows(store.getComputedWindows());
+    RedisInstance redis = redisCache;
+    status.setRedisEnabled(redis != null);
+    status.setRedisHits(redisHits.get());
+    status.setRedisMisses(redisMisses.get());
+    status.setRedisDroppedWrites(redis == null ? 0L : redis.getDroppedWrites());
+    return status;
+  }
+
+  public TriggerEntry registerTrigger(
+      final TriggerEntry triggerEntry, final String tenant, final String signature) {
+    String dataFingerprint = triggerEntry.getDataFingerprint();
+    this.logger.logEntry(
+        signature, new Object[] {"tenant=", tenant, "fingerprintData=", dataFingerprint});
+    ProcessHelper.checkNullOrEmptyString(dataFingerprint, "TriggerEntry.dataFingerprint");
+    TriggerRegistry.Trigger trigger = triggerRegistry.register(dataFingerprint, tenant);
+    if (null == trigger) {
+      CommonUtil.BadRequestException("Invalid dataFingerprint");
+    }
+    TriggerEntry response = new TriggerEntry();
+    response.setTriggerId(trigger.getTriggerId());
+    response.setBlockCount(trigger.getDescriptor().getBlockCount());
+    response.setMax(trigger.getDescriptor().getMax());
+    response.setTtlSeconds(triggerRegistry.getTtlSeconds());
+    this.logger.logExit(signature, new Object[] {"triggerId=", trigger.getTriggerId()});
+    return response;
+  }
+
+  public TriggerEntry unregisterTrigger(
+      final TriggerEntry triggerEntry, final String tenant, final String signature) {
+    String triggerId = triggerEntry.getTriggerId();
+    this.logger.logEntry(signature, new Object[] {"tenant=", tenant, "triggerId=", triggerId});
+    ProcessHelper.checkNullOrEmptyString(triggerId, "TriggerEntry.triggerId");
+    if (!triggerRegistry.unregister(triggerId, tenant)) {
+      CommonUtil.NotFoundException("triggerId " + triggerId + " is not registered");
+    }
+    TriggerEntry response = new TriggerEntry();
+    response.setTriggerId(triggerId);
+    this.logger.logExit(signature, new Object[] {"triggerId=", triggerId});
+    return response;
+  }
+
+  /** Stop the fingerprintexec workers, and write the pending Redis entries, with the context. */
+  @PreDestroy
+  public void stopFingerprintWorkers() {
+    FingerprintWorkerPool.shutdownAll();
+    if (redisCache != null) redisCache.close();
   }
 
   public EvaluateAudioStreamResponse evaluateAudioStream(
       AudioDataEntry audioDataEntry,
       EvaluateAudioStreamEntry evaluateAudioStreamEntry,
-      String signature) {
+      String signature,
+      String tenant) {
     // The Audio Stream URL.
     String url = CommonUtil.getString(audioDataEntry.getUrl(), Constants.AUDIOSTREAM_URL_SIZE);
     // The Data.
@@ -108,7 +354,9 @@ public class AudioStreamServiceImpl implements AudioStreamService {
 
     // The Triggersound Fingerprint Data.
     // byte[] dataFingerprint = evaluateAudioStreamEntry.getDataFingerprint();
-    String dataFingerprint = evaluateAudioStreamEntry.getDataFingerprint();
+    String dataFingerprint =
+        triggerRegistry.resolve(
+            evaluateAudioStreamEntry.getTriggerId(), evaluateAudioStreamEntry.getDataFingerprint());
 
     this.logger.logEntry(
         signature,
@@ -137,11 +385,10 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     }
     EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
     List<TuneUrlTag> liveTags = new ArrayList<TuneUrlTag>();
-    long elapse;
     long timeOffset, baseOffset;
     long iStart, iEnd;
     long maxDuration = Converter.muldiv(1000, duration - 6L, 1L);
-    long count, counts = Converter.muldiv(1000, duration - 6L, 100);
+    long counts = Converter.muldiv(1000, duration - 6L, 100);
     int dSize;
     short[] dData;
 
@@ -162,52 +409,51 @@ public class AudioStreamServiceImpl implements AudioStreamService {
 
     FingerprintExternals fingerprintExternals = FingerprintExternals.getFingerprintInstance();
 
-    LinkedList<FingerprintThreadCollector> fingerprintThreadList =
-        parallelFingerprintCollect(
+    try (FingerprintWindowStream windows =
+        newFingerprintWindowStream(
+            tenant,
+            false,
             data,
             fingerprintRate,
             dataFingerprint,
             maxDuration,
             counts,
             rootDir,
-            random);
-
-    for (count = 0L, elapse = 0L; count < counts && elapse < maxDuration; count++, elapse += 100L) {
-      if (fingerprintThreadList.isEmpty()) {
-        break;
-      }
-      FingerprintCollection result =
-          fingerprintThreadList.removeFirst().getFingerprintCollectionResult();
-
-      List<FingerprintResponse> frSelection = result.getFrCollection();
-      List<FingerprintCompareResponse> selection = result.getFcrCollection();
-
-
-      // timeOffset = elapse; // possible legacy code
-      if (selection.size() == 5) {
-        // fingerPrints.addAll(selection);
-        Object[] fingerprintComparisonsResponse =
-            FingerprintUtility.fingerprintComparisons(selection, frSelection, fcr, fr);
-        fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
-        fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
-
-        if (fcr != null) {
-          timeOffset = fcr.getOffset();
-          timeOffset = timeOffset + 1500L;
-          iStart = Converter.muldiv(timeOffset, fingerprintRate, 1000L);
-          iEnd = Converter.muldiv(timeOffset + 3500L, fingerprintRate, 1000L);
-          dSize = (int) (iEnd - iStart);
-          dData = Converter.convertListShortEx(data, (int) iStart, dSize);
-          // Calculate the audio's payload
-          audioFr =
-              fingerprintExternals.runExternalFingerprinting_Ex(random, rootDir, "fingerprintprev", dData, dData.length);
-
-          tag = tagsHelper.newTag(true, 0L, audioFr, fcr);
-          liveTags.add(tag);
-          break;
-        } // if (fcr != null)
-      } // if (selection.size() == 5) 
-    } // for (...)
+            random)) {
+      FingerprintThreadCollector window;
+      // Windows are read in offset order while the next batch runs.
+      while ((window = windows.next()) != null) {
+        FingerprintCollection result = window.getFingerprintCollectionResult();
+
+        List<FingerprintResponse> frSelection = result.getFrCollection();
+        List<FingerprintCompareResponse> selection = result.getFcrCollection();
+
+        if (selection.size() == 5) {
+          Object[] fingerprintComparisonsResponse =
+              FingerprintUtility.fingerprintComparisons(selection, frSelection, null, null);
+          fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
+          fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
+
+          if (fcr != null) {
+            timeOffset = fcr.getOffset();
+            timeOffset = timeOffset + 1500L;
+            iStart = Converter.muldiv(timeOffset, fingerprintRate, 1000L);
+            iEnd = Converter.muldiv(timeOffset + 3500L, fingerprintRate, 1000L);
+            dSize = (int) (iEnd - iStart);
+            dData = Converter.convertListShortEx(data, (int) iStart, dSize);
+            // Calculate the audio's payload
+            audioFr =
+                fingerprintExternals.runExternalFingerprinting_Ex(
+                    random, rootDir, "fingerprintprev", dData, dData.length);
+
+            tag = tagsHelper.newTag(true, 0L, audioFr, fcr);
+            liveTags.add(tag);
+            // The windows overlapping this trigger would find it again.
+            windows.skipTo(fcr.getOffset() + 1000L);
+          } // if (fcr != null)
+        } // if (selection.size() == 5)
+      } // while (...)
+    }
     liveTags = tagsHelper.pruneTags(liveTags);
     counts = (long) liveTags.size();
     response.setTagCounts(counts);
@@ -222,20 +468,197 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     return response;
   }
 
+  /**
+   * evaluateAudioStream() for every trigger of EvaluateAudioStreamEntry.dataFingerprints in one
+   * pass over the audio. Each trigger gives a TuneUrlTag per occurrence, as evaluateAudioStream()
+   * does, labelled with the index of its trigger.
+   *
+   * @param audioDataEntry AudioDataEntry
+   * @param evaluateAudioStreamEntry EvaluateAudioStreamEntry
+   * @param signature String
+   * @return EvaluateAudioStreamResponse
+   */
+  public EvaluateAudioStreamResponse evaluateAudioStreamTriggers(
+      AudioDataEntry audioDataEntry,
+      EvaluateAudioStreamEntry evaluateAudioStreamEntry,
+      String signature) {
+    String url = CommonUtil.getString(audioDataEntry.getUrl(), Constants.AUDIOSTREAM_URL_SIZE);
+    short[] data = audioDataEntry.getData();
+    int size = audioDataEntry.getSize().intValue();
+    Long duration = audioDataEntry.getDuration();
+    Long fingerprintRate = audioDataEntry.getFingerprintRate();
+    List<String> dataFingerprints = evaluateAudioStreamEntry.getDataFingerprints();
+    List<String> triggerIds = evaluateAudioStreamEntry.getTriggerIds();
+    if (null != triggerIds) {
+      // The texts sent with the ids serve the ids this instance does not know.
+      List<String> texts =
+          null != dataFingerprints && dataFingerprints.size() == triggerIds.size()
+              ? dataFingerprints
+              : null;
+      dataFingerprints = new ArrayList<String>(triggerIds.size());
+      for (int index = 0; index < triggerIds.size(); index++) {
+        dataFingerprints.add(
+            triggerRegistry.resolve(
+                triggerIds.get(index), null == texts ? null : texts.get(index)));
+      }
+    }
+
+    this.logger.logEntry(
+        signature,
+        new Object[] {
+          "url=", url,
+          "data=", data.length == size,
+          "size=", size,
+          "duration=", duration,
+          "FRate=", fingerprintRate,
+          "triggers=", null == dataFingerprints ? null : dataFingerprints.size(),
+        });
+
+    Converter.checkAudioDataEntryDataSize(audioDataEntry);
+    Converter.validateShortDataSize(data, size);
+    Converter.validateDurationEx(duration);
+    final String fileName = Converter.validateUrlOrGencrc32(url);
+    ProcessHelper.checkNullOrEmptyString(fileName, "AudioDataEntry.Url");
+    if (duration < 1L || duration > 480L) {
+      CommonUtil.BadRequestException("Duration must be 1 to 480 seconds only");
+    }
+    if (null == dataFingerprints
+        || dataFingerprints.isEmpty()
+        || dataFingerprints.size() > Constants.FINGERPRINT_MAX_TRIGGERS) {
+      CommonUtil.BadRequestException(
+          "dataFingerprints must have 1 to " + Constants.FINGERPRINT_MAX_TRIGGERS + " triggers");
+    }
+    TriggerDescriptor[] triggers = new TriggerDescriptor[dataFingerprints.size()];
+    for (int index = 0; index < triggers.length; index++) {
+      triggers[index] = triggerRegistry.compile(dataFingerprints.get(index));
+      if (null == triggers[index]) {
+        CommonUtil.BadRequestException("Invalid dataFingerprints[" + index + "]");
+      }
+    }
+
+    long maxDuration = Converter.muldiv(1000, duration - 6L, 1L);
+    long counts = Converter.muldiv(1000, duration - 6L, 100);
+    String rootDir = this.getSaveAudioFilesFolder(null);
+    Random random = new Random();
+    random.setSeed(new Date().getTime());
+    FingerprintExternals fingerprintExternals = FingerprintExternals.getFingerprintInstance();
+
+    List<List<FingerprintCompareResponse>> found =
+        new TriggerBatchCollector(new TriggerScanner(data), triggers, fingerprintRate)
+            .collect(maxDuration, counts);
+
+    // The payloads of triggers found close together share most of their frames.
+    SlidingSpectrogram spectrogram =
+        new SlidingSpectrogram(LandmarkExtractor.getDefaultInstance(), data.length);
+    spectrogram.append(data, 0, data.length);
+    List<TuneUrlTag> liveTags = new ArrayList<TuneUrlTag>();
+    for (int index = 0; index < found.size(); index++) {
+      for (FingerprintCompareResponse fcr : found.get(index)) {
+        long timeOffset = fcr.getOffset() + 1500L;
+        long iStart = Converter.muldiv(timeOffset, fingerprintRate, 1000L);
+        long iEnd = Converter.muldiv(timeOffset + 3500L, fingerprintRate, 1000L);
+        // Calculate the audio's payload
+        FingerprintResponse audioFr =
+            fingerprintExternals.runExternalFingerprinting_Ex(
+                random, rootDir, spectrogram, iStart, (int) (iEnd - iStart));
+        TuneUrlTag tag = tagsHelper.newTag(true, 0L, audioFr, fcr);
+        tag.setTriggerIndex((long) index);
+        liveTags.add(tag);
+      }
+    }
+    liveTags.sort(Comparator.comparing(TuneUrlTag::getDataPosition));
+
+    EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
+    response.setTagCounts((long) liveTags.size());
+    response.setLiveTags(liveTags);
+    response.setTuneUrlCounts((long) liveTags.size());
+    if (isDebugOn) {
+      tagsHelper.displayLiveTags(signature, this.logger, liveTags);
+    }
+    this.logger.logExit(
+        signature, new Object[] {"triggers=", triggers.length, "liveTags.size", liveTags.size()});
+
+    return response;
+  }
+
   public EvaluateAudioStreamResponse evaluateOneSecondAudioStream(
+      final long duration,
+      final Long dataOffset,
+      final short[] data,
+      final Long fingerprintRate,
+      final String dataFingerprint,
+      final String url,
+      final String tenant) {
+    OneSecondContent content = null;
+    if (cacheEnabled) {
+      // Looped or replayed station audio sends the same samples again, at another offset.
+      content = new OneSecondContent(duration, data, fingerprintRate, dataFingerprint);
+      CachedResponse cached = oneSecondCache.get(content);
+      if (cached == null) cached = getSharedResponse(content);
+      if (cached != null) return cached.at(dataOffset);
+    }
+    final OneSecondContent key = content;
+    // Only the caller computing the response caches it, not the requests coalesced with it.
+    Supplier<EvaluateAudioStreamResponse> compute =
+        () -> {
+          EvaluateAudioStreamResponse computed =
+              computeOneSecondAudioStream(
+                  duration, dataOffset, data, fingerprintRate, dataFingerprint, url, tenant);
+          if (key != null) {
+            oneSecondCache.put(key, new CachedResponse(dataOffset, computed));
+            RedisInstance redis = redisCache;
+            if (redis != null) {
+              redis.setLater(
+                  key.getRedisKey(),
+                  RedisInstance.encodeOneSecond(dataOffset, computed),
+                  redisTtlSeconds);
+            }
+          }
+          return computed;
+        };
+    EvaluateAudioStreamResponse response;
+    if (!coalesceEnabled) {
+      response = compute.get();
+    } else {
+      // Tabs playing the same station send the same body; the first one computes it.
+      OneSecondRequest request =
+          new OneSecondRequest(duration, dataOffset, data, fingerprintRate, dataFingerprint);
+      response = oneSecondFlights.execute(request, compute);
+    }
+    return response;
+  }
+
+  /** The response another instance computed for content, kept in oneSecondCache too. */
+  private CachedResponse getSharedResponse(final OneSecondContent content) {
+    RedisInstance redis = redisCache;
+    if (redis == null) return null;
+    RedisInstance.OneSecondEntry entry = redis.getOneSecond(content.getRedisKey());
+    if (entry == null) {
+      redisMisses.incrementAndGet();
+      return null;
+    }
+    redisHits.incrementAndGet();
+    CachedResponse cached = new CachedResponse(entry.getDataOffset(), entry.getResponse());
+    oneSecondCache.put(content, cached);
+    return cached;
+  }
+
+  private EvaluateAudioStreamResponse computeOneSecondAudioStream(
       long duration,
       Long dataOffset,
       short[] data,
       Long fingerprintRate,
-      String dataFingerprint) {
+      String dataFingerprint,
+      String url,
+      String tenant) {
     final String signature = "evaluateOneSecondAudioStream";
     final String signature2 = "evaluateOneSecondAudioStream:Pruning";
+    final long startTime = System.currentTimeMillis();
     EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
     List<TuneUrlTag> liveTags = new ArrayList<TuneUrlTag>();
     List<TuneUrlTag> tags;
-    long elapse;
     long maxDuration = Converter.muldiv(1000, duration, 1L);
-    long count, counts = Converter.muldiv(1000, duration, 100);
+    long counts = Converter.muldiv(1000, duration, 100);
     long durationLimit = dataOffset + Converter.muldiv(1000, duration, 1L);
     FingerprintCompareResponse fcr;
     FingerprintResponse fr;
@@ -248,59 +671,68 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     Random random = new Random();
     random.setSeed(new Date().getTime());
 
-    LinkedList<FingerprintThreadCollector> fingerprintThreadList =
-        parallelFingerprintCollect(
-            data,
-            fingerprintRate,
-            dataFingerprint,
-            maxDuration,
-            counts,
-            rootDir,
-            random);
-
-    for (count = 0L, elapse = 0L; count < counts && elapse < maxDuration; count++, elapse += 100L) {
-      if (fingerprintThreadList.isEmpty()) {
-        break;
-      }
-      FingerprintCollection result =
-          fingerprintThreadList.removeFirst().getFingerprintCollectionResult();
-
-      List<FingerprintResponse> frSelection = result.getFrCollection();
-      List<FingerprintCompareResponse> selection = result.getFcrCollection();
-      fcr = null;
-      fr = null;
-      if (selection.size() == 5) {
-        Object[] fingerprintComparisonsResponse =
-            FingerprintUtility.fingerprintComparisons(selection, frSelection, fcr, fr);
-        fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
-        fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
-
-        if (null != fcr) {
-          TuneUrlTag tag = tagsHelper.newTag(true, dataOffset, null, fcr);
-          /*
-          if (isDebugOn) {
-            FingerprintUtility.displayLiveTagsEx(signature, logger, tag);
-          }
-           */
-          if (tag.getDataPosition() > durationLimit) break;
-          liveTags.add(tag);
+    // The payload of each tag is extracted while the next windows are compared.
+    try (PayloadStage payloads =
+        new PayloadStage(tenant, dataOffset, random, rootDir, fingerprintRate, data, maxDuration)) {
+      try (FingerprintWindowStream windows =
+          newFingerprintWindowStream(
+              tenant,
+              true,
+              data,
+              fingerprintRate,
+              dataFingerprint,
+              maxDuration,
+              counts,
+              rootDir,
+              random)) {
+        if (windowReuseEnabled && !Helper.isStringNullOrEmpty(url)) {
+          // Half of the audio was already sent by the previous request of the stream.
+          windows.reuseWindows(
+              windowResults.open(url, dataOffset, data, fingerprintRate, dataFingerprint));
         }
-      } // if (selection.size() == 5)
-    } // for (count = 0L, ...)
-    if (!liveTags.isEmpty()) {
-      tags = tagsHelper.pruneTags(liveTags);
-      if (isDebugOn) {
-        logger.logExit(signature2, "before=", liveTags.size(), "after=", tags.size());
+        FingerprintThreadCollector window;
+        while ((window = windows.next()) != null) {
+          FingerprintCollection result = window.getFingerprintCollectionResult();
+
+          List<FingerprintResponse> frSelection = result.getFrCollection();
+          List<FingerprintCompareResponse> selection = result.getFcrCollection();
+          fcr = null;
+          fr = null;
+          if (selection.size() == 5) {
+            Object[] fingerprintComparisonsResponse =
+                FingerprintUtility.fingerprintComparisons(selection, frSelection, fcr, fr);
+            fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
+            fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
+
+            if (null != fcr) {
+              TuneUrlTag tag = tagsHelper.newTag(true, dataOffset, null, fcr);
+              /*
+              if (isDebugOn) {
+                FingerprintUtility.displayLiveTagsEx(signature, logger, tag);
+              }
+               */
+              if (tag.getDataPosition() > durationLimit) break;
+              payloads.start(liveTags.isEmpty() ? null : liveTags.get(liveTags.size() - 1), tag);
+              liveTags.add(tag);
+            }
+          } // if (selection.size() == 5)
+        } // while (...)
       }
-      liveTags = new ArrayList<TuneUrlTag>();
+      if (!liveTags.isEmpty()) {
+        tags = tagsHelper.pruneTags(liveTags);
+        if (isDebugOn) {
+          logger.logExit(signature2, "before=", liveTags.size(), "after=", tags.size());
+        }
+        liveTags = new ArrayList<TuneUrlTag>();
 
-      for (TuneUrlTag tag : tags) {
+        for (TuneUrlTag tag : tags) {
 
-        tag = updatePayload(dataOffset, random, rootDir, fingerprintRate, tag, data, maxDuration);
-        if (tag != null) {
-          liveTags.add(tag);
-          if (isDebugOn) {
-            tagsHelper.displayLiveTagsEx(signature2, logger, tag);
+          tag = payloads.apply(tag);
+          if (tag != null) {
+            liveTags.add(tag);
+            if (isDebugOn) {
+              tagsHelper.displayLiveTagsEx(signature2, logger, tag);
+            }
           }
         }
       }
@@ -315,6 +747,7 @@ public class AudioStreamServiceImpl implements AudioStreamService {
       FingerprintUtility.displayLiveTags(signature, logger, liveTags);
     }
      */
+    fingerprintExecutionService.recordRequestLatency(System.currentTimeMillis() - startTime);
     logger.logExit(
         signature,
         new Object[] {
@@ -327,7 +760,8 @@ public class AudioStreamServiceImpl implements AudioStreamService {
   public FindFingerPrintResponse findFingerPrintsAudioStream(
     AudioDataEntry audioDataEntry,
     EvaluateAudioStreamEntry evaluateAudioStreamEntry,
-    String signature) {
+    String signature,
+    String tenant) {
     // The Audio Stream URL.
     String url = CommonUtil.getString(audioDataEntry.getUrl(), Constants.AUDIOSTREAM_URL_SIZE);
     // The Data.
@@ -341,7 +775,9 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     // The Fingerprint rate.
     Long fingerprintRate = audioDataEntry.getFingerprintRate();
     // The Triggersound Fingerprint Data.
-    String dataFingerprint = evaluateAudioStreamEntry.getDataFingerprint();
+    String dataFingerprint =
+        triggerRegistry.resolve(
+            evaluateAudioStreamEntry.getTriggerId(), evaluateAudioStreamEntry.getDataFingerprint());
     this.logger.logEntry(
           signature,
           new Object[] {
@@ -364,9 +800,8 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     response.setFingerPrintCount(0L);
     response.setFingerPrint(null);
     
-    long elapse;
     long maxDuration = Converter.muldiv(1000, duration, 1L);
-    long count, counts = Converter.muldiv(1000, maxDuration, 100);
+    long counts = Converter.muldiv(1000, maxDuration, 100);
 
     String rootDir = this.getSaveAudioFilesFolder(null);
     String debugUniqueName = ProcessHelper.createUniqueFilename();
@@ -381,44 +816,45 @@ public class AudioStreamServiceImpl implements AudioStreamService {
     Random random = new Random();
     random.setSeed(new Date().getTime());
 
-    LinkedList<FingerprintThreadCollector> fingerprintThreadList =
-                parallelFingerprintCollect(
-                    data,
-                    fingerprintRate,
-                    dataFingerprint,
-                    // dataFingerprintBuffer,
-                    // dataFingerprintBufferSize,
-                    maxDuration,
-                    counts,
-                    rootDir,
-                    random);
-      
-      // return new FindFingerPrintResponse();
-    for (count = 0L, elapse = 0L; count < counts && elapse < maxDuration; count++, elapse += 100L) {
-      if (fingerprintThreadList.isEmpty()) {
-        break;
-      }
-      FingerprintCollection result =
-          fingerprintThreadList.removeFirst().getFingerprintCollectionResult();
-
-      List<FingerprintResponse> frSelection = result.getFrCollection();
-      List<FingerprintCompareResponse> selection = result.getFcrCollection();
-
-      // timeOffset = elapse; // possible legacy code
-      if (selection.size() == 5) {
-        // fingerPrints.addAll(selection);
-        Object[] fingerprintComparisonsResponse =
-            FingerprintUtility.fingerprintComparisons(selection, frSelection, fcr, fr);
-        fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
-        fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
-
-        if (fcr != null && fcr.getOffset() < maxDuration - 1000) {
-          response.setFingerPrintCount(1L);
-          response.setFingerPrint(fcr);
-          break;
-        } // if (fcr != null)
-      } // if (selection.size() == 5)
-    } // for (...)
+    List<FingerprintCompareResponse> fingerPrints = new ArrayList<FingerprintCompareResponse>();
+    try (FingerprintWindowStream windows =
+        newFingerprintWindowStream(
+            tenant,
+            false,
+            data,
+            fingerprintRate,
+            dataFingerprint,
+            maxDuration,
+            counts,
+            rootDir,
+            random)) {
+      FingerprintThreadCollector window;
+      // Windows are read in offset order while the next batch runs.
+      while ((window = windows.next()) != null) {
+        FingerprintCollection result = window.getFingerprintCollectionResult();
+
+        List<FingerprintResponse> frSelection = result.getFrCollection();
+        List<FingerprintCompareResponse> selection = result.getFcrCollection();
+
+        if (selection.size() == 5) {
+          Object[] fingerprintComparisonsResponse =
+              FingerprintUtility.fingerprintComparisons(selection, frSelection, null, null);
+          fcr = (FingerprintCompareResponse) fingerprintComparisonsResponse[0];
+          fr = (FingerprintResponse) fingerprintComparisonsResponse[1];
+
+          if (fcr != null && fcr.getOffset() < maxDuration - 1000) {
+            fingerPrints.add(fcr);
+            // The windows overlapping this trigger would find it again.
+            windows.skipTo(fcr.getOffset() + 1000L);
+          } // if (fcr != null)
+        } // if (selection.size() == 5)
+      } // while (...)
+    }
+    if (!fingerPrints.isEmpty()) {
+      response.setFingerPrintCount((long) fingerPrints.size());
+      response.setFingerPrint(fingerPrints.get(0));
+      response.setFingerPrints(fingerPrints);
+    }
   
     return response;
 }
@@ -792,6 +1228,8 @@ public class AudioStreamServiceImpl implements AudioStreamService {
   }
 
   public LinkedList<FingerprintThreadCollector> parallelFingerprintCollect(
+      String tenant,
+      boolean interactive,
       short[] data,
       Long fingerprintRate,
       String dataFingerprint,
@@ -799,46 +1237,394 @@ public class AudioStreamServiceImpl implements AudioStreamService {
       long counts,
       String rootDir,
       Random random) {
-    long count;
-    long elapse;
     LinkedList<FingerprintThreadCollector> fingerprintThreadList =
         new LinkedList<FingerprintThreadCollector>();
-    List<Thread> threadList = new LinkedList<Thread>();
-    for (count = 0L, elapse = 0L; count < counts && elapse < maxDuration; count++, elapse += 100L) {
-      if (count == 50L) {
-        break;
+    try (FingerprintWindowStream windows =
+        newFingerprintWindowStream(
+            tenant,
+            interactive,
+            data,
+            fingerprintRate,
+            dataFingerprint,
+            maxDuration,
+            counts,
+            rootDir,
+            random)) {
+      FingerprintThreadCollector window;
+      while ((window = windows.next()) != null) {
+        fingerprintThreadList.add(window);
       }
-      FingerprintThreadCollector fingerprintThread =
-          new FingerprintThreadCollector(
-              rootDir,
-              data,
-              elapse,
-              random,
-              fingerprintRate,
-              dataFingerprint);
-      fingerprintThreadList.add(fingerprintThread);
+    }
+    return fingerprintThreadList;
+  }
+
+  /**
+   * The 100 ms windows of the whole clip, queued on the shared fingerprint workers in batches of
+   * fingerprint.evaluate.batch.windows.
+   *
+   * @param tenant String the SDK client of the request
+   * @param interactive boolean true for the one-second requests
+   * @return FingerprintWindowStream, to be closed
+   */
+  private FingerprintWindowStream newFingerprintWindowStream(
+      String tenant,
+      boolean interactive,
+      short[] data,
+      Long fingerprintRate,
+      String dataFingerprint,
+      long maxDuration,
+      long counts,
+      String rootDir,
+      Random random) {
+    return new FingerprintWindowStream(
+        fingerprintExecutionService,
+        tenant,
+        interactive,
+        data,
+        rootDir,
+        random,
+        fingerprintRate,
+        dataFingerprint,
+        maxDuration,
+        counts,
+        fingerprintExecutionService.getWindowParallelism(evaluateBatchWindows),
+        evaluateBatchWaitMillis);
+  }
+
+  @Override
+  public LinkedList<FingerprintThreadCollector> parallelFingerprintCollect(short[] data, Long fingerprintRate,
+      StringBuffer dataFingerprintBuffer, int dataFingerprintBufferSize, long maxDuration, long counts, String rootDir,
+      Random random) {
+    // TODO Auto-generated method stub
+    throw new UnsupportedOperationException("Unimplemented method 'parallelFingerprintCollect'");
+  }
 
-      Thread t = new Thread(fingerprintThread);
-      t.start();
-      threadList.add(t);
+  /**
+   * updatePayload() of the tags of one evaluateOneSecondAudioStream() request, started on the
+   * fingerprint workers as soon as each tag is found. Tags sharing a 5 s slice share one
+   * extraction, and the extraction of a tag pruneTags() will drop is cancelled.
+   */
+  private final class PayloadStage implements AutoCloseable {
+
+    private final String tenant;
+    private final long dataOffset;
+    private final Random random;
+    private final String rootDir;
+    private final long fingerprintRate;
+    private final short[] data;
+    private final long maxDuration;
+
+    /** Payload JSON by slice, a null Future when the workers had no room. */
+    private final Map<String, Future<String>> payloads = new HashMap<String, Future<String>>();
+
+    PayloadStage(
+        final String tenant,
+        final long dataOffset,
+        final Random random,
+        final String rootDir,
+        final long fingerprintRate,
+        final short[] data,
+        final long maxDuration) {
+      this.tenant = tenant;
+      this.dataOffset = dataOffset;
+      this.random = random;
+      this.rootDir = rootDir;
+      this.fingerprintRate = fingerprintRate;
+      this.data = data;
+      this.maxDuration = maxDuration;
     }
 
-    for (Thread thread : threadList) {
+    /**
+     * Start the extraction for tag, found after previous.
+     *
+     * @param previous TuneUrlTag, null for the first tag
+     * @param tag TuneUrlTag
+     */
+    void start(final TuneUrlTag previous, final TuneUrlTag tag) {
+      String slice = getSlice(tag);
+      if (previous != null
+          && Math.abs(previous.getDataPosition() - tag.getDataPosition()) < 1000L) {
+        // pruneTags() drops the previous tag.
+        String pruned = getSlice(previous);
+        if (pruned != null && !pruned.equals(slice)) {
+          Future<String> payload = payloads.remove(pruned);
+          if (payload != null) payload.cancel(true);
+        }
+      }
+      if (slice != null && !payloads.containsKey(slice)) {
+        payloads.put(slice, submit(tag.getDataPosition()));
+      }
+    }
+
+    /**
+     * updatePayload() of tag, from the extraction started for its slice.
+     *
+     * @param tag TuneUrlTag
+     * @return TuneUrlTag with its description, null when it has no payload
+     */
+    TuneUrlTag apply(final TuneUrlTag tag) {
+      String slice = getSlice(tag);
+      Future<String> payload = slice == null ? null : payloads.get(slice);
+      if (payload == null) {
+        return updatePayload(dataOffset, random, rootDir, fingerprintRate, tag, data, maxDuration);
+      }
       try {
-        thread.join();
+        tag.setDescription(payload.get());
+        return tag;
       } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
         throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw new RuntimeException(e.getCause());
       }
     }
 
-    return fingerprintThreadList;
+    /** Cancel the extractions not used. */
+    @Override
+    public void close() {
+      for (Future<String> payload : payloads.values()) {
+        if (payload != null) payload.cancel(true);
+      }
+    }
+
+    /** Start and size of the slice updatePayload() reads, null when it drops the tag. */
+    private String getSlice(final TuneUrlTag tag) {
+      long tagOffset = tag.getDataPosition() + 1000L;
+      long endOffset = tagOffset + 5000L;
+      if (endOffset >= dataOffset + maxDuration) return null;
+      long iStart = Converter.muldiv(tagOffset - dataOffset, fingerprintRate, 1000L);
+      long iEnd = Converter.muldiv(endOffset - dataOffset, fingerprintRate, 1000L);
+      int dSize = (int) (iEnd - iStart);
+      if (dSize >= data.length) return null;
+      return iStart + ":" + dSize;
+    }
+
+    private Future<String> submit(final long position) {
+      Callable<String> extract =
+          () -> {
+            TuneUrlTag tag = new TuneUrlTag();
+            tag.setDataPosition(position);
+            tag =
+                updatePayload(dataOffset, random, rootDir, fingerprintRate, tag, data, maxDuration);
+            return tag == null ? null : tag.getDescription();
+          };
+      try {
+        return fingerprintExecutionService
+            .submitAll(tenant, true, Collections.singletonList(extract), 0L)
+            .get(0);
+      } catch (BaseServiceException ex) {
+        // No room: apply() extracts it on the request thread.
+        return null;
+      }
+    }
   }
 
-  @Override
-  public LinkedList<FingerprintThreadCollector> parallelFingerprintCollect(short[] data, Long fingerprintRate,
-      StringBuffer dataFingerprintBuffer, int dataFingerprintBufferSize, long maxDuration, long counts, String rootDir,
-      Random random) {
-    // TODO Auto-generated method stub
-    throw new UnsupportedOperationException("Unimplemented method 'parallelFingerprintCollect'");
+  /**
+   * The body of a one-second request, equal to another one with the same PCM, offset, duration,
+   * rate and trigger. The hash is FNV-1a over the samples.
+   */
+  private static final class OneSecondRequest {
+
+    private final long duration;
+    private final Long dataOffset;
+    private final short[] data;
+    private final Long fingerprintRate;
+    private final String dataFingerprint;
+    private final int hash;
+
+    OneSecondRequest(
+        final long duration,
+        final Long dataOffset,
+        final short[] data,
+        final Long fingerprintRate,
+        final String dataFingerprint) {
+      this.duration = duration;
+      this.dataOffset = dataOffset;
+      this.data = data;
+      this.fingerprintRate = fingerprintRate;
+      this.dataFingerprint = dataFingerprint;
+      long value = 0xcbf29ce484222325L;
+      for (short sample : data) {
+        value = (value ^ (sample & 0xffff)) * 0x100000001b3L;
+      }
+      value = 31L * value + Objects.hash(duration, dataOffset, fingerprintRate, dataFingerprint);
+      this.hash = (int) (value ^ (value >>> 32));
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof OneSecondRequest)) return false;
+      OneSecondRequest that = (OneSecondRequest) other;
+      return hash == that.hash
+          && duration == that.duration
+          && Objects.equals(dataOffset, that.dataOffset)
+          && Objects.equals(fingerprintRate, that.fingerprintRate)
+          && Objects.equals(dataFingerprint, that.dataFingerprint)
+          && Arrays.equals(data, that.data);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /**
+   * The content of a one-second request, whatever its offset: two 64-bit lanes mixed with the block
+   * steps of MurmurHash3 x64_128 over 64-bit words (four samples or four chars of the trigger
+   * each, then the lengths, the duration and the fingerprint rate) and closed with its fmix64
+   * finalizer. It is not byte-compatible with MurmurHash3 of the same data. Two requests with the
+   * same content find the same tags, at positions that differ by the difference of their offsets.
+   *
+   * <p>Equal keys are taken as equal content without comparing the samples. Among n distinct
+   * contents, two share a 128-bit key with probability about n * n / 2^129: below 1e-20 for the
+   * 10^9 one-second requests of a year, far below the odds of a memory error. The mix is not
+   * meant to resist collisions crafted on purpose.
+   */
+  private static final class OneSecondContent {
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private final long high;
+    private final long low;
+
+    OneSecondContent(
+        final long duration,
+        final short[] data,
+        final Long fingerprintRate,
+        final String dataFingerprint) {
+      long[] h = new long[2];
+      int words = 0;
+      long pending = 0L;
+      // Four samples, then four chars of the trigger, per 64-bit word.
+      long word = 0L;
+      int length = data.length;
+      for (int i = 0; i < length; i++) {
+        word = (word << 16) | (data[i] & 0xffffL);
+        if ((i & 3) == 3 || i == length - 1) {
+          pending = mix(h, words++, pending, word);
+          word = 0L;
+        }
+      }
+      pending = mix(h, words++, pending, length);
+      String trigger = dataFingerprint == null ? "" : dataFingerprint;
+      length = trigger.length();
+      for (int i = 0; i < length; i++) {
+        word = (word << 16) | trigger.charAt(i);
+        if ((i & 3) == 3 || i == length - 1) {
+          pending = mix(h, words++, pending, word);
+          word = 0L;
+        }
+      }
+      pending = mix(h, words++, pending, length);
+      pending = mix(h, words++, pending, duration);
+      pending = mix(h, words++, pending, fingerprintRate == null ? -1L : fingerprintRate);
+      if ((words & 1) == 1) {
+        h[0] ^= Long.rotateLeft(pending * C1, 31) * C2;
+      }
+      long h1 = h[0] ^ (words * 8L);
+      long h2 = h[1] ^ (words * 8L);
+      h1 += h2;
+      h2 += h1;
+      h1 = finalizer(h1);
+      h2 = finalizer(h2);
+      h1 += h2;
+      h2 += h1;
+      this.high = h1;
+      this.low = h2;
+    }
+
+    /** The block of the 16 bytes pending, k, after an even number of words. */
+    private static long mix(final long[] h, final int index, final long pending, final long k) {
+      if ((index & 1) == 0) return k;
+      h[0] ^= Long.rotateLeft(pending * C1, 31) * C2;
+      h[0] = (Long.rotateLeft(h[0], 27) + h[1]) * 5 + 0x52dce729;
+      h[1] ^= Long.rotateLeft(k * C2, 33) * C1;
+      h[1] = (Long.rotateLeft(h[1], 31) + h[0]) * 5 + 0x38495ab5;
+      return 0L;
+    }
+
+    /** The key of the content in Redis. */
+    String getRedisKey() {
+      return String.format("tuneurl:1s:%016x%016x", high, low);
+    }
+
+    private static long finalizer(long k) {
+      k = (k ^ (k >>> 33)) * 0xff51afd7ed558ccdL;
+      k = (k ^ (k >>> 33)) * 0xc4ceb9fe1a85ec53L;
+      return k ^ (k >>> 33);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+      if (this == other) return true;
+      if (!(other instanceof OneSecondContent)) return false;
+      OneSecondContent that = (OneSecondContent) other;
+      return high == that.high && low == that.low;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (low ^ (low >>> 32));
+    }
+  }
+
+  /** A one-second response and the offset of the request it was computed for. */
+  private static final class CachedResponse {
+
+    private final long dataOffset;
+    private final EvaluateAudioStreamResponse response;
+    private final long weight;
+
+    CachedResponse(final Long dataOffset, final EvaluateAudioStreamResponse response) {
+      this.dataOffset = dataOffset;
+      this.response = response;
+      long bytes = 256L;
+      List<TuneUrlTag> tags = response.getLiveTags();
+      if (tags != null) {
+        for (TuneUrlTag tag : tags) {
+          bytes += 192L + 2L * (length(tag.getName()) + length(tag.getDescription()));
+          bytes += 2L * (length(tag.getType()) + length(tag.getInfo()));
+        }
+      }
+      this.weight = bytes;
+    }
+
+    private static long length(final String value) {
+      return value == null ? 0L : value.length();
+    }
+
+    long getWeight() {
+      return weight;
+    }
+
+    /** The response for a request at offset, its tags moved by the difference of the offsets. */
+    EvaluateAudioStreamResponse at(final Long offset) {
+      long shift = offset - dataOffset;
+      if (shift == 0L || response.getLiveTags() == null) return response;
+      List<TuneUrlTag> liveTags = new ArrayList<TuneUrlTag>(response.getLiveTags().size());
+      for (TuneUrlTag tag : response.getLiveTags()) {
+        TuneUrlTag moved = new TuneUrlTag();
+        moved.setId(tag.getId());
+        moved.setName(tag.getName());
+        moved.setDescription(tag.getDescription());
+        moved.setType(tag.getType());
+        moved.setInfo(tag.getInfo());
+        moved.setSimilarity(tag.getSimilarity());
+        moved.setTriggerIndex(tag.getTriggerIndex());
+        long position = tag.getDataPosition() + shift;
+        moved.setDataPosition(position);
+        moved.setIndex(Converter.muldiv(1L, position, 100L));
+        liveTags.add(moved);
+      }
+      EvaluateAudioStreamResponse result = new EvaluateAudioStreamResponse();
+      result.setTagCounts(response.getTagCounts());
+      result.setTuneUrlCounts(response.getTuneUrlCounts());
+      result.setLiveTags(liveTags);
+      return result;
+    }
   }
 }
@@ -0,0 +1,574 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintExecutorStatus;
+import com.tuneurl.webrtc.util.exception.BaseServiceException;
+import com.tuneurl.webrtc.util.service.FingerprintExecutionService;
+import com.tuneurl.webrtc.util.util.CommonUtil;
+import com.tuneurl.webrtc.util.util.MessageLogger;
+import com.tuneurl.webrtc.util.util.VirtualThreads;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Implement FingerprintExecutionService interface.
+ *
+ * <p>A fixed pool of poolSize workers takes the tasks of every request. At most poolSize +
+ * queueCapacity tasks are admitted at once; a request whose tasks do not all fit is rejected
+ * before any of them is queued, so a burst of listeners gets 429 responses instead of thousands
+ * of threads. A task gives its permit back when it completes or is cancelled.
+ *
+ * <p>The workers take their tasks from a FingerprintFairQueue: the interactive lane first, then
+ * the SDK clients in weighted round robin. Interactive requests have their own
+ * fingerprint.scheduler.interactive.capacity permits, so long clips cannot fill the room of the
+ * one-second listeners, and one client may have at most tenantQueueLimit of the other permits.
+ *
+ * <p>The reactive endpoints run their requests on a bounded elastic scheduler of
+ * fingerprint.reactive.threads threads; up to fingerprint.reactive.queue more requests wait for
+ * one of them without holding any thread, the next ones get 429. The bodies of the requests
+ * admitted, waiting or running, hold at most fingerprint.reactive.queue.bytes. A request whose
+ * subscriber cancels, on timeout or when the client goes away, is interrupted: it closes its
+ * windows, so those not started are dropped.
+ *
+ * <ul>
+ *   <li>v1.1 added submitAll(List, long) for the later batches of a long clip
+ *   <li>v1.2 added virtual.threads.enabled, workers on virtual threads on JDK 21+
+ *   <li>v1.3 added the per-tenant fair queue, limits and the interactive lane
+ *   <li>v1.4 added the AdaptiveParallelism of the window batches
+ *   <li>v1.5 added schedule() for the reactive endpoints
+ *   <li>v1.6 four workers per processor by default on virtual threads
+ *   <li>v1.7 the batch size controller starts at the batch the window streams really submit
+ *   <li>v1.8 schedule() admits the reactive requests by bytes and interrupts those cancelled
+ * </ul>
+ *
+ * @version 1.8
+ */
+@Service
+public class FingerprintExecutionServiceImpl implements FingerprintExecutionService {
+
+  /** Default workers per processor on virtual threads, most of them blocked on fingerprintexec. */
+  private static final int VIRTUAL_WORKERS_PER_PROCESSOR = 4;
+
+  private final MessageLogger logger = MessageLogger.getMessageLoggerInstance();
+
+  private final int poolSize;
+  private final int queueCapacity;
+  private final long retryAfterSeconds;
+  private final ThreadPoolExecutor executor;
+  private final FingerprintFairQueue queue = new FingerprintFairQueue();
+
+  /** One permit per task that may be running or waiting. */
+  private final Semaphore permits;
+
+  /** Permits of the interactive lane, null when interactive requests share permits. */
+  private volatile Semaphore interactivePermits;
+
+  private volatile int interactiveCapacity;
+  private volatile int tenantQueueLimit;
+  private volatile int tenantActiveLimit;
+
+  /** Batch size controller, fed by every task. */
+  private volatile AdaptiveParallelism adaptive;
+
+  private volatile boolean adaptiveEnabled;
+
+  private int adaptiveMinimum = 1;
+  private long adaptiveSloMillis = Long.MAX_VALUE;
+  private int batchWindows = Integer.MAX_VALUE;
+
+  /** Threads of the reactive requests, created on the first schedule(). */
+  private Scheduler requestScheduler;
+
+  private int requestThreads;
+  private int requestQueue = 100;
+  private long requestQueueBytes = Long.MAX_VALUE;
+
+  /** Request bytes of the reactive requests admitted and not done yet. */
+  private final AtomicLong requestBytes = new AtomicLong();
+
+  private final AtomicLong rejectedRequests = new AtomicLong();
+
+  /**
+   * Build the worker pool on platform threads.
+   *
+   * @param poolSize int workers, 0 for one per available processor
+   * @param queueCapacity int tasks that may wait for a worker
+   * @param retryAfterSeconds long Retry-After of the 429 response
+   */
+  public FingerprintExecutionServiceImpl(
+      final int poolSize, final int queueCapacity, final long retryAfterSeconds) {
+    this(poolSize, queueCapacity, retryAfterSeconds, false);
+  }
+
+  /**
+   * Build the worker pool.
+   *
+   * @param poolSize int workers, 0 for one per available processor, or
+   *     VIRTUAL_WORKERS_PER_PROCESSOR per processor on virtual threads
+   * @param queueCapacity int tasks that may wait for a worker
+   * @param retryAfterSeconds long Retry-After of the 429 response
+   * @param virtualThreads boolean run the workers on virtual threads when the JVM has them
+   */
+  @Autowired
+  public FingerprintExecutionServiceImpl(
+      @Value("${fingerprint.executor.pool.size:0}") final int poolSize,
+      @Value("${fingerprint.executor.queue.capacity:200}") final int queueCapacity,
+      @Value("${fingerprint.executor.retry.after.seconds:1}") final long retryAfterSeconds,
+      @Value("${virtual.threads.enabled:false}") final boolean virtualThreads) {
+    ThreadFactory threadFactory = null;
+    if (virtualThreads) {
+      threadFactory = VirtualThreads.newThreadFactory("fingerprint-worker-");
+      if (threadFactory == null) {
+        logger.logExit("FingerprintExecutionServiceImpl", "no virtual threads before JDK 21");
+      }
+    }
+    int processors = Runtime.getRuntime().availableProcessors();
+    // Only more workers than processors let the windows blocked on fingerprintexec overlap;
+    // virtual threads make them cheap, the permits still bound them.
+    this.poolSize =
+        poolSize > 0
+            ? poolSize
+            : threadFactory != null ? VIRTUAL_WORKERS_PER_PROCESSOR * processors : processors;
+    this.queueCapacity = Math.max(0, queueCapacity);
+    this.retryAfterSeconds = Math.max(1L, retryAfterSeconds);
+    this.permits = new Semaphore(this.poolSize + this.queueCapacity);
+    this.tenantQueueLimit = this.poolSize + this.queueCapacity;
+    this.adaptive = newAdaptiveParallelism();
+    // The permits bound the queue, a cancelled task leaves it at once.
+    this.executor =
+        new ThreadPoolExecutor(
+            this.poolSize,
+            this.poolSize,
+            0L,
+            TimeUnit.MILLISECONDS,
+            queue,
+            threadFactory != null ? threadFactory : new WorkerThreadFactory()) {
+          @Override
+          protected void afterExecute(final Runnable task, final Throwable error) {
+            queue.finished(task);
+          }
+        };
+    // Every task then goes through the queue, which counts the running ones.
+    this.executor.prestartAllCoreThreads();
+  }
+
+  /**
+   * Configure the fair scheduling of the SDK clients.
+   *
+   * @param interactiveCapacity int tasks of interactive requests admitted at once, 0 to share the
+   *     permits of the other requests
+   * @param tenantQueueLimit int tasks one client may have admitted, 0 for poolSize +
+   *     queueCapacity
+   * @param tenantActiveLimit int tasks one client may have running, 0 for no limit
+   * @param tenantWeights String tenant:weight pairs separated by commas, weight 1 when missing
+   */
+  @Autowired
+  public void setFingerprintScheduler(
+      @Value("${fingerprint.scheduler.interactive.capacity:0}") final int interactiveCapacity,
+      @Value("${fingerprint.scheduler.tenant.queue.limit:0}") final int tenantQueueLimit,
+      @Value("${fingerprint.scheduler.tenant.active.limit:0}") final int tenantActiveLimit,
+      @Value("${fingerprint.scheduler.tenant.weights:}") final String tenantWeights) {
+    this.interactiveCapacity = Math.max(0, interactiveCapacity);
+    this.interactivePermits =
+        this.interactiveCapacity > 0 ? new Semaphore(this.interactiveCapacity) : null;
+    this.tenantQueueLimit =
+        tenantQueueLimit > 0
+            ? Math.min(tenantQueueLimit, poolSize + queueCapacity)
+            : poolSize + queueCapacity;
+    this.tenantActiveLimit = Math.max(0, tenantActiveLimit);
+    queue.configure(this.tenantActiveLimit, parseWeights(tenantWeights));
+    this.adaptive = newAdaptiveParallelism();
+  }
+
+  /**
+   * Configure the batch size controller.
+   *
+   * @param enabled boolean false to keep the configured batch size
+   * @param minimumWindows int smallest batch size
+   * @param sloMillis long p99 latency target of the one-second requests
+   * @param batchWindows int fingerprint.evaluate.batch.windows, the largest batch asked for
+   */
+  @Autowired
+  public void setAdaptiveParallelism(
+      @Value("${fingerprint.adaptive.enabled:true}") final boolean enabled,
+      @Value("${fingerprint.adaptive.min.windows:4}") final int minimumWindows,
+      @Value("${fingerprint.adaptive.slo.millis:1000}") final long sloMillis,
+      @Value("${fingerprint.evaluate.batch.windows:50}") final int batchWindows) {
+    this.adaptiveMinimum = minimumWindows;
+    this.adaptiveSloMillis = Math.max(1L, sloMillis);
+    this.batchWindows = Math.max(1, batchWindows);
+    this.adaptive = newAdaptiveParallelism();
+    this.adaptiveEnabled = enabled;
+  }
+
+  /**
+   * The controller tops out at the batch a FingerprintWindowStream of a one-second request really
+   * submits, batchWindows and half the capacity of its lane, so that every decrease shrinks it.
+   */
+  private AdaptiveParallelism newAdaptiveParallelism() {
+    return new AdaptiveParallelism(
+        adaptiveMinimum,
+        Math.min(batchWindows, getBatchCapacity(true) / 2),
+        adaptiveSloMillis);
+  }
+
+  /**
+   * Tasks one request may have admitted, two of its batches must fit.
+   *
+   * @param interactive boolean true for the one-second requests
+   * @return int
+   */
+  private int getBatchCapacity(final boolean interactive) {
+    int capacity = poolSize + queueCapacity;
+    if (interactive && interactiveCapacity > 0) return interactiveCapacity;
+    return Math.min(capacity, tenantQueueLimit);
+  }
+
+  /**
+   * Configure the scheduler of the reactive requests.
+   *
+   * @param threads int requests run at once, 0 for twice poolSize
+   * @param queueCapacity int requests that may wait for a thread
+   * @param queueBytes long request bytes the admitted requests may hold, 0 for no limit
+   */
+  @Autowired
+  public void setRequestScheduler(
+      @Value("${fingerprint.reactive.threads:0}") final int threads,
+      @Value("${fingerprint.reactive.queue:100}") final int queueCapacity,
+      @Value("${fingerprint.reactive.queue.bytes:268435456}") final long queueBytes) {
+    synchronized (this) {
+      this.requestThreads = Math.max(0, threads);
+      this.requestQueue = Math.max(1, queueCapacity);
+      this.requestQueueBytes = queueBytes > 0L ? queueBytes : Long.MAX_VALUE;
+    }
+  }
+
+  private synchronized Scheduler getRequestScheduler() {
+    if (requestScheduler == null) {
+      // A request mostly waits for its windows, more threads than workers keep them busy.
+      int threads = requestThreads > 0 ? requestThreads : 2 * poolSize;
+      requestScheduler =
+          Schedulers.newBoundedElastic(threads, requestQueue, "fingerprint-request", 60, true);
+    }
+    return requestScheduler;
+  }
+
+  private Map<String, Integer> parseWeights(final String tenantWeights) {
+    Map<String, Integer> weights = new HashMap<String, Integer>();
+    if (tenantWeights == null) return weights;
+    for (String pair : tenantWeights.split(",")) {
+      int colon = pair.lastIndexOf(':');
+      if (colon <= 0) continue;
+      try {
+        weights.put(
+            pair.substring(0, colon).trim(), Integer.parseInt(pair.substring(colon + 1).trim()));
+      } catch (NumberFormatException ex) {
+        logger.logExit("setFingerprintScheduler", new Object[] {"invalid weight=", pair});
+      }
+    }
+    return weights;
+  }
+
+  @Override
+  public <T> List<Future<T>> submitAll(final List<? extends Callable<T>> tasks)
+      throws BaseServiceException {
+    return submitAll(tasks, 0L);
+  }
+
+  @Override
+  public <T> List<Future<T>> submitAll(
+      final List<? extends Callable<T>> tasks, final long timeoutMillis)
+      throws BaseServiceException {
+    return submitAll("", false, tasks, timeoutMillis);
+  }
+
+  @Override
+  public <T> List<Future<T>> submitAll(
+      final String tenant,
+      final boolean interactive,
+      final List<? extends Callable<T>> tasks,
+      final long timeoutMillis)
+      throws BaseServiceException {
+    final String signature = "submitAll";
+    final String key = tenant == null ? "" : tenant;
+    List<Future<T>> futures = new ArrayList<>(tasks.size());
+    if (tasks.isEmpty()) return futures;
+    final Semaphore lanePermits = interactivePermits;
+    final boolean lane = interactive && lanePermits != null;
+    final Semaphore pool = lane ? lanePermits : permits;
+    final int count = tasks.size();
+    final long deadline = System.currentTimeMillis() + timeoutMillis;
+    // The interactive lane is not held to the per-tenant limit.
+    boolean admitted = queue.admit(key, count, lane ? 0 : tenantQueueLimit, timeoutMillis);
+    if (admitted && !acquire(pool, count, deadline - System.currentTimeMillis())) {
+      queue.release(key, count, !lane);
+      admitted = false;
+    }
+    if (!admitted) {
+      rejectedRequests.incrementAndGet();
+      queue.rejected(key);
+      logger.logExit(
+          signature,
+          new Object[] {
+            "rejected=", count, "tenant=", key, "queueDepth=", executor.getQueue().size()
+          });
+      CommonUtil.TooManyRequestException(
+          "Fingerprint workers are busy, please retry later.", retryAfterSeconds);
+    }
+    int index = 0;
+    try {
+      for (; index < count; index++) {
+        AdmittedTask<T> task = new AdmittedTask<>(tasks.get(index), key, interactive, lane, pool);
+        executor.execute(task);
+        futures.add(task);
+      }
+    } catch (RejectedExecutionException ex) {
+      // Only after shutdown; give back the permits of the tasks never queued.
+      pool.release(count - index);
+      queue.release(key, count - index, !lane);
+      for (Future<T> future : futures) {
+        future.cancel(true);
+      }
+      CommonUtil.RetryServiceNotAvailableException("Fingerprint workers are shutting down.");
+    }
+    return futures;
+  }
+
+  private static boolean acquire(
+      final Semaphore permits, final int count, final long timeoutMillis) {
+    if (timeoutMillis <= 0L) return permits.tryAcquire(count);
+    try {
+      return permits.tryAcquire(count, timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  @Override
+  public int getWindowParallelism(final int maximum) {
+    if (!adaptiveEnabled) return Math.max(1, maximum);
+    return Math.max(1, Math.min(maximum, adaptive.getLimit()));
+  }
+
+  @Override
+  public void recordRequestLatency(final long millis) {
+    adaptive.recordLatency(millis);
+  }
+
+  @Override
+  public <T> Mono<T> schedule(final long bytes, final Supplier<T> request) {
+    final long size = Math.max(0L, bytes);
+    return Mono.defer(
+            () -> {
+              if (!admitRequestBytes(size)) {
+                return Mono.error(
+                    new RejectedExecutionException("fingerprint.reactive.queue.bytes"));
+              }
+              RunningRequest running = new RunningRequest();
+              return Mono.fromSupplier(() -> running.run(request))
+                  .subscribeOn(getRequestScheduler())
+                  .doOnCancel(running::cancel)
+                  .doFinally(signal -> requestBytes.addAndGet(-size));
+            })
+        .onErrorMap(
+            RejectedExecutionException.class,
+            ex -> {
+              rejectedRequests.incrementAndGet();
+              return new BaseServiceException(
+                  "Fingerprint requests are queued, please retry later.",
+                  HttpStatus.TOO_MANY_REQUESTS,
+                  retryAfterSeconds);
+            });
+  }
+
+  /** A request larger than the whole budget still runs alone. */
+  private boolean admitRequestBytes(final long bytes) {
+    long limit;
+    synchronized (this) {
+      limit = requestQueueBytes;
+    }
+    while (true) {
+      long admitted = requestBytes.get();
+      if (admitted > 0L && admitted + bytes > limit) return false;
+      if (requestBytes.compareAndSet(admitted, admitted + bytes)) return true;
+    }
+  }
+
+  @Override
+  public FingerprintExecutorStatus getStatus() {
+    FingerprintExecutorStatus status = new FingerprintExecutorStatus();
+    status.setPoolSize(poolSize);
+    status.setQueueCapacity(queueCapacity);
+    status.setQueueDepth(executor.getQueue().size());
+    status.setActiveWorkers(executor.getActiveCount());
+    status.setRejectedRequests(rejectedRequests.get());
+    status.setCompletedTasks(executor.getCompletedTaskCount());
+    status.setInteractiveCapacity(interactiveCapacity);
+    status.setInteractiveQueueDepth(queue.interactiveSize());
+    status.setTenantQueueLimit(tenantQueueLimit);
+    status.setTenantActiveLimit(tenantActiveLimit);
+    status.setTenants(queue.getTenantStatus());
+    AdaptiveParallelism current = adaptive;
+    status.setWindowParallelism(adaptiveEnabled ? current.getLimit() : 0);
+    status.setQueueWaitMillis(current.getQueueWaitMillis());
+    status.setServiceTimeMillis(current.getServiceMillis());
+    status.setLatencyP99Millis(current.getLatencyP99());
+    status.setCpuLoad(current.getCpuLoad());
+    return status;
+  }
+
+  /** Stop the workers with the application context. */
+  @PreDestroy
+  public void shutdown() {
+    synchronized (this) {
+      if (requestScheduler != null) requestScheduler.dispose();
+    }
+    executor.shutdownNow();
+  }
+
+  /** FutureTask returning its permit once it is done, cancelled or not. */
+  private final class AdmittedTask<T> extends FutureTask<T>
+      implements FingerprintFairQueue.TenantTask {
+
+    private final String tenant;
+    private final boolean interactive;
+    private final boolean lane;
+    private final Semaphore pool;
+    private final long queuedAt = System.nanoTime();
+
+    AdmittedTask(
+        final Callable<T> callable,
+        final String tenant,
+        final boolean interactive,
+        final boolean lane,
+        final Semaphore pool) {
+      super(callable);
+      this.tenant = tenant;
+      this.interactive = interactive;
+      this.lane = lane;
+      this.pool = pool;
+    }
+
+    @Override
+    public String getTenant() {
+      return tenant;
+    }
+
+    @Override
+    public boolean isInteractive() {
+      return interactive;
+    }
+
+    @Override
+    public void run() {
+      // Cancelled while queued.
+      if (isDone()) return;
+      long start = System.nanoTime();
+      super.run();
+      adaptive.recordTask((start - queuedAt) / 1e6, (System.nanoTime() - start) / 1e6);
+    }
+
+    @Override
+    protected void done() {
+      if (isCancelled()) {
+        executor.remove(this);
+      }
+      pool.release();
+      queue.release(tenant, 1, !lane);
+    }
+  }
+
+  /** Daemon threads named fingerprint-worker-N. */
+  /** The thread of a reactive request, interrupted when its subscriber cancels. */
+  private static final class RunningRequest {
+    private Thread thread;
+    private boolean cancelled;
+
+    <T> T run(final Supplier<T> request) {
+      synchronized (this) {
+        if (cancelled) throw new CancellationException();
+        thread = Thread.currentThread();
+      }
+      try {
+        return request.get();
+      } finally {
+        synchronized (this) {
+          thread = null;
+        }
+        // An interrupt of cancel() must not reach the next request of this thread.
+        Thread.interrupted();
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      // The request fails on its next wait and closes its FingerprintWindowStream.
+      if (thread != null) thread.interrupt();
+    }
+  }
+
+  private static final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread thread = new Thread(runnable, "fingerprint-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,501 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintTenantStatus;
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Work queue of the fingerprint workers, fair between the SDK clients (tenants).
+ *
+ * <p>Tasks of the interactive lane are taken first, in arrival order. The other tasks wait in one
+ * FIFO per tenant and the tenants are served in weighted round robin: a tenant of weight w gives w
+ * tasks to the workers before the next tenant gets its turn, so a client queuing the windows of a
+ * 480 s clip delays the others by a few windows instead of the whole clip. A tenant with
+ * activeLimit tasks running is skipped until one of them completes.
+ *
+ * <p>The queue also counts the tasks each tenant has admitted, for the per-tenant admission limit
+ * of FingerprintExecutionServiceImpl and for the status endpoint.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe, every method holds one lock.
+ *
+ * @version 1.0
+ */
+final class FingerprintFairQueue extends AbstractQueue<Runnable>
+    implements BlockingQueue<Runnable> {
+
+  /** A task knowing its tenant and lane, the other tasks go to the default tenant. */
+  interface TenantTask {
+
+    String getTenant();
+
+    boolean isInteractive();
+  }
+
+  /** Idle tenants are forgotten once there are more than this. */
+  static final int MAX_IDLE_TENANTS = 256;
+
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /** Signalled when a task may be taken. */
+  private final Condition notEmpty = lock.newCondition();
+
+  /** Signalled when a tenant gives back admitted tasks. */
+  private final Condition released = lock.newCondition();
+
+  private final ArrayDeque<Runnable> interactive = new ArrayDeque<Runnable>();
+  private final Map<String, Tenant> tenants = new HashMap<String, Tenant>();
+
+  /** Tenants with queued batch tasks, the head has the turn. */
+  private final ArrayDeque<Tenant> ring = new ArrayDeque<Tenant>();
+
+  private int size;
+  private volatile int activeLimit;
+  private volatile Map<String, Integer> weights = Collections.emptyMap();
+
+  /**
+   * Running tasks a tenant may have and the weights of the round robin.
+   *
+   * @param activeLimit int, 0 for no limit
+   * @param weights Map of tenant to weight, 1 when missing
+   */
+  void configure(final int activeLimit, final Map<String, Integer> weights) {
+    this.activeLimit = Math.max(0, activeLimit);
+    this.weights = new HashMap<String, Integer>(weights);
+  }
+
+  /**
+   * Count tasks as admitted for a tenant, waiting up to timeoutMillis while that would go beyond
+   * limit.
+   *
+   * @param tenant String
+   * @param count int tasks
+   * @param limit int tasks the tenant may have admitted, 0 when these are not limited
+   * @param timeoutMillis long milliseconds, 0 not to wait
+   * @return boolean true when admitted
+   */
+  boolean admit(final String tenant, final int count, final int limit, final long timeoutMillis) {
+    long nanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, timeoutMillis));
+    lock.lock();
+    try {
+      Tenant state = tenant(tenant);
+      while (limit > 0 && state.limited + count > limit) {
+        if (nanos <= 0L) return false;
+        nanos = released.awaitNanos(nanos);
+      }
+      if (limit > 0) state.limited += count;
+      state.admitted += count;
+      return true;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Give back tasks counted by admit().
+   *
+   * @param tenant String
+   * @param count int tasks
+   * @param limited boolean true when they were counted against the limit
+   */
+  void release(final String tenant, final int count, final boolean limited) {
+    lock.lock();
+    try {
+      Tenant state = tenant(tenant);
+      state.admitted -= count;
+      if (limited) {
+        state.limited -= count;
+        released.signalAll();
+      }
+      forgetIdle(state);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Count a request of the tenant rejected with 429.
+   *
+   * @param tenant String
+   */
+  void rejected(final String tenant) {
+    lock.lock();
+    try {
+      tenant(tenant).rejected++;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * A task taken from this queue stopped running.
+   *
+   * @param task Runnable
+   */
+  void finished(final Runnable task) {
+    lock.lock();
+    try {
+      Tenant state = tenant(tenantOf(task));
+      state.active--;
+      state.completed++;
+      if (!ring.isEmpty()) notEmpty.signal();
+      forgetIdle(state);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Queued, running and admitted tasks of every known tenant.
+   *
+   * @return List of FingerprintTenantStatus
+   */
+  List<FingerprintTenantStatus> getTenantStatus() {
+    lock.lock();
+    try {
+      List<FingerprintTenantStatus> list = new ArrayList<FingerprintTenantStatus>();
+      for (Tenant state : tenants.values()) {
+        FingerprintTenantStatus status = new FingerprintTenantStatus();
+        status.setTenant(state.name);
+        status.setQueuedTasks(state.queued);
+        status.setActiveTasks(state.active);
+        status.setAdmittedTasks(state.admitted);
+        status.setCompletedTasks(state.completed);
+        status.setRejectedRequests(state.rejected);
+        list.add(status);
+      }
+      return list;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Tasks waiting in the interactive lane.
+   *
+   * @return int
+   */
+  int interactiveSize() {
+    lock.lock();
+    try {
+      return interactive.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean offer(final Runnable task) {
+    if (task == null) throw new NullPointerException();
+    lock.lock();
+    try {
+      Tenant state = tenant(tenantOf(task));
+      if (task instanceof TenantTask && ((TenantTask) task).isInteractive()) {
+        interactive.addLast(task);
+      } else {
+        if (state.batch.isEmpty()) {
+          state.credit = weightOf(state);
+          ring.addLast(state);
+        }
+        state.batch.addLast(task);
+      }
+      state.queued++;
+      size++;
+      notEmpty.signal();
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void put(final Runnable task) {
+    offer(task);
+  }
+
+  @Override
+  public boolean offer(final Runnable task, final long timeout, final TimeUnit unit) {
+    return offer(task);
+  }
+
+  @Override
+  public Runnable take() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      Runnable task;
+      while ((task = dispatch()) == null) {
+        notEmpty.await();
+      }
+      return task;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+    long nanos = unit.toNanos(timeout);
+    lock.lockInterruptibly();
+    try {
+      Runnable task;
+      while ((task = dispatch()) == null) {
+        if (nanos <= 0L) return null;
+        nanos = notEmpty.awaitNanos(nanos);
+      }
+      return task;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable poll() {
+    lock.lock();
+    try {
+      return dispatch();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public Runnable peek() {
+    lock.lock();
+    try {
+      if (!interactive.isEmpty()) return interactive.peekFirst();
+      return ring.isEmpty() ? null : ring.peekFirst().batch.peekFirst();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(final Object task) {
+    if (!(task instanceof Runnable)) return false;
+    lock.lock();
+    try {
+      Tenant state = tenants.get(tenantOf((Runnable) task));
+      if (interactive.remove(task)) {
+        // Removed from the interactive lane.
+      } else if (state != null && state.batch.remove(task)) {
+        if (state.batch.isEmpty()) ring.remove(state);
+      } else {
+        return false;
+      }
+      state.queued--;
+      size--;
+      return true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    lock.lock();
+    try {
+      return size;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return Integer.MAX_VALUE;
+  }
+
+  @Override
+  public int drainTo(final Collection<? super Runnable> target) {
+    return drainTo(target, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public int drainTo(final Collection<? super Runnable> target, final int maxElements) {
+    List<Runnable> tasks = new ArrayList<Runnable>();
+    lock.lock();
+    try {
+      while (tasks.size() < maxElements && !interactive.isEmpty()) {
+        tasks.add(interactive.pollFirst());
+      }
+      while (tasks.size() < maxElements && !ring.isEmpty()) {
+        Tenant state = ring.peekFirst();
+        tasks.add(state.batch.pollFirst());
+        if (state.batch.isEmpty()) ring.pollFirst();
+      }
+      for (Runnable task : tasks) {
+        tenant(tenantOf(task)).queued--;
+      }
+      size -= tasks.size();
+    } finally {
+      lock.unlock();
+    }
+    target.addAll(tasks);
+    return tasks.size();
+  }
+
+  /** A snapshot, remove() goes back to the queue. */
+  @Override
+  public Iterator<Runnable> iterator() {
+    final List<Runnable> snapshot = new ArrayList<Runnable>();
+    lock.lock();
+    try {
+      snapshot.addAll(interactive);
+      for (Tenant state : ring) {
+        snapshot.addAll(state.batch);
+      }
+    } finally {
+      lock.unlock();
+    }
+    final Iterator<Runnable> iterator = snapshot.iterator();
+    return new Iterator<Runnable>() {
+      private Runnable last;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public Runnable next() {
+        last = iterator.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        FingerprintFairQueue.this.remove(last);
+      }
+    };
+  }
+
+  /** Next task to run, null when none may run now. Holds the lock. */
+  private Runnable dispatch() {
+    Runnable task = interactive.pollFirst();
+    Tenant state;
+    if (task != null) {
+      state = tenant(tenantOf(task));
+    } else {
+      state = null;
+      final int limit = activeLimit;
+      for (int turn = ring.size(); turn > 0; turn--) {
+        Tenant head = ring.peekFirst();
+        if (limit == 0 || head.active < limit) {
+          state = head;
+          break;
+        }
+        // At its limit, the turn goes to the next tenant.
+        ring.addLast(ring.pollFirst());
+        head.credit = weightOf(head);
+      }
+      if (state == null) return null;
+      task = state.batch.pollFirst();
+      if (state.batch.isEmpty()) {
+        ring.pollFirst();
+      } else if (--state.credit <= 0) {
+        ring.addLast(ring.pollFirst());
+        state.credit = weightOf(state);
+      }
+    }
+    state.queued--;
+    state.active++;
+    size--;
+    return task;
+  }
+
+  private Tenant tenant(final String name) {
+    Tenant state = tenants.get(name);
+    if (state == null) {
+      state = new Tenant(name);
+      tenants.put(name, state);
+    }
+    return state;
+  }
+
+  private void forgetIdle(final Tenant state) {
+    if (tenants.size() > MAX_IDLE_TENANTS
+        && state.queued == 0
+        && state.active == 0
+        && state.admitted == 0) {
+      tenants.remove(state.name);
+    }
+  }
+
+  private int weightOf(final Tenant state) {
+    Integer weight = weights.get(state.name);
+    return weight != null && weight > 0 ? weight : 1;
+  }
+
+  private static String tenantOf(final Runnable task) {
+    if (task instanceof TenantTask) {
+      String tenant = ((TenantTask) task).getTenant();
+      if (tenant != null) return tenant;
+    }
+    return "";
+  }
+
+  /** Counters of one tenant, guarded by the lock. */
+  private static final class Tenant {
+
+    private final String name;
+    private final ArrayDeque<Runnable> batch = new ArrayDeque<Runnable>();
+    private int credit;
+    private int queued;
+    private int active;
+    private int admitted;
+
+    /** Tasks admitted against the per-tenant limit. */
+    private int limited;
+
+    private long completed;
+    private long rejected;
+
+    Tenant(final String name) {
+      this.name = name;
+    }
+  }
+}
@@ -0,0 +1,281 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCollection;
+import com.tuneurl.webrtc.util.controller.dto.FingerprintExecutorStatus;
+import com.tuneurl.webrtc.util.service.FingerprintExecutionService;
+import com.tuneurl.webrtc.util.util.fingerprint.FingerprintThreadCollector;
+import com.tuneurl.webrtc.util.util.fingerprint.TriggerScanner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The 100 ms windows of a whole clip, collected on the shared fingerprint workers in batches.
+ *
+ * <p>At most two batches are queued at a time: the one being read and the next one, so the memory
+ * and the workers a request holds do not grow with the clip length. Only the first batch may be
+ * rejected at once with 429, the later ones wait a bounded time for room.
+ *
+ * <p><strong>Thread Safety: </strong>This class is mutable and not thread safe.
+ *
+ * <ul>
+ *   <li>v1.1 added the tenant and the interactive lane of the windows
+ *   <li>v1.2 added reuseWindows(), the windows of the previous request of the stream
+ * </ul>
+ *
+ * @version 1.2
+ */
+final class FingerprintWindowStream implements AutoCloseable {
+
+  /** Milliseconds between two windows. */
+  static final long WINDOW_MILLIS = 100L;
+
+  private final FingerprintExecutionService executionService;
+  private final String tenant;
+  private final boolean interactive;
+  private final TriggerScanner scanner;
+  private final String rootDir;
+  private final Random random;
+  private final Long fingerprintRate;
+  private final String dataFingerprint;
+  private final long windowCount;
+  private final int batchSize;
+  private final long batchWaitMillis;
+
+  private List<Future<FingerprintThreadCollector>> current;
+  private long currentFirst;
+  private List<Future<FingerprintThreadCollector>> prefetch;
+  private long prefetchFirst;
+
+  /** Index of the window next() returns. */
+  private long nextIndex;
+
+  /** Windows stored by the previous request of the stream, null to compute them all. */
+  private WindowResultStore.Session windowResults;
+
+  /**
+   * Windows at 0, 100, 200 ms ... while below maxDuration, counts at most.
+   *
+   * @param executionService FingerprintExecutionService
+   * @param tenant String the SDK client of the request
+   * @param interactive boolean true for the one-second requests
+   * @param data Array of short, the whole request audio
+   * @param rootDir String
+   * @param random Random
+   * @param fingerprintRate Long
+   * @param dataFingerprint String
+   * @param maxDuration long milliseconds
+   * @param counts long windows
+   * @param batchSize int windows queued at once
+   * @param batchWaitMillis long milliseconds a later batch may wait for room
+   */
+  FingerprintWindowStream(
+      final FingerprintExecutionService executionService,
+      final String tenant,
+      final boolean interactive,
+      final short[] data,
+      final String rootDir,
+      final Random random,
+      final Long fingerprintRate,
+      final String dataFingerprint,
+      final long maxDuration,
+      final long counts,
+      final int batchSize,
+      final long batchWaitMillis) {
+    this.executionService = executionService;
+    this.tenant = tenant;
+    this.interactive = interactive;
+    // One set of prefix sums serves the block searches of every window.
+    this.scanner = new TriggerScanner(data);
+    this.rootDir = rootDir;
+    this.random = random;
+    this.fingerprintRate = fingerprintRate;
+    this.dataFingerprint = dataFingerprint;
+    this.windowCount =
+        Math.max(0L, Math.min(counts, (maxDuration + WINDOW_MILLIS - 1) / WINDOW_MILLIS));
+    // Two batches must fit in the executor or the second one would always wait.
+    FingerprintExecutorStatus status = executionService.getStatus();
+    int capacity = status.getPoolSize() + status.getQueueCapacity();
+    if (interactive && status.getInteractiveCapacity() > 0) {
+      capacity = status.getInteractiveCapacity();
+    } else if (status.getTenantQueueLimit() > 0) {
+      capacity = Math.min(capacity, status.getTenantQueueLimit());
+    }
+    this.batchSize = Math.max(1, Math.min(batchSize, capacity / 2));
+    this.batchWaitMillis = batchWaitMillis;
+  }
+
+  /**
+   * Take the windows found in session instead of computing them, and store the others there. Call
+   * it before next().
+   *
+   * @param session WindowResultStore.Session of the request
+   */
+  void reuseWindows(final WindowResultStore.Session session) {
+    this.windowResults = session;
+  }
+
+  /**
+   * Wait for the next window in offset order.
+   *
+   * @return FingerprintThreadCollector holding the FingerprintCollection, null after the last one
+   */
+  FingerprintThreadCollector next() {
+    if (nextIndex >= windowCount) return null;
+    if (current == null || nextIndex >= currentFirst + current.size()) {
+      advance();
+    }
+    Future<FingerprintThreadCollector> future = current.get((int) (nextIndex - currentFirst));
+    nextIndex++;
+    try {
+      FingerprintThreadCollector window = future.get();
+      if (windowResults != null && !(window instanceof ReusedWindow)) {
+        // Before the caller moves the offsets of the comparisons.
+        windowResults.store(getElapse(), window.getFingerprintCollectionResult());
+      }
+      return window;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Start time of the window last returned by next().
+   *
+   * @return long milliseconds
+   */
+  long getElapse() {
+    return (nextIndex - 1) * WINDOW_MILLIS;
+  }
+
+  /**
+   * Drop the windows starting before elapse, those already queued are cancelled.
+   *
+   * @param elapse long milliseconds
+   */
+  void skipTo(final long elapse) {
+    long index = Math.min(windowCount, (elapse + WINDOW_MILLIS - 1) / WINDOW_MILLIS);
+    for (; nextIndex < index; nextIndex++) {
+      cancel(current, currentFirst, nextIndex);
+      cancel(prefetch, prefetchFirst, nextIndex);
+    }
+  }
+
+  /** Cancel every window not read yet. */
+  @Override
+  public void close() {
+    cancelAll(current);
+    cancelAll(prefetch);
+    current = null;
+    prefetch = null;
+  }
+
+  /** Make current the batch holding nextIndex and queue the batch after it. */
+  private void advance() {
+    long first = nextIndex - nextIndex % batchSize;
+    cancelAll(current);
+    if (prefetch != null && prefetchFirst == first) {
+      current = prefetch;
+    } else {
+      cancelAll(prefetch);
+      // Admission of a request is decided on its first batch.
+      current = submit(first, current == null ? 0L : batchWaitMillis);
+    }
+    currentFirst = first;
+    prefetch = null;
+    if (first + batchSize < windowCount) {
+      prefetchFirst = first + batchSize;
+      prefetch = submit(prefetchFirst, batchWaitMillis);
+    }
+  }
+
+  private List<Future<FingerprintThreadCollector>> submit(final long first, final long wait) {
+    long last = Math.min(windowCount, first + batchSize);
+    List<Future<FingerprintThreadCollector>> batch =
+        new ArrayList<Future<FingerprintThreadCollector>>((int) (last - first));
+    List<Callable<FingerprintThreadCollector>> tasks =
+        new ArrayList<Callable<FingerprintThreadCollector>>((int) (last - first));
+    for (long index = first; index < last; index++) {
+      FingerprintCollection stored =
+          windowResults != null ? windowResults.lookup(index * WINDOW_MILLIS) : null;
+      if (stored != null) {
+        FingerprintThreadCollector window = new ReusedWindow();
+        window.setFingerprintCollectionResult(stored);
+        batch.add(CompletableFuture.completedFuture(window));
+        continue;
+      }
+      FingerprintThreadCollector window =
+          new FingerprintThreadCollector(
+              rootDir, scanner, index * WINDOW_MILLIS, random, fingerprintRate, dataFingerprint);
+      tasks.add(Executors.callable(window, window));
+      batch.add(null);
+    }
+    if (tasks.size() == batch.size()) {
+      return executionService.submitAll(tenant, interactive, tasks, wait);
+    }
+    // Only the windows over new audio go to the workers.
+    List<Future<FingerprintThreadCollector>> queued =
+        executionService.submitAll(tenant, interactive, tasks, wait);
+    int next = 0;
+    for (int index = 0; index < batch.size(); index++) {
+      if (batch.get(index) == null) batch.set(index, queued.get(next++));
+    }
+    return batch;
+  }
+
+  private static void cancel(
+      final List<Future<FingerprintThreadCollector>> batch, final long first, final long index) {
+    if (batch != null && index >= first && index < first + batch.size()) {
+      batch.get((int) (index - first)).cancel(true);
+    }
+  }
+
+  private static void cancelAll(final List<Future<FingerprintThreadCollector>> batch) {
+    if (batch == null) return;
+    for (Future<FingerprintThreadCollector> future : batch) {
+      future.cancel(true);
+    }
+  }
+
+  /** A window taken from the WindowResultStore. */
+  private static final class ReusedWindow extends FingerprintThreadCollector {}
+}
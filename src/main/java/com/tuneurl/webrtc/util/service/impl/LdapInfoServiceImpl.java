@@ -37,6 +37,7 @@ import com.tuneurl.webrtc.util.controller.dto.ItemId;
 import com.tuneurl.webrtc.util.exception.BaseServiceException;
 import com.tuneurl.webrtc.util.model.LdapInfo;
 import com.tuneurl.webrtc.util.repository.LdapInfoRepository;
+import com.tuneurl.webrtc.util.security.CredentialCache;
 import com.tuneurl.webrtc.util.service.LdapInfoService;
 import com.tuneurl.webrtc.util.util.CommonUtil;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,6 +54,9 @@ public class LdapInfoServiceImpl implements LdapInfoService {
 
   @Autowired private LdapInfoRepository repository;
 
+  /** Credentials of the verified JWTs, dropped when their LdapInfo changes. */
+  @Autowired private CredentialCache credentialCache;
+
   /**
    * Save the LdapInfo data.
    *
@@ -65,6 +69,7 @@ public class LdapInfoServiceImpl implements LdapInfoService {
     try {
       result = repository.save(object);
       repository.flush();
+      credentialCache.invalidateLdapInfo(result.getId());
     } catch (Exception ex) {
       CommonUtil.InternalServerException(ex.getMessage());
     }
@@ -171,6 +176,7 @@ public class LdapInfoServiceImpl implements LdapInfoService {
       throws BaseServiceException {
     LdapInfo clazz = find(name);
     CommonUtil.updateLdapInfo(clazz, update);
+    credentialCache.invalidateLdapInfo(clazz.getId());
     return new ItemId(clazz.getId());
   }
 
@@ -186,6 +192,7 @@ public class LdapInfoServiceImpl implements LdapInfoService {
     ItemId item = new ItemId(0L);
     try {
       repository.delete(clazz);
+      credentialCache.invalidateLdapInfo(id);
       item.setId(id);
     } catch (Exception ex) {
       CommonUtil.BadRequestException(ex.getMessage());
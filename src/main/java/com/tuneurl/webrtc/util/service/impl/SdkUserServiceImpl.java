@@ -38,6 +38,7 @@ import com.tuneurl.webrtc.util.controller.dto.ItemId;
 import com.tuneurl.webrtc.util.exception.BaseServiceException;
 import com.tuneurl.webrtc.util.model.SdkUser;
 import com.tuneurl.webrtc.util.repository.SdkUserRepository;
+import com.tuneurl.webrtc.util.security.CredentialCache;
 import com.tuneurl.webrtc.util.service.SdkUserService;
 import com.tuneurl.webrtc.util.util.CommonUtil;
 import java.util.ArrayList;
@@ -74,6 +75,9 @@ public class SdkUserServiceImpl implements SdkUserService {
 
   @Autowired private SdkUserRepository repository;
 
+  /** Credentials of the verified JWTs, dropped when their SdkUser changes. */
+  @Autowired private CredentialCache credentialCache;
+
   /**
    * Save the SdkUser data.
    *
@@ -90,6 +94,7 @@ public class SdkUserServiceImpl implements SdkUserService {
       }
       result = repository.save(object);
       repository.flush();
+      credentialCache.invalidateSdkUser(result.getId());
     } catch (Exception ex) {
       CommonUtil.InternalServerException(ex.getMessage());
     }
@@ -201,6 +206,7 @@ public class SdkUserServiceImpl implements SdkUserService {
       throws BaseServiceException {
     SdkUser clazz = find(name);
     CommonUtil.updateSdkUser(clazz, update);
+    credentialCache.invalidateSdkUser(clazz.getId());
     return new ItemId(clazz.getId());
   }
 
@@ -216,6 +222,7 @@ public class SdkUserServiceImpl implements SdkUserService {
     ItemId item = new ItemId(0L);
     try {
       repository.delete(clazz);
+      credentialCache.invalidateSdkUser(id);
       item.setId(id);
     } catch (Exception ex) {
       CommonUtil.BadRequestException(ex.getMessage());
@@ -0,0 +1,269 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCollection;
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCompareResponse;
+import com.tuneurl.webrtc.util.controller.dto.FingerprintResponse;
+import com.tuneurl.webrtc.util.util.Converter;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Window results of the last one-second request of each stream, for the next request of the
+ * stream.
+ *
+ * <p>The listeners send 10 s of audio every 5 s, so half of the windows of a request cover audio
+ * the previous request of the stream already compared. A window is stored under the stream URL
+ * and its absolute sample offset, from the offset parameter, with a checksum of the samples it
+ * reads, the trigger and the rate; a later window at the same place with the same checksum takes
+ * the stored comparisons, moved to the offset of its request, instead of being computed again.
+ *
+ * <p>Several listeners of a station share its URL, each with offsets from its own start, so the
+ * windows are also keyed by their checksum and a stream keeps the windows of all its listeners:
+ * the oldest are forgotten beyond maxWindows or after idleMillis, as the streams not seen for
+ * idleMillis or beyond maxStreams.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @version 1.1
+ */
+final class WindowResultStore {
+
+  /** Milliseconds of audio a window reads: five 1 s comparisons 20 ms apart, with margin. */
+  static final long WINDOW_SPAN_MILLIS = 1100L;
+
+  private final int maxStreams;
+  private final int maxWindows;
+  private final long idleMillis;
+  private final LinkedHashMap<String, StreamWindows> streams;
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong computed = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param maxStreams int streams kept at most
+   * @param maxWindows int windows kept at most per stream, for all its listeners
+   * @param idleMillis long milliseconds after which a silent stream or a window is forgotten
+   */
+  WindowResultStore(final int maxStreams, final int maxWindows, final long idleMillis) {
+    this.maxStreams = Math.max(1, maxStreams);
+    this.maxWindows = Math.max(1, maxWindows);
+    this.idleMillis = Math.max(0L, idleMillis);
+    this.streams =
+        new LinkedHashMap<String, StreamWindows>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(final Map.Entry<String, StreamWindows> eldest) {
+            return size() > WindowResultStore.this.maxStreams;
+          }
+        };
+  }
+
+  /**
+   * The windows of one request.
+   *
+   * @param url String the stream
+   * @param dataOffset long milliseconds of the stream where data starts
+   * @param data Array of short, the request audio
+   * @param fingerprintRate Long
+   * @param dataFingerprint String the trigger
+   * @return Session
+   */
+  Session open(
+      final String url,
+      final long dataOffset,
+      final short[] data,
+      final Long fingerprintRate,
+      final String dataFingerprint) {
+    long now = System.currentTimeMillis();
+    StreamWindows stream;
+    synchronized (streams) {
+      Iterator<StreamWindows> eldest = streams.values().iterator();
+      while (eldest.hasNext()) {
+        if (now - eldest.next().lastUsed < idleMillis) break;
+        eldest.remove();
+      }
+      stream = streams.get(url);
+      if (stream == null) {
+        stream = new StreamWindows();
+        streams.put(url, stream);
+      }
+      stream.lastUsed = now;
+    }
+    long seed = 0xcbf29ce484222325L;
+    if (dataFingerprint != null) {
+      for (int i = 0; i < dataFingerprint.length(); i++) {
+        seed = (seed ^ dataFingerprint.charAt(i)) * 0x100000001b3L;
+      }
+    }
+    seed = (seed ^ (fingerprintRate == null ? -1L : fingerprintRate)) * 0x100000001b3L;
+    synchronized (stream) {
+      // The other listeners of the stream may still read windows before this offset.
+      Iterator<Window> oldest = stream.windows.values().iterator();
+      while (oldest.hasNext()) {
+        Window window = oldest.next();
+        if (stream.windows.size() <= maxWindows && now - window.storedAt < idleMillis) break;
+        oldest.remove();
+      }
+    }
+    return new Session(stream, dataOffset, data, fingerprintRate, seed);
+  }
+
+  long getReusedWindows() {
+    return reused.get();
+  }
+
+  long getComputedWindows() {
+    return computed.get();
+  }
+
+  int getStreams() {
+    synchronized (streams) {
+      return streams.size();
+    }
+  }
+
+  /** The windows of one request, keyed by their absolute sample. */
+  final class Session {
+
+    private final StreamWindows stream;
+    private final long dataOffset;
+    private final short[] data;
+    private final long rate;
+    private final long seed;
+
+    private Session(
+        final StreamWindows stream,
+        final long dataOffset,
+        final short[] data,
+        final Long fingerprintRate,
+        final long seed) {
+      this.stream = stream;
+      this.dataOffset = dataOffset;
+      this.data = data;
+      this.rate = fingerprintRate == null ? 0L : fingerprintRate;
+      this.seed = seed;
+    }
+
+    /** The absolute sample of the window at elapse, mixed with the checksum of its audio. */
+    private long keyOf(final long elapse, final long checksum) {
+      long sample = Converter.muldiv(dataOffset + elapse, rate, 1000L);
+      return (checksum ^ sample) * 0x100000001b3L;
+    }
+
+    /** FNV-1a of the samples the window at elapse reads, seeded by the trigger and rate. */
+    private long checksum(final long elapse) {
+      int from = (int) Math.min(data.length, Converter.muldiv(elapse, rate, 1000L));
+      int to =
+          (int) Math.min(data.length, Converter.muldiv(elapse + WINDOW_SPAN_MILLIS, rate, 1000L));
+      long value = (seed ^ (to - from)) * 0x100000001b3L;
+      for (int i = from; i < to; i++) {
+        value = (value ^ (data[i] & 0xffff)) * 0x100000001b3L;
+      }
+      return value;
+    }
+
+    /**
+     * The comparisons stored for the window at elapse, moved to this request.
+     *
+     * @param elapse long milliseconds from the start of data
+     * @return FingerprintCollection or null when the window must be computed
+     */
+    FingerprintCollection lookup(final long elapse) {
+      long checksum = checksum(elapse);
+      Window window;
+      synchronized (stream) {
+        window = stream.windows.get(keyOf(elapse, checksum));
+      }
+      if (window == null || window.checksum != checksum) return null;
+      reused.incrementAndGet();
+      List<FingerprintCompareResponse> selection =
+          new ArrayList<FingerprintCompareResponse>(window.similarities.length);
+      for (int i = 0; i < window.similarities.length; i++) {
+        FingerprintCompareResponse fcr = new FingerprintCompareResponse();
+        fcr.setSimilarity(window.similarities[i]);
+        fcr.setOffset(window.offsets[i] - dataOffset);
+        selection.add(fcr);
+      }
+      FingerprintCollection result = new FingerprintCollection();
+      result.setFcrCollection(selection);
+      result.setFrCollection(new ArrayList<FingerprintResponse>(window.responses));
+      return result;
+    }
+
+    /**
+     * Keep the comparisons of the window at elapse for the next request. Called before the
+     * request moves the offsets of its tags.
+     *
+     * @param elapse long milliseconds from the start of data
+     * @param result FingerprintCollection
+     */
+    void store(final long elapse, final FingerprintCollection result) {
+      computed.incrementAndGet();
+      List<FingerprintCompareResponse> selection = result.getFcrCollection();
+      Window window = new Window();
+      window.checksum = checksum(elapse);
+      window.similarities = new long[selection.size()];
+      window.offsets = new long[selection.size()];
+      for (int i = 0; i < selection.size(); i++) {
+        window.similarities[i] = selection.get(i).getSimilarity();
+        window.offsets[i] = selection.get(i).getOffset() + dataOffset;
+      }
+      window.responses = new ArrayList<FingerprintResponse>(result.getFrCollection());
+      window.storedAt = System.currentTimeMillis();
+      long key = keyOf(elapse, window.checksum);
+      synchronized (stream) {
+        // Newest last, the oldest windows are forgotten first.
+        stream.windows.remove(key);
+        stream.windows.put(key, window);
+      }
+    }
+  }
+
+  private static final class StreamWindows {
+    private final LinkedHashMap<Long, Window> windows = new LinkedHashMap<Long, Window>();
+    private long lastUsed;
+  }
+
+  private static final class Window {
+    private long checksum;
+    private long storedAt;
+    private long[] similarities;
+    private long[] offsets;
+    private List<FingerprintResponse> responses;
+  }
+}
@@ -394,6 +394,18 @@ public final class CommonUtil {
     throw new BaseServiceException(msg, HttpStatus.TOO_MANY_REQUESTS);
   }
 
+  /**
+   * Generate an HTTP 429 Too Many Request exception with a Retry-After header.
+   *
+   * @param msg The Error message
+   * @param retryAfterSeconds long seconds the client should wait before retrying
+   * @throws BaseServiceException The exception.
+   */
+  public static void TooManyRequestException(final String msg, final long retryAfterSeconds)
+      throws BaseServiceException {
+    throw new BaseServiceException(msg, HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+  }
+
   /**
    * Generate an HTTP 500 Internal Server exception.
    *
@@ -0,0 +1,183 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs one computation per key at a time: callers asking for a key already being computed wait
+ * for that computation and get its result. The result is then kept memoMillis for the callers
+ * arriving just after it, at most maxEntries of them.
+ *
+ * <p>A failed computation is not kept, its exception is thrown to every caller that waited for it.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @param <K> key, with equals() and hashCode()
+ * @param <V> result, shared between the callers so it must not be modified
+ * @version 1.0
+ */
+public final class SingleFlight<K, V> {
+
+  private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<K, Flight<V>>();
+  private final long memoMillis;
+  private final int maxEntries;
+  private final AtomicLong computed = new AtomicLong();
+  private final AtomicLong shared = new AtomicLong();
+
+  /**
+   * Constructor.
+   *
+   * @param memoMillis long milliseconds a result is kept, 0 to keep it only while computed
+   * @param maxEntries int results kept at most
+   */
+  public SingleFlight(final long memoMillis, final int maxEntries) {
+    this.memoMillis = Math.max(0L, memoMillis);
+    this.maxEntries = Math.max(0, maxEntries);
+  }
+
+  /**
+   * Result for key, computed by supplier unless another caller is computing it or computed it less
+   * than memoMillis ago.
+   *
+   * @param key K
+   * @param supplier Supplier computing the result
+   * @return V
+   */
+  public V execute(final K key, final Supplier<V> supplier) {
+    while (true) {
+      Flight<V> flight = flights.get(key);
+      if (flight != null && flight.isExpired(System.currentTimeMillis())) {
+        flights.remove(key, flight);
+        continue;
+      }
+      if (flight == null) {
+        Flight<V> mine = new Flight<V>();
+        flight = flights.putIfAbsent(key, mine);
+        if (flight == null) return compute(key, mine, supplier);
+        continue;
+      }
+      shared.incrementAndGet();
+      return flight.await();
+    }
+  }
+
+  /**
+   * Computations run since startup.
+   *
+   * @return long
+   */
+  public long getComputed() {
+    return computed.get();
+  }
+
+  /**
+   * Callers served by the computation of another caller since startup.
+   *
+   * @return long
+   */
+  public long getShared() {
+    return shared.get();
+  }
+
+  private V compute(final K key, final Flight<V> flight, final Supplier<V> supplier) {
+    computed.incrementAndGet();
+    V value;
+    try {
+      value = supplier.get();
+    } catch (RuntimeException | Error ex) {
+      flights.remove(key, flight);
+      flight.future.completeExceptionally(ex);
+      throw ex;
+    }
+    if (memoMillis == 0L || maxEntries == 0) {
+      flights.remove(key, flight);
+    } else {
+      flight.expiresAt = System.currentTimeMillis() + memoMillis;
+      evict();
+    }
+    flight.future.complete(value);
+    return value;
+  }
+
+  /** Forget the expired results, then the oldest ones while there are more than maxEntries. */
+  private void evict() {
+    if (flights.size() <= maxEntries) return;
+    long now = System.currentTimeMillis();
+    for (Iterator<Map.Entry<K, Flight<V>>> it = flights.entrySet().iterator(); it.hasNext(); ) {
+      if (it.next().getValue().isExpired(now)) it.remove();
+    }
+    while (flights.size() > maxEntries) {
+      Map.Entry<K, Flight<V>> oldest = null;
+      for (Map.Entry<K, Flight<V>> entry : flights.entrySet()) {
+        long expiresAt = entry.getValue().expiresAt;
+        if (expiresAt != Long.MAX_VALUE
+            && (oldest == null || expiresAt < oldest.getValue().expiresAt)) {
+          oldest = entry;
+        }
+      }
+      // The others are still being computed.
+      if (oldest == null) return;
+      flights.remove(oldest.getKey(), oldest.getValue());
+    }
+  }
+
+  /** One computation and the time its result expires. */
+  private static final class Flight<V> {
+
+    private final CompletableFuture<V> future = new CompletableFuture<V>();
+
+    /** Long.MAX_VALUE while computed. */
+    private volatile long expiresAt = Long.MAX_VALUE;
+
+    boolean isExpired(final long now) {
+      return now >= expiresAt;
+    }
+
+    V await() {
+      try {
+        return future.join();
+      } catch (CompletionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw ex;
+      }
+    }
+  }
+}
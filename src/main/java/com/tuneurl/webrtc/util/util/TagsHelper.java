@@ -6,6 +6,7 @@ import com.tuneurl.webrtc.util.controller.dto.FingerprintResponseNew;
 import com.tuneurl.webrtc.util.controller.dto.TuneUrlTag;
 import com.tuneurl.webrtc.util.util.fingerprint.FingerprintUtility;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class TagsHelper {
@@ -75,19 +76,22 @@ public class TagsHelper {
   }
 
   /**
-   * Helper to prune List of TuneUrlTag
+   * Helper to prune List of TuneUrlTag, a tag less than a second before the next one is dropped.
    *
-   * @param tags List&lt;TuneUrlTag>
+   * @param tags List&lt;TuneUrlTag> in data position order
    * @return List&lt;TuneUrlTag>
    */
   public final List<TuneUrlTag> pruneTags(List<TuneUrlTag> tags) {
-
-    while (tags.size() > 1) {
-      Long dataPostion1 = tags.get(0).getDataPosition();
-      Long dataPostion2 = tags.get(1).getDataPosition();
-      if (Math.abs(dataPostion1 - dataPostion2) < 1000) tags.remove(0);
+    List<TuneUrlTag> pruned = new ArrayList<TuneUrlTag>(tags.size());
+    for (int index = 0; index < tags.size(); index++) {
+      if (index + 1 < tags.size()) {
+        Long dataPostion1 = tags.get(index).getDataPosition();
+        Long dataPostion2 = tags.get(index + 1).getDataPosition();
+        if (Math.abs(dataPostion1 - dataPostion2) < 1000) continue;
+      }
+      pruned.add(tags.get(index));
     }
-    return tags;
+    return pruned;
   }
 
   /**
@@ -0,0 +1,325 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * Bounded cache with W-TinyLFU admission. New entries go to a small LRU window (1% of
+ * maximumWeight); an entry leaving the window enters the main segments only when its key was
+ * asked more often than the entry it would evict, so a scan of one-off keys cannot flush the keys
+ * asked again and again. The main space is a segmented LRU: probation for the entries admitted,
+ * protected (80%) for those hit again since.
+ *
+ * <p>The frequencies are kept in a count-min sketch of 4-bit counters, halved every 10 times its
+ * width of additions so that old popularity fades. The entries weigh what weigher says, usually
+ * their heap bytes, and expire ttlMillis after they were put.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @param <K> key, with equals() and hashCode()
+ * @param <V> value, shared between the callers so it must not be modified
+ * @version 1.0
+ */
+public final class TinyLfuCache<K, V> {
+
+  private static final int WINDOW = 0;
+  private static final int PROBATION = 1;
+  private static final int PROTECTED = 2;
+
+  private static final int[] SEEDS = {0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0x2f90404f};
+
+  private final long maximumWeight;
+  private final long windowMaximum;
+  private final long protectedMaximum;
+  private final long ttlMillis;
+  private final ToLongBiFunction<K, V> weigher;
+  private final LongSupplier clock;
+
+  /** The segments, least recently used first. */
+  @SuppressWarnings("unchecked")
+  private final LinkedHashMap<K, Node<V>>[] segments = new LinkedHashMap[3];
+
+  private final long[] weights = new long[3];
+  private final long[] sketch;
+  private final int sketchMask;
+  private int additions;
+
+  private long hits;
+  private long misses;
+  private long evictions;
+  private long expirations;
+
+  /**
+   * Cache reading the wall clock.
+   *
+   * @param maximumWeight long total weight of the entries, at least 1
+   * @param expectedEntries int entries usually held, sizes the frequency sketch
+   * @param ttlMillis long milliseconds an entry is kept after put(), 0 for no expiration
+   * @param weigher ToLongBiFunction weight of an entry
+   */
+  public TinyLfuCache(
+      final long maximumWeight,
+      final int expectedEntries,
+      final long ttlMillis,
+      final ToLongBiFunction<K, V> weigher) {
+    this(maximumWeight, expectedEntries, ttlMillis, weigher, System::currentTimeMillis);
+  }
+
+  TinyLfuCache(
+      final long maximumWeight,
+      final int expectedEntries,
+      final long ttlMillis,
+      final ToLongBiFunction<K, V> weigher,
+      final LongSupplier clock) {
+    this.maximumWeight = Math.max(1L, maximumWeight);
+    this.windowMaximum = Math.max(1L, this.maximumWeight / 100L);
+    this.protectedMaximum = (this.maximumWeight - this.windowMaximum) * 4L / 5L;
+    this.ttlMillis = Math.max(0L, ttlMillis);
+    this.weigher = weigher;
+    this.clock = clock;
+    for (int segment = 0; segment < segments.length; segment++) {
+      segments[segment] = new LinkedHashMap<K, Node<V>>();
+    }
+    int width = Integer.highestOneBit(Math.max(16, Math.min(1 << 24, expectedEntries)) - 1) << 1;
+    this.sketch = new long[width];
+    this.sketchMask = width - 1;
+  }
+
+  /**
+   * The value of key, null when it is not cached or expired.
+   *
+   * @param key K
+   * @return V or null
+   */
+  public synchronized V get(final K key) {
+    int hash = spread(key.hashCode());
+    increment(hash);
+    Node<V> node = find(key);
+    if (node == null) {
+      misses++;
+      return null;
+    }
+    if (ttlMillis > 0L && clock.getAsLong() - node.created >= ttlMillis) {
+      remove(key, node);
+      expirations++;
+      misses++;
+      return null;
+    }
+    hits++;
+    segments[node.segment].remove(key);
+    if (node.segment == PROBATION) {
+      weights[PROBATION] -= node.weight;
+      node.segment = PROTECTED;
+      weights[PROTECTED] += node.weight;
+    }
+    segments[node.segment].put(key, node);
+    // The protected entries used the least go back to probation.
+    while (weights[PROTECTED] > protectedMaximum) {
+      Map.Entry<K, Node<V>> eldest = eldest(PROTECTED);
+      segments[PROTECTED].remove(eldest.getKey());
+      weights[PROTECTED] -= eldest.getValue().weight;
+      eldest.getValue().segment = PROBATION;
+      weights[PROBATION] += eldest.getValue().weight;
+      segments[PROBATION].put(eldest.getKey(), eldest.getValue());
+    }
+    return node.value;
+  }
+
+  /**
+   * Cache value under key. It leaves the window, through admission, once the window is over
+   * its weight.
+   *
+   * @param key K
+   * @param value V
+   */
+  public synchronized void put(final K key, final V value) {
+    long weight = Math.max(1L, weigher.applyAsLong(key, value));
+    Node<V> old = find(key);
+    if (old != null) remove(key, old);
+    if (weight > maximumWeight - windowMaximum) {
+      evictions++;
+      return;
+    }
+    Node<V> node = new Node<V>(value, weight, clock.getAsLong());
+    segments[WINDOW].put(key, node);
+    weights[WINDOW] += weight;
+    while (weights[WINDOW] > windowMaximum) {
+      Map.Entry<K, Node<V>> candidate = eldest(WINDOW);
+      segments[WINDOW].remove(candidate.getKey());
+      weights[WINDOW] -= candidate.getValue().weight;
+      admit(candidate.getKey(), candidate.getValue());
+    }
+  }
+
+  /** Empty the cache, the counters are kept. */
+  public synchronized void clear() {
+    for (int segment = 0; segment < segments.length; segment++) {
+      segments[segment].clear();
+      weights[segment] = 0L;
+    }
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Entries evicted or refused for want of room.
+   *
+   * @return long
+   */
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized long getExpirations() {
+    return expirations;
+  }
+
+  public synchronized int size() {
+    return segments[WINDOW].size() + segments[PROBATION].size() + segments[PROTECTED].size();
+  }
+
+  public synchronized long getWeight() {
+    return weights[WINDOW] + weights[PROBATION] + weights[PROTECTED];
+  }
+
+  public long getMaximumWeight() {
+    return maximumWeight;
+  }
+
+  /** The candidate leaving the window enters probation if it is asked more than the victims. */
+  private void admit(final K key, final Node<V> candidate) {
+    long room = maximumWeight - windowMaximum;
+    int frequency = frequency(spread(key.hashCode()));
+    while (weights[PROBATION] + weights[PROTECTED] + candidate.weight > room) {
+      int from = segments[PROBATION].isEmpty() ? PROTECTED : PROBATION;
+      Map.Entry<K, Node<V>> victim = eldest(from);
+      boolean expired =
+          ttlMillis > 0L && clock.getAsLong() - victim.getValue().created >= ttlMillis;
+      if (!expired && frequency(spread(victim.getKey().hashCode())) >= frequency) {
+        evictions++;
+        return;
+      }
+      remove(victim.getKey(), victim.getValue());
+      if (expired) {
+        expirations++;
+      } else {
+        evictions++;
+      }
+    }
+    candidate.segment = PROBATION;
+    segments[PROBATION].put(key, candidate);
+    weights[PROBATION] += candidate.weight;
+  }
+
+  private Node<V> find(final K key) {
+    for (LinkedHashMap<K, Node<V>> segment : segments) {
+      Node<V> node = segment.get(key);
+      if (node != null) return node;
+    }
+    return null;
+  }
+
+  private void remove(final K key, final Node<V> node) {
+    segments[node.segment].remove(key);
+    weights[node.segment] -= node.weight;
+  }
+
+  private Map.Entry<K, Node<V>> eldest(final int segment) {
+    Iterator<Map.Entry<K, Node<V>>> iterator = segments[segment].entrySet().iterator();
+    return iterator.next();
+  }
+
+  /** Add one to the 4 counters of hash, then halve every counter after 10 x width additions. */
+  private void increment(final int hash) {
+    for (int depth = 0; depth < 4; depth++) {
+      int index = index(hash, depth);
+      int shift = counterShift(hash, depth);
+      if (((sketch[index] >>> shift) & 0xfL) < 15L) {
+        sketch[index] += 1L << shift;
+      }
+    }
+    if (++additions >= 10 * sketch.length) {
+      additions = 0;
+      for (int index = 0; index < sketch.length; index++) {
+        sketch[index] = (sketch[index] >>> 1) & 0x7777777777777777L;
+      }
+    }
+  }
+
+  private int frequency(final int hash) {
+    int frequency = 15;
+    for (int depth = 0; depth < 4; depth++) {
+      long count = (sketch[index(hash, depth)] >>> counterShift(hash, depth)) & 0xfL;
+      frequency = Math.min(frequency, (int) count);
+    }
+    return frequency;
+  }
+
+  private int index(final int hash, final int depth) {
+    int h = hash * SEEDS[depth];
+    return (h ^ (h >>> 16)) & sketchMask;
+  }
+
+  /** Each depth uses its own group of 4 counters in the slot. */
+  private static int counterShift(final int hash, final int depth) {
+    return ((depth << 2) + ((hash >>> (depth << 3)) & 3)) << 2;
+  }
+
+  private static int spread(final int hashCode) {
+    int h = hashCode * 0x45d9f3b;
+    return h ^ (h >>> 17);
+  }
+
+  private static final class Node<V> {
+    private final V value;
+    private final long weight;
+    private final long created;
+    private int segment;
+
+    Node(final V value, final long weight, final long created) {
+      this.value = value;
+      this.weight = weight;
+      this.created = created;
+    }
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads of JDK 21+, looked up by reflection so the application still builds and runs
+ * on Java 8.
+ *
+ * <p>Every method returns null when the running JVM has no virtual threads; callers then keep
+ * their platform threads.
+ *
+ * @version 1.0
+ */
+public final class VirtualThreads {
+
+  /** Hidden constructor. */
+  private VirtualThreads() {}
+
+  /**
+   * Tells if the running JVM has virtual threads.
+   *
+   * @return boolean
+   */
+  public static boolean isSupported() {
+    return newThreadFactory("virtual-") != null;
+  }
+
+  /**
+   * ThreadFactory of virtual threads named prefix1, prefix2, ...
+   *
+   * @param prefix String
+   * @return ThreadFactory or null before JDK 21
+   */
+  public static ThreadFactory newThreadFactory(final String prefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+      builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+      return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * ExecutorService starting one virtual thread per task.
+   *
+   * @param prefix String name prefix of the threads
+   * @return ExecutorService or null before JDK 21
+   */
+  public static ExecutorService newThreadPerTaskExecutor(final String prefix) {
+    ThreadFactory factory = newThreadFactory(prefix);
+    if (factory == null) return null;
+    try {
+      Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+      return (ExecutorService) method.invoke(null, factory);
+    } catch (ReflectiveOperationException | RuntimeException ex) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,415 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Port of the Java FFT path of jni/cpp/FastFourierTransform.cpp (the Karl Helgason transformer).
+ *
+ * <p>Same as the native code, the numberOfSamples floats of a frame are transformed as
+ * numberOfSamples / 2 interleaved complex values and getMagnitudes() returns the magnitudes of
+ * the first numberOfSamples / 4 of them. The twiddle factors and the bit reversal table are
+ * computed once per numberOfSamples, see getInstance().
+ *
+ * <p><strong>Thread Safety: </strong>This class is immutable thus thread safe, the caller owns
+ * the frame being transformed.
+ *
+ * @version 1.0
+ */
+public final class FastFourierTransform {
+
+  /** Plans by numberOfSamples. */
+  private static final ConcurrentHashMap<Integer, FastFourierTransform> plans =
+      new ConcurrentHashMap<>();
+
+  private final int fftFrameSize;
+  private final int fftFrameSize2;
+  private final float[] w;
+  private final int[] bitmArray;
+
+  private FastFourierTransform(final int numberOfSamples) {
+    fftFrameSize = numberOfSamples / 2;
+    fftFrameSize2 = fftFrameSize << 1;
+    w = computeTwiddleFactors(fftFrameSize);
+    bitmArray = new int[fftFrameSize2];
+    for (int i = 2; i < fftFrameSize2; i += 2) {
+      int j = 0;
+      for (int bitm = 2; bitm < fftFrameSize2; bitm <<= 1) {
+        if ((i & bitm) != 0) {
+          j++;
+        }
+        j <<= 1;
+      }
+      bitmArray[i] = j;
+    }
+  }
+
+  /**
+   * The shared plan for frames of numberOfSamples floats.
+   *
+   * @param numberOfSamples int a power of 2, at least 8
+   * @return FastFourierTransform
+   */
+  public static FastFourierTransform getInstance(final int numberOfSamples) {
+    FastFourierTransform plan = plans.get(numberOfSamples);
+    if (plan == null) {
+      plan = plans.computeIfAbsent(numberOfSamples, FastFourierTransform::new);
+    }
+    return plan;
+  }
+
+  /**
+   * Number of magnitudes getMagnitudes() writes.
+   *
+   * @return int
+   */
+  public int getMagnitudeCount() {
+    return fftFrameSize / 2;
+  }
+
+  /**
+   * Transform the frame in place then write its magnitudes.
+   *
+   * @param data Array of float, the numberOfSamples floats of the frame, overwritten
+   * @param magnitudes Array of float receiving getMagnitudeCount() values
+   * @param offset int first index of magnitudes to write
+   */
+  public void getMagnitudes(final float[] data, final float[] magnitudes, final int offset) {
+    bitreversal(data);
+    calc(data);
+    for (int i = 0; i < fftFrameSize; i += 2) {
+      float value = (data[i] * data[i]) + (data[i + 1] * data[i + 1]);
+      magnitudes[offset + (i >> 1)] = (float) Math.sqrt(value);
+    }
+  }
+
+  private static float[] computeTwiddleFactors(final int fftFrameSize) {
+    // As computed natively: one short of log2 when fftFrameSize is 8192.
+    final int imax = (int) (FloatMath.logf(fftFrameSize) / FloatMath.logf(2.0f));
+
+    float[] warray = new float[(fftFrameSize - 1) * 4];
+    int wIndex = 0;
+
+    for (int i = 0, nstep = 2; i < imax; i++) {
+      int jmax = nstep;
+      nstep <<= 1;
+
+      float wr = 1.0f;
+      float wi = 0.0f;
+
+      float arg = (float) (Math.PI / (jmax >> 1));
+      float wfr = (float) Math.cos(arg);
+      float wfi = -1.0f * (float) Math.sin(arg);
+
+      for (int j = 0; j < jmax; j += 2) {
+        warray[wIndex++] = wr;
+        warray[wIndex++] = wi;
+
+        float tempr = wr;
+        wr = tempr * wfr - wi * wfi;
+        wi = tempr * wfi + wi * wfr;
+      }
+    }
+
+    // PRECOMPUTATION of wwr1, wwi1 for factor 4 Decomposition (3 * complex
+    // operators and 8 +/- complex operators)
+    wIndex = 0;
+    int wIndex2 = warray.length >> 1;
+    for (int i = 0, nstep = 2; i < (imax - 1); i++) {
+      int jmax = nstep;
+      nstep *= 2;
+
+      int ii = wIndex + jmax;
+      for (int j = 0; j < jmax; j += 2) {
+        float wr = warray[wIndex++];
+        float wi = warray[wIndex++];
+        float wr1 = warray[ii++];
+        float wi1 = warray[ii++];
+        warray[wIndex2++] = wr * wr1 - wi * wi1;
+        warray[wIndex2++] = wr * wi1 + wi * wr1;
+      }
+    }
+    return warray;
+  }
+
+  private void calc(final float[] data) {
+    int nstep = 2;
+    if (nstep >= fftFrameSize2) {
+      return;
+    }
+    calcF4F(data, nstep - 2, nstep);
+  }
+
+  private void calcF2E(final float[] data, int i, final int nstep) {
+    int jmax = nstep;
+    for (int n = 0; n < jmax; n += 2) {
+      float wr = w[i++];
+      float wi = w[i++];
+      int m = n + jmax;
+      float datamR = data[m];
+      float datamI = data[m + 1];
+      float datanR = data[n];
+      float datanI = data[n + 1];
+      float tempr = datamR * wr - datamI * wi;
+      float tempi = datamR * wi + datamI * wr;
+      data[m] = datanR - tempr;
+      data[m + 1] = datanI - tempi;
+      data[n] = datanR + tempr;
+      data[n + 1] = datanI + tempi;
+    }
+  }
+
+  /** Factor-4 Decomposition with 3 * complex operators and 8 +/- complex operators. */
+  private void calcF4F(final float[] data, int i, int nstep) {
+    final int wLen = w.length >> 1;
+    while (nstep < fftFrameSize2) {
+
+      if (nstep << 2 == fftFrameSize2) {
+        // Goto Factor-4 Final Decomposition
+        calcF4FE(data, i, nstep);
+        return;
+      }
+      int jmax = nstep;
+      int nnstep = nstep << 1;
+      if (nnstep == fftFrameSize2) {
+        // Factor-4 Decomposition not possible
+        calcF2E(data, i, nstep);
+        return;
+      }
+      nstep <<= 2;
+      int ii = i + jmax;
+      int iii = i + wLen;
+
+      i += 2;
+      ii += 2;
+      iii += 2;
+
+      for (int n = 0; n < fftFrameSize2; n += nstep) {
+        int m = n + jmax;
+
+        float datam1R = data[m];
+        float datam1I = data[m + 1];
+        float datan1R = data[n];
+        float datan1I = data[n + 1];
+
+        n += nnstep;
+        m += nnstep;
+        float datam2R = data[m];
+        float datam2I = data[m + 1];
+        float datan2R = data[n];
+        float datan2I = data[n + 1];
+
+        float tempr = datam1R;
+        float tempi = datam1I;
+
+        datam1R = datan1R - tempr;
+        datam1I = datan1I - tempi;
+        datan1R = datan1R + tempr;
+        datan1I = datan1I + tempi;
+
+        float n2w1r = datan2R;
+        float n2w1i = datan2I;
+        float m2ww1r = datam2R;
+        float m2ww1i = datam2I;
+
+        tempr = m2ww1r - n2w1r;
+        tempi = m2ww1i - n2w1i;
+
+        datam2R = datam1R + tempi;
+        datam2I = datam1I - tempr;
+        datam1R = datam1R - tempi;
+        datam1I = datam1I + tempr;
+
+        tempr = n2w1r + m2ww1r;
+        tempi = n2w1i + m2ww1i;
+
+        datan2R = datan1R - tempr;
+        datan2I = datan1I - tempi;
+        datan1R = datan1R + tempr;
+        datan1I = datan1I + tempi;
+
+        data[m] = datam2R;
+        data[m + 1] = datam2I;
+        data[n] = datan2R;
+        data[n + 1] = datan2I;
+
+        n -= nnstep;
+        m -= nnstep;
+        data[m] = datam1R;
+        data[m + 1] = datam1I;
+        data[n] = datan1R;
+        data[n + 1] = datan1I;
+      }
+
+      for (int j = 2; j < jmax; j += 2) {
+        float wr = w[i++];
+        float wi = w[i++];
+        float wr1 = w[ii++];
+        float wi1 = w[ii++];
+        float wwr1 = w[iii++];
+        float wwi1 = w[iii++];
+
+        for (int n = j; n < fftFrameSize2; n += nstep) {
+          butterfly(data, n, jmax, nnstep, wr, wi, wr1, wi1, wwr1, wwi1);
+        }
+      }
+
+      i += jmax << 1;
+    }
+
+    calcF2E(data, i, nstep);
+  }
+
+  /** Factor-4 Final Decomposition. */
+  private void calcF4FE(final float[] data, int i, int nstep) {
+    final int wLen = w.length >> 1;
+    while (nstep < fftFrameSize2) {
+
+      int jmax = nstep;
+      int nnstep = nstep << 1;
+      if (nnstep == fftFrameSize2) {
+        // Factor-4 Decomposition not possible
+        calcF2E(data, i, nstep);
+        return;
+      }
+      nstep <<= 2;
+      int ii = i + jmax;
+      int iii = i + wLen;
+      for (int n = 0; n < jmax; n += 2) {
+        float wr = w[i++];
+        float wi = w[i++];
+        float wr1 = w[ii++];
+        float wi1 = w[ii++];
+        float wwr1 = w[iii++];
+        float wwi1 = w[iii++];
+        butterfly(data, n, jmax, nnstep, wr, wi, wr1, wi1, wwr1, wwi1);
+      }
+
+      i += jmax << 1;
+    }
+  }
+
+  /** One radix-4 butterfly of calcF4F() and calcF4FE(). */
+  private static void butterfly(
+      final float[] data,
+      final int n,
+      final int jmax,
+      final int nnstep,
+      final float wr,
+      final float wi,
+      final float wr1,
+      final float wi1,
+      final float wwr1,
+      final float wwi1) {
+    final int m = n + jmax;
+    final int n2 = n + nnstep;
+    final int m2 = m + nnstep;
+
+    float datam1R = data[m];
+    float datam1I = data[m + 1];
+    float datan1R = data[n];
+    float datan1I = data[n + 1];
+    float datam2R = data[m2];
+    float datam2I = data[m2 + 1];
+    float datan2R = data[n2];
+    float datan2I = data[n2 + 1];
+
+    float tempr = datam1R * wr - datam1I * wi;
+    float tempi = datam1R * wi + datam1I * wr;
+
+    datam1R = datan1R - tempr;
+    datam1I = datan1I - tempi;
+    datan1R = datan1R + tempr;
+    datan1I = datan1I + tempi;
+
+    float n2w1r = datan2R * wr1 - datan2I * wi1;
+    float n2w1i = datan2R * wi1 + datan2I * wr1;
+    float m2ww1r = datam2R * wwr1 - datam2I * wwi1;
+    float m2ww1i = datam2R * wwi1 + datam2I * wwr1;
+
+    tempr = m2ww1r - n2w1r;
+    tempi = m2ww1i - n2w1i;
+
+    datam2R = datam1R + tempi;
+    datam2I = datam1I - tempr;
+    datam1R = datam1R - tempi;
+    datam1I = datam1I + tempr;
+
+    tempr = n2w1r + m2ww1r;
+    tempi = n2w1i + m2ww1i;
+
+    datan2R = datan1R - tempr;
+    datan2I = datan1I - tempi;
+    datan1R = datan1R + tempr;
+    datan1I = datan1I + tempi;
+
+    data[m2] = datam2R;
+    data[m2 + 1] = datam2I;
+    data[n2] = datan2R;
+    data[n2 + 1] = datan2I;
+    data[m] = datam1R;
+    data[m + 1] = datam1I;
+    data[n] = datan1R;
+    data[n + 1] = datan1I;
+  }
+
+  private void bitreversal(final float[] data) {
+    if (fftFrameSize < 4) {
+      return;
+    }
+
+    int inverse = fftFrameSize2 - 2;
+    for (int i = 0; i < fftFrameSize; i += 4) {
+      int j = bitmArray[i];
+
+      // Performing Bit-Reversal, even v.s. even, O(2N)
+      if (i < j) {
+        swap(data, i, j);
+        swap(data, inverse - i, inverse - j);
+      }
+
+      // Performing Bit-Reversal, odd v.s. even, O(N)
+      swap(data, i + 2, j + fftFrameSize);
+    }
+  }
+
+  /** Swap the complex values at n and m. */
+  private static void swap(final float[] data, final int n, final int m) {
+    float tempr = data[n];
+    data[n] = data[m];
+    data[m] = tempr;
+    float tempi = data[n + 1];
+    data[n + 1] = data[m + 1];
+    data[m + 1] = tempi;
+  }
+}
@@ -12,6 +12,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Random;
 
 import java.io.BufferedWriter;
@@ -73,30 +77,10 @@ public class FingerprintExternals {
     FingerprintUtility.resetResponseValue(response, timeOffset);
     // 1. a null offset signify Fingerprint extraction failure.
     response.setOffset(null);
-    // 2. Create a unique temporary filename.
-    String uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-    String outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
-    // 3. Make sure it is a unique file name.
-    /*
-    if (ProcessHelper.isFileExist(outputFilename)) {
-      uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-      outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
-    }
-     */
-    // 4. Create an input file for ./jni/fingerprintexec
-    // two size
-    // [0, ..., two size-1]
-
-    // Generate the one and onesize variables
-    fingerprintUtility.writeFingerprintDataWithBuffer(
-        outputFilename, dataFingerprint, two, twosize);
-
-    // 5. the JSON string should be written to this file
-    // 6. Run ./jni/fingerprintexec via runExternalFingerprintModule.sh
-    // 7. read the JSON string
+    // 2. - 7. Run ./jni/fingerprintexec and read the JSON string
     String json =
-        executeFingerprintExecAsProcess(
-            uniqueName, rootDir, outputFilename, signature, "jsCompareFingerprint");
+        runFingerprintExec(
+            random, rootDir, signature, "jsCompareFingerprint", dataFingerprint, two, twosize);
     if (json == null) {
       return response;
     }
@@ -122,9 +106,7 @@ public class FingerprintExternals {
       return response;
     }
     // 9. Fingerprint comparison is successful.
-    response.setOffset(timeOffset + ProcessHelper.parseLong(result.getOffset(), 0));
-    response.setSimilarity(ProcessHelper.parseLong(result.getSimilarity(), 0));
-    return response;
+    return FingerprintUtility.updateCompareResponse(response, timeOffset, result);
   }
 
   
@@ -153,27 +135,8 @@ public class FingerprintExternals {
     // response.setSize(0L);
     // response.setData(null);
     // response.setDataEx(null);
-    // 2. Create a unique temporary filename.
-    String uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-    String outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
-    // 3. Make sure it is a unique file name.
-    /*
-    if (ProcessHelper.isFileExist(outputFilename)) {
-      uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-      outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
-    }
-     */
-    // 4. Create an input file for ./jni/fingerprintexec
-    // one size
-    // [0, ..., one size-1]
-    fingerprintUtility.writeFingerprintingData(outputFilename, one, onesize);
-
-    // 5. the JSON string should be written to this file
-    // 6. Run ./jni/fingerprintexec via runExternalFingerprintModule.sh
-    // 7. read the JSON string
-    String json =
-        executeFingerprintExecAsProcess(
-            uniqueName, rootDir, outputFilename, signature, "fingerprint");
+    // 2. - 7. Run ./jni/fingerprintexec and read the JSON string
+    String json = runFingerprintExec(random, rootDir, signature, "fingerprint", null, one, onesize);
 
     if (json == null) {
       return response;
@@ -199,7 +162,9 @@ public class FingerprintExternals {
 
   /**
    * Alternative to ExtractFingerprint(const int16_t *, int):Fingerprint * method with stable
-   * results. This make use of main.cpp compiled in the executable at ./jni/fingerprintexec .
+   * results. This make use of main.cpp compiled in the executable at ./jni/fingerprintexec . The
+   * "fingerprintprev" action runs in process with LandmarkExtractor, or libtuneurlfp.so in the
+   * native mode, unless the external mode is selected.
    *
    * @param random Random - use to ensure the generated file name is unique.
    * @param rootDir String
@@ -218,26 +183,18 @@ public class FingerprintExternals {
     response.setSize(0L);
     response.setData(null);
     response.setDataEx(null);
-    // 2. Create a unique temporary filename.
-    String uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-    String outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
-    // 3. Make sure it is a unique file name.
-    /*
-    if (ProcessHelper.isFileExist(outputFilename)) {
-      uniqueName = ProcessHelper.createUniqueFilenameEx(random);
-      outputFilename = String.format("/tmp/%s.data.txt", uniqueName);
+    if ("fingerprintprev".equals(action)) {
+      if (FingerprintUtility.isNativeEngineSelected()) {
+        return newFingerprintResponse(
+            response, NativeFingerprintEngine.extractFingerprint(one, 0, onesize));
+      }
+      if (!Constants.FINGERPRINT_MODE_EXTERNAL.equals(FingerprintUtility.getCompareMode())) {
+        return newFingerprintResponse(
+            response, LandmarkExtractor.getDefaultInstance().extractFingerprint(one, 0, onesize));
+      }
     }
-     */
-    // 4. Create an input file for ./jni/fingerprintexec
-    // one size
-    // [0, ..., one size-1]
-    fingerprintUtility.writeFingerprintingData(outputFilename, one, onesize);
-
-    // 5. the JSON string should be written to this file
-    // 6. Run ./jni/fingerprintexec via runExternalFingerprintModule.sh
-    // 7. read the JSON string
-    String json =
-        executeFingerprintExecAsProcess(uniqueName, rootDir, outputFilename, signature, action);
+    // 2. - 7. Run ./jni/fingerprintexec and read the JSON string
+    String json = runFingerprintExec(random, rootDir, signature, action, null, one, onesize);
     if (json == null) {
       return response;
     }
@@ -264,6 +221,72 @@ public class FingerprintExternals {
     return response;
   }
 
+  /**
+   * The "fingerprintprev" action over the samples [from, from + size) of spectrogram, the frames
+   * it already transformed for earlier ranges are reused. The external mode copies the samples
+   * and runs ./jni/fingerprintexec.
+   *
+   * @param random Random - use to ensure the generated file name is unique.
+   * @param rootDir String
+   * @param spectrogram SlidingSpectrogram holding the request audio
+   * @param from long first sample
+   * @param size int number of samples
+   * @return FingerprintResponse
+   * @throws BaseServiceException If there is error running the runExternalFingerprintModule.sh
+   */
+  public FingerprintResponse runExternalFingerprinting_Ex(
+      Random random,
+      final String rootDir,
+      final SlidingSpectrogram spectrogram,
+      final long from,
+      final int size)
+      throws BaseServiceException {
+    if (Constants.FINGERPRINT_MODE_EXTERNAL.equals(FingerprintUtility.getCompareMode())) {
+      short[] samples = spectrogram.getSamples(from, size);
+      return runExternalFingerprinting_Ex(
+          random, rootDir, "fingerprintprev", samples, samples.length);
+    }
+    return newFingerprintResponse(
+        new FingerprintResponse(), spectrogram.extractFingerprint(from, size));
+  }
+
+  /**
+   * Build the FingerprintResponse the "stream" action returns for data[from, from + size),
+   * without running ./jni/fingerprintexec.
+   *
+   * @param data Array of short
+   * @param from int
+   * @param size int
+   * @return FingerprintResponse
+   */
+  public static FingerprintResponse newStreamResponse(
+      final short[] data, final int from, final int size) {
+    FingerprintResponse response = new FingerprintResponse();
+    response.setSize((long) size);
+    response.setData(Converter.convertListShortEx(data, from, size));
+    response.setDataEx(getStringBuilder(response).toString());
+    return response;
+  }
+
+  /**
+   * The "fingerprintprev" result computed in process, by libtuneurlfp.so or LandmarkExtractor.
+   *
+   * @param response FingerprintResponse to fill
+   * @param fingerprint Array of byte
+   * @return FingerprintResponse
+   */
+  private static FingerprintResponse newFingerprintResponse(
+      FingerprintResponse response, final byte[] fingerprint) {
+    short[] data = new short[fingerprint.length];
+    for (int index = 0; index < fingerprint.length; index++) {
+      data[index] = (short) (fingerprint[index] & 0xff);
+    }
+    response.setSize((long) data.length);
+    response.setData(data);
+    response.setDataEx(getStringBuilder(response).toString());
+    return response;
+  }
+
   private static StringBuffer getStringBuilder(FingerprintResponse response) {
     int index, limit = response.getSize().intValue();
     short[] fingerprintData = response.getData();
@@ -281,6 +304,47 @@ public class FingerprintExternals {
     return sb;
   }
 
+  /**
+   * Run one ./jni/fingerprintexec action, on a pooled worker when FingerprintWorkerPool is enabled
+   * and available, otherwise as a new process via runExternalFingerprintModule.sh.
+   *
+   * @param random Random - use to ensure the generated file name is unique.
+   * @param rootDir String
+   * @param signature String
+   * @param action String
+   * @param dataFingerprint String trigger descriptor or null
+   * @param data Array of short
+   * @param size int
+   * @return String the JSON string or null on failure
+   */
+  private String runFingerprintExec(
+      Random random,
+      final String rootDir,
+      final String signature,
+      final String action,
+      final String dataFingerprint,
+      final short[] data,
+      final int size) {
+    if (FingerprintWorkerPool.isEnabled()) {
+      FingerprintWorkerPool pool = FingerprintWorkerPool.getInstance(rootDir);
+      if (pool.isAvailable()) {
+        String result = pool.execute(action, dataFingerprint, data, size);
+        // A worker that could not start leaves the pool unavailable, use the script instead.
+        if (result != null || pool.isAvailable()) {
+          return result;
+        }
+      }
+    }
+    // 2. Create a unique temporary filename.
+    String uniqueName = ProcessHelper.createUniqueFilenameEx(random);
+    String outputFilename = String.format("/tmp/%s.data.bin", uniqueName);
+    // 3. Create an input file for ./jni/fingerprintexec
+    fingerprintUtility.writeFingerprintFrame(
+        outputFilename, FingerprintFrame.toAction(action), dataFingerprint, data, size);
+    // 4. Run ./jni/fingerprintexec via runExternalFingerprintModule.sh
+    return executeFingerprintExecAsProcess(uniqueName, rootDir, outputFilename, signature, action);
+  }
+
   private String executeFingerprintExecAsProcess(
       Object uniqueName, String rootDir, String outputFilename, String signature, String action) {
 
@@ -299,11 +363,16 @@ public class FingerprintExternals {
 
     processBuilder.redirectErrorStream(true);
     processBuilder.directory(new File(rootDir));
-    Process process;
+    Process process = null;
     try {
       process = processBuilder.start();
       process.waitFor();
     } catch (IOException | InterruptedException ex) {
+      if (ex instanceof InterruptedException) {
+        // Cancelled window, do not leave the script running.
+        process.destroyForcibly();
+        Thread.currentThread().interrupt();
+      }
       logger.logExit(signature, "processBuilder.start() Failed: " + ex.getMessage());
       ProcessHelper.deleteFile(outputFilename);
       ProcessHelper.deleteFile(resultFilename);
@@ -350,6 +419,28 @@ public class FingerprintExternals {
     closeFileOutputStream(fib);
   }
 
+  /**
+   * Helper method to write the remaining bytes of a ByteBuffer into a file.
+   *
+   * @param fileName String
+   * @param buffer ByteBuffer
+   */
+  public void writeByteBuffer(final String fileName, final ByteBuffer buffer) {
+    try (FileChannel channel =
+        FileChannel.open(
+            Paths.get(fileName),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException ex) {
+      CommonUtil.BadRequestException(ex.getMessage());
+      /*NOTREACH*/
+    }
+  }
+
   /**
    * Helper to close FileOutputStream instance.
    *
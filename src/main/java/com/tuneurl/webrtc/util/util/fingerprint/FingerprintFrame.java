@@ -0,0 +1,133 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary request frame read by ./jni/fingerprintexec, see "Binary frames" in jni/cpp/main.cpp.
+ *
+ * <pre>
+ *   int32 magic, int32 action, int32 descriptorLength, descriptor bytes,
+ *   int32 sampleCount, int16 samples[sampleCount]
+ * </pre>
+ *
+ * <p>All integers are little-endian. A 1 second window is 22 KB of raw samples instead of about
+ * 60 KB of decimal text that fingerprintexec had to parse back with <code>std::cin</code>.
+ *
+ * <p><strong>Thread Safety: </strong>This class is stateless thus thread safe.
+ *
+ * @author albonteddy@gmail.com
+ * @version 1.1
+ */
+public final class FingerprintFrame {
+
+  /** First int32 of every request and response frame, "TUFP". */
+  public static final int MAGIC = 0x50465554;
+
+  public static final int ACTION_PING = 0;
+  public static final int ACTION_COMPARE = 1;
+  public static final int ACTION_FINGERPRINT = 2;
+  public static final int ACTION_FINGERPRINTPREV = 3;
+  public static final int ACTION_STREAM = 4;
+
+  /** Response status of a served request. */
+  public static final int STATUS_OK = 0;
+
+  private static final byte[] NO_DESCRIPTOR = new byte[0];
+
+  private FingerprintFrame() {}
+
+  /**
+   * Map the runExternalFingerprintModule.sh action to a frame action.
+   *
+   * @param action String
+   * @return int one of ACTION_*
+   */
+  public static int toAction(final String action) {
+    if (action == null) return ACTION_COMPARE;
+    if (action.startsWith("fingerprintprev")) return ACTION_FINGERPRINTPREV;
+    if (action.startsWith("fingerprint")) return ACTION_FINGERPRINT;
+    if (action.startsWith("stream")) return ACTION_STREAM;
+    return ACTION_COMPARE;
+  }
+
+  /**
+   * The descriptor as it is sent, null is sent as an empty descriptor.
+   *
+   * @param dataFingerprint String
+   * @return Array of byte
+   */
+  public static byte[] descriptorBytes(final String dataFingerprint) {
+    return dataFingerprint == null
+        ? NO_DESCRIPTOR
+        : dataFingerprint.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Number of bytes of a request frame.
+   *
+   * @param descriptor Array of byte from descriptorBytes()
+   * @param size int number of samples
+   * @return int
+   */
+  public static int requestSize(final byte[] descriptor, final int size) {
+    return 16 + descriptor.length + 2 * size;
+  }
+
+  /**
+   * Append one request frame at the buffer position; the byte order of buffer is set to
+   * little-endian.
+   *
+   * @param buffer ByteBuffer with at least requestSize() bytes remaining
+   * @param action int one of ACTION_*
+   * @param descriptor Array of byte from descriptorBytes()
+   * @param data Array of short
+   * @param size int number of samples of data to send
+   * @return ByteBuffer
+   */
+  public static ByteBuffer putRequest(
+      ByteBuffer buffer,
+      final int action,
+      final byte[] descriptor,
+      final short[] data,
+      final int size) {
+    buffer.order(ByteOrder.LITTLE_ENDIAN);
+    buffer.putInt(MAGIC).putInt(action).putInt(descriptor.length).put(descriptor);
+    buffer.putInt(size);
+    buffer.asShortBuffer().put(data, 0, size);
+    buffer.position(buffer.position() + 2 * size);
+    return buffer;
+  }
+}
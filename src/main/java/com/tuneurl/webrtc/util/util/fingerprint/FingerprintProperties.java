@@ -0,0 +1,91 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+/**
+ * Settings of the landmark fingerprint, the values of jni/cpp/FingerprintProperties.cpp.
+ *
+ * <p><strong>Thread Safety: </strong>This class is immutable thus thread safe.
+ *
+ * @version 1.0
+ */
+public final class FingerprintProperties {
+
+  /** The settings libtuneurlfp.so and ./jni/fingerprintexec are built with. */
+  public static final FingerprintProperties DEFAULT = new FingerprintProperties(4, 2048, 4, 4);
+
+  private final int numRobustPointsPerFrame;
+  private final int sampleSizePerFrame;
+  private final int overlapFactor;
+  private final int numFilterBanks;
+
+  /**
+   * Settings of the landmark fingerprint.
+   *
+   * @param numRobustPointsPerFrame int the number of points in each frame
+   * @param sampleSizePerFrame int the number of audio samples in a frame, the FFT size
+   * @param overlapFactor int each frame moves 1 / overlapFactor of sampleSizePerFrame
+   * @param numFilterBanks int the number of filter banks, one robust point each
+   */
+  public FingerprintProperties(
+      final int numRobustPointsPerFrame,
+      final int sampleSizePerFrame,
+      final int overlapFactor,
+      final int numFilterBanks) {
+    if (sampleSizePerFrame < 8 || Integer.bitCount(sampleSizePerFrame) != 1) {
+      throw new IllegalArgumentException("sampleSizePerFrame must be a power of 2");
+    }
+    if (numRobustPointsPerFrame < 1 || overlapFactor < 1 || numFilterBanks < 1) {
+      throw new IllegalArgumentException("FingerprintProperties must be positive");
+    }
+    this.numRobustPointsPerFrame = numRobustPointsPerFrame;
+    this.sampleSizePerFrame = sampleSizePerFrame;
+    this.overlapFactor = overlapFactor;
+    this.numFilterBanks = numFilterBanks;
+  }
+
+  public int getNumRobustPointsPerFrame() {
+    return numRobustPointsPerFrame;
+  }
+
+  public int getSampleSizePerFrame() {
+    return sampleSizePerFrame;
+  }
+
+  public int getOverlapFactor() {
+    return overlapFactor;
+  }
+
+  public int getNumFilterBanks() {
+    return numFilterBanks;
+  }
+}
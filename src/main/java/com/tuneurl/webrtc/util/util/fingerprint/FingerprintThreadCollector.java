@@ -24,6 +24,7 @@ public class FingerprintThreadCollector extends FingerprintUtility implements Ru
   // StringBuffer dataFingerprintBuffer;
   // int dataFingerprintBufferSize;
   String dataFingerprint;
+  TriggerScanner scanner;
 
   public FingerprintThreadCollector(
       final String rootDir,
@@ -40,6 +41,28 @@ public class FingerprintThreadCollector extends FingerprintUtility implements Ru
     this.dataFingerprint = dataFingerprint;
   }
 
+  /**
+   * Collector searching the prefix sums of a TriggerScanner shared by every collector of the
+   * request.
+   *
+   * @param rootDir String
+   * @param scanner TriggerScanner of the request audio
+   * @param elapse Long
+   * @param random Random
+   * @param fingerprintRate Long
+   * @param dataFingerprint String
+   */
+  public FingerprintThreadCollector(
+      final String rootDir,
+      final TriggerScanner scanner,
+      Long elapse,
+      Random random,
+      final Long fingerprintRate,
+      String dataFingerprint) {
+    this(rootDir, scanner.getData(), elapse, random, fingerprintRate, dataFingerprint);
+    this.scanner = scanner;
+  }
+
   /**
    * Helper to process fingerprint
    *
@@ -68,13 +91,16 @@ public class FingerprintThreadCollector extends FingerprintUtility implements Ru
     int increment;
     long timeOffset;
     long iStart, iEnd;
-    short[] dData;
     int dSize;
     FingerprintResponse fr = null;
     FingerprintCompareResponse fcr = null;
     boolean isDebugOn = Constants.DEBUG_FINGERPRINTING;
 
     for (increment = 0; increment < 100; increment += incrementDelta) {
+      if (Thread.currentThread().isInterrupted()) {
+        // Cancelled, an earlier window already matched.
+        break;
+      }
       timeOffset = elapse + increment;
 
       iStart = Converter.muldiv(timeOffset, fingerprintRate, 1000L);
@@ -82,13 +108,21 @@ public class FingerprintThreadCollector extends FingerprintUtility implements Ru
 
       dSize = (int) (iEnd - iStart);
       if (dSize < 16) continue;
-      dData = Converter.convertListShortEx(data, (int) iStart, dSize);
-      if (dData == null) break;
+      if (iStart > data.length) break;
 
-      fr = fingerprintExternals.runExternalFingerprinting_Ex(random, rootDir, "stream", dData, dData.length);
-      fcr = compareFingerprint(fr, timeOffset, rootDir, random, dataFingerprint);
+      // Compare the window in place; its FingerprintResponse is only needed for a match.
+      fcr =
+          scanner != null && scanner.getData() == data
+              ? compareFingerprint(
+                  scanner, (int) iStart, dSize, timeOffset, rootDir, random, dataFingerprint)
+              : compareFingerprint(
+                  data, (int) iStart, dSize, timeOffset, rootDir, random, dataFingerprint);
 
       if (fcr != null) {
+        fr =
+            fcr.getSimilarity() > 0
+                ? FingerprintExternals.newStreamResponse(data, (int) iStart, dSize)
+                : null;
         selection.add(fcr);
         frSelection.add(fr);
       }
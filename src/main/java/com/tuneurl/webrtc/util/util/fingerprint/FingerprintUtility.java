@@ -34,6 +34,7 @@ package com.tuneurl.webrtc.util.util.fingerprint;
 import com.tuneurl.webrtc.util.controller.dto.*;
 import com.tuneurl.webrtc.util.util.*;
 import com.tuneurl.webrtc.util.value.Constants;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Random;
 import lombok.Getter;
@@ -43,10 +44,19 @@ import lombok.Getter;
  *
  * <ul>
  *   <li>v1.1 added pruneTagsEx(MessageLogger, List&lt;TuneUrlTag>):List&lt;TuneUrlTag>
+ *   <li>v1.2 compareFingerprint() runs the in-process TriggerMatcher unless the compare mode is
+ *       Constants.FINGERPRINT_MODE_EXTERNAL
+ *   <li>v1.3 Constants.FINGERPRINT_MODE_NATIVE runs the search in libtuneurlfp.so when loaded
+ *   <li>v1.4 fingerprintexec input files are binary FingerprintFrame requests
+ *   <li>v1.5 added compareFingerprint(short[], int, int, ...) for windows of the request audio
+ *   <li>v1.6 added compareFingerprint(TriggerScanner, int, int, ...) searching the prefix sums of
+ *       the request audio
+ *   <li>v1.7 the descriptors are parsed once, by TriggerRegistry
+ *   <li>v1.8 added setTriggerRegistry(), the registry bean of the application
  * </ul>
  *
  * @author albonteddy@gmail.com
- * @version 1.1
+ * @version 1.8
  */
 @Getter
 public class FingerprintUtility {
@@ -60,6 +70,41 @@ public class FingerprintUtility {
     return fingerprintInstance;
   }
 
+  /** Which engine compareFingerprint() use, see Constants.FINGERPRINT_MODE_*. */
+  private static volatile String compareMode = Constants.FINGERPRINT_MODE_JAVA;
+
+  /** Descriptors kept parsed, null to parse the descriptor of every window. */
+  private static volatile TriggerRegistry triggerRegistry;
+
+  /**
+   * Select the engine used by compareFingerprint().
+   *
+   * @param mode String one of Constants.FINGERPRINT_MODE_*
+   */
+  public static void setCompareMode(final String mode) {
+    if (Constants.FINGERPRINT_MODE_EXTERNAL.equalsIgnoreCase(mode)) {
+      compareMode = Constants.FINGERPRINT_MODE_EXTERNAL;
+    } else if (Constants.FINGERPRINT_MODE_NATIVE.equalsIgnoreCase(mode)) {
+      compareMode = Constants.FINGERPRINT_MODE_NATIVE;
+    } else {
+      compareMode = Constants.FINGERPRINT_MODE_JAVA;
+    }
+  }
+
+  public static String getCompareMode() {
+    return compareMode;
+  }
+
+  /**
+   * True when the native mode is selected and libtuneurlfp.so could be loaded.
+   *
+   * @return boolean
+   */
+  public static boolean isNativeEngineSelected() {
+    return Constants.FINGERPRINT_MODE_NATIVE.equals(compareMode)
+        && NativeFingerprintEngine.isAvailable();
+  }
+
   FingerprintExternals fingerprintExternals;
   /** Default constructor. */
   public FingerprintUtility() {
@@ -74,6 +119,21 @@ public class FingerprintUtility {
   private static final String fingerprint_header =
       "# Generated using: https://streamradiolocal.tmalbon.com/audio/audio/10240-audio-streams-0230000.mp3\n# crc32 /project/tuneurl-poc/tuneurl-poc/src/main/webapp/audio/10240-audio-streams-0230000.mp3\n# bbfbe45f    /project/tuneurl-poc/tuneurl-poc/src/main/webapp/audio/10240-audio-streams-0230000.mp3\n";
 
+  /**
+   * Find the parsed descriptors of every window in registry instead of parsing them again.
+   *
+   * @param registry TriggerRegistry, the bean of the application
+   */
+  public static void setTriggerRegistry(final TriggerRegistry registry) {
+    triggerRegistry = registry;
+  }
+
+  private static TriggerDescriptor compile(final String dataFingerprint) {
+    TriggerRegistry registry = triggerRegistry;
+    if (registry != null) return registry.compile(dataFingerprint);
+    return dataFingerprint == null ? null : TriggerDescriptor.parse(dataFingerprint);
+  }
+
   /**
    * Helper method to fetch the TuneUrl for the given payload.
    *
@@ -177,6 +237,22 @@ public class FingerprintUtility {
     return fcr;
   }
 
+  /**
+   * Helper to copy a comparison result, as printed by ./jni/fingerprintexec, into a
+   * FingerprintCompareResponse.
+   *
+   * @param fcr FingerprintCompareResponse
+   * @param timeOffset Long
+   * @param result CompareStringResult
+   * @return FingerprintCompareResponse
+   */
+  public static final FingerprintCompareResponse updateCompareResponse(
+      FingerprintCompareResponse fcr, final long timeOffset, final CompareStringResult result) {
+    fcr.setOffset(timeOffset + ProcessHelper.parseLong(result.getOffset(), 0));
+    fcr.setSimilarity(ProcessHelper.parseLong(result.getSimilarity(), 0));
+    return fcr;
+  }
+
   /**
    * Helper to cache the fingerprint base part.
    *
@@ -197,71 +273,134 @@ public class FingerprintUtility {
     return sb;
   }
 
+  /** Per thread direct buffer for writeFingerprintFrame(), grown on demand. */
+  private static final ThreadLocal<ByteBuffer> frameBuffer = new ThreadLocal<>();
+
   /**
-   * Helper to write the fingerprint with buffer help into specified file.
+   * Helper to write one FingerprintFrame request into specified file.
    *
    * @param fileName String
-   * @param bufferedOne array of byte
-   * @param onesize int
-   * @param two array of byte
+   * @param action int FingerprintFrame.ACTION_*
+   * @param dataFingerprint String trigger descriptor or null
+   * @param data array of short
+   * @param size int
+   */
+  public void writeFingerprintFrame(
+      final String fileName,
+      final int action,
+      final String dataFingerprint,
+      final short[] data,
+      final int size) {
+    byte[] descriptor = FingerprintFrame.descriptorBytes(dataFingerprint);
+    int length = FingerprintFrame.requestSize(descriptor, size);
+    ByteBuffer buffer = frameBuffer.get();
+    if (buffer == null || buffer.capacity() < length) {
+      buffer = ByteBuffer.allocateDirect(Math.max(length, 64 * 1024));
+      frameBuffer.set(buffer);
+    }
+    buffer.clear();
+    FingerprintFrame.putRequest(buffer, action, descriptor, data, size);
+    buffer.flip();
+    fingerprintExternals.writeByteBuffer(fileName, buffer);
+  }
+
+  /**
+   * Helper to write the trigger descriptor and the audio into specified file.
+   *
+   * @param fileName String
+   * @param dataFingerprint String
+   * @param two array of short
    * @param twosize int
    */
   public void writeFingerprintDataWithBuffer(
       final String fileName, final String dataFingerprint, final short[] two, final int twosize) {
-
-    final String SPC = " ";
-    final String CRLF = "\n";
-    StringBuffer sb = new StringBuffer();
-
-    sb.append(dataFingerprint).append(CRLF).append(twosize).append(CRLF);
-    if (twosize > 0) {
-      sb.append(two[0]);
-      for (int index = 1; index < twosize; index++) {
-        sb.append(SPC);
-        sb.append(two[index]);
-      }
-    }
-    sb.append(CRLF);
-
-    fingerprintExternals.writeStringBuffer(fileName, sb);
+    writeFingerprintFrame(fileName, FingerprintFrame.ACTION_COMPARE, dataFingerprint, two, twosize);
     if (!ProcessHelper.isFileExist(fileName)) {
       CommonUtil.InternalServerException("File not created '" + fileName + "'");
     }
   }
 
   /**
-   * Helper to write the fingerprint into specified file.
+   * Helper to write the audio into specified file.
    *
    * @param fileName String
-   * @param one array of byte
+   * @param one array of short
    * @param onesize int
    */
   public void writeFingerprintingData(final String fileName, final short[] one, final int onesize) {
-    int index;
-    final String SPC = " ";
-    final String CRLF = "\n";
-    StringBuffer sb = new StringBuffer();
-    sb.append(onesize).append(CRLF);
-    for (index = 0; index < onesize; index++) {
-      if (index > 0) sb.append(SPC);
-      sb.append(one[index]);
+    writeFingerprintFrame(fileName, FingerprintFrame.ACTION_FINGERPRINT, null, one, onesize);
+  }
+
+  /**
+   * In-process equivalent of FingerprintExternals.runExternalFingerprintModule(), searched by
+   * libtuneurlfp.so in the native mode and by TriggerMatcher otherwise.
+   *
+   * @param timeOffset Long
+   * @param dataFingerprint String the triggersound descriptor
+   * @param two Array of short
+   * @param from int first sample of the window
+   * @param twosize int size of the window
+   * @return FingerprintCompareResponse, its offset is null if the descriptor is invalid
+   */
+  public FingerprintCompareResponse runTriggerMatcher(
+      final long timeOffset,
+      final String dataFingerprint,
+      final short[] two,
+      final int from,
+      final int twosize) {
+    FingerprintCompareResponse response = new FingerprintCompareResponse();
+    resetResponseValue(response, timeOffset);
+    TriggerDescriptor df = compile(dataFingerprint);
+    if (df == null) {
+      // Same as a failed ./jni/fingerprintexec run.
+      response.setOffset(null);
+      return response;
     }
-    sb.append(CRLF);
+    TriggerMatcher.SearchResult result =
+        isNativeEngineSelected()
+            ? NativeFingerprintEngine.searchTrigger(two, from, twosize, df)
+            : TriggerMatcher.getSearchResult(two, from, twosize, df);
+    return updateCompareResponse(response, timeOffset, result.toCompareStringResult());
+  }
 
-    fingerprintExternals.writeStringBuffer(fileName, sb);
+  /**
+   * Same as runTriggerMatcher(timeOffset, dataFingerprint, scanner.getData(), from, twosize) in
+   * the Java mode, with the block sums read from the prefix sums of the scanner.
+   *
+   * @param timeOffset Long
+   * @param dataFingerprint String the triggersound descriptor
+   * @param scanner TriggerScanner of the request audio
+   * @param from int first sample of the window
+   * @param twosize int size of the window
+   * @return FingerprintCompareResponse, its offset is null if the descriptor is invalid
+   */
+  public FingerprintCompareResponse runTriggerScanner(
+      final long timeOffset,
+      final String dataFingerprint,
+      final TriggerScanner scanner,
+      final int from,
+      final int twosize) {
+    FingerprintCompareResponse response = new FingerprintCompareResponse();
+    resetResponseValue(response, timeOffset);
+    TriggerDescriptor df = compile(dataFingerprint);
+    if (df == null) {
+      response.setOffset(null);
+      return response;
+    }
+    TriggerMatcher.SearchResult result = scanner.search(from, twosize, df);
+    return updateCompareResponse(response, timeOffset, result.toCompareStringResult());
   }
 
   /**
    * Alternative to CompareFingerprints(Fingerprint *,Fingerprint *):FingerprintSimilarity method
-   * with stable results. This make use of main.cpp compiled in the executable at
-   * ./jni/fingerprintexec .
+   * with stable results. Run the in-process TriggerMatcher, or main.cpp compiled in the executable
+   * at ./jni/fingerprintexec when the compare mode is Constants.FINGERPRINT_MODE_EXTERNAL.
    *
    * @param fr FingerprintResponse
    * @param timeOffset Long
    * @param rootDir String
    * @param random Random - use to ensure the generated file name is unique.
-   * @param dataFingerprintBuffer A String Buffer with the datafingerprint already processed
-   * @param dataFingerprintSize the lenght of the dataFingerprint - before buffered
+   * @param dataFingerprint String the triggersound descriptor
    * @return FingerprintCompareResponse
    */
   public FingerprintCompareResponse compareFingerprint(
@@ -270,26 +409,92 @@ public class FingerprintUtility {
       final String rootDir,
       Random random,
       String dataFingerprint) {
+    if ((null == fr) || fr.getSize() <= 1L) {
+      return null;
+    }
+    short[] cData = fr.getData();
+    return compareFingerprint(cData, 0, cData.length, timeOffset, rootDir, random, dataFingerprint);
+  }
+
+  /**
+   * Compare the window data[from, from + size) with the triggersound, without copying it. The
+   * window may run past the end of data, the missing samples read as silence.
+   *
+   * @param data Array of short, the whole request audio
+   * @param from int first sample of the window
+   * @param size int size of the window
+   * @param timeOffset Long
+   * @param rootDir String
+   * @param random Random - use to ensure the generated file name is unique.
+   * @param dataFingerprint String the triggersound descriptor
+   * @return FingerprintCompareResponse or null on failure
+   */
+  public FingerprintCompareResponse compareFingerprint(
+      final short[] data,
+      final int from,
+      final int size,
+      Long timeOffset,
+      final String rootDir,
+      Random random,
+      String dataFingerprint) {
 
-    short[] cData;
     FingerprintCompareResponse fcr = null;
-    if ((null != fr) && fr.getSize() > 1L) {
-      cData = fr.getData();
-      try {
+    if (size <= 1) {
+      return null;
+    }
+    try {
+      if (Constants.FINGERPRINT_MODE_EXTERNAL.equals(compareMode)) {
+        short[] cData = Converter.convertListShortEx(data, from, size);
         fcr =
             fingerprintExternals.runExternalFingerprintModule(
                 random, rootDir, timeOffset, dataFingerprint, cData, cData.length);
-        if (null == fcr.getOffset()) {
-          fcr = null;
-        }
-      } catch (Exception ex) {
-        ex.printStackTrace();
+      } else {
+        fcr = runTriggerMatcher(timeOffset, dataFingerprint, data, from, size);
+      }
+      if (null == fcr.getOffset()) {
         fcr = null;
       }
+    } catch (Exception ex) {
+      ex.printStackTrace();
+      fcr = null;
     }
     return fcr;
   }
 
+  /**
+   * Compare the window [from, from + size) of the scanner audio with the triggersound. Unless
+   * the external mode or libtuneurlfp.so is in use, the search reads the prefix sums of the
+   * scanner; otherwise this is compareFingerprint(scanner.getData(), from, size, ...).
+   *
+   * @param scanner TriggerScanner of the whole request audio
+   * @param from int first sample of the window
+   * @param size int size of the window
+   * @param timeOffset Long
+   * @param rootDir String
+   * @param random Random - use to ensure the generated file name is unique.
+   * @param dataFingerprint String the triggersound descriptor
+   * @return FingerprintCompareResponse or null on failure
+   */
+  public FingerprintCompareResponse compareFingerprint(
+      final TriggerScanner scanner,
+      final int from,
+      final int size,
+      Long timeOffset,
+      final String rootDir,
+      Random random,
+      String dataFingerprint) {
+    if (Constants.FINGERPRINT_MODE_EXTERNAL.equals(compareMode) || isNativeEngineSelected()) {
+      return compareFingerprint(
+          scanner.getData(), from, size, timeOffset, rootDir, random, dataFingerprint);
+    }
+    if (size <= 1) {
+      return null;
+    }
+    FingerprintCompareResponse fcr =
+        runTriggerScanner(timeOffset, dataFingerprint, scanner, from, size);
+    return null == fcr.getOffset() ? null : fcr;
+  }
+
   public static Object[] fingerprintComparisons(
       List<FingerprintCompareResponse> selection,
       List<FingerprintResponse> frSelection,
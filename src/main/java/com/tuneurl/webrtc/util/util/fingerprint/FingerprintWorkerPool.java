@@ -0,0 +1,369 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import com.tuneurl.webrtc.util.util.MessageLogger;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of long-lived <code>fingerprintexec worker</code> processes.
+ *
+ * <p>Each worker reads FingerprintFrame requests on its stdin and writes framed responses on its
+ * stdout (see doWorker() in jni/cpp/main.cpp), so a request costs two pipe writes instead of
+ * a bash + fingerprintexec fork/exec and two files under /tmp.
+ *
+ * <ul>
+ *   <li>A worker is started on first use and restarted when it crashed or timed out.
+ *   <li>A request that runs longer than the timeout kills its worker; the caller gets null.
+ *   <li>So does a request whose calling thread is interrupted, a cancelled window does not hold
+ *       its worker until the timeout.
+ *   <li>Idle workers are pinged periodically, on their own thread, and replaced when they do not
+ *       answer. The timeout kills never wait behind a ping.
+ * </ul>
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @author albonteddy@gmail.com
+ * @version 1.3
+ */
+public final class FingerprintWorkerPool {
+
+  private static final String EXECUTABLE = "fingerprintexec";
+
+  /** Milliseconds between two checks of the interrupt status of a waiting caller. */
+  private static final long INTERRUPT_CHECK_MILLIS = 20L;
+
+  private static volatile int poolSize = 0;
+  private static volatile long timeoutMillis = 5000L;
+  private static volatile long healthCheckSeconds = 30L;
+
+  private static final Map<String, FingerprintWorkerPool> pools = new ConcurrentHashMap<>();
+
+  /** Runs the timeout and interrupt kills only, it must never block on a worker. */
+  private static final ScheduledExecutorService watchdog =
+      newDaemonScheduler("fingerprint-worker-watchdog");
+
+  /** Pings and restarts idle workers; a hung worker is killed by the watchdog. */
+  private static final ScheduledExecutorService healthChecker =
+      newDaemonScheduler("fingerprint-worker-health");
+
+  private static ScheduledExecutorService newDaemonScheduler(final String name) {
+    return Executors.newSingleThreadScheduledExecutor(
+        runnable -> {
+          Thread thread = new Thread(runnable, name);
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  /**
+   * Configure every pool created after this call.
+   *
+   * @param size int number of workers per pool, 0 disable the pool
+   * @param timeout long milliseconds a request may take before its worker is killed
+   * @param healthCheck long seconds between pings of idle workers
+   */
+  public static void configure(final int size, final long timeout, final long healthCheck) {
+    poolSize = Math.max(0, size);
+    timeoutMillis = Math.max(1L, timeout);
+    healthCheckSeconds = Math.max(1L, healthCheck);
+  }
+
+  public static boolean isEnabled() {
+    return poolSize > 0;
+  }
+
+  /**
+   * Get the pool serving the fingerprintexec found in rootDir.
+   *
+   * @param rootDir String the folder of fingerprintexec
+   * @return FingerprintWorkerPool
+   */
+  public static FingerprintWorkerPool getInstance(final String rootDir) {
+    return pools.computeIfAbsent(rootDir, dir -> new FingerprintWorkerPool(dir, poolSize));
+  }
+
+  /** Stop every worker of every pool. */
+  public static void shutdownAll() {
+    for (FingerprintWorkerPool pool : pools.values()) {
+      pool.shutdown();
+    }
+    pools.clear();
+  }
+
+  private final String rootDir;
+  private final BlockingQueue<Worker> idle;
+  private final ScheduledFuture<?> healthCheck;
+  private final MessageLogger logger;
+  private final AtomicLong starts = new AtomicLong();
+  private final AtomicLong timeouts = new AtomicLong();
+  private volatile boolean available = true;
+  private volatile boolean closed = false;
+
+  private FingerprintWorkerPool(final String rootDir, final int size) {
+    this.rootDir = rootDir;
+    this.logger = MessageLogger.getMessageLoggerInstance();
+    int count = Math.max(1, size);
+    this.idle = new ArrayBlockingQueue<>(count);
+    for (int index = 0; index < count; index++) {
+      idle.offer(new Worker());
+    }
+    long period = healthCheckSeconds;
+    this.healthCheck =
+        healthChecker.scheduleWithFixedDelay(
+            this::checkIdleWorkers, period, period, TimeUnit.SECONDS);
+  }
+
+  /**
+   * False once a worker could not be started, i.e. fingerprintexec is missing or predates the
+   * worker mode. The next health check tries again.
+   *
+   * @return boolean
+   */
+  public boolean isAvailable() {
+    return available && !closed;
+  }
+
+  public long getStartCount() {
+    return starts.get();
+  }
+
+  public long getTimeoutCount() {
+    return timeouts.get();
+  }
+
+  /**
+   * Run one fingerprintexec action on a pooled worker.
+   *
+   * @param action String the runExternalFingerprintModule.sh action
+   * @param dataFingerprint String trigger descriptor, null for the fingerprinting actions
+   * @param data Array of short
+   * @param size int number of samples of data to send
+   * @return String the JSON text fingerprintexec printed, or null on failure; isAvailable() is
+   *     false afterwards when the failure was a worker that could not be started
+   */
+  public String execute(
+      final String action, final String dataFingerprint, final short[] data, final int size) {
+    final String signature = "FingerprintWorkerPool.execute";
+    Worker worker;
+    try {
+      worker = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    if (worker == null) {
+      logger.logExit(signature, "no idle worker after " + timeoutMillis + "ms");
+      return null;
+    }
+    try {
+      if (!worker.isAlive() && !startWorker(worker)) {
+        return null;
+      }
+      return worker.call(FingerprintFrame.toAction(action), dataFingerprint, data, size);
+    } catch (IOException ex) {
+      logger.logExit(signature, action + " Failed: " + ex.getMessage());
+      worker.stop();
+      return null;
+    } finally {
+      if (closed) {
+        worker.stop();
+      } else {
+        idle.offer(worker);
+      }
+    }
+  }
+
+  /** Stop every worker; requests running now finish or fail on their own. */
+  public void shutdown() {
+    closed = true;
+    healthCheck.cancel(false);
+    Worker worker;
+    while ((worker = idle.poll()) != null) {
+      worker.stop();
+    }
+  }
+
+  private boolean startWorker(final Worker worker) {
+    try {
+      worker.start();
+      available = true;
+      return true;
+    } catch (IOException ex) {
+      logger.logExit("FingerprintWorkerPool.startWorker", rootDir + ": " + ex.getMessage());
+      worker.stop();
+      available = false;
+      return false;
+    }
+  }
+
+  /** Ping the workers idle right now, replace those that do not answer. */
+  private void checkIdleWorkers() {
+    for (int count = idle.size(); count > 0 && !closed; count--) {
+      Worker worker = idle.poll();
+      if (worker == null) break;
+      try {
+        if (worker.isAlive()) {
+          worker.call(FingerprintFrame.ACTION_PING, null, new short[0], 0);
+        } else if (!available) {
+          startWorker(worker);
+        }
+      } catch (IOException ex) {
+        worker.stop();
+      } finally {
+        idle.offer(worker);
+      }
+    }
+  }
+
+  /** One fingerprintexec co-process and its pipes. */
+  private final class Worker {
+    private Process process;
+    private OutputStream stdin;
+    private InputStream stdout;
+
+    boolean isAlive() {
+      return process != null && process.isAlive();
+    }
+
+    void start() throws IOException {
+      stop();
+      ProcessBuilder processBuilder =
+          new ProcessBuilder(rootDir + File.separator + EXECUTABLE, "worker");
+      processBuilder.directory(new File(rootDir));
+      processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+      process = processBuilder.start();
+      stdin = new BufferedOutputStream(process.getOutputStream(), 64 * 1024);
+      stdout = new BufferedInputStream(process.getInputStream(), 64 * 1024);
+      starts.incrementAndGet();
+      // An old fingerprintexec without worker mode waits for text input and the ping times out.
+      call(FingerprintFrame.ACTION_PING, null, new short[0], 0);
+    }
+
+    void stop() {
+      if (process != null) {
+        process.destroyForcibly();
+        process = null;
+      }
+    }
+
+    String call(final int action, final String dataFingerprint, final short[] data, final int size)
+        throws IOException {
+      final Process current = process;
+      final Thread caller = Thread.currentThread();
+      ScheduledFuture<?> timer =
+          watchdog.schedule(
+              () -> {
+                if (current.isAlive()) {
+                  timeouts.incrementAndGet();
+                  current.destroyForcibly();
+                }
+              },
+              timeoutMillis,
+              TimeUnit.MILLISECONDS);
+      // Pipe reads ignore interrupts, kill the process to unblock a cancelled caller.
+      ScheduledFuture<?> interruptCheck =
+          watchdog.scheduleWithFixedDelay(
+              () -> {
+                if (caller.isInterrupted() && current.isAlive()) {
+                  current.destroyForcibly();
+                }
+              },
+              INTERRUPT_CHECK_MILLIS,
+              INTERRUPT_CHECK_MILLIS,
+              TimeUnit.MILLISECONDS);
+      try {
+        writeRequest(action, dataFingerprint, data, size);
+        return readResponse();
+      } finally {
+        interruptCheck.cancel(false);
+        timer.cancel(false);
+      }
+    }
+
+    private void writeRequest(
+        final int action, final String dataFingerprint, final short[] data, final int size)
+        throws IOException {
+      byte[] descriptor = FingerprintFrame.descriptorBytes(dataFingerprint);
+      ByteBuffer buffer = ByteBuffer.allocate(FingerprintFrame.requestSize(descriptor, size));
+      FingerprintFrame.putRequest(buffer, action, descriptor, data, size);
+      stdin.write(buffer.array());
+      stdin.flush();
+    }
+
+    private String readResponse() throws IOException {
+      ByteBuffer header = ByteBuffer.wrap(readFully(12)).order(ByteOrder.LITTLE_ENDIAN);
+      int magic = header.getInt();
+      int status = header.getInt();
+      int length = header.getInt();
+      if (magic != FingerprintFrame.MAGIC || length < 0) {
+        throw new IOException("bad response header");
+      }
+      String payload = new String(readFully(length), StandardCharsets.UTF_8);
+      if (status != FingerprintFrame.STATUS_OK) {
+        // The worker survived a bad request, keep it.
+        logger.logExit("FingerprintWorkerPool.call", "fingerprintexec: " + payload);
+        return null;
+      }
+      return payload;
+    }
+
+    private byte[] readFully(final int length) throws IOException {
+      byte[] bytes = new byte[length];
+      int offset = 0;
+      while (offset < length) {
+        int count = stdout.read(bytes, offset, length - offset);
+        if (count < 0) throw new EOFException("worker exited");
+        offset += count;
+      }
+      return bytes;
+    }
+  }
+}
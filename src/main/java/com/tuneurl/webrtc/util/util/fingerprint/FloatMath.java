@@ -0,0 +1,176 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+/**
+ * The float functions of glibc that the native fingerprint relies on, ported bit for bit.
+ *
+ * <p>glibc logf(), log10f() and cosf() are not correctly rounded and differ from the float cast of
+ * their java.lang.Math counterparts by one ulp on about 1% of the inputs. That is enough to change
+ * the intensity bytes of a fingerprint, so LandmarkExtractor and FastFourierTransform use these.
+ *
+ * @version 1.0
+ */
+final class FloatMath {
+
+  private FloatMath() {}
+
+  /** invc, logc pairs of the logf() table of glibc 2.28+ (__logf_data). */
+  private static final double[] LOGF_TABLE = {
+    0x1.661ec79f8f3bep+0, -0x1.57bf7808caadep-2,
+    0x1.571ed4aaf883dp+0, -0x1.2bef0a7c06ddbp-2,
+    0x1.49539f0f010b0p+0, -0x1.01eae7f513a67p-2,
+    0x1.3c995b0b80385p+0, -0x1.b31d8a68224e9p-3,
+    0x1.30d190c8864a5p+0, -0x1.6574f0ac07758p-3,
+    0x1.25e227b0b8ea0p+0, -0x1.1aa2bc79c8100p-3,
+    0x1.1bb4a4a1a343fp+0, -0x1.a4e76ce8c0e5ep-4,
+    0x1.12358f08ae5bap+0, -0x1.1973c5a611cccp-4,
+    0x1.0953f419900a7p+0, -0x1.252f438e10c1ep-5,
+    0x1.0p+0, 0.0,
+    0x1.e608cfd9a47acp-1, 0x1.aa5aa5df25984p-5,
+    0x1.ca4b31f026aa0p-1, 0x1.c5e53aa362eb4p-4,
+    0x1.b2036576afce6p-1, 0x1.526e57720db08p-3,
+    0x1.9c2d163a1aa2dp-1, 0x1.bc2860d224770p-3,
+    0x1.886e6037841edp-1, 0x1.1058bc8a07ee1p-2,
+    0x1.767dcf5534862p-1, 0x1.4043057b6ee09p-2
+  };
+
+  private static final double LOGF_A0 = -0x1.00ea348b88334p-2;
+  private static final double LOGF_A1 = 0x1.5575b0be00b6ap-2;
+  private static final double LOGF_A2 = -0x1.ffffef20a4123p-2;
+  private static final double LOGF_LN2 = 0x1.62e42fefa39efp-1;
+
+  /**
+   * glibc logf() for the positive normal floats log10f() passes. Math.log() differs from it by
+   * one ulp on some inputs, enough to change the intensity bytes.
+   */
+  static float logf(final float x) {
+    int ix = Float.floatToRawIntBits(x);
+    if (ix == 0x3f800000) return 0.0f;
+    int tmp = ix - 0x3f330000;
+    int i = (tmp >>> (23 - 4)) % 16;
+    int k = tmp >> 23;
+    int iz = ix - (tmp & (0x1ff << 23));
+    double invc = LOGF_TABLE[2 * i];
+    double logc = LOGF_TABLE[2 * i + 1];
+    double z = (double) Float.intBitsToFloat(iz);
+    double r = z * invc - 1;
+    double y0 = logc + (double) k * LOGF_LN2;
+    double r2 = r * r;
+    double y = LOGF_A1 * r + LOGF_A2;
+    y = LOGF_A0 * r2 + y;
+    y = y * r2 + (y0 + r);
+    return (float) y;
+  }
+
+  /**
+   * glibc log10f() (e_log10f.c), bit for bit, so the intensities match the native bytes. Java has
+   * no float log10 and (float) Math.log10() is off by one ulp on about 1% of the inputs.
+   */
+  static float log10f(float x) {
+    final float two25 = 3.3554432000e+07f;
+    final float ivln10 = 4.3429449201e-01f;
+    final float log10Of2hi = 3.0102920532e-01f;
+    final float log10Of2lo = 7.9034151668e-07f;
+    int hx = Float.floatToRawIntBits(x);
+    int k = 0;
+    if (hx < 0x00800000) {
+      if ((hx & 0x7fffffff) == 0) return Float.NEGATIVE_INFINITY;
+      if (hx < 0) return Float.NaN;
+      // subnormal number, scale up x
+      k -= 25;
+      x *= two25;
+      hx = Float.floatToRawIntBits(x);
+    }
+    if (hx >= 0x7f800000) return x + x;
+    k += (hx >> 23) - 127;
+    int i = (k & 0x80000000) >>> 31;
+    hx = (hx & 0x007fffff) | ((0x7f - i) << 23);
+    float y = (float) (k + i);
+    x = Float.intBitsToFloat(hx);
+    float z = y * log10Of2lo + ivln10 * logf(x);
+    return z + y * log10Of2hi;
+  }
+
+  /** Cosine coefficients c0..c4 then sine coefficients s1..s3 of glibc __sincosf_table. */
+  private static final double[] SINCOSF_POLY = {
+    1.0,
+    -0x1.ffffffd0c621cp-2,
+    0x1.55553e1068f19p-5,
+    -0x1.6c087e89a359dp-10,
+    0x1.99343027bf8c3p-16,
+    -0x1.555545995a603p-3,
+    0x1.1107605230bc4p-7,
+    -0x1.994eb3774cf24p-13
+  };
+
+  private static final double SINCOSF_HPI_INV = 0x1.45f306dc9c883p+23;
+  private static final double SINCOSF_HPI = 0x1.921fb54442d18p+0;
+
+  /**
+   * glibc cosf() (s_cosf.c) for |x| &lt; 120, the range of the window arguments. (float)
+   * Math.cos() differs from it by one ulp on about 1% of the window points.
+   */
+  static float cosf(final float y) {
+    final int top = (Float.floatToRawIntBits(y) >> 20) & 0x7ff;
+    double x = y;
+    if (top < 0x3f4) {
+      // |y| < pi/4
+      if (top < 0x398) return 1.0f;
+      return sincosfPoly(x, x * x, 1, false);
+    }
+    double r = x * SINCOSF_HPI_INV;
+    int n = ((int) r + 0x800000) >> 24;
+    x = x - n * SINCOSF_HPI;
+    double s = (n & 3) == 1 || (n & 3) == 2 ? -1.0 : 1.0;
+    return sincosfPoly(x * s, x * x, n ^ 1, (n & 2) != 0);
+  }
+
+  private static float sincosfPoly(
+      final double x, final double x2, final int n, final boolean negate) {
+    final double[] p = SINCOSF_POLY;
+    if ((n & 1) == 0) {
+      double x3 = x * x2;
+      double s1 = p[6] + x2 * p[7];
+      double x7 = x3 * x2;
+      double s = x + x3 * p[5];
+      return (float) (s + x7 * s1);
+    }
+    double sign = negate ? -1.0 : 1.0;
+    double x4 = x2 * x2;
+    double c2 = sign * p[3] + x2 * (sign * p[4]);
+    double c1 = sign * p[0] + x2 * (sign * p[1]);
+    double x6 = x4 * x2;
+    double c = c1 + x4 * (sign * p[2]);
+    return (float) (c + x6 * c2);
+  }
+}
@@ -0,0 +1,362 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * In-process port of FingerprintManager::extractFingerprint() of jni/cpp, the landmark
+ * fingerprint computed by the "fingerprintprev" action of ./jni/fingerprintexec.
+ *
+ * <p>The pipeline is the native one: overlapped framing of the wave, Hamming window, FFT
+ * magnitudes, log-normalisation of the spectrogram, the strongest point of each filter bank per
+ * frame and the byte packing of the frames with exactly numRobustPointsPerFrame points. The
+ * window and the FFT plan are computed once per sampleSizePerFrame and the frame and
+ * spectrogram buffers are per-thread scratch space reused across calls.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe, the mutable buffers are thread
+ * local.
+ *
+ * <ul>
+ *   <li>v1.1 frames filled straight from the wave, stages shared with SlidingSpectrogram
+ * </ul>
+ *
+ * @version 1.1
+ */
+public final class LandmarkExtractor {
+
+  /** Swift float pi of WindowFunction.cpp. */
+  private static final float PI = 3.1415925f;
+
+  /** Magnitudes below this are silence, see Spectrogram.cpp. */
+  private static final float MIN_VALID_AMPLITUDE = 0.00000000001f;
+
+  /** The extractor of FingerprintProperties.DEFAULT. */
+  private static final LandmarkExtractor defaultInstance =
+      new LandmarkExtractor(FingerprintProperties.DEFAULT);
+
+  /** Buffers of one thread, grown on demand. */
+  private static final class Scratch {
+    float[] frame = new float[0];
+    float[] spectrogram = new float[0];
+    int[] points = new int[0];
+  }
+
+  private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
+  private final FingerprintProperties properties;
+  private final FastFourierTransform fft;
+  private final float[] window;
+
+  /**
+   * Extractor for the given settings.
+   *
+   * @param properties FingerprintProperties
+   */
+  public LandmarkExtractor(final FingerprintProperties properties) {
+    this.properties = properties;
+    this.fft = FastFourierTransform.getInstance(properties.getSampleSizePerFrame());
+    this.window = hamming(properties.getSampleSizePerFrame());
+  }
+
+  /**
+   * The extractor of FingerprintProperties.DEFAULT, the settings of the native code.
+   *
+   * @return LandmarkExtractor
+   */
+  public static LandmarkExtractor getDefaultInstance() {
+    return defaultInstance;
+  }
+
+  public FingerprintProperties getProperties() {
+    return properties;
+  }
+
+  /**
+   * Port of WindowFunction::generate(hamming, sampleCount).
+   *
+   * @param sampleCount int
+   * @return Array of float
+   */
+  static float[] hamming(final int sampleCount) {
+    int mInt = sampleCount / 2;
+    float m = (float) mInt;
+    float r = PI / m;
+    float[] window = new float[sampleCount];
+    for (int n = -mInt; n < mInt; n++) {
+      window[mInt + n] = 0.54f + 0.46f * FloatMath.cosf((float) n * r);
+    }
+    return window;
+  }
+
+  /**
+   * Landmark fingerprint of wave[from, from + length), the bytes ./jni/fingerprintexec
+   * fingerprintprev prints for the same samples.
+   *
+   * @param wave Array of short
+   * @param from int first sample
+   * @param length int number of samples
+   * @return Array of byte, empty when the wave is shorter than a frame
+   */
+  public byte[] extractFingerprint(final short[] wave, final int from, final int length) {
+    if (from < 0 || length < 0 || from + length > wave.length) {
+      throw new IllegalArgumentException("Wave range out of bounds");
+    }
+    final int numFrames = getFrameCount(length);
+    if (numFrames == 0) {
+      return new byte[0];
+    }
+    final int numY = fft.getMagnitudeCount();
+    Scratch buffers = scratch.get();
+    // FFT magnitudes of each windowed frame.
+    float[] frame = buffers.frame = grow(buffers.frame, properties.getSampleSizePerFrame());
+    float[] spectrogram = buffers.spectrogram = grow(buffers.spectrogram, numFrames * numY);
+    for (int frameIndex = 0; frameIndex < numFrames; frameIndex++) {
+      fillFrame(wave, from, length, frameIndex, frame);
+      fft.getMagnitudes(frame, spectrogram, frameIndex * numY);
+    }
+    return landmarks(spectrogram, numFrames);
+  }
+
+  /**
+   * Number of samples between the starts of two frames.
+   *
+   * @return int
+   */
+  int getHopSize() {
+    int overlapFactor = properties.getOverlapFactor();
+    int sampleSize = properties.getSampleSizePerFrame();
+    if (overlapFactor <= 1) {
+      return sampleSize;
+    }
+    return sampleSize - sampleSize * (overlapFactor - 1) / overlapFactor;
+  }
+
+  /**
+   * Number of frames of a wave of length samples.
+   *
+   * @param length int
+   * @return int
+   */
+  int getFrameCount(final int length) {
+    int overlapFactor = Math.max(1, properties.getOverlapFactor());
+    return (int) ((long) length * overlapFactor / properties.getSampleSizePerFrame());
+  }
+
+  /**
+   * True when frame frameIndex of a wave of length samples only holds samples of the wave, so it
+   * is the same for any wave holding them at the same place.
+   *
+   * @param length int
+   * @param frameIndex int
+   * @return boolean
+   */
+  boolean isCompleteFrame(final int length, final int frameIndex) {
+    int sampleSize = properties.getSampleSizePerFrame();
+    int last = properties.getOverlapFactor() > 1 ? sampleSize - 2 : sampleSize - 1;
+    return (long) frameIndex * getHopSize() + last < length;
+  }
+
+  /**
+   * Windowed samples of frame frameIndex of wave[from, from + length), as laid out by the
+   * overlapping amplitude data of Spectrogram::buildSpectrogram(): the sampleSize - 1 samples from
+   * the frame start then the last sample of the hop, zero past the end of the wave.
+   *
+   * @param wave Array of short
+   * @param from int first sample of the wave
+   * @param length int number of samples of the wave
+   * @param frameIndex int
+   * @param frame Array of float receiving sampleSizePerFrame values
+   */
+  void fillFrame(
+      final short[] wave,
+      final int from,
+      final int length,
+      final int frameIndex,
+      final float[] frame) {
+    final int sampleSize = properties.getSampleSizePerFrame();
+    final int hop = getHopSize();
+    final int start = frameIndex * hop;
+    if (properties.getOverlapFactor() <= 1) {
+      for (int n = 0; n < sampleSize; n++) {
+        frame[n] = (float) wave[from + start + n] * window[n];
+      }
+      return;
+    }
+    // The native copy stops at the end of the wave, so a frame running past it is cut there and
+    // the frames after it are silent.
+    if (frameIndex > 0 && !isCompleteFrame(length, frameIndex - 1)) {
+      Arrays.fill(frame, 0, sampleSize, 0.0f);
+      return;
+    }
+    int n = 0;
+    for (int limit = Math.min(sampleSize - 1, length - start); n < limit; n++) {
+      frame[n] = (float) wave[from + start + n] * window[n];
+    }
+    if (n == sampleSize - 1) {
+      frame[n] = (float) wave[from + start + hop - 1] * window[n];
+    } else {
+      Arrays.fill(frame, n, sampleSize, 0.0f);
+    }
+  }
+
+  /**
+   * Transform one frame filled by fillFrame().
+   *
+   * @param frame Array of float, overwritten
+   * @param magnitudes Array of float receiving getMagnitudeCount() values
+   * @param offset int first index of magnitudes to write
+   */
+  void transformFrame(final float[] frame, final float[] magnitudes, final int offset) {
+    fft.getMagnitudes(frame, magnitudes, offset);
+  }
+
+  /**
+   * Number of magnitudes of a frame.
+   *
+   * @return int
+   */
+  int getMagnitudeCount() {
+    return fft.getMagnitudeCount();
+  }
+
+  /**
+   * Normalize numFrames rows of FFT magnitudes in place and pack their landmarks.
+   *
+   * @param spectrogram Array of float, numFrames rows of getMagnitudeCount() magnitudes
+   * @param numFrames int
+   * @return Array of byte
+   */
+  byte[] landmarks(final float[] spectrogram, final int numFrames) {
+    final int numY = fft.getMagnitudeCount();
+    Scratch buffers = scratch.get();
+
+    // 1. Normalize the absolute spectrogram.
+    final int cells = numFrames * numY;
+    float maxAmplitude = Float.MIN_NORMAL;
+    float minAmplitude = Float.MAX_VALUE;
+    for (int index = 0; index < cells; index++) {
+      float value = spectrogram[index];
+      if (value > maxAmplitude) {
+        maxAmplitude = value;
+      } else if (value < minAmplitude) {
+        minAmplitude = value;
+      }
+    }
+    if (minAmplitude == 0.0f) {
+      minAmplitude = MIN_VALID_AMPLITUDE;
+    }
+    float diff = FloatMath.log10f(maxAmplitude / minAmplitude);
+    for (int index = 0; index < cells; index++) {
+      float value = spectrogram[index];
+      if (value < MIN_VALID_AMPLITUDE) {
+        spectrogram[index] = 0.0f;
+      } else {
+        spectrogram[index] = FloatMath.log10f(value / minAmplitude) / diff;
+      }
+    }
+
+    // 2. The strongest points of each filter bank, kept for frames with exactly
+    // numRobustPointsPerFrame of them.
+    final int numFilterBanks = properties.getNumFilterBanks();
+    final int numRobustPointsPerFrame = properties.getNumRobustPointsPerFrame();
+    final int bandwidthPerBank = numY / numFilterBanks;
+    int[] points = buffers.points = grow(buffers.points, numY);
+    int[] frameCounts = new int[numFrames];
+    int total = 0;
+    for (int x = 0; x < numFrames; x++) {
+      int count = robustPoints(spectrogram, x * numY, bandwidthPerBank, numFilterBanks, points);
+      if (count == numRobustPointsPerFrame) {
+        frameCounts[x] = count;
+        total += count;
+      }
+    }
+
+    // 3. x, y and intensity of each point, big endian.
+    byte[] fingerprint = new byte[total * 8];
+    int position = 0;
+    for (int x = 0; x < numFrames; x++) {
+      if (frameCounts[x] == 0) continue;
+      int count = robustPoints(spectrogram, x * numY, bandwidthPerBank, numFilterBanks, points);
+      for (int index = 0; index < count; index++) {
+        int y = points[index];
+        int intensity = (int) ((double) spectrogram[x * numY + y] * (double) 0x7FFFFFFF);
+        fingerprint[position++] = (byte) (x >> 8);
+        fingerprint[position++] = (byte) x;
+        fingerprint[position++] = (byte) (y >> 8);
+        fingerprint[position++] = (byte) y;
+        fingerprint[position++] = (byte) (intensity >> 24);
+        fingerprint[position++] = (byte) (intensity >> 16);
+        fingerprint[position++] = (byte) (intensity >> 8);
+        fingerprint[position++] = (byte) intensity;
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * getRobustPointList() for one frame: the points of each filter bank equal to the bank
+   * maximum, when it is positive, in ascending y.
+   *
+   * @return int number of points written in points
+   */
+  private static int robustPoints(
+      final float[] spectrogram,
+      final int row,
+      final int bandwidthPerBank,
+      final int numFilterBanks,
+      final int[] points) {
+    int count = 0;
+    for (int b = 0; b < numFilterBanks; b++) {
+      int first = row + b * bandwidthPerBank;
+      float passValue = spectrogram[first];
+      for (int j = 1; j < bandwidthPerBank; j++) {
+        if (spectrogram[first + j] > passValue) passValue = spectrogram[first + j];
+      }
+      for (int j = 0; j < bandwidthPerBank; j++) {
+        float value = spectrogram[first + j];
+        if (value >= passValue && value > 0.0f) {
+          points[count++] = b * bandwidthPerBank + j;
+        }
+      }
+    }
+    return count;
+  }
+
+  private static float[] grow(final float[] buffer, final int size) {
+    return buffer.length >= size ? buffer : new float[size];
+  }
+
+  private static int[] grow(final int[] buffer, final int size) {
+    return buffer.length >= size ? buffer : new int[size];
+  }
+}
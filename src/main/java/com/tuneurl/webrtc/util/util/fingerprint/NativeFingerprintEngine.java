@@ -0,0 +1,203 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import com.tuneurl.webrtc.util.util.MessageLogger;
+import java.io.File;
+
+/**
+ * JNI binding of libtuneurlfp.so, the ./jni/cpp fingerprint engine without the fingerprintexec
+ * process around it.
+ *
+ * <p>The library is loaded on first use, from the configured path when that file exists, else
+ * from java.library.path. When it can not be loaded isAvailable() stays false and callers keep
+ * using TriggerMatcher or FingerprintExternals.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * @author albonteddy@gmail.com
+ * @version 1.1
+ */
+public final class NativeFingerprintEngine {
+
+  /** compareLandmarks() result index of FingerprintSimilarity.mostSimilarFramePosition. */
+  public static final int SIMILARITY_FRAME_POSITION = 0;
+
+  /** compareLandmarks() result index of FingerprintSimilarity.mostSimilarStartTime. */
+  public static final int SIMILARITY_START_TIME = 1;
+
+  /** compareLandmarks() result index of FingerprintSimilarity.score. */
+  public static final int SIMILARITY_SCORE = 2;
+
+  /** compareLandmarks() result index of FingerprintSimilarity.similarity. */
+  public static final int SIMILARITY_VALUE = 3;
+
+  private static final String LIBRARY_NAME = "tuneurlfp";
+
+  private static volatile String libraryPath = null;
+  private static volatile Boolean loaded = null;
+
+  private NativeFingerprintEngine() {}
+
+  /**
+   * Set where libtuneurlfp.so is expected, before the first use.
+   *
+   * @param path String full path of libtuneurlfp.so, empty to use java.library.path only
+   */
+  public static void configure(final String path) {
+    libraryPath = path;
+  }
+
+  /**
+   * Load the library once.
+   *
+   * @return boolean true when the native methods can be called
+   */
+  public static boolean isAvailable() {
+    Boolean state = loaded;
+    if (state == null) {
+      synchronized (NativeFingerprintEngine.class) {
+        if (loaded == null) {
+          loaded = load();
+        }
+        state = loaded;
+      }
+    }
+    return state;
+  }
+
+  private static boolean load() {
+    final String signature = "NativeFingerprintEngine.load";
+    MessageLogger logger = MessageLogger.getMessageLoggerInstance();
+    String path = libraryPath;
+    try {
+      if (path != null && !path.isEmpty() && new File(path).isFile()) {
+        System.load(path);
+        logger.logExit(signature, path);
+      } else {
+        System.loadLibrary(LIBRARY_NAME);
+        logger.logExit(signature, LIBRARY_NAME);
+      }
+      return true;
+    } catch (UnsatisfiedLinkError | SecurityException ex) {
+      logger.logExit(signature, "falling back to Java: " + ex.getMessage());
+      return false;
+    }
+  }
+
+  private static void checkLoaded() {
+    if (!isAvailable()) {
+      throw new IllegalStateException("lib" + LIBRARY_NAME + ".so is not loaded");
+    }
+  }
+
+  private static void checkRange(final int arrayLength, final int from, final int length) {
+    if (from < 0 || length < 0 || from > arrayLength - length) {
+      throw new ArrayIndexOutOfBoundsException(
+          "from=" + from + ", length=" + length + ", array length=" + arrayLength);
+    }
+  }
+
+  /**
+   * Landmark fingerprint, the FingerprintManager::extractFingerprint() path of the
+   * "fingerprintprev" action.
+   *
+   * @param wave Array of short
+   * @param from int first sample
+   * @param length int number of samples
+   * @return Array of byte, empty when no fingerprint could be extracted
+   */
+  public static byte[] extractFingerprint(final short[] wave, final int from, final int length) {
+    checkLoaded();
+    checkRange(wave.length, from, length);
+    return nativeExtractFingerprint(wave, from, length);
+  }
+
+  public static byte[] extractFingerprint(final short[] wave) {
+    return extractFingerprint(wave, 0, wave.length);
+  }
+
+  /**
+   * Block energy trigger search, the native counterpart of TriggerMatcher.getSearchResult(). The
+   * window may run past the end of data, the missing samples read as silence.
+   *
+   * @param data Array of short
+   * @param from int first sample of the window
+   * @param length int number of samples of the window
+   * @param df TriggerDescriptor
+   * @return TriggerMatcher.SearchResult
+   */
+  public static TriggerMatcher.SearchResult searchTrigger(
+      final short[] data, final int from, final int length, final TriggerDescriptor df) {
+    // Trailing silence does not change the result, only pass the samples that exist.
+    int available = Math.max(0, Math.min(length, data.length - from));
+    checkLoaded();
+    checkRange(data.length, from, available);
+    int count = df.getUsableBlockCount();
+    float[] startRates = new float[count];
+    float[] endRates = new float[count];
+    for (int index = 0; index < count; index++) {
+      startRates[index] = df.getStartRate(index);
+      endRates[index] = df.getEndRate(index);
+    }
+    float[] result =
+        nativeSearchTrigger(
+            data, from, available, startRates, endRates, df.getBlockCount(), df.getMax());
+    return new TriggerMatcher.SearchResult(
+        result[0], (int) result[1], result[2], (int) result[3], (int) result[4]);
+  }
+
+  /**
+   * Landmark similarity from FingerprintSimilarityComputer, as jsCompareFingerprint() computes it.
+   *
+   * @param one Array of byte fingerprint
+   * @param two Array of byte fingerprint
+   * @return Array of float, see the SIMILARITY_* indexes
+   */
+  public static float[] compareLandmarks(final byte[] one, final byte[] two) {
+    checkLoaded();
+    return nativeCompareLandmarks(one, two);
+  }
+
+  private static native byte[] nativeExtractFingerprint(short[] wave, int from, int length);
+
+  private static native float[] nativeSearchTrigger(
+      short[] data,
+      int from,
+      int length,
+      float[] startRates,
+      float[] endRates,
+      int blockCount,
+      int max);
+
+  private static native float[] nativeCompareLandmarks(byte[] one, byte[] two);
+}
@@ -0,0 +1,216 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import java.util.Arrays;
+
+/**
+ * Streaming front of LandmarkExtractor for audio that is fingerprinted as several overlapping
+ * ranges, such as the payloads of the tags found in one request.
+ *
+ * <p>Samples are appended as they come and kept for the last historySamples of the stream. The
+ * FFT magnitudes of every complete frame are kept in a ring keyed by the absolute sample the
+ * frame starts at, so a range whose frames start where those of an earlier range did only
+ * transforms the frames that are new. The normalisation and the robust points depend on the whole
+ * range and are computed per call. extractFingerprint(start, length) returns the bytes of
+ * LandmarkExtractor.extractFingerprint() over the same samples.
+ *
+ * <p><strong>Thread Safety: </strong>This class is not thread safe, use one per stream.
+ *
+ * @version 1.0
+ */
+public final class SlidingSpectrogram {
+
+  private final LandmarkExtractor extractor;
+  private final int sampleSize;
+  private final int hop;
+  private final int numY;
+
+  /** Ring of the last samples.length samples of the stream. */
+  private final short[] samples;
+
+  /** Number of samples appended so far. */
+  private long position;
+
+  /** Ring of frame magnitudes, the frame starting at sample s in slot (s / hop) % length. */
+  private final float[][] frames;
+
+  /** Absolute first sample of the frame of each slot, -1 when the slot is empty. */
+  private final long[] frameStarts;
+
+  private short[] range = new short[0];
+  private float[] frame = new float[0];
+  private float[] spectrogram = new float[0];
+  private long reusedFrames;
+
+  /**
+   * Empty stream.
+   *
+   * @param extractor LandmarkExtractor
+   * @param historySamples int number of trailing samples that can still be fingerprinted
+   */
+  public SlidingSpectrogram(final LandmarkExtractor extractor, final int historySamples) {
+    if (historySamples < 1) {
+      throw new IllegalArgumentException("historySamples must be positive");
+    }
+    this.extractor = extractor;
+    this.sampleSize = extractor.getProperties().getSampleSizePerFrame();
+    this.hop = extractor.getHopSize();
+    this.numY = extractor.getMagnitudeCount();
+    this.samples = new short[historySamples];
+    int slots = historySamples / hop + 1;
+    this.frames = new float[slots][];
+    this.frameStarts = new long[slots];
+    Arrays.fill(frameStarts, -1L);
+  }
+
+  /**
+   * Append wave[from, from + length) to the stream.
+   *
+   * @param wave Array of short
+   * @param from int
+   * @param length int
+   */
+  public void append(final short[] wave, final int from, final int length) {
+    if (from < 0 || length < 0 || from + length > wave.length) {
+      throw new IllegalArgumentException("Wave range out of bounds");
+    }
+    int offset = from;
+    int remaining = length;
+    if (remaining > samples.length) {
+      position += remaining - samples.length;
+      offset += remaining - samples.length;
+      remaining = samples.length;
+    }
+    while (remaining > 0) {
+      int index = (int) (position % samples.length);
+      int count = Math.min(remaining, samples.length - index);
+      System.arraycopy(wave, offset, samples, index, count);
+      position += count;
+      offset += count;
+      remaining -= count;
+    }
+  }
+
+  /**
+   * Number of samples appended so far, the absolute index of the next one.
+   *
+   * @return long
+   */
+  public long getPosition() {
+    return position;
+  }
+
+  /**
+   * Frames taken from the ring instead of being transformed again.
+   *
+   * @return long
+   */
+  long getReusedFrames() {
+    return reusedFrames;
+  }
+
+  /**
+   * Samples [start, start + length) of the stream, zero past the last appended sample as
+   * Arrays.copyOfRange() would.
+   *
+   * @param start long absolute index of the first sample
+   * @param length int
+   * @return Array of short
+   */
+  public short[] getSamples(final long start, final int length) {
+    short[] result = new short[length];
+    copySamples(start, length, result);
+    return result;
+  }
+
+  /**
+   * Landmark fingerprint of the samples [start, start + length) of the stream.
+   *
+   * @param start long absolute index of the first sample
+   * @param length int
+   * @return Array of byte, see LandmarkExtractor.extractFingerprint()
+   */
+  public byte[] extractFingerprint(final long start, final int length) {
+    final int numFrames = extractor.getFrameCount(length);
+    if (range.length < length) {
+      range = new short[length];
+    }
+    copySamples(start, length, range);
+    if (numFrames == 0) {
+      return new byte[0];
+    }
+    if (frame.length < sampleSize) {
+      frame = new float[sampleSize];
+    }
+    if (spectrogram.length < numFrames * numY) {
+      spectrogram = new float[numFrames * numY];
+    }
+    for (int x = 0; x < numFrames; x++) {
+      final long frameStart = start + (long) x * hop;
+      // Only frames of appended samples are the same for every range holding them.
+      final boolean cacheable =
+          extractor.isCompleteFrame(length, x)
+              && extractor.isCompleteFrame((int) Math.min(length, position - start), x);
+      final int slot = (int) ((frameStart / hop) % frames.length);
+      if (cacheable && frameStarts[slot] == frameStart) {
+        System.arraycopy(frames[slot], 0, spectrogram, x * numY, numY);
+        reusedFrames++;
+        continue;
+      }
+      extractor.fillFrame(range, 0, length, x, frame);
+      extractor.transformFrame(frame, spectrogram, x * numY);
+      if (cacheable) {
+        if (frames[slot] == null) {
+          frames[slot] = new float[numY];
+        }
+        System.arraycopy(spectrogram, x * numY, frames[slot], 0, numY);
+        frameStarts[slot] = frameStart;
+      }
+    }
+    return extractor.landmarks(spectrogram, numFrames);
+  }
+
+  private void copySamples(final long start, final int length, final short[] target) {
+    if (start < 0 || length < 0 || start < position - samples.length) {
+      throw new IllegalArgumentException("Samples no longer in the history");
+    }
+    int available = (int) Math.max(0L, Math.min(length, position - start));
+    for (int copied = 0; copied < available; ) {
+      int index = (int) ((start + copied) % samples.length);
+      int count = Math.min(available - copied, samples.length - index);
+      System.arraycopy(samples, index, target, copied, count);
+      copied += count;
+    }
+    Arrays.fill(target, available, length, (short) 0);
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCompareResponse;
+import com.tuneurl.webrtc.util.util.Converter;
+import com.tuneurl.webrtc.util.value.Constants;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FingerprintThreadCollector for several triggersounds in one pass over the request audio.
+ *
+ * <p>The windows and their probes are the ones parallelFingerprintCollect() walks: one window
+ * per 100 milli-seconds, probed every Constants.FINGERPRINT_INCREMENT_DELTA. Each probe scans
+ * the window once for the start of the audio and searches, from the shared TriggerScanner, the
+ * triggers not within one second of their last match. A new trigger only adds its block searches
+ * and a trigger skipping the second after a match costs none.
+ *
+ * <p><strong>Thread Safety: </strong>This class is immutable thus thread safe.
+ *
+ * <ul>
+ *   <li>v1.1 a probe only searches the triggers not matched yet
+ *   <li>v1.2 every occurrence of each trigger, its search skipped for one second after a match
+ * </ul>
+ *
+ * @version 1.2
+ */
+public final class TriggerBatchCollector {
+
+  private final TriggerScanner scanner;
+  private final TriggerDescriptor[] triggers;
+  private final Long fingerprintRate;
+
+  /**
+   * Collector for the triggers over the scanner audio.
+   *
+   * @param scanner TriggerScanner of the request audio
+   * @param triggers Array of TriggerDescriptor
+   * @param fingerprintRate Long
+   */
+  public TriggerBatchCollector(
+      final TriggerScanner scanner,
+      final TriggerDescriptor[] triggers,
+      final Long fingerprintRate) {
+    this.scanner = scanner;
+    this.triggers = triggers.clone();
+    this.fingerprintRate = fingerprintRate;
+  }
+
+  /**
+   * Find every window matching each trigger, the windows evaluateAudioStream() selects for that
+   * trigger alone: after a match the trigger is not searched again for one second.
+   *
+   * @param maxDuration long milli-seconds to search
+   * @param counts long maximum number of windows
+   * @return List, one List of FingerprintCompareResponse per trigger, in offset order
+   */
+  public List<List<FingerprintCompareResponse>> collect(final long maxDuration, final long counts) {
+    final short[] data = scanner.getData();
+    final int delta = Constants.FINGERPRINT_INCREMENT_DELTA;
+    final int probes = (100 + delta - 1) / delta;
+    List<List<FingerprintCompareResponse>> found =
+        new ArrayList<List<FingerprintCompareResponse>>(triggers.length);
+    // Start of the first window each trigger is searched in again, as windows.skipTo().
+    long[] resumeAt = new long[triggers.length];
+    for (int index = 0; index < triggers.length; index++) {
+      found.add(new ArrayList<FingerprintCompareResponse>());
+    }
+    // The triggers searched in the current window, compacted so a skipped trigger costs nothing.
+    int[] pending = new int[triggers.length];
+    TriggerDescriptor[] searched = new TriggerDescriptor[0];
+    long count, elapse;
+
+    for (count = 0L, elapse = 0L; count < counts && elapse < maxDuration; count++, elapse += 100L) {
+      int active = 0;
+      for (int index = 0; index < triggers.length; index++) {
+        if (resumeAt[index] <= elapse) pending[active++] = index;
+      }
+      if (active == 0) continue;
+      if (active != searched.length) {
+        searched = new TriggerDescriptor[active];
+      }
+      for (int slot = 0; slot < active; slot++) {
+        searched[slot] = triggers[pending[slot]];
+      }
+      long[] timeOffsets = new long[probes];
+      TriggerMatcher.SearchResult[][] results = new TriggerMatcher.SearchResult[probes][];
+      int selection = 0;
+      for (int increment = 0; increment < 100; increment += delta) {
+        long timeOffset = elapse + increment;
+        long iStart = Converter.muldiv(timeOffset, fingerprintRate, 1000L);
+        long iEnd = Converter.muldiv(timeOffset + 1000L, fingerprintRate, 1000L);
+        int dSize = (int) (iEnd - iStart);
+        if (dSize < 16) continue;
+        if (iStart > data.length) break;
+        timeOffsets[selection] = timeOffset;
+        results[selection] = scanner.search((int) iStart, dSize, searched);
+        selection++;
+      }
+      // Same rule as evaluateAudioStream(): only complete windows are considered.
+      if (selection != probes) continue;
+      for (int slot = 0; slot < active; slot++) {
+        FingerprintCompareResponse fcr = firstMatch(results, slot, timeOffsets);
+        if (fcr != null) {
+          found.get(pending[slot]).add(fcr);
+          resumeAt[pending[slot]] = fcr.getOffset() + 1000L;
+        }
+      }
+    }
+    return found;
+  }
+
+  private static FingerprintCompareResponse firstMatch(
+      final TriggerMatcher.SearchResult[][] results, final int slot, final long[] timeOffsets) {
+    for (int probe = 0; probe < results.length; probe++) {
+      TriggerMatcher.SearchResult result = results[probe][slot];
+      if (result.getSimilarity() > 0) {
+        FingerprintCompareResponse fcr = new FingerprintCompareResponse();
+        FingerprintUtility.resetResponseValue(fcr, timeOffsets[probe]);
+        return FingerprintUtility.updateCompareResponse(
+            fcr, timeOffsets[probe], result.toCompareStringResult());
+      }
+    }
+    return null;
+  }
+}
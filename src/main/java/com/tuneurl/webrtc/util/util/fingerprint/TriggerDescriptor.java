@@ -0,0 +1,193 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+/**
+ * Triggersound descriptor in the same shape parseDataFingerPrintFromJson() of jni/cpp/main.cpp
+ * builds from <code>EvaluateAudioStreamEntry.dataFingerprint</code>.
+ *
+ * <p>Only the fields used by the block-energy search are kept: the block count, the start and end
+ * rate of every block and the trigger maximum amplitude.
+ *
+ * <p><strong>Thread Safety: </strong>This class is immutable thus thread safe.
+ *
+ * @version 1.0
+ */
+public final class TriggerDescriptor {
+
+  private final int blockCount;
+  private final float[] startRates;
+  private final float[] endRates;
+  private final int max;
+
+  /**
+   * Constructor.
+   *
+   * @param blockCount int
+   * @param startRates Array of float
+   * @param endRates Array of float
+   * @param max int
+   */
+  public TriggerDescriptor(
+      final int blockCount, final float[] startRates, final float[] endRates, final int max) {
+    this.blockCount = blockCount;
+    this.startRates = startRates;
+    this.endRates = endRates;
+    this.max = max;
+  }
+
+  public int getBlockCount() {
+    return blockCount;
+  }
+
+  /**
+   * Number of blocks that can be safely visited: the lesser of blockCount and the parsed entries.
+   *
+   * @return int
+   */
+  public int getUsableBlockCount() {
+    return Math.min(blockCount, startRates.length);
+  }
+
+  public float getStartRate(final int index) {
+    return startRates[index];
+  }
+
+  public float getEndRate(final int index) {
+    return endRates[index];
+  }
+
+  public int getMax() {
+    return max;
+  }
+
+  /**
+   * Parse the triggersound descriptor the way parseDataFingerPrintFromJson() does it, so both
+   * engines see the same numbers: rates are read as float, sizes as int, and the key lookup is the
+   * same naive text search.
+   *
+   * @param json String the EvaluateAudioStreamEntry.dataFingerprint value
+   * @return TriggerDescriptor or null if the descriptor can not be parsed
+   */
+  public static TriggerDescriptor parse(final String json) {
+    if (json == null) return null;
+    int startPos = json.indexOf('[');
+    int endPos = json.indexOf(']');
+    int blockCountPos = json.indexOf("blockCount");
+    int maxPos = json.indexOf("max");
+    if (startPos < 0 || endPos < startPos || blockCountPos < 0 || maxPos < 0) {
+      return null;
+    }
+    String blockInfoArray = json.substring(startPos + 1, endPos);
+    String[] blocks = blockInfoArray.split("\\{");
+    float[] starts = new float[blocks.length];
+    float[] ends = new float[blocks.length];
+    int count = 0;
+    try {
+      for (String block : blocks) {
+        if (block.isEmpty()) continue;
+        for (String token : block.split(",")) {
+          int colonPos = token.indexOf(':');
+          if (colonPos < 2) continue;
+          String key = token.substring(1, colonPos - 1);
+          String value = token.substring(colonPos + 1);
+          if ("startRate".equals(key)) {
+            starts[count] = parseLeadingFloat(value);
+          } else if ("endRate".equals(key)) {
+            ends[count] = parseLeadingFloat(value);
+          }
+        }
+        count++;
+      }
+      int blockCount = parseLeadingInt(json.substring(json.indexOf(':', blockCountPos) + 1));
+      int max = parseLeadingInt(json.substring(json.indexOf(':', maxPos) + 1));
+      float[] startRates = new float[count];
+      float[] endRates = new float[count];
+      System.arraycopy(starts, 0, startRates, 0, count);
+      System.arraycopy(ends, 0, endRates, 0, count);
+      return new TriggerDescriptor(blockCount, startRates, endRates, max);
+    } catch (NumberFormatException | StringIndexOutOfBoundsException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Equivalent of std::stoi(): skip leading blanks, then read an optional sign and digits.
+   *
+   * @param value String
+   * @return int
+   * @throws NumberFormatException If there is no digit to read
+   */
+  static int parseLeadingInt(final String value) throws NumberFormatException {
+    int index = skipBlanks(value, 0);
+    int start = index;
+    if (index < value.length() && (value.charAt(index) == '-' || value.charAt(index) == '+')) {
+      index++;
+    }
+    while (index < value.length() && Character.isDigit(value.charAt(index))) index++;
+    return Integer.parseInt(value.substring(start, index));
+  }
+
+  /**
+   * Equivalent of std::stof(): skip leading blanks, then read the longest decimal prefix.
+   *
+   * @param value String
+   * @return float
+   * @throws NumberFormatException If there is no number to read
+   */
+  static float parseLeadingFloat(final String value) throws NumberFormatException {
+    int index = skipBlanks(value, 0);
+    int start = index;
+    int length = value.length();
+    if (index < length && (value.charAt(index) == '-' || value.charAt(index) == '+')) index++;
+    while (index < length && Character.isDigit(value.charAt(index))) index++;
+    if (index < length && value.charAt(index) == '.') {
+      index++;
+      while (index < length && Character.isDigit(value.charAt(index))) index++;
+    }
+    if (index < length && (value.charAt(index) == 'e' || value.charAt(index) == 'E')) {
+      int mark = index++;
+      if (index < length && (value.charAt(index) == '-' || value.charAt(index) == '+')) index++;
+      if (index < length && Character.isDigit(value.charAt(index))) {
+        while (index < length && Character.isDigit(value.charAt(index))) index++;
+      } else {
+        index = mark;
+      }
+    }
+    return Float.parseFloat(value.substring(start, index));
+  }
+
+  private static int skipBlanks(final String value, int index) {
+    while (index < value.length() && Character.isWhitespace(value.charAt(index))) index++;
+    return index;
+  }
+}
@@ -0,0 +1,307 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import com.tuneurl.webrtc.util.controller.dto.CompareStringResult;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * In-process port of the block-energy trigger search of jni/cpp/main.cpp.
+ *
+ * <p>getSearchResult(), correctValue() and calculateVectorSimilarity() follow the native code
+ * step by step (float arithmetic, int16 truncation, same thresholds, the amplify adjustment and
+ * the 220-sample offset scan) so a comparison gives the same similarity and offset as running
+ * ./jni/fingerprintexec on the same samples. The one deliberate difference is reads past the end
+ * of the window: the native code reads beyond its vector there, this port reads silence.
+ *
+ * <p><strong>Thread Safety: </strong>This class is stateless thus thread safe.
+ *
+ * @version 1.0
+ */
+public final class TriggerMatcher {
+
+  /** Amplified values below this are silence, see THRESHOLD in main.cpp. */
+  public static final int THRESHOLD = 4;
+
+  /** One second of audio at the fingerprint rate. */
+  public static final int SEGMENT_SIZE = 11025;
+
+  /** Number of sample offsets scanned per window. */
+  public static final int INTERVAL = 220;
+
+  /** Amplitude where the audio is considered started. */
+  public static final int START_THRESHOLD = 50;
+
+  /** Maximum average allowed on the silent blocks 1 and 3. */
+  public static final int BLOCK_THRESHOLD = 2;
+
+  /** Minimum average of the loud blocks 0, 2 and 4. */
+  private static final float[] LOUD_BLOCK_MINIMUM = {8.0f, 0.0f, 10.0f, 0.0f, 9.0f};
+
+  /** Default constructor. */
+  private TriggerMatcher() {
+    // Hidden
+  }
+
+  /**
+   * Result of getSearchResult().
+   *
+   * <p><strong>Thread Safety: </strong>This class is immutable thus thread safe.
+   */
+  public static final class SearchResult {
+    private final float similarity;
+    private final int offset;
+    private final float amplify;
+    private final int triggerMax;
+    private final int dataMax;
+
+    SearchResult(
+        final float similarity,
+        final int offset,
+        final float amplify,
+        final int triggerMax,
+        final int dataMax) {
+      this.similarity = similarity;
+      this.offset = offset;
+      this.amplify = amplify;
+      this.triggerMax = triggerMax;
+      this.dataMax = dataMax;
+    }
+
+    /** No match: every value is zero. */
+    static final SearchResult NOT_FOUND = new SearchResult(0.0f, 0, 0.0f, 0, 0);
+
+    public float getSimilarity() {
+      return similarity;
+    }
+
+    /**
+     * Offset in samples from the start of the window.
+     *
+     * @return int
+     */
+    public int getOffset() {
+      return offset;
+    }
+
+    public float getAmplify() {
+      return amplify;
+    }
+
+    public int getTriggerMax() {
+      return triggerMax;
+    }
+
+    public int getDataMax() {
+      return dataMax;
+    }
+
+    /**
+     * Convert into the JSON strings ./jni/fingerprintexec prints for this result.
+     *
+     * @return CompareStringResult
+     */
+    public CompareStringResult toCompareStringResult() {
+      CompareStringResult result = new CompareStringResult();
+      result.setSimilarity(formatFloat(similarity));
+      result.setOffset(formatFloat(standardizeOffset(offset)));
+      return result;
+    }
+  }
+
+  /**
+   * Port of correctValue(int16_t, float): absolute value, amplified then thresholded.
+   *
+   * @param value short
+   * @param amplify float
+   * @return short
+   */
+  public static short correctValue(final short value, final float amplify) {
+    short v = (short) Math.abs(value);
+    v = (short) (int) (v * amplify);
+    if (v < THRESHOLD) {
+      v = 0;
+    }
+    return v;
+  }
+
+  /**
+   * Minimum average of a loud block.
+   *
+   * @param index int block index, 0, 2 or 4
+   * @return float
+   */
+  static float getLoudBlockMinimum(final int index) {
+    return LOUD_BLOCK_MINIMUM[index];
+  }
+
+  /**
+   * Check one block average against the getSearchResult() thresholds.
+   *
+   * @param index int block index
+   * @param average float
+   * @return boolean
+   */
+  public static boolean isBlockAccepted(final int index, final float average) {
+    if (index == 1 || index == 3) {
+      return !(average > BLOCK_THRESHOLD);
+    }
+    if (index < LOUD_BLOCK_MINIMUM.length) {
+      return !(average < LOUD_BLOCK_MINIMUM[index]);
+    }
+    return true;
+  }
+
+  /**
+   * Port of calculateVectorSimilarity(): 1 when the five block averages have the triggersound
+   * shape, 0 otherwise.
+   *
+   * @param averages Array of float, one per block
+   * @return float
+   */
+  public static float calculateVectorSimilarity(final float[] averages) {
+    if (averages.length < LOUD_BLOCK_MINIMUM.length) {
+      return 0.0f;
+    }
+    for (int index = 0; index < LOUD_BLOCK_MINIMUM.length; index++) {
+      if (!isBlockAccepted(index, averages[index])) {
+        return 0.0f;
+      }
+    }
+    return 1.0f;
+  }
+
+  /**
+   * Port of standardizeOffset(): samples to milli-seconds at 11025 Hz.
+   *
+   * @param offset int
+   * @return float
+   */
+  public static float standardizeOffset(final int offset) {
+    return (float) offset * 1000 / 11025;
+  }
+
+  /**
+   * Format a float the way std::ostream does by default (printf "%g", 6 significant digits).
+   *
+   * @param value float
+   * @return String
+   */
+  public static String formatFloat(final float value) {
+    if (value == 0.0f) return "0";
+    BigDecimal decimal =
+        new BigDecimal((double) value)
+            .round(new MathContext(6, RoundingMode.HALF_EVEN))
+            .stripTrailingZeros();
+    int exponent = decimal.precision() - decimal.scale() - 1;
+    if (exponent >= -4 && exponent < 6) {
+      return decimal.toPlainString();
+    }
+    String mantissa = decimal.movePointLeft(exponent).toPlainString();
+    String sign = exponent < 0 ? "-" : "+";
+    int power = Math.abs(exponent);
+    return mantissa + "e" + sign + (power < 10 ? "0" : "") + power;
+  }
+
+  /**
+   * Port of getSearchResult(): find the triggersound within the window data[from, from + length).
+   * The window may run past the end of data, the missing samples read as silence.
+   *
+   * @param data Array of short
+   * @param from int start of the window
+   * @param length int size of the window
+   * @param df TriggerDescriptor
+   * @return SearchResult
+   */
+  public static SearchResult getSearchResult(
+      final short[] data, final int from, final int length, final TriggerDescriptor df) {
+
+    final int triggerMax = df.getMax();
+    final int blockCount = df.getUsableBlockCount();
+    // Zero samples past this point change neither dataMax nor any block sum.
+    final int available = Math.max(0, Math.min(length, data.length - from));
+
+    // 1. Locate where the audio starts and its maximum amplitude.
+    int startOffset = -1;
+    short dataMax = 0;
+    int segmentSize = 0;
+    for (int i = 0; i < available; i++) {
+      if (i > INTERVAL && dataMax < START_THRESHOLD) break;
+      if (segmentSize == SEGMENT_SIZE + startOffset) break;
+      short absValue = (short) Math.abs(data[from + i]);
+      if (absValue > dataMax) {
+        dataMax = absValue;
+      }
+      segmentSize++;
+      if (startOffset < 0 && dataMax > START_THRESHOLD) startOffset = i;
+    }
+
+    float amplify = 1.0f;
+    if (dataMax != 0) amplify = (float) triggerMax / dataMax;
+
+    // 2. Slide the trigger blocks over the first 220 offsets.
+    int startPos = startOffset - 20;
+    if (startPos < 0) startPos = 0;
+    for (int offset = startPos; offset < INTERVAL; offset++) {
+      boolean isFind = false;
+      for (int index = 0; index < blockCount; index++) {
+        int start = (int) (df.getStartRate(index) * SEGMENT_SIZE + offset);
+        int end = (int) (df.getEndRate(index) * SEGMENT_SIZE + offset);
+        int blockSize = end - start;
+        int sum = 0;
+        int limit = Math.min(end, available);
+        for (int i = Math.max(start, 0); i < limit; i++) {
+          sum += correctValue(data[from + i], amplify);
+        }
+        float average = (float) sum / blockSize;
+        if (!isBlockAccepted(index, average)) break;
+        if (index == 4) isFind = true;
+      }
+      if (isFind) {
+        return new SearchResult(1.0f, offset, amplify, triggerMax, dataMax);
+      }
+      // 3. Adjust amplify with the sample just after the current second.
+      int next = SEGMENT_SIZE + offset + 1;
+      if (available > next && dataMax < Math.abs(data[from + next])) {
+        dataMax = (short) Math.abs(data[from + next]);
+        if (dataMax == 0) {
+          amplify = 1.0f;
+        } else {
+          amplify = (float) triggerMax / dataMax;
+        }
+      }
+    }
+    return SearchResult.NOT_FOUND;
+  }
+}
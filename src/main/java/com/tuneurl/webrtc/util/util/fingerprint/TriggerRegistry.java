@@ -0,0 +1,366 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import com.tuneurl.webrtc.util.exception.BaseServiceException;
+import com.tuneurl.webrtc.util.util.CommonUtil;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Triggersound descriptors kept parsed, by their text and by their trigger id.
+ *
+ * <p>The trigger id of a descriptor is the hex of the first 16 bytes of the SHA-256 of its UTF-8
+ * text, so a client can compute it. A descriptor is registered by /dev/v3/registerTrigger, or on
+ * its first use by an evaluate request; later requests may send the id instead of the text.
+ *
+ * <p>A registration is kept for ttlSeconds after the last request using its id, or until every
+ * client that registered it unregisters it, and a client may have at most tenantTriggers of them.
+ * The descriptors seen only in requests, then the expired registrations, are forgotten when
+ * maxTriggers are kept; a registration fails when maxTriggers are still registered.
+ *
+ * <p>The registry is in memory, one bean per instance: a request may send the dataFingerprint
+ * with its triggerId, it is then used, and kept again, when the id is not known after a restart
+ * or on another instance.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe.
+ *
+ * <ul>
+ *   <li>v1.1 registrations expire, unregister() and the per-client quota
+ *   <li>v1.2 a Spring component sized from the fingerprint.trigger.registry properties
+ * </ul>
+ *
+ * @version 1.2
+ */
+@Component
+public class TriggerRegistry {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final Map<String, Trigger> byText = new ConcurrentHashMap<String, Trigger>();
+  private final Map<String, Trigger> byId = new ConcurrentHashMap<String, Trigger>();
+
+  /** Registrations per client, guarded by this. */
+  private final Map<String, Integer> byTenant = new HashMap<String, Integer>();
+
+  private final LongSupplier clock;
+
+  private volatile int maxTriggers = 4096;
+  private volatile int tenantTriggers = 64;
+  private volatile long ttlMillis = 86400000L;
+
+  /** Default constructor. */
+  public TriggerRegistry() {
+    this(System::currentTimeMillis);
+  }
+
+  TriggerRegistry(final LongSupplier clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * Set the number of descriptors kept and how long a registration lasts.
+   *
+   * @param triggers int descriptors kept, registered or seen in requests, at least 1
+   * @param perTenant int registrations of one client, at least 1
+   * @param ttlSeconds long seconds a registration is kept after the last request using it
+   */
+  @Autowired
+  public void configure(
+      @Value("${fingerprint.trigger.registry.size:4096}") final int triggers,
+      @Value("${fingerprint.trigger.registry.tenant.size:64}") final int perTenant,
+      @Value("${fingerprint.trigger.registry.ttl.seconds:86400}") final long ttlSeconds) {
+    maxTriggers = Math.max(1, triggers);
+    tenantTriggers = Math.max(1, perTenant);
+    ttlMillis = Math.max(1L, ttlSeconds) * 1000L;
+  }
+
+  /**
+   * Seconds a registration is kept after its last use.
+   *
+   * @return long
+   */
+  public long getTtlSeconds() {
+    return ttlMillis / 1000L;
+  }
+
+  /**
+   * The parsed descriptor, parsed once per descriptor text. The lookup hashes the text once per
+   * String instance, so the windows of a request find it without reading the text again.
+   *
+   * @param dataFingerprint String the EvaluateAudioStreamEntry.dataFingerprint value
+   * @return TriggerDescriptor or null if the descriptor can not be parsed
+   */
+  public TriggerDescriptor compile(final String dataFingerprint) {
+    if (dataFingerprint == null) return null;
+    Trigger trigger = byText.get(dataFingerprint);
+    if (trigger == null) trigger = add(dataFingerprint);
+    return trigger == null ? null : trigger.descriptor;
+  }
+
+  /**
+   * Parse and keep a descriptor for a client, until ttlSeconds after its last use.
+   *
+   * @param dataFingerprint String the descriptor
+   * @param tenant String the client registering it
+   * @return Trigger or null if the descriptor can not be parsed
+   * @throws BaseServiceException 429 when the client or the registry has no room left
+   */
+  public synchronized Trigger register(final String dataFingerprint, final String tenant)
+      throws BaseServiceException {
+    if (dataFingerprint == null) return null;
+    final String owner = tenant == null ? "" : tenant;
+    final long now = clock.getAsLong();
+    releaseExpired(now);
+    Trigger trigger = byText.get(dataFingerprint);
+    if (trigger == null) {
+      TriggerDescriptor descriptor = TriggerDescriptor.parse(dataFingerprint);
+      if (descriptor == null) return null;
+      trigger = new Trigger(triggerId(dataFingerprint), dataFingerprint, descriptor);
+    }
+    if (!trigger.tenants.contains(owner)) {
+      if (byTenant.getOrDefault(owner, 0) >= tenantTriggers) {
+        CommonUtil.TooManyRequestException(
+            "No more than " + tenantTriggers + " triggers can be registered per client",
+            retryAfterSeconds(owner, now));
+      }
+      if (!byId.containsKey(trigger.triggerId)) {
+        if (byId.size() >= maxTriggers) forgetUnpinned();
+        if (byId.size() >= maxTriggers) {
+          CommonUtil.TooManyRequestException(
+              "No more than " + maxTriggers + " triggers can be registered",
+              retryAfterSeconds(null, now));
+        }
+        put(trigger);
+      }
+      trigger.tenants.add(owner);
+      byTenant.merge(owner, 1, Integer::sum);
+    }
+    trigger.expiresAt = now + ttlMillis;
+    return trigger;
+  }
+
+  /**
+   * Drop the registration of a client; the descriptor stays parsed while there is room.
+   *
+   * @param triggerId String
+   * @param tenant String the client that registered it
+   * @return boolean false when the client did not register triggerId
+   */
+  public synchronized boolean unregister(final String triggerId, final String tenant) {
+    Trigger trigger = triggerId == null ? null : byId.get(triggerId);
+    final String owner = tenant == null ? "" : tenant;
+    if (trigger == null || !trigger.tenants.remove(owner)) return false;
+    releaseTenant(owner);
+    return true;
+  }
+
+  /**
+   * The descriptor text of a trigger id.
+   *
+   * @param triggerId String
+   * @return String or null when the id is not known
+   */
+  public String getDataFingerprint(final String triggerId) {
+    Trigger trigger = triggerId == null ? null : byId.get(triggerId);
+    return trigger == null ? null : trigger.dataFingerprint;
+  }
+
+  /**
+   * The descriptor of a request: the text of triggerId when it is known, else dataFingerprint,
+   * which is kept on its first use. The String kept by the registry is returned, so the compile()
+   * of every window of the request finds it by identity. A use of triggerId extends its
+   * registration.
+   *
+   * @param triggerId String or null
+   * @param dataFingerprint String or null, the text of triggerId when both are given
+   * @return String
+   * @throws BaseServiceException 404 when triggerId is not known and dataFingerprint is null, 400
+   *     when dataFingerprint is not the text of triggerId
+   */
+  public String resolve(final String triggerId, final String dataFingerprint)
+      throws BaseServiceException {
+    if (triggerId == null) {
+      if (dataFingerprint == null) return null;
+      Trigger trigger = byText.get(dataFingerprint);
+      if (trigger == null) trigger = add(dataFingerprint);
+      return trigger == null ? dataFingerprint : trigger.dataFingerprint;
+    }
+    Trigger trigger = byId.get(triggerId);
+    if (trigger != null) {
+      // Only read for a registered trigger; racing uses set about the same expiry.
+      trigger.expiresAt = clock.getAsLong() + ttlMillis;
+      return trigger.dataFingerprint;
+    }
+    if (dataFingerprint == null) {
+      CommonUtil.NotFoundException("Unknown triggerId " + triggerId);
+    }
+    // Registered on another instance, or before a restart.
+    if (!triggerId.equals(triggerId(dataFingerprint))) {
+      CommonUtil.BadRequestException("triggerId " + triggerId + " is not dataFingerprint");
+    }
+    return resolve(null, dataFingerprint);
+  }
+
+  /**
+   * Number of descriptors kept.
+   *
+   * @return int
+   */
+  public int size() {
+    return byId.size();
+  }
+
+  /**
+   * The trigger id of a descriptor.
+   *
+   * @param dataFingerprint String
+   * @return String 32 hex digits
+   */
+  public static String triggerId(final String dataFingerprint) {
+    byte[] digest;
+    try {
+      digest =
+          MessageDigest.getInstance("SHA-256")
+              .digest(dataFingerprint.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    char[] id = new char[32];
+    for (int i = 0; i < 16; i++) {
+      id[2 * i] = HEX[(digest[i] >> 4) & 0x0f];
+      id[2 * i + 1] = HEX[digest[i] & 0x0f];
+    }
+    return new String(id);
+  }
+
+  /** Keep the descriptor of a request, unless all the room is registered. */
+  private synchronized Trigger add(final String dataFingerprint) {
+    Trigger trigger = byText.get(dataFingerprint);
+    if (trigger != null) return trigger;
+    TriggerDescriptor descriptor = TriggerDescriptor.parse(dataFingerprint);
+    if (descriptor == null) return null;
+    trigger = new Trigger(triggerId(dataFingerprint), dataFingerprint, descriptor);
+    if (byId.size() >= maxTriggers) {
+      releaseExpired(clock.getAsLong());
+      forgetUnpinned();
+    }
+    // When all are registered, a request descriptor is parsed but not kept.
+    return byId.size() < maxTriggers ? put(trigger) : trigger;
+  }
+
+  private Trigger put(final Trigger trigger) {
+    byText.put(trigger.dataFingerprint, trigger);
+    byId.put(trigger.triggerId, trigger);
+    return trigger;
+  }
+
+  private void forgetUnpinned() {
+    Iterator<Trigger> triggers = byId.values().iterator();
+    while (triggers.hasNext()) {
+      Trigger trigger = triggers.next();
+      if (trigger.tenants.isEmpty()) {
+        triggers.remove();
+        byText.remove(trigger.dataFingerprint);
+      }
+    }
+  }
+
+  /** Drop the registrations not used for ttlSeconds; their descriptors stay parsed. */
+  private void releaseExpired(final long now) {
+    for (Trigger trigger : byId.values()) {
+      if (trigger.tenants.isEmpty() || now - trigger.expiresAt < 0L) continue;
+      for (String owner : trigger.tenants) {
+        releaseTenant(owner);
+      }
+      trigger.tenants.clear();
+    }
+  }
+
+  private void releaseTenant(final String owner) {
+    byTenant.computeIfPresent(owner, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /** Seconds until the first registration, of owner or of anyone when null, expires. */
+  private long retryAfterSeconds(final String owner, final long now) {
+    long first = now + ttlMillis;
+    for (Trigger trigger : byId.values()) {
+      if (trigger.tenants.isEmpty()) continue;
+      if (owner != null && !trigger.tenants.contains(owner)) continue;
+      first = Math.min(first, trigger.expiresAt);
+    }
+    return Math.max(1L, (first - now + 999L) / 1000L);
+  }
+
+  /** A descriptor, its text, its id and the clients that registered it. */
+  public static final class Trigger {
+
+    private final String triggerId;
+    private final String dataFingerprint;
+    private final TriggerDescriptor descriptor;
+
+    /** Guarded by the lock of the TriggerRegistry, empty for a descriptor seen in requests. */
+    private final Set<String> tenants = new HashSet<String>();
+
+    private volatile long expiresAt;
+
+    Trigger(
+        final String triggerId, final String dataFingerprint, final TriggerDescriptor descriptor) {
+      this.triggerId = triggerId;
+      this.dataFingerprint = dataFingerprint;
+      this.descriptor = descriptor;
+    }
+
+    public String getTriggerId() {
+      return triggerId;
+    }
+
+    public String getDataFingerprint() {
+      return dataFingerprint;
+    }
+
+    public TriggerDescriptor getDescriptor() {
+      return descriptor;
+    }
+  }
+}
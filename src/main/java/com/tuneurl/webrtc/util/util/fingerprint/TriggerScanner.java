@@ -0,0 +1,354 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TriggerMatcher.getSearchResult() over prefix sums of the whole request audio.
+ *
+ * <p>The scanner is built once per request and shared by every window of it. A window search
+ * gives the same SearchResult as TriggerMatcher.getSearchResult() on the same samples, but each
+ * block sum costs a few array reads instead of a pass over the block:
+ *
+ * <ul>
+ *   <li>dataMax and the start of the audio come from the maxima of fixed size chunks of the
+ *       absolute amplitudes, so the first scan only walks the partial chunks at its ends.
+ *   <li>correctValue() amplifies before it truncates and thresholds, so a sum of corrected values
+ *       cannot be derived from a sum of raw ones. amplify only depends on triggerMax and dataMax
+ *       though, and a request only sees a handful of distinct values, so the corrected values are
+ *       summed once per amplify value, exactly as correctValue() computes them.
+ *   <li>Those prefix sums are built lazily per tile of TILE_SIZE samples, only over the tiles the
+ *       windows of that amplify value read. Every corrected value is within [0, 32767] so a tile
+ *       prefix never overflows an int.
+ * </ul>
+ *
+ * <p>Before any tile is read, a window must pass an energy gate: a corrected value is at most
+ * |value| times the largest amplify the search can reach, so the sum of |value| over the chunks
+ * around a loud block bounds its corrected sum at every offset. A window where block 0, 2 or 4
+ * cannot reach its minimum average is NOT_FOUND without building tiles; silence and quiet talk
+ * mostly end there. The bound only over-estimates, the results do not change.
+ *
+ * <p><strong>Thread Safety: </strong>This class is thread safe, the tiles are published through a
+ * ConcurrentHashMap and the audio is never modified.
+ *
+ * <ul>
+ *   <li>v1.1 added search(int, int, TriggerDescriptor[]) for several triggers per window
+ *   <li>v1.2 added the chunk energy gate before the block search
+ * </ul>
+ *
+ * @version 1.2
+ */
+public final class TriggerScanner {
+
+  /** Samples per chunk of the amplitude maxima. */
+  static final int CHUNK_SIZE = 256;
+
+  /** Samples per tile of corrected value prefix sums. */
+  static final int TILE_SIZE = 4096;
+
+  private final short[] data;
+
+  /** Largest absolute amplitude of each CHUNK_SIZE chunk, -32768 counted as 0. */
+  private final short[] chunkMax;
+
+  /** Sums of |value| over the chunks before each chunk, -32768 counted as 32768. */
+  private final long[] chunkEnergy;
+
+  /** Number of -32768 samples in the chunks before each chunk. */
+  private final int[] chunkMinimums;
+
+  /** Prefix sums keyed by amplify bits in the high word and tile index in the low word. */
+  private final ConcurrentHashMap<Long, int[]> tiles = new ConcurrentHashMap<>();
+
+  /**
+   * Index the request audio.
+   *
+   * @param data Array of short, the whole request audio. Not copied, must not change afterward.
+   */
+  public TriggerScanner(final short[] data) {
+    this.data = data;
+    this.chunkMax = new short[(data.length + CHUNK_SIZE - 1) / CHUNK_SIZE];
+    this.chunkEnergy = new long[chunkMax.length + 1];
+    this.chunkMinimums = new int[chunkMax.length + 1];
+    for (int i = 0; i < data.length; i++) {
+      short value = absolute(data[i]);
+      if (value > chunkMax[i / CHUNK_SIZE]) {
+        chunkMax[i / CHUNK_SIZE] = value;
+      }
+      chunkEnergy[i / CHUNK_SIZE + 1] += Math.abs((int) data[i]);
+      if (data[i] == Short.MIN_VALUE) chunkMinimums[i / CHUNK_SIZE + 1]++;
+    }
+    for (int chunk = 1; chunk < chunkEnergy.length; chunk++) {
+      chunkEnergy[chunk] += chunkEnergy[chunk - 1];
+      chunkMinimums[chunk] += chunkMinimums[chunk - 1];
+    }
+  }
+
+  public short[] getData() {
+    return data;
+  }
+
+  /**
+   * Same as TriggerMatcher.getSearchResult(getData(), from, length, df).
+   *
+   * @param from int start of the window
+   * @param length int size of the window
+   * @param df TriggerDescriptor
+   * @return SearchResult
+   */
+  public TriggerMatcher.SearchResult search(
+      final int from, final int length, final TriggerDescriptor df) {
+    return search(from, length, new TriggerDescriptor[] {df})[0];
+  }
+
+  /**
+   * TriggerMatcher.getSearchResult(getData(), from, length, df) for each df of triggers. The
+   * start of the audio and dataMax do not depend on the trigger, the window is scanned for them
+   * once; triggers with the same max also share their prefix sums.
+   *
+   * @param from int start of the window
+   * @param length int size of the window
+   * @param triggers Array of TriggerDescriptor
+   * @return Array of SearchResult, one per trigger
+   */
+  public TriggerMatcher.SearchResult[] search(
+      final int from, final int length, final TriggerDescriptor[] triggers) {
+
+    final int available = Math.max(0, Math.min(length, data.length - from));
+    final int interval = TriggerMatcher.INTERVAL;
+    final int segment = TriggerMatcher.SEGMENT_SIZE;
+
+    // 1. The first scan of getSearchResult() stops after INTERVAL + 1 samples when they are all
+    // below START_THRESHOLD, otherwise one second after the first sample above it, or at
+    // SEGMENT_SIZE - 1 when there is none.
+    int startOffset = -1;
+    int end;
+    if (available > interval + 1
+        && rangeMax(from, from + interval + 1) < TriggerMatcher.START_THRESHOLD) {
+      end = interval + 1;
+    } else {
+      startOffset = firstAbove(from, from + Math.min(available, segment - 1));
+      end = Math.min(available, startOffset < 0 ? segment - 1 : segment + startOffset);
+    }
+    final short dataMax = rangeMax(from, from + end);
+
+    TriggerMatcher.SearchResult[] results = new TriggerMatcher.SearchResult[triggers.length];
+    for (int index = 0; index < triggers.length; index++) {
+      results[index] = searchBlocks(from, available, startOffset, dataMax, triggers[index]);
+    }
+    return results;
+  }
+
+  /** Steps 2 and 3 of getSearchResult() for one trigger. */
+  private TriggerMatcher.SearchResult searchBlocks(
+      final int from,
+      final int available,
+      final int startOffset,
+      short dataMax,
+      final TriggerDescriptor df) {
+
+    final int triggerMax = df.getMax();
+    final int blockCount = df.getUsableBlockCount();
+    final int interval = TriggerMatcher.INTERVAL;
+    final int segment = TriggerMatcher.SEGMENT_SIZE;
+
+    // isFind needs block 4, the other windows cannot match either.
+    if (blockCount < 5 || !mayMatch(from, dataMax, df)) {
+      return TriggerMatcher.SearchResult.NOT_FOUND;
+    }
+
+    float amplify = 1.0f;
+    if (dataMax != 0) amplify = (float) triggerMax / dataMax;
+
+    // 2. Slide the trigger blocks over the first 220 offsets.
+    int startPos = startOffset - 20;
+    if (startPos < 0) startPos = 0;
+    for (int offset = startPos; offset < interval; offset++) {
+      boolean isFind = false;
+      for (int index = 0; index < blockCount; index++) {
+        int start = (int) (df.getStartRate(index) * segment + offset);
+        int stop = (int) (df.getEndRate(index) * segment + offset);
+        int blockSize = stop - start;
+        int limit = Math.min(stop, available);
+        int first = Math.max(start, 0);
+        int sum = first < limit ? correctedSum(amplify, from + first, from + limit) : 0;
+        float average = (float) sum / blockSize;
+        if (!TriggerMatcher.isBlockAccepted(index, average)) break;
+        if (index == 4) isFind = true;
+      }
+      if (isFind) {
+        return new TriggerMatcher.SearchResult(1.0f, offset, amplify, triggerMax, dataMax);
+      }
+      // 3. Adjust amplify with the sample just after the current second.
+      int next = segment + offset + 1;
+      if (available > next && dataMax < Math.abs(data[from + next])) {
+        dataMax = (short) Math.abs(data[from + next]);
+        if (dataMax == 0) {
+          amplify = 1.0f;
+        } else {
+          amplify = (float) triggerMax / dataMax;
+        }
+      }
+    }
+    return TriggerMatcher.SearchResult.NOT_FOUND;
+  }
+
+  /**
+   * False when block 0, 2 or 4 cannot reach its minimum average at any offset of the window.
+   *
+   * @param from int start of the window
+   * @param dataMax short the maximum found by the first scan of the window
+   * @param df TriggerDescriptor
+   * @return boolean
+   */
+  private boolean mayMatch(final int from, final short dataMax, final TriggerDescriptor df) {
+    final int interval = TriggerMatcher.INTERVAL;
+    final int segment = TriggerMatcher.SEGMENT_SIZE;
+    // Step 3 only raises dataMax, so amplify only decreases unless it starts from dataMax 0. A
+    // -32768 read there wraps dataMax, after which any value may follow.
+    final int next = from + segment + 1;
+    final boolean wraps =
+        next < data.length
+            && chunkMinimums[(Math.min(next + interval, data.length) - 1) / CHUNK_SIZE + 1]
+                > chunkMinimums[next / CHUNK_SIZE];
+    final float amplify =
+        dataMax > 0 && !wraps
+            ? (float) df.getMax() / dataMax
+            : Math.max(1.0f, (float) df.getMax());
+    if (!(amplify > 0.0f)) return true;
+    for (int index = 0; index < 5; index += 2) {
+      int blockSize = Integer.MAX_VALUE;
+      for (int offset = 0; offset < interval; offset++) {
+        int start = (int) (df.getStartRate(index) * segment + offset);
+        int stop = (int) (df.getEndRate(index) * segment + offset);
+        blockSize = Math.min(blockSize, stop - start);
+      }
+      if (blockSize <= 0) return true;
+      int first = from + (int) (df.getStartRate(index) * segment);
+      int last = from + (int) (df.getEndRate(index) * segment + interval - 1);
+      // Margins cover the float rounding of correctValue() and of the average.
+      double bound = energy(first, last) * (double) amplify * 1.0001 + 1.0;
+      if (bound < TriggerMatcher.getLoudBlockMinimum(index) * (double) blockSize * 0.9999) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Sum of |value| over the chunks overlapping data[from, to), at least that of data[from, to). */
+  private long energy(final int from, final int to) {
+    int first = Math.max(0, from);
+    int last = Math.min(to, data.length);
+    if (first >= last) return 0L;
+    return chunkEnergy[(last - 1) / CHUNK_SIZE + 1] - chunkEnergy[first / CHUNK_SIZE];
+  }
+
+  /** The abs16 of the native code, where -32768 stays negative, clamped to 0. */
+  private static short absolute(final short value) {
+    short v = (short) Math.abs(value);
+    return v < 0 ? 0 : v;
+  }
+
+  /** Largest absolute amplitude within data[from, to). */
+  private short rangeMax(final int from, final int to) {
+    short max = 0;
+    int i = from;
+    while (i < to) {
+      if (i % CHUNK_SIZE == 0 && i + CHUNK_SIZE <= to) {
+        if (chunkMax[i / CHUNK_SIZE] > max) max = chunkMax[i / CHUNK_SIZE];
+        i += CHUNK_SIZE;
+      } else {
+        short value = absolute(data[i]);
+        if (value > max) max = value;
+        i++;
+      }
+    }
+    return max;
+  }
+
+  /** Window index of the first sample above START_THRESHOLD within data[from, to), or -1. */
+  private int firstAbove(final int from, final int to) {
+    int i = from;
+    while (i < to) {
+      if (i % CHUNK_SIZE == 0
+          && i + CHUNK_SIZE <= to
+          && chunkMax[i / CHUNK_SIZE] <= TriggerMatcher.START_THRESHOLD) {
+        i += CHUNK_SIZE;
+        continue;
+      }
+      if (absolute(data[i]) > TriggerMatcher.START_THRESHOLD) {
+        return i - from;
+      }
+      i++;
+    }
+    return -1;
+  }
+
+  /** Sum of correctValue(data[i], amplify) for i within [from, to), from < to. */
+  private int correctedSum(final float amplify, final int from, final int to) {
+    final int firstTile = from / TILE_SIZE;
+    final int lastTile = (to - 1) / TILE_SIZE;
+    if (firstTile == lastTile) {
+      int[] prefix = tile(amplify, firstTile);
+      return prefix[to - firstTile * TILE_SIZE] - prefix[from - firstTile * TILE_SIZE];
+    }
+    int[] prefix = tile(amplify, firstTile);
+    int sum = prefix[TILE_SIZE] - prefix[from - firstTile * TILE_SIZE];
+    for (int index = firstTile + 1; index < lastTile; index++) {
+      sum += tile(amplify, index)[TILE_SIZE];
+    }
+    return sum + tile(amplify, lastTile)[to - lastTile * TILE_SIZE];
+  }
+
+  /** Prefix sums of the corrected values of one tile, built on first use. */
+  private int[] tile(final float amplify, final int index) {
+    long key = ((long) Float.floatToIntBits(amplify) << 32) | index;
+    int[] prefix = tiles.get(key);
+    if (prefix == null) {
+      prefix = tiles.computeIfAbsent(key, k -> buildTile(amplify, index));
+    }
+    return prefix;
+  }
+
+  private int[] buildTile(final float amplify, final int index) {
+    int first = index * TILE_SIZE;
+    int last = Math.min(first + TILE_SIZE, data.length);
+    int[] prefix = new int[TILE_SIZE + 1];
+    int sum = 0;
+    for (int i = first; i < first + TILE_SIZE; i++) {
+      if (i < last) sum += TriggerMatcher.correctValue(data[i], amplify);
+      prefix[i - first + 1] = sum;
+    }
+    return prefix;
+  }
+}
@@ -131,6 +131,12 @@ public final class Constants {
   public static final String X_SDK_CLIENT_ID_HEADER_NAME_MISMATCH_ERROR_STRING =
       "Must use correct SDK Client ID to use the service";
 
+  /** Request attribute holding the SDK client the fingerprint work is scheduled for. */
+  public static final String FINGERPRINT_TENANT_ATTRIBUTE = "tuneurl.fingerprint.tenant";
+
+  /** Request attribute holding the ClientCredential found by getSdkClientCredentials(). */
+  public static final String CLIENT_CREDENTIAL_ATTRIBUTE = "tuneurl.client.credential";
+
   public static final String X_AUDIO_TITLE_HEADER_NAME = "x-audio-title";
   public static final String X_AUDIO_TITLE_HEADER_NAME_ERROR_STRING = "Missing Audio title.";
 
@@ -246,6 +252,19 @@ public final class Constants {
 
   public static final int FRAME_LOWEST_VALUE = -214748364;
 
+  /* Trigger comparison and extraction in-process with TriggerMatcher and LandmarkExtractor. */
+  public static final String FINGERPRINT_MODE_JAVA = "java";
+
+  /* Trigger comparison and extraction with ./jni/fingerprintexec
+   * via runExternalFingerprintModule.sh. */
+  public static final String FINGERPRINT_MODE_EXTERNAL = "external";
+
+  /* Trigger comparison and extraction with libtuneurlfp.so, see NativeFingerprintEngine. */
+  public static final String FINGERPRINT_MODE_NATIVE = "native";
+
+  /* Maximum triggersounds per /dev/v3/evaluateAudioStreamTriggers request. */
+  public static final int FINGERPRINT_MAX_TRIGGERS = 16;
+
   /** Default constructor. */
   private Constants() {
     // Hidden
@@ -0,0 +1,127 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.tuneurl.webrtc.util.controller.dto.EvaluateAudioStreamResponse;
+import com.tuneurl.webrtc.util.controller.dto.TuneUrlTag;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/** A one-second response is read back from its Redis value as it was written. */
+class RedisInstanceTest {
+
+  @Test
+  void oneSecondEntryRoundTrip() {
+    TuneUrlTag tag = new TuneUrlTag();
+    tag.setId(7L);
+    tag.setName("Shop now");
+    tag.setDescription("\u00dcmlaut \u2014 50% off");
+    tag.setType("open_page");
+    tag.setInfo(null);
+    tag.setSimilarity(82L);
+    tag.setIndex(2L);
+    tag.setDataPosition(221L);
+    tag.setTriggerIndex(null);
+    List<TuneUrlTag> tags = new ArrayList<TuneUrlTag>();
+    tags.add(tag);
+    EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
+    response.setTuneUrlCounts(1L);
+    response.setTagCounts(1L);
+    response.setLiveTags(tags);
+
+    RedisInstance.OneSecondEntry entry =
+        RedisInstance.decodeOneSecond(RedisInstance.encodeOneSecond(1200L, response));
+
+    assertEquals(1200L, entry.getDataOffset());
+    EvaluateAudioStreamResponse read = entry.getResponse();
+    assertEquals(1L, read.getTuneUrlCounts().longValue());
+    assertEquals(1L, read.getTagCounts().longValue());
+    assertEquals(1, read.getLiveTags().size());
+    TuneUrlTag readTag = read.getLiveTags().get(0);
+    assertEquals(7L, readTag.getId().longValue());
+    assertEquals("Shop now", readTag.getName());
+    assertEquals("\u00dcmlaut \u2014 50% off", readTag.getDescription());
+    assertEquals("open_page", readTag.getType());
+    assertNull(readTag.getInfo());
+    assertEquals(82L, readTag.getSimilarity().longValue());
+    assertEquals(2L, readTag.getIndex().longValue());
+    assertEquals(221L, readTag.getDataPosition().longValue());
+    assertNull(readTag.getTriggerIndex());
+  }
+
+  @Test
+  void emptyResponseAndUnknownValues() {
+    EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
+    response.setTuneUrlCounts(0L);
+    response.setTagCounts(0L);
+    response.setLiveTags(new ArrayList<TuneUrlTag>());
+
+    byte[] value = RedisInstance.encodeOneSecond(0L, response);
+    assertEquals(0, RedisInstance.decodeOneSecond(value).getResponse().getLiveTags().size());
+
+    assertNull(RedisInstance.decodeOneSecond(null));
+    value[0] = 99;
+    assertNull(RedisInstance.decodeOneSecond(value));
+    assertNull(RedisInstance.decodeOneSecond(new byte[] {1, 0, 0}));
+  }
+
+  @Test
+  void sizesBeyondTheValueAreMisses() {
+    TuneUrlTag tag = new TuneUrlTag();
+    tag.setId(7L);
+    tag.setName("Shop now");
+    List<TuneUrlTag> tags = new ArrayList<TuneUrlTag>();
+    tags.add(tag);
+    EvaluateAudioStreamResponse response = new EvaluateAudioStreamResponse();
+    response.setTuneUrlCounts(1L);
+    response.setTagCounts(1L);
+    response.setLiveTags(tags);
+    byte[] value = RedisInstance.encodeOneSecond(0L, response);
+
+    // version, offset, two counts, then the number of tags and the id and name of the first.
+    byte[] count = value.clone();
+    ByteBuffer.wrap(count).putInt(27, Integer.MAX_VALUE);
+    assertNull(RedisInstance.decodeOneSecond(count));
+    byte[] length = value.clone();
+    ByteBuffer.wrap(length).putInt(40, Integer.MAX_VALUE);
+    assertNull(RedisInstance.decodeOneSecond(length));
+    assertNull(RedisInstance.decodeOneSecond(Arrays.copyOf(value, value.length + 1)));
+    TuneUrlTag read = RedisInstance.decodeOneSecond(value).getResponse().getLiveTags().get(0);
+    assertEquals("Shop now", read.getName());
+  }
+}
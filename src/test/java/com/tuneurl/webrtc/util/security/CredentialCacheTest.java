@@ -0,0 +1,108 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.security;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.tuneurl.webrtc.util.controller.dto.ClientCredential;
+import com.tuneurl.webrtc.util.model.LdapInfo;
+import com.tuneurl.webrtc.util.model.SdkUser;
+import org.junit.jupiter.api.Test;
+
+/** A verified JWT keeps its credential until the ttl, its logout or a change of its user. */
+class CredentialCacheTest {
+
+  private long now = 0L;
+
+  private CredentialCache newCache(final long ttlSeconds) {
+    CredentialCache cache = new CredentialCache(() -> now);
+    cache.configure(true, ttlSeconds, 3);
+    return cache;
+  }
+
+  private static ClientCredential credential(final long sdkUserId, final long ldapId) {
+    SdkUser user = new SdkUser();
+    user.setId(sdkUserId);
+    user.setLdap(ldapId);
+    LdapInfo info = new LdapInfo();
+    info.setId(ldapId);
+    ClientCredential credential = new ClientCredential();
+    credential.setSdkUser(user);
+    credential.setLdapInfo(info);
+    return credential;
+  }
+
+  @Test
+  void credentialExpiresAfterTtl() {
+    CredentialCache cache = newCache(60L);
+    ClientCredential credential = credential(1L, 10L);
+    cache.put("jwt-1", credential);
+    now += 59_000_000_000L;
+    assertSame(credential, cache.get("jwt-1"));
+    assertNull(cache.get("jwt-2"));
+    now += 1_000_000_000L;
+    assertNull(cache.get("jwt-1"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  void logoutAndChangesDropCredentials() {
+    CredentialCache cache = newCache(60L);
+    cache.put("jwt-1", credential(1L, 10L));
+    cache.put("jwt-2", credential(2L, 10L));
+    cache.put("jwt-3", credential(3L, 30L));
+
+    cache.invalidateToken("jwt-3");
+    assertNull(cache.get("jwt-3"));
+    cache.invalidateSdkUser(1L);
+    assertNull(cache.get("jwt-1"));
+    assertEquals(1, cache.size());
+    cache.invalidateLdapInfo(10L);
+    assertNull(cache.get("jwt-2"));
+  }
+
+  @Test
+  void fullCacheDropsExpiredCredentialsFirst() {
+    CredentialCache cache = newCache(60L);
+    cache.put("jwt-1", credential(1L, 10L));
+    now += 30_000_000_000L;
+    cache.put("jwt-2", credential(2L, 20L));
+    cache.put("jwt-3", credential(3L, 30L));
+    now += 30_000_000_000L;
+    cache.put("jwt-4", credential(4L, 40L));
+    assertEquals(3, cache.size());
+    assertNull(cache.get("jwt-1"));
+    assertEquals(2L, cache.get("jwt-2").getSdkUser().getId().longValue());
+  }
+}
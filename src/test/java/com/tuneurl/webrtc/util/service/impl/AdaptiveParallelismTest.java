@@ -0,0 +1,82 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** AIMD steps of AdaptiveParallelism. */
+class AdaptiveParallelismTest {
+
+  @Test
+  void decreasesOnCongestionAndGrowsBackWhenIdle() {
+    AtomicLong clock = new AtomicLong();
+    double[] cpu = {0.5};
+    AdaptiveParallelism adaptive = new AdaptiveParallelism(4, 50, 1000L, () -> cpu[0], clock::get);
+    assertEquals(50, adaptive.getLimit());
+
+    // Two of 100 requests above the objective.
+    for (int i = 0; i < 100; i++) {
+      adaptive.recordLatency(i < 2 ? 3000L : 200L);
+    }
+    clock.addAndGet(AdaptiveParallelism.ADJUST_MILLIS);
+    assertEquals(35, adaptive.getLimit());
+    // No change before ADJUST_MILLIS, the latencies were reset.
+    assertEquals(35, adaptive.getLimit());
+    clock.addAndGet(AdaptiveParallelism.ADJUST_MILLIS);
+    assertEquals(36, adaptive.getLimit());
+
+    // Tasks waiting longer than they run.
+    adaptive.recordTask(500.0, 10.0);
+    clock.addAndGet(AdaptiveParallelism.ADJUST_MILLIS);
+    assertEquals(25, adaptive.getLimit());
+
+    // Busy CPU, down to the minimum.
+    adaptive.recordTask(0.0, 0.0);
+    for (int i = 0; i < 100; i++) {
+      adaptive.recordTask(0.0, 10.0);
+    }
+    cpu[0] = 0.95;
+    for (int i = 0; i < 10; i++) {
+      clock.addAndGet(AdaptiveParallelism.ADJUST_MILLIS);
+      adaptive.getLimit();
+    }
+    assertEquals(4, adaptive.getLimit());
+
+    // Between CPU_LOW and CPU_HIGH the limit holds.
+    cpu[0] = 0.8;
+    clock.addAndGet(AdaptiveParallelism.ADJUST_MILLIS);
+    assertEquals(4, adaptive.getLimit());
+  }
+}
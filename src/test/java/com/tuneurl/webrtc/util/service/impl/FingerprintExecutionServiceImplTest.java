@@ -0,0 +1,199 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.tuneurl.webrtc.util.exception.BaseServiceException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+/** Admission and scheduling of FingerprintExecutionServiceImpl. */
+class FingerprintExecutionServiceImplTest {
+
+  @Test
+  void rejectsWhenFullAndAdmitsAfterCancel() throws Exception {
+    FingerprintExecutionServiceImpl service = new FingerprintExecutionServiceImpl(2, 3, 2);
+    CountDownLatch gate = new CountDownLatch(1);
+    List<Callable<Integer>> tasks = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      final int value = i;
+      tasks.add(
+          () -> {
+            gate.await();
+            return value;
+          });
+    }
+    try {
+      List<Future<Integer>> futures = service.submitAll(tasks);
+
+      BaseServiceException ex =
+          assertThrows(
+              BaseServiceException.class,
+              () -> service.submitAll(Collections.singletonList(() -> 5)));
+      assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getHttpStatus());
+      assertEquals(Long.valueOf(2L), ex.getRetryAfter());
+      assertEquals(1L, service.getStatus().getRejectedRequests());
+
+      // A cancelled window gives its place back at once.
+      futures.get(4).cancel(true);
+      List<Future<Integer>> next = service.submitAll(Collections.singletonList(() -> 5));
+
+      gate.countDown();
+      for (int i = 0; i < 4; i++) {
+        assertEquals(i, futures.get(i).get().intValue());
+      }
+      assertEquals(5, next.get(0).get().intValue());
+    } finally {
+      gate.countDown();
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void interactiveFirstThenRoundRobinPerTenant() throws Exception {
+    FingerprintExecutionServiceImpl service = new FingerprintExecutionServiceImpl(1, 20, 1);
+    service.setFingerprintScheduler(5, 6, 0, "b:2");
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    List<String> order = new CopyOnWriteArrayList<>();
+    Callable<Boolean> blocking =
+        () -> {
+          started.countDown();
+          return gate.await(5L, TimeUnit.SECONDS);
+        };
+    try {
+      List<Future<Boolean>> running =
+          service.submitAll("a", false, Collections.singletonList(blocking), 0L);
+      // The only worker is busy until the gate opens.
+      started.await();
+      service.submitAll("a", false, record(order, "a", 5), 0L);
+      service.submitAll("b", false, record(order, "b", 3), 0L);
+      service.submitAll("c", true, record(order, "c", 1), 0L);
+
+      // The tenant limit of 6 holds for a, not for the interactive lane.
+      BaseServiceException ex =
+          assertThrows(
+              BaseServiceException.class,
+              () -> service.submitAll("a", false, record(order, "a", 1), 0L));
+      assertEquals(HttpStatus.TOO_MANY_REQUESTS, ex.getHttpStatus());
+      assertEquals(1, service.getStatus().getInteractiveQueueDepth());
+
+      gate.countDown();
+      running.get(0).get();
+      List<Future<String>> last = service.submitAll("a", false, record(order, "z", 1), 5000L);
+      last.get(0).get();
+      assertEquals(Arrays.asList("c", "a", "b", "b", "a", "b", "a", "a", "a", "z"), order);
+    } finally {
+      gate.countDown();
+      service.shutdown();
+    }
+  }
+
+  @Test
+  void oneDecreaseShrinksTheSubmittedBatch() throws Exception {
+    List<Integer> batches = new CopyOnWriteArrayList<>();
+    FingerprintExecutionServiceImpl service =
+        new FingerprintExecutionServiceImpl(4, 200, 1) {
+          @Override
+          public <T> List<Future<T>> submitAll(
+              final String tenant,
+              final boolean interactive,
+              final List<? extends Callable<T>> tasks,
+              final long timeoutMillis) {
+            batches.add(tasks.size());
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+              futures.add(CompletableFuture.completedFuture(null));
+            }
+            return futures;
+          }
+        };
+    try {
+      service.setFingerprintScheduler(400, 100, 0, "");
+      service.setAdaptiveParallelism(true, 4, 1000L, 50);
+      assertEquals(50, service.getWindowParallelism(50));
+
+      service.recordRequestLatency(5000L);
+      Thread.sleep(AdaptiveParallelism.ADJUST_MILLIS + 50L);
+      int batchSize = service.getWindowParallelism(50);
+      assertEquals(35, batchSize);
+      assertEquals(35, service.getStatus().getWindowParallelism());
+
+      try (FingerprintWindowStream stream =
+          new FingerprintWindowStream(
+              service,
+              "a",
+              true,
+              new short[8000],
+              "",
+              new Random(1L),
+              1L,
+              "",
+              10000L,
+              100L,
+              batchSize,
+              0L)) {
+        stream.next();
+      }
+      // The batch of the request and the one prefetched after it.
+      assertEquals(Arrays.asList(35, 35), batches);
+    } finally {
+      service.shutdown();
+    }
+  }
+
+  private static List<Callable<String>> record(
+      final List<String> order, final String name, final int count) {
+    List<Callable<String>> tasks = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      tasks.add(
+          () -> {
+            order.add(name);
+            return name;
+          });
+    }
+    return tasks;
+  }
+}
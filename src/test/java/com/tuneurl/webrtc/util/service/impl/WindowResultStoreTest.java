@@ -0,0 +1,121 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.service.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCollection;
+import com.tuneurl.webrtc.util.controller.dto.FingerprintCompareResponse;
+import com.tuneurl.webrtc.util.controller.dto.FingerprintResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** The windows of a request are found again by the next request of the stream. */
+class WindowResultStoreTest {
+
+  private static FingerprintCollection window(final long elapse, final long similarity) {
+    List<FingerprintCompareResponse> selection = new ArrayList<FingerprintCompareResponse>();
+    List<FingerprintResponse> responses = new ArrayList<FingerprintResponse>();
+    for (int i = 0; i < 5; i++) {
+      FingerprintCompareResponse fcr = new FingerprintCompareResponse();
+      fcr.setSimilarity(i == 2 ? similarity : 0L);
+      fcr.setOffset(elapse + 20L * i);
+      selection.add(fcr);
+      responses.add(null);
+    }
+    FingerprintCollection result = new FingerprintCollection();
+    result.setFcrCollection(selection);
+    result.setFrCollection(responses);
+    return result;
+  }
+
+  @Test
+  void reusesOverlappingWindowsAtTheirNewOffset() {
+    short[] stream = new short[11025 * 15];
+    Random random = new Random(7);
+    for (int i = 0; i < stream.length; i++) {
+      stream[i] = (short) random.nextInt();
+    }
+    short[] first = Arrays.copyOfRange(stream, 0, 110250);
+    short[] second = Arrays.copyOfRange(stream, 55125, 165375);
+    WindowResultStore store = new WindowResultStore(4, 1000, 60000L);
+
+    WindowResultStore.Session session = store.open("url", 0L, first, 11025L, "trigger");
+    session.store(6000L, window(6000L, 42L));
+    session.store(9500L, window(9500L, 0L));
+
+    // 5 s later, the window at 6000 ms is at 1000 ms.
+    session = store.open("url", 5000L, second, 11025L, "trigger");
+    FingerprintCollection reused = session.lookup(1000L);
+    assertEquals(5, reused.getFcrCollection().size());
+    assertEquals(1040L, reused.getFcrCollection().get(2).getOffset().longValue());
+    assertEquals(42L, reused.getFcrCollection().get(2).getSimilarity().longValue());
+    // The window at 9500 ms read less audio than it reads now.
+    assertNull(session.lookup(4500L));
+    // Other trigger, other stream.
+    assertNull(store.open("url", 5000L, second, 11025L, "other").lookup(1000L));
+    assertNull(store.open("other", 5000L, second, 11025L, "trigger").lookup(1000L));
+
+    second[11025 + 100] ^= 1;
+    assertNull(store.open("url", 5000L, second, 11025L, "trigger").lookup(1000L));
+    assertEquals(1L, store.getReusedWindows());
+  }
+
+  @Test
+  void listenersOfOneStreamKeepTheirWindows() {
+    short[] stream = new short[11025 * 40];
+    Random random = new Random(11);
+    for (int i = 0; i < stream.length; i++) {
+      stream[i] = (short) random.nextInt();
+    }
+    WindowResultStore store = new WindowResultStore(4, 1000, 60000L);
+    // Two tabs on one station, 20 s apart, each counting from its own start.
+    short[] early = Arrays.copyOfRange(stream, 0, 110250);
+    short[] late = Arrays.copyOfRange(stream, 220500, 330750);
+    store.open("url", 0L, early, 11025L, "trigger").store(6000L, window(6000L, 42L));
+    store.open("url", 0L, late, 11025L, "trigger").store(6000L, window(6000L, 7L));
+
+    // Their next requests, 5 s later, find their own windows.
+    short[] earlyNext = Arrays.copyOfRange(stream, 55125, 165375);
+    short[] lateNext = Arrays.copyOfRange(stream, 275625, 385875);
+    FingerprintCollection reused =
+        store.open("url", 5000L, earlyNext, 11025L, "trigger").lookup(1000L);
+    assertEquals(42L, reused.getFcrCollection().get(2).getSimilarity().longValue());
+    reused = store.open("url", 5000L, lateNext, 11025L, "trigger").lookup(1000L);
+    assertEquals(7L, reused.getFcrCollection().get(2).getSimilarity().longValue());
+    assertEquals(1, store.getStreams());
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+/** Callers of SingleFlight share one computation per key. */
+class SingleFlightTest {
+
+  @Test
+  void concurrentCallersShareOneComputation() throws Exception {
+    SingleFlight<String, Object> flights = new SingleFlight<>(60000L, 4);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    AtomicInteger runs = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Object>> results = new ArrayList<>();
+      results.add(
+          pool.submit(
+              () ->
+                  flights.execute(
+                      "a",
+                      () -> {
+                        runs.incrementAndGet();
+                        started.countDown();
+                        await(gate);
+                        return new Object();
+                      })));
+      started.await();
+      for (int i = 0; i < 3; i++) {
+        results.add(pool.submit(() -> flights.execute("a", () -> fail(runs))));
+      }
+      gate.countDown();
+      Object first = results.get(0).get();
+      for (Future<Object> result : results) {
+        assertSame(first, result.get());
+      }
+      // Kept for the repeats, another key is computed.
+      assertSame(first, flights.execute("a", () -> fail(runs)));
+      flights.execute("b", Object::new);
+      assertEquals(1, runs.get());
+      assertEquals(2L, flights.getComputed());
+      assertEquals(4L, flights.getShared());
+    } finally {
+      gate.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void failureIsNotKept() {
+    SingleFlight<String, String> flights = new SingleFlight<>(60000L, 4);
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            flights.execute(
+                "a",
+                () -> {
+                  throw new IllegalStateException();
+                }));
+    assertEquals("ok", flights.execute("a", () -> "ok"));
+  }
+
+  private static Object fail(final AtomicInteger runs) {
+    runs.incrementAndGet();
+    return null;
+  }
+
+  private static void await(final CountDownLatch gate) {
+    try {
+      gate.await(5L, TimeUnit.SECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
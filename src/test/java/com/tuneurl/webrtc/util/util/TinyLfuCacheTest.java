@@ -0,0 +1,84 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** Admission, weight bound and expiration of TinyLfuCache. */
+class TinyLfuCacheTest {
+
+  @Test
+  void frequentKeysSurviveAScan() {
+    AtomicLong clock = new AtomicLong();
+    TinyLfuCache<Integer, String> cache =
+        new TinyLfuCache<Integer, String>(1000L, 100, 0L, (key, value) -> 10L, clock::get);
+    for (int round = 0; round < 5; round++) {
+      for (int key = 0; key < 50; key++) {
+        if (cache.get(key) == null) cache.put(key, "hot" + key);
+      }
+    }
+    // The hot keys are still asked, between many keys asked once.
+    for (int key = 1000; key < 3000; key++) {
+      if (cache.get(key) == null) cache.put(key, "once" + key);
+      assertTrue(cache.getWeight() <= cache.getMaximumWeight());
+      if (key % 4 == 0) cache.get(key / 4 % 50);
+    }
+    int kept = 0;
+    for (int key = 0; key < 50; key++) {
+      if (cache.get(key) != null) kept++;
+    }
+    assertEquals(50, kept);
+    assertTrue(cache.getEvictions() > 0L);
+  }
+
+  @Test
+  void expiresAfterTtl() {
+    AtomicLong clock = new AtomicLong();
+    TinyLfuCache<String, String> cache =
+        new TinyLfuCache<String, String>(1000L, 16, 100L, (key, value) -> 1L, clock::get);
+    cache.put("a", "A");
+    clock.addAndGet(99L);
+    assertNotNull(cache.get("a"));
+    clock.addAndGet(1L);
+    assertNull(cache.get("a"));
+    assertEquals(1L, cache.getHits());
+    assertEquals(1L, cache.getMisses());
+    assertEquals(1L, cache.getExpirations());
+    assertEquals(0, cache.size());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/** LandmarkExtractor must give the bytes of ./jni/fingerprintexec fingerprintprev. */
+class LandmarkExtractorTest {
+
+  /** fingerprintprev of wave(3072), as printed by ./jni/fingerprintexec. */
+  private static final int[] EXPECTED = {
+    0, 0, 0, 82, 127, 255, 255, 255, 0, 0, 0, 232, 123, 182, 113, 127,
+    0, 0, 1, 5, 114, 249, 115, 127, 0, 0, 1, 246, 115, 231, 41, 127,
+    0, 1, 0, 82, 127, 255, 219, 255, 0, 1, 0, 232, 123, 184, 96, 127,
+    0, 1, 1, 5, 115, 5, 109, 127, 0, 1, 1, 246, 115, 226, 226, 255,
+    0, 2, 0, 82, 127, 255, 205, 127, 0, 2, 0, 232, 123, 182, 142, 127,
+    0, 2, 1, 5, 115, 45, 135, 255, 0, 2, 1, 246, 115, 229, 174, 255,
+    0, 3, 0, 82, 127, 166, 54, 255, 0, 3, 0, 232, 123, 94, 3, 127,
+    0, 3, 1, 5, 114, 214, 245, 255, 0, 3, 1, 246, 115, 141, 67, 255
+  };
+
+  /** Two tones and a sawtooth noise. */
+  static short[] wave(final int size) {
+    short[] data = new short[size];
+    for (int i = 0; i < size; i++) {
+      double v =
+          8000 * StrictMath.sin(i * 2 * Math.PI * 440 / 11025)
+              + 3000 * StrictMath.sin(i * 2 * Math.PI * 1250 / 11025)
+              + ((i * 7919) % 2001 - 1000);
+      data[i] = (short) v;
+    }
+    return data;
+  }
+
+  @Test
+  void sameAsFingerprintExec() {
+    byte[] fingerprint =
+        LandmarkExtractor.getDefaultInstance().extractFingerprint(wave(3072), 0, 3072);
+    int[] actual = new int[fingerprint.length];
+    for (int i = 0; i < fingerprint.length; i++) {
+      actual[i] = fingerprint[i] & 0xff;
+    }
+    assertArrayEquals(EXPECTED, actual);
+  }
+
+  @Test
+  void glibcRounding() {
+    // Math.cos() and Math.log10() round these the other way.
+    assertEquals(-0x1.532826p-1f, FloatMath.cosf(-0x1.25bd28p+1f));
+    assertEquals(0x1.68a2c6p-3f, FloatMath.log10f(0x1.80001ap+0f));
+    // log2(8192) is 13, the native FFT plan uses 12 stages.
+    assertEquals(12, (int) (FloatMath.logf(8192) / FloatMath.logf(2.0f)));
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** SlidingSpectrogram must give the LandmarkExtractor bytes of the same samples. */
+class SlidingSpectrogramTest {
+
+  @Test
+  void sameAsLandmarkExtractor() {
+    LandmarkExtractor extractor = LandmarkExtractor.getDefaultInstance();
+    Random random = new Random(11L);
+    short[] wave = LandmarkExtractorTest.wave(60000);
+    for (int i = 0; i < wave.length; i += 1 + random.nextInt(3)) {
+      wave[i] = (short) (wave[i] + random.nextInt(2000) - 1000);
+    }
+    SlidingSpectrogram spectrogram = new SlidingSpectrogram(extractor, wave.length);
+    int appended = 0;
+    while (appended < wave.length) {
+      int size = Math.min(wave.length - appended, 1 + random.nextInt(9000));
+      spectrogram.append(wave, appended, size);
+      appended += size;
+      for (int trial = 0; trial < 3; trial++) {
+        int start = random.nextInt(appended);
+        if (trial == 0) start -= start % 512;
+        int length = Math.min(appended - start, random.nextInt(12000));
+        assertArrayEquals(
+            extractor.extractFingerprint(wave, start, length),
+            spectrogram.extractFingerprint(start, length));
+      }
+    }
+    // Ranges past the appended samples are zero padded.
+    short[] padded = Arrays.copyOfRange(wave, wave.length - 3000, wave.length + 2000);
+    assertArrayEquals(
+        extractor.extractFingerprint(padded, 0, padded.length),
+        spectrogram.extractFingerprint(wave.length - 3000, padded.length));
+    assertTrue(spectrogram.getReusedFrames() > 0);
+  }
+
+  @Test
+  void reusesFramesOfSteppedWindows() {
+    LandmarkExtractor extractor = LandmarkExtractor.getDefaultInstance();
+    short[] wave = LandmarkExtractorTest.wave(40000);
+    SlidingSpectrogram spectrogram = new SlidingSpectrogram(extractor, 20000);
+    spectrogram.append(wave, 0, wave.length);
+    byte[] first = spectrogram.extractFingerprint(20000, 8192);
+    assertEquals(0L, spectrogram.getReusedFrames());
+    byte[] second = spectrogram.extractFingerprint(20000 + 1024, 8192);
+    assertArrayEquals(extractor.extractFingerprint(wave, 20000, 8192), first);
+    assertArrayEquals(extractor.extractFingerprint(wave, 20000 + 1024, 8192), second);
+    // 13 of the 16 frames of 8192 samples are complete, the second range starts two frames later.
+    assertEquals(11L, spectrogram.getReusedFrames());
+    assertThrows(IllegalArgumentException.class, () -> spectrogram.extractFingerprint(19999, 10));
+  }
+}
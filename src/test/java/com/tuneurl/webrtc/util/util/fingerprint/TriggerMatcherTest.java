@@ -0,0 +1,113 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.tuneurl.webrtc.util.controller.dto.CompareStringResult;
+import org.junit.jupiter.api.Test;
+
+/** Expected values were produced by ./jni/fingerprintexec on the same input. */
+class TriggerMatcherTest {
+
+  static final String TRIGGER =
+      "{\"blockCount\":5,\"blockInfo\":["
+          + "{\"blockSize\":2646,\"sum\":3966758,\"average\":1499.15,\"startRate\":0,\"endRate\":0.24},"
+          + "{\"blockSize\":2095,\"sum\":0,\"average\":0,\"startRate\":0.24,\"endRate\":0.43},"
+          + "{\"blockSize\":2205,\"sum\":3237891,\"average\":1468.43,\"startRate\":0.43,\"endRate\":0.63},"
+          + "{\"blockSize\":1874,\"sum\":0,\"average\":0,\"startRate\":0.63,\"endRate\":0.8},"
+          + "{\"blockSize\":2205,\"sum\":3399686,\"average\":1541.81,\"startRate\":0.8,\"endRate\":1}],"
+          + "\"max\":3000}";
+
+  /** One second window: loud, quiet, loud, quiet, loud after <code>lead</code> silent samples. */
+  static short[] window(final int lead, final int amplitude) {
+    short[] data = new short[TriggerMatcher.SEGMENT_SIZE];
+    for (int i = 0; i + lead < data.length; i++) {
+      float rate = (float) i / TriggerMatcher.SEGMENT_SIZE;
+      boolean loud = rate < 0.24f || (rate >= 0.43f && rate < 0.63f) || rate >= 0.8f;
+      data[i + lead] = (short) (loud ? (i % 2 == 0 ? amplitude : -amplitude) : 0);
+    }
+    return data;
+  }
+
+  static CompareStringResult search(final short[] data) {
+    TriggerDescriptor df = TriggerDescriptor.parse(TRIGGER);
+    return TriggerMatcher.getSearchResult(data, 0, data.length, df).toCompareStringResult();
+  }
+
+  @Test
+  void parseDescriptor() {
+    TriggerDescriptor df = TriggerDescriptor.parse(TRIGGER);
+    assertNotNull(df);
+    assertEquals(5, df.getBlockCount());
+    assertEquals(3000, df.getMax());
+    assertEquals(0.43f, df.getStartRate(2));
+    assertEquals(1.0f, df.getEndRate(4));
+    assertNull(TriggerDescriptor.parse("[]"));
+    assertNull(TriggerDescriptor.parse(null));
+  }
+
+  @Test
+  void correctValue() {
+    assertEquals(0, TriggerMatcher.correctValue((short) -3, 1.0f));
+    assertEquals(4, TriggerMatcher.correctValue((short) -4, 1.0f));
+    assertEquals(15, TriggerMatcher.correctValue((short) 10, 1.5f));
+    assertEquals(0, TriggerMatcher.correctValue(Short.MIN_VALUE, 1.0f));
+  }
+
+  @Test
+  void findTrigger() {
+    CompareStringResult result = search(window(37, 1500));
+    assertEquals("1", result.getSimilarity());
+    assertEquals("3.35601", result.getOffset());
+
+    result = search(window(0, 1500));
+    assertEquals("1", result.getSimilarity());
+    assertEquals("0", result.getOffset());
+
+    result = search(window(150, 200));
+    assertEquals("1", result.getSimilarity());
+    assertEquals("13.6054", result.getOffset());
+  }
+
+  @Test
+  void triggerOutOfReach() {
+    CompareStringResult result = search(window(300, 1500));
+    assertEquals("0", result.getSimilarity());
+    assertEquals("0", result.getOffset());
+
+    result = search(new short[TriggerMatcher.SEGMENT_SIZE]);
+    assertEquals("0", result.getSimilarity());
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.tuneurl.webrtc.util.exception.BaseServiceException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+/** A descriptor is parsed once and found again by its text or its id. */
+class TriggerRegistryTest {
+
+  private static final String OTHER = TriggerMatcherTest.TRIGGER.replace("\"max\":", "\"max\": 1");
+
+  @Test
+  void registeredTriggerIsFoundByTextAndId() {
+    TriggerRegistry registry = new TriggerRegistry();
+    TriggerRegistry.Trigger trigger = registry.register(TriggerMatcherTest.TRIGGER, "a");
+    assertNotNull(trigger);
+    assertEquals(TriggerRegistry.triggerId(TriggerMatcherTest.TRIGGER), trigger.getTriggerId());
+    assertEquals(32, trigger.getTriggerId().length());
+    assertEquals(5, trigger.getDescriptor().getBlockCount());
+
+    // Another request sends the same text in another String.
+    String copy = new String(TriggerMatcherTest.TRIGGER.toCharArray());
+    assertSame(trigger.getDescriptor(), registry.compile(copy));
+    assertSame(trigger.getDataFingerprint(), registry.resolve(null, copy));
+    assertSame(trigger.getDataFingerprint(), registry.resolve(trigger.getTriggerId(), null));
+    assertTrue(registry.unregister(trigger.getTriggerId(), "a"));
+  }
+
+  @Test
+  void unknownTriggerIdIsNotFoundWithoutItsText() {
+    TriggerRegistry registry = new TriggerRegistry();
+    assertThrows(
+        BaseServiceException.class,
+        () -> registry.resolve("00000000000000000000000000000000", null));
+    assertThrows(
+        BaseServiceException.class,
+        () -> registry.resolve("00000000000000000000000000000000", OTHER));
+    assertNull(registry.compile("{not a descriptor}"));
+    assertNull(registry.register("{not a descriptor}", "a"));
+    // Registered on another instance: the text sent with the id is used.
+    String text = new String(OTHER.toCharArray());
+    assertEquals(OTHER, registry.resolve(TriggerRegistry.triggerId(OTHER), text));
+  }
+
+  private static String variant(final int max) {
+    return TriggerMatcherTest.TRIGGER.replace("\"max\":", "\"max\": " + max);
+  }
+
+  @Test
+  void registrationsExpireAndAreLimitedPerClient() {
+    AtomicLong now = new AtomicLong();
+    String first = variant(3);
+    String second = variant(4);
+    String id = TriggerRegistry.triggerId(first);
+    TriggerRegistry registry = new TriggerRegistry(now::get);
+    registry.configure(1, 1, 60L);
+    registry.register(first, "a");
+    // Parsed for the request, but not kept.
+    assertNotNull(registry.compile(variant(5)));
+    assertNull(registry.getDataFingerprint(TriggerRegistry.triggerId(variant(5))));
+    assertThrows(BaseServiceException.class, () -> registry.register(second, "b"));
+    assertThrows(BaseServiceException.class, () -> registry.register(second, "a"));
+
+    // Each use of the id extends the registration.
+    now.addAndGet(59000L);
+    registry.resolve(id, null);
+    now.addAndGet(59000L);
+    assertThrows(BaseServiceException.class, () -> registry.register(second, "b"));
+    now.addAndGet(1000L);
+    assertNotNull(registry.register(second, "b"));
+    assertFalse(registry.unregister(id, "a"));
+
+    assertTrue(registry.unregister(TriggerRegistry.triggerId(second), "b"));
+    assertNotNull(registry.register(first, "b"));
+  }
+}
@@ -0,0 +1,145 @@
+/*
+ * BSD 3-Clause License
+ *
+ * Copyright (c) 2024, TuneURL Inc.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its
+ *    contributors may be used to endorse or promote products derived from
+ *    this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE
+ * FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ * CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY,
+ * OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.tuneurl.webrtc.util.util.fingerprint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/** TriggerScanner.search() must give the TriggerMatcher.getSearchResult() answer. */
+class TriggerScannerTest {
+
+  static void assertSameResult(
+      final TriggerMatcher.SearchResult expected, final TriggerMatcher.SearchResult actual) {
+    assertEquals(expected.getSimilarity(), actual.getSimilarity());
+    assertEquals(expected.getOffset(), actual.getOffset());
+    assertEquals(expected.getAmplify(), actual.getAmplify());
+    assertEquals(expected.getDataMax(), actual.getDataMax());
+  }
+
+  /** Ten seconds of noise with triggers at random positions and amplitudes. */
+  static short[] request(final Random random, final int kind) {
+    TriggerDescriptor df = TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER);
+    short[] data = new short[TriggerMatcher.SEGMENT_SIZE * 10 + random.nextInt(5000)];
+    for (int i = 0; i < data.length; i++) {
+      if (kind == 0) {
+        data[i] = (short) (random.nextInt(65536) - 32768);
+      } else if (kind == 1) {
+        data[i] = (short) (random.nextGaussian() * (random.nextInt(10) == 0 ? 3 : 600));
+      } else {
+        data[i] = (short) (random.nextInt(20) == 0 ? Short.MIN_VALUE : random.nextInt(120) - 60);
+      }
+    }
+    for (int trigger = 0; trigger < 5; trigger++) {
+      int at = random.nextInt(data.length);
+      int amplitude = 200 + random.nextInt(3000);
+      for (int index = 0; index < 5; index++) {
+        int start = at + (int) (df.getStartRate(index) * TriggerMatcher.SEGMENT_SIZE);
+        int end = at + (int) (df.getEndRate(index) * TriggerMatcher.SEGMENT_SIZE);
+        for (int i = start; i < end && i < data.length; i++) {
+          data[i] = (short) (index % 2 == 0 ? amplitude * (random.nextInt(3) + 1) / 3 : 0);
+        }
+      }
+    }
+    return data;
+  }
+
+  @Test
+  void sameAsTriggerMatcher() {
+    TriggerDescriptor df = TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER);
+    Random random = new Random(7L);
+    for (int kind = 0; kind < 3; kind++) {
+      short[] data = request(random, kind);
+      TriggerScanner scanner = new TriggerScanner(data);
+      for (int from = 0; from < data.length + 3000; from += 441 + random.nextInt(3)) {
+        int length = TriggerMatcher.SEGMENT_SIZE + random.nextInt(3);
+        assertSameResult(
+            TriggerMatcher.getSearchResult(data, from, length, df),
+            scanner.search(from, length, df));
+      }
+    }
+  }
+
+  @Test
+  void sameAsTriggerMatcherOnQuietAudio() {
+    // Silence and quiet talk, most windows end at the energy gate.
+    TriggerDescriptor df = TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER);
+    Random random = new Random(13L);
+    short[] data = request(random, 1);
+    for (int i = 0; i < data.length; i++) {
+      if (i / 4000 % 3 == 0) {
+        data[i] = 0;
+      } else if (Math.abs(data[i]) > 40) {
+        data[i] = (short) (data[i] / 40);
+      }
+    }
+    TriggerScanner scanner = new TriggerScanner(data);
+    for (int from = 0; from < data.length; from += 220) {
+      assertSameResult(
+          TriggerMatcher.getSearchResult(data, from, TriggerMatcher.SEGMENT_SIZE, df),
+          scanner.search(from, TriggerMatcher.SEGMENT_SIZE, df));
+    }
+  }
+
+  @Test
+  void sameAsTriggerMatcherOnWindows() {
+    TriggerDescriptor df = TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER);
+    int[][] cases = {{37, 1500}, {0, 1500}, {150, 200}, {300, 1500}, {0, 0}};
+    for (int[] item : cases) {
+      short[] data = TriggerMatcherTest.window(item[0], item[1]);
+      assertSameResult(
+          TriggerMatcher.getSearchResult(data, 0, data.length, df),
+          new TriggerScanner(data).search(0, data.length, df));
+    }
+  }
+
+  @Test
+  void sameAsTriggerMatcherPerTrigger() {
+    TriggerDescriptor[] triggers = {
+      TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER),
+      TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER.replace("\"max\":3000", "\"max\":900")),
+      TriggerDescriptor.parse(TriggerMatcherTest.TRIGGER.replace("\"max\":3000", "\"max\":9000"))
+    };
+    Random random = new Random(11L);
+    short[] data = request(random, 1);
+    TriggerScanner scanner = new TriggerScanner(data);
+    int length = TriggerMatcher.SEGMENT_SIZE;
+    for (int from = 0; from < data.length; from += 661) {
+      TriggerMatcher.SearchResult[] results = scanner.search(from, length, triggers);
+      for (int index = 0; index < triggers.length; index++) {
+        assertSameResult(
+            TriggerMatcher.getSearchResult(data, from, length, triggers[index]), results[index]);
+      }
+    }
+  }
+}